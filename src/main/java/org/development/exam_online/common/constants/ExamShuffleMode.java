@@ -0,0 +1,24 @@
+package org.development.exam_online.common.constants;
+
+public class ExamShuffleMode {
+
+    public static final int NONE = 0;
+
+    public static final int QUESTIONS = 1;
+
+    public static final int OPTIONS = 2;
+
+    public static final int ALL = 3;
+
+    public static boolean shuffleQuestions(Integer mode) {
+        return mode != null && (mode & QUESTIONS) != 0;
+    }
+
+    public static boolean shuffleOptions(Integer mode) {
+        return mode != null && (mode & OPTIONS) != 0;
+    }
+
+    public static boolean isValid(Integer mode) {
+        return mode == null || (mode >= NONE && mode <= ALL);
+    }
+}
@@ -57,6 +57,7 @@ public enum ErrorCode {
     AUTO_GENERATE_DIFFICULTY_NOT_ENOUGH(1405, "难度 {0} 的题目数量不足，需要 {1} 道，但只有 {2} 道"),
     AUTO_GENERATE_DIFFICULTY_RULE_INVALID(1406, "难度规则无效"),
     AUTO_GENERATE_DIFFICULTY_RATIO_INVALID(1407, "难度比例总和必须接近1.0"),
+    AUTO_GENERATE_SOLVER_BUSY(1408, "组卷请求较多，请稍后重试"),
 
     // 判卷与成绩分析错误码 1500-1599
     EXAM_RECORD_NOT_SUBMITTED(1501, "考试记录尚未提交，无法判卷"),
@@ -23,9 +23,46 @@ public class LLMConfig {
 
     private BigDecimal temperature = BigDecimal.valueOf(0.7);
 
+    /** 单次请求超时（毫秒），从发出请求到收到完整响应 */
     private Integer timeout = 30000;
 
+    /** 建立连接超时（毫秒） */
+    private Integer connectTimeout = 10000;
+
     private Integer maxRetries = 3;
 
+    /** 首次重试前的等待时间（毫秒），之后每次翻倍 */
+    private Long retryBackoff = 2000L;
+
+    /** 同时进行中的请求数上限，超出的请求排队等待，不占用线程 */
+    private Integer maxConcurrency = 16;
+
+    /** 后台批量生成报告时每次请求合并的学生数，1 表示不合并 */
+    private Integer batchSize = 4;
+
+    /** 合并请求的输出 token 上限（每名学生 max-tokens 乘以人数，不超过该值） */
+    private Integer batchMaxTokens = 8192;
+
+    /** 每日 token 预算（输入加输出），用完后当天改用规则报告，0 表示不限 */
+    private Long dailyTokenBudget = 0L;
+
+    /** 服务商每分钟请求数配额，0 表示不限 */
+    private Integer requestsPerMinute = 0;
+
+    /** 服务商每分钟 token 配额（输入估计值加 max-tokens），0 表示不限 */
+    private Integer tokensPerMinute = 0;
+
+    /** 熔断统计的最近请求数 */
+    private Integer circuitWindowSize = 20;
+
+    /** 统计样本达到该数量后才判断是否熔断 */
+    private Integer circuitMinCalls = 10;
+
+    /** 失败率（百分比）达到该值时熔断 */
+    private Integer circuitFailureRate = 50;
+
+    /** 熔断后多久（毫秒）开始探测恢复 */
+    private Long circuitOpenMillis = 30000L;
+
     private Boolean enabled = true;
 }
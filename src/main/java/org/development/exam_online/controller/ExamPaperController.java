@@ -8,6 +8,7 @@ import org.development.exam_online.common.PageResult;
 import org.development.exam_online.common.Result;
 import org.development.exam_online.common.enums.PaperTemplate;
 import org.development.exam_online.dao.dto.AutoGeneratePaperRule;
+import org.development.exam_online.dao.dto.TemplateBatchGenerateRequest;
 import org.development.exam_online.dao.dto.TemplateGenerateRequest;
 import org.development.exam_online.dao.entity.ExamPaper;
 import org.development.exam_online.security.RequirePermission;
@@ -70,6 +71,21 @@ public class ExamPaperController {
         return Result.success(result);
     }
 
+    @Operation(summary = "模板批量生成多套等价试卷")
+    @PostMapping("/template-generate/batch")
+    public Result<Map<String, Object>> generatePaperVariants(
+            @Valid @RequestBody TemplateBatchGenerateRequest request) {
+        Map<String, Object> result = examPaperService.generatePaperVariants(request);
+        return Result.success(result);
+    }
+
+    @Operation(summary = "预览自动组卷结果（支持总分、知识点覆盖、分类均衡等约束）")
+    @PostMapping("/auto-generate/preview")
+    public Result<Map<String, Object>> previewAutoGeneration(@RequestBody AutoGeneratePaperRule rule) {
+        Map<String, Object> result = examPaperService.previewAutoGeneration(rule);
+        return Result.success(result);
+    }
+
     @Operation(summary = "获取试卷模板列表")
     @GetMapping("/templates")
     public Result<List<Map<String, Object>>> getTemplates() {
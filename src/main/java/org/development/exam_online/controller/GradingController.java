@@ -2,15 +2,21 @@ package org.development.exam_online.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.development.exam_online.common.PageResult;
 import org.development.exam_online.common.Result;
+import org.development.exam_online.dao.dto.BatchGradeRequest;
 import org.development.exam_online.security.AuthContext;
 import org.development.exam_online.security.RequirePermission;
 import org.development.exam_online.service.GradingService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -90,6 +96,14 @@ public class GradingController {
         return Result.success("批量评分成功");
     }
 
+    @Operation(summary = "批量评分（可跨多条考试记录，全部校验通过后一次写入）")
+    @PostMapping("/grades")
+    @RequirePermission({"mark:manual","exam:manage"})
+    public Result<Map<String, Object>> gradeBatch(@Valid @RequestBody BatchGradeRequest request) {
+        Map<String, Object> result = gradingService.gradeBatch(request.getGrades());
+        return Result.success(result);
+    }
+
     @Operation(
         summary = "自动判卷单个记录")
     @PostMapping("/records/{recordId}/auto-grade")
@@ -127,6 +141,22 @@ public class GradingController {
         return Result.success(result);
     }
 
+    @Operation(summary = "获取考试成绩分布（分数段、四分位数、标准差）")
+    @GetMapping("/exams/{examId}/score-distribution")
+    @RequirePermission({"mark:manual","mark:auto","exam:manage"})
+    public Result<Map<String, Object>> getScoreDistribution(@PathVariable Long examId) {
+        Map<String, Object> result = gradingService.getScoreDistribution(examId);
+        return Result.success(result);
+    }
+
+    @Operation(summary = "获取考试记录的名次与百分位")
+    @GetMapping("/records/{recordId}/rank")
+    @RequirePermission({"mark:manual","mark:auto","exam:manage"})
+    public Result<Map<String, Object>> getRecordRank(@PathVariable Long recordId) {
+        Map<String, Object> result = gradingService.getRecordRank(recordId);
+        return Result.success(result);
+    }
+
     @Operation(
         summary = "确认评分（单个记录）")
     @PostMapping("/records/{recordId}/confirm")
@@ -145,7 +175,15 @@ public class GradingController {
         Map<String, Object> result = new java.util.HashMap<>();
         result.put("examId", examId);
         result.put("confirmedCount", count);
-        result.put("message", "评分已确认，正在后台为" + count + "名学生生成AI分析报告");
+        result.put("message", "评分已确认，已为" + count + "名学生加入AI分析报告生成队列");
+        return Result.success(result);
+    }
+
+    @Operation(summary = "归档考试作答（全部成绩确认后写入列式归档文件）")
+    @PostMapping("/exams/{examId}/archive")
+    @RequirePermission({"exam:manage"})
+    public Result<Map<String, Object>> archiveExam(@PathVariable Long examId) {
+        Map<String, Object> result = gradingService.archiveExam(examId);
         return Result.success(result);
     }
 
@@ -157,6 +195,28 @@ public class GradingController {
         return Result.success(result);
     }
 
+    @Operation(summary = "获取客观题试题分析（难度、区分度、选项分析）")
+    @GetMapping("/exams/{examId}/item-analysis")
+    @RequirePermission({"mark:manual","mark:auto","exam:manage"})
+    public Result<List<Map<String, Object>>> getItemAnalysis(@PathVariable Long examId) {
+        List<Map<String, Object>> result = gradingService.getItemAnalysis(examId);
+        return Result.success(result);
+    }
+
+    @Operation(summary = "多名学生、多场考试的作答汇总分析（按知识点/题型/难度/考试/学生分组）")
+    @GetMapping("/analytics")
+    @RequirePermission({"mark:manual","mark:auto","exam:manage"})
+    public Result<Map<String, Object>> getCohortAnalytics(
+            @RequestParam(defaultValue = "KNOWLEDGE") String groupBy,
+            @RequestParam(required = false) List<Long> examIds,
+            @RequestParam(required = false) List<Long> userIds,
+            @RequestParam(required = false) List<Long> knowledgeIds,
+            @RequestParam(required = false) List<String> types,
+            @RequestParam(required = false) List<Integer> difficulties) {
+        Map<String, Object> result = gradingService.getCohortAnalytics(groupBy, examIds, userIds, knowledgeIds, types, difficulties);
+        return Result.success(result);
+    }
+
     @Operation(
         summary = "获取我的考试记录")
     @GetMapping("/my-records")
@@ -183,6 +243,23 @@ public class GradingController {
         return Result.success(result);
     }
     
+    @Operation(summary = "获取我的考试名次与百分位")
+    @GetMapping("/my-records/{recordId}/rank")
+    @RequirePermission({"score:view"})
+    public Result<Map<String, Object>> getStudentRecordRank(@PathVariable Long recordId) {
+        Long userId = AuthContext.getUserId();
+        Map<String, Object> result = gradingService.getStudentRecordRank(recordId, userId);
+        return Result.success(result);
+    }
+
+    @Operation(summary = "流式获取我的考试AI分析报告（SSE：start/delta/done/pending/error）")
+    @GetMapping(value = "/my-records/{recordId}/ai-report/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @RequirePermission({"score:view"})
+    public SseEmitter streamStudentAiReport(@PathVariable Long recordId) {
+        Long userId = AuthContext.getUserId();
+        return gradingService.streamStudentAiReport(recordId, userId);
+    }
+
     @Operation(
         summary = "获取考试记录的AI分析报告")
     @GetMapping("/records/{recordId}/ai-report")
@@ -191,4 +268,50 @@ public class GradingController {
         Map<String, Object> result = gradingService.getExamRecordAiReport(recordId);
         return Result.success(result);
     }
+
+    @Operation(summary = "AI分析报告任务队列状态（各状态任务数、最早待执行任务等待时间、执行耗时）")
+    @GetMapping("/ai-report-jobs/metrics")
+    @RequirePermission({"exam:manage"})
+    public Result<Map<String, Object>> getAiReportJobMetrics() {
+        Map<String, Object> result = gradingService.getAiReportJobMetrics();
+        return Result.success(result);
+    }
+
+    @Operation(summary = "大模型 token 用量（按日期和模型、按考试汇总），默认最近7天")
+    @GetMapping("/llm-usage")
+    @RequirePermission({"exam:manage"})
+    public Result<Map<String, Object>> getLlmTokenUsage(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        Map<String, Object> result = gradingService.getLlmTokenUsage(startDate, endDate);
+        return Result.success(result);
+    }
+
+    @Operation(summary = "为所选考试的学生生成多次考试趋势报告（至少两场，后台生成）")
+    @PostMapping("/trend-reports")
+    @RequirePermission({"exam:manage"})
+    public Result<Map<String, Object>> generateTrendReports(@RequestBody Map<String, Object> request) {
+        Object raw = request.get("examIds");
+        List<Long> examIds = new java.util.ArrayList<>();
+        if (raw instanceof List<?> list) {
+            for (Object id : list) {
+                try {
+                    examIds.add(Long.parseLong(id.toString()));
+                } catch (NumberFormatException e) {
+                    // 跳过无效的examId
+                }
+            }
+        }
+        Map<String, Object> result = gradingService.generateTrendReports(examIds);
+        return Result.success(result);
+    }
+
+    @Operation(summary = "获取我的多次考试趋势报告")
+    @GetMapping("/my-trend-report")
+    @RequirePermission({"score:view"})
+    public Result<Map<String, Object>> getStudentTrendReport() {
+        Long userId = AuthContext.getUserId();
+        Map<String, Object> result = gradingService.getStudentTrendReport(userId);
+        return Result.success(result);
+    }
 }
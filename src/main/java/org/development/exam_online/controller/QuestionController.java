@@ -73,9 +73,10 @@ public class QuestionController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) Long knowledgeId,
             @RequestParam(required = false) Integer difficulty,
+            @RequestParam(required = false) Integer empiricalDifficulty,
             @RequestParam(required = false) String keyword,
             @RequestParam(required = false) Long createdBy) {
-        PageResult<Question> result = questionService.getQuestionList(pageNum, pageSize, type, categoryId, knowledgeId, difficulty, keyword, createdBy);
+        PageResult<Question> result = questionService.getQuestionList(pageNum, pageSize, type, categoryId, knowledgeId, difficulty, empiricalDifficulty, keyword, createdBy);
         return Result.success(result);
     }
 
@@ -87,9 +88,10 @@ public class QuestionController {
             @RequestParam(required = false) Long categoryId,
             @RequestParam(required = false) Long knowledgeId,
             @RequestParam(required = false) Integer difficulty,
+            @RequestParam(required = false) Integer empiricalDifficulty,
             @RequestParam(defaultValue = "1") Integer pageNum,
             @RequestParam(defaultValue = "10") Integer pageSize) {
-        PageResult<Question> result = questionService.searchQuestions(keyword, type, categoryId, knowledgeId, difficulty, pageNum, pageSize);
+        PageResult<Question> result = questionService.searchQuestions(keyword, type, categoryId, knowledgeId, difficulty, empiricalDifficulty, pageNum, pageSize);
         return Result.success(result);
     }
 
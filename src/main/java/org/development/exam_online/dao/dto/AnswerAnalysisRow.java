@@ -0,0 +1,22 @@
+package org.development.exam_online.dao.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 试题分析用的答题行：一道题的作答及所属考试记录的总分
+ */
+@Data
+public class AnswerAnalysisRow {
+
+    private Long recordId;
+
+    private Long questionId;
+
+    private String userAnswer;
+
+    private BigDecimal score;
+
+    private BigDecimal totalScore;
+}
@@ -0,0 +1,28 @@
+package org.development.exam_online.dao.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 归档用的答题行：作答、满分及所属考试记录
+ */
+@Data
+public class ArchiveAnswerRow {
+
+    private Long recordId;
+
+    private Long userId;
+
+    private BigDecimal totalScore;
+
+    private Long questionId;
+
+    private String userAnswer;
+
+    private BigDecimal score;
+
+    private BigDecimal fullScore;
+
+    private Integer isManualGraded;
+}
@@ -25,6 +25,24 @@ public class AutoGeneratePaperRule {
 
     private FallbackMode fallbackMode;
 
+    /** 目标总分，设置后按约束求解组卷 */
+    private Double targetTotalScore;
+
+    /** knowledgeIds 中的每个知识点至少出一题 */
+    private Boolean requireKnowledgeCoverage;
+
+    /** categoryIds 中的各分类题量尽量均衡 */
+    private Boolean balanceCategories;
+
+    /** 不允许选用的题目 */
+    private List<Long> excludeQuestionIds;
+
+    /** 约束求解的时间预算（毫秒） */
+    private Long timeBudgetMs;
+
+    /** 按题目历史作答的实测难度分组抽题，没有实测难度的题目按设置的难度 */
+    private Boolean useEmpiricalDifficulty;
+
     @Data
     public static class TypeRule {
         
@@ -0,0 +1,16 @@
+package org.development.exam_online.dao.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BatchGradeRequest {
+
+    /** 可以包含多条考试记录的评分；同一记录同一题出现多次时以最后一次为准 */
+    @NotEmpty(message = "评分列表不能为空")
+    @Valid
+    private List<GradeSubmission> grades;
+}
@@ -0,0 +1,27 @@
+package org.development.exam_online.dao.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 分析数据立方的事实行：一道题的作答、满分及所属考试记录
+ */
+@Data
+public class CubeFactRow {
+
+    private Long recordId;
+
+    private Long userId;
+
+    private Long examId;
+
+    private Long questionId;
+
+    private BigDecimal score;
+
+    private BigDecimal fullScore;
+
+    private LocalDateTime updatedAt;
+}
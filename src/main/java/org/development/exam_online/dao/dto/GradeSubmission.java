@@ -0,0 +1,26 @@
+package org.development.exam_online.dao.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 一道题的人工评分
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GradeSubmission {
+
+    @NotNull(message = "考试记录ID不能为空")
+    private Long recordId;
+
+    @NotNull(message = "题目ID不能为空")
+    private Long questionId;
+
+    @NotNull(message = "分数不能为空")
+    private BigDecimal score;
+}
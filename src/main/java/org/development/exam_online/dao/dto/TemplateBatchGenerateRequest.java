@@ -0,0 +1,21 @@
+package org.development.exam_online.dao.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+@Data
+public class TemplateBatchGenerateRequest {
+
+    @NotNull(message = "模板组卷参数不能为空")
+    @Valid
+    private TemplateGenerateRequest template;
+
+    @NotNull(message = "试卷套数不能为空")
+    private Integer variantCount;
+
+    /** 任意两套试卷之间最多相同的题目数，为空表示不限制 */
+    private Integer maxSharedQuestions;
+
+    private Long randomSeed;
+}
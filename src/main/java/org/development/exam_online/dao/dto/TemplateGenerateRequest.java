@@ -27,6 +27,18 @@ public class TemplateGenerateRequest {
 
     private Map<Integer, Double> difficultyRatio;
 
+    private Double targetTotalScore;
+
+    private Boolean requireKnowledgeCoverage;
+
+    private Boolean balanceCategories;
+
+    private List<Long> excludeQuestionIds;
+
+    private Long timeBudgetMs;
+
+    private Boolean useEmpiricalDifficulty;
+
     @Data
     public static class TypeRule {
         private Integer count;
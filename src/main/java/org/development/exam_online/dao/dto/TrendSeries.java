@@ -0,0 +1,27 @@
+package org.development.exam_online.dao.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 某个知识点或题型在多次考试中的正确率序列
+ */
+@Data
+public class TrendSeries {
+
+    private Long knowledgeId;
+
+    private String name;
+
+    /** 与考试顺序一一对应，该次考试没有相关题目时为 null */
+    private List<BigDecimal> accuracy;
+
+    /** 各次考试合计的正确率 */
+    private BigDecimal overall;
+
+    private Integer total;
+
+    private Integer wrong;
+}
@@ -0,0 +1,18 @@
+package org.development.exam_online.dao.dto;
+
+import lombok.Data;
+
+/**
+ * 学生的一道错题作答
+ */
+@Data
+public class WrongAnswerRow {
+
+    private Long recordId;
+
+    private Long examId;
+
+    private Long questionId;
+
+    private String userAnswer;
+}
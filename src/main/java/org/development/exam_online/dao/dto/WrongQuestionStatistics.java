@@ -26,4 +26,14 @@ public class WrongQuestionStatistics {
     private List<KnowledgeStatistics> byKnowledge;
     
     private List<WrongQuestionDetail> wrongQuestionDetails;
+
+    /** 多次考试趋势：考试名称，按交卷时间排列 */
+    private List<String> examNames;
+
+    /** 多次考试趋势：每次考试的总体正确率，与 examNames 对应 */
+    private List<BigDecimal> examAccuracy;
+
+    private List<TrendSeries> typeTrends;
+
+    private List<TrendSeries> knowledgeTrends;
 }
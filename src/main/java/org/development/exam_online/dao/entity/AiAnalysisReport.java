@@ -22,6 +22,9 @@ public class AiAnalysisReport {
     
     private String analysisData;
     
+    /** 提示词、模型与参数的 SHA-256；规则报告为空 */
+    private String dataHash;
+    
     private String aiReport;
     
     private String modelName;
@@ -0,0 +1,63 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@TableName("ai_report_job")
+@Data
+public class AiReportJob {
+
+    public static final int PENDING = 0;
+    public static final int RUNNING = 1;
+    public static final int DONE = 2;
+    public static final int FAILED = 3;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @TableField("exam_id")
+    private Long examId;
+
+    @TableField("user_id")
+    private Long userId;
+
+    /** 状态：0待执行 1执行中 2已完成 3失败 */
+    @TableField("status")
+    private Integer status;
+
+    @TableField("attempts")
+    private Integer attempts;
+
+    /** 保存规则报告后放回队列的次数，不计入 attempts */
+    @TableField("fallback_count")
+    private Integer fallbackCount;
+
+    @TableField("next_run_at")
+    private LocalDateTime nextRunAt;
+
+    @TableField("locked_by")
+    private String lockedBy;
+
+    @TableField("locked_at")
+    private LocalDateTime lockedAt;
+
+    @TableField("last_error")
+    private String lastError;
+
+    @TableField("report_id")
+    private Long reportId;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+
+    @TableField("finished_at")
+    private LocalDateTime finishedAt;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+}
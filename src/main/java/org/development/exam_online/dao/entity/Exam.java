@@ -33,6 +33,14 @@ public class Exam {
     @TableField("status")
     private Integer status;
 
+    /** 乱序方式：0不乱序 1题目乱序 2选项乱序 3题目和选项都乱序 */
+    @TableField("shuffle_mode")
+    private Integer shuffleMode;
+
+    /** 抽题规则（JSON），设置后每个考生开考时按规则单独抽题 */
+    @TableField("draw_rule_json")
+    private String drawRuleJson;
+
     @TableField("created_by")
     private Long createdBy;
 
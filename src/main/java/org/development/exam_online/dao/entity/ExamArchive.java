@@ -0,0 +1,40 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@TableName("exam_archive")
+@Data
+public class ExamArchive {
+
+    @TableId(value = "exam_id", type = IdType.INPUT)
+    private Long examId;
+
+    @TableField("file_path")
+    private String filePath;
+
+    @TableField("record_count")
+    private Integer recordCount;
+
+    @TableField("answer_count")
+    private Integer answerCount;
+
+    @TableField("file_size")
+    private Long fileSize;
+
+    /** 文件内容 CRC32 校验值 */
+    @TableField("checksum")
+    private Long checksum;
+
+    /** 是否已从 exam_answer 删除作答：0否 1是 */
+    @TableField("pruned")
+    private Integer pruned;
+
+    @TableField("archived_at")
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,31 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@TableName("exam_record_question")
+@Data
+public class ExamRecordQuestion {
+
+    @TableId(value = "record_id", type = IdType.INPUT)
+    private Long recordId;
+
+    @TableField("exam_id")
+    private Long examId;
+
+    /** 题目ID列表，按题目顺序逗号分隔 */
+    @TableField("question_ids")
+    private String questionIds;
+
+    /** 题目分值列表，与题目ID一一对应 */
+    @TableField("question_scores")
+    private String questionScores;
+
+    @TableField("created_at")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,20 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+@TableName("exam_score_bucket")
+@Data
+public class ExamScoreBucket {
+
+    @TableField("exam_id")
+    private Long examId;
+
+    /** 总分×100 */
+    @TableField("bucket")
+    private Integer bucket;
+
+    @TableField("record_count")
+    private Integer recordCount;
+}
@@ -0,0 +1,55 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@TableName("exam_statistics")
+@Data
+public class ExamStatistics {
+
+    @TableId(value = "exam_id", type = IdType.INPUT)
+    private Long examId;
+
+    @TableField("participant_count")
+    private Integer participantCount;
+
+    @TableField("not_started_count")
+    private Integer notStartedCount;
+
+    @TableField("in_progress_count")
+    private Integer inProgressCount;
+
+    @TableField("ungraded_count")
+    private Integer ungradedCount;
+
+    @TableField("grading_count")
+    private Integer gradingCount;
+
+    @TableField("graded_count")
+    private Integer gradedCount;
+
+    @TableField("finished_count")
+    private Integer finishedCount;
+
+    /** 计入成绩统计的记录数（已提交且有总分） */
+    @TableField("scored_count")
+    private Integer scoredCount;
+
+    @TableField("score_sum")
+    private BigDecimal scoreSum;
+
+    @TableField("score_square_sum")
+    private BigDecimal scoreSquareSum;
+
+    @TableField("pass_count")
+    private Integer passCount;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,35 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@TableName("llm_token_usage")
+@Data
+public class LLMTokenUsage {
+
+    @TableField("usage_date")
+    private LocalDate usageDate;
+
+    @TableField("model")
+    private String model;
+
+    /** 考试ID，0 表示非考试报告 */
+    @TableField("exam_id")
+    private Long examId;
+
+    @TableField("request_count")
+    private Integer requestCount;
+
+    @TableField("prompt_tokens")
+    private Long promptTokens;
+
+    @TableField("completion_tokens")
+    private Long completionTokens;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+}
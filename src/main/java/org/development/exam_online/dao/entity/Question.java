@@ -55,4 +55,8 @@ public class Question {
     @TableField("updated_at")
     private LocalDateTime updatedAt;
 
+    /** 实测难度（来自 question_stats），仅列表查询时填充 */
+    @TableField(exist = false)
+    private Integer empiricalDifficulty;
+
 }
@@ -0,0 +1,35 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@TableName("question_stats")
+@Data
+public class QuestionStats {
+
+    @TableId(value = "question_id", type = IdType.INPUT)
+    private Long questionId;
+
+    @TableField("attempt_count")
+    private Integer attemptCount;
+
+    @TableField("correct_count")
+    private Integer correctCount;
+
+    /** 得分率之和（得分/满分） */
+    @TableField("score_fraction_sum")
+    private BigDecimal scoreFractionSum;
+
+    /** 实测难度：1简单 2普通 3困难；作答次数不足时为空 */
+    @TableField("empirical_level")
+    private Integer empiricalLevel;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+}
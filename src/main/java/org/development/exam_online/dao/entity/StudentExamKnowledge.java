@@ -0,0 +1,32 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@TableName("student_exam_knowledge")
+@Data
+public class StudentExamKnowledge {
+
+    @TableField("user_id")
+    private Long userId;
+
+    @TableField("exam_id")
+    private Long examId;
+
+    @TableField("knowledge_id")
+    private Long knowledgeId;
+
+    @TableField("attempt_count")
+    private Integer attemptCount;
+
+    /** 未得满分题数 */
+    @TableField("wrong_count")
+    private Integer wrongCount;
+
+    /** 交卷时间 */
+    @TableField("exam_time")
+    private LocalDateTime examTime;
+}
@@ -0,0 +1,33 @@
+package org.development.exam_online.dao.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@TableName("student_knowledge_mastery")
+@Data
+public class StudentKnowledgeMastery {
+
+    @TableField("user_id")
+    private Long userId;
+
+    @TableField("knowledge_id")
+    private Long knowledgeId;
+
+    @TableField("attempt_count")
+    private Integer attemptCount;
+
+    /** 未得满分次数 */
+    @TableField("wrong_count")
+    private Integer wrongCount;
+
+    /** 得分率之和（得分/满分） */
+    @TableField("score_fraction_sum")
+    private BigDecimal scoreFractionSum;
+
+    @TableField("updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -1,10 +1,46 @@
 package org.development.exam_online.dao.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 import org.development.exam_online.dao.entity.AiAnalysisReport;
 
 
 @Mapper
 public interface AiAnalysisReportMapper extends BaseMapper<AiAnalysisReport> {
+
+    /**
+     * 任意学生的相同输入已生成过的报告内容
+     */
+    @Select("SELECT ai_report FROM ai_analysis_report WHERE data_hash = #{dataHash} AND deleted = 0 " +
+            "ORDER BY id DESC LIMIT 1")
+    String selectReportByHash(@Param("dataHash") String dataHash);
+
+    /**
+     * 该学生该场考试以相同输入生成过的报告
+     */
+    @Select("SELECT * FROM ai_analysis_report WHERE data_hash = #{dataHash} AND user_id = #{userId} " +
+            "AND exam_ids = #{examIds} AND report_type = #{reportType} AND deleted = 0 ORDER BY id DESC LIMIT 1")
+    AiAnalysisReport selectByUserAndHash(@Param("userId") Long userId, @Param("examIds") String examIds,
+                                         @Param("reportType") String reportType, @Param("dataHash") String dataHash);
+
+    /**
+     * 该学生该场考试等待大模型报告替换的规则报告
+     */
+    @Select("SELECT * FROM ai_analysis_report WHERE user_id = #{userId} AND exam_ids = #{examIds} " +
+            "AND report_type = #{reportType} AND model_name = #{modelName} AND deleted = 0 ORDER BY id DESC LIMIT 1")
+    AiAnalysisReport selectDraft(@Param("userId") Long userId, @Param("examIds") String examIds,
+                                 @Param("reportType") String reportType, @Param("modelName") String modelName);
+
+    /**
+     * 插入规则报告；该学生该份报告已有待替换的规则报告时（draft_key 唯一）保留已有的，不重复插入。
+     * 插入后用 {@link #selectDraft} 读取实际保留的一份
+     */
+    @Insert("INSERT INTO ai_analysis_report (user_id, report_type, exam_ids, analysis_data, data_hash, ai_report, " +
+            "model_name, token_usage, generation_time, created_time, deleted) VALUES (#{userId}, #{reportType}, " +
+            "#{examIds}, #{analysisData}, #{dataHash}, #{aiReport}, #{modelName}, #{tokenUsage}, #{generationTime}, " +
+            "#{createdTime}, 0) ON DUPLICATE KEY UPDATE id = id")
+    int insertDraft(AiAnalysisReport report);
 }
@@ -0,0 +1,99 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.development.exam_online.dao.entity.AiReportJob;
+
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface AiReportJobMapper extends BaseMapper<AiReportJob> {
+
+    /**
+     * 批量入队；同一学生同一考试已有任务时忽略
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO ai_report_job (exam_id, user_id) VALUES " +
+            "<foreach collection='userIds' item='userId' separator=','>(#{examId}, #{userId})</foreach>" +
+            "</script>")
+    int enqueue(@Param("examId") Long examId, @Param("userIds") List<Long> userIds);
+
+    /**
+     * 取一批到期的待执行任务并加锁；多实例部署时跳过其他实例正在领取的任务
+     */
+    @Select("SELECT * FROM ai_report_job WHERE status = 0 AND next_run_at <= NOW() " +
+            "ORDER BY next_run_at, id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+    List<AiReportJob> lockDueJobs(@Param("limit") int limit);
+
+    @Update("<script>" +
+            "UPDATE ai_report_job SET status = 1, attempts = attempts + 1, locked_by = #{worker}, locked_at = NOW() " +
+            "WHERE id IN <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int markRunning(@Param("ids") List<Long> ids, @Param("worker") String worker);
+
+    /**
+     * 领取指定学生、指定考试的任务（等待执行或等待重试时）
+     */
+    @Update("UPDATE ai_report_job SET status = 1, attempts = attempts + 1, locked_by = #{worker}, locked_at = NOW(), " +
+            "next_run_at = NOW() WHERE exam_id = #{examId} AND user_id = #{userId} AND status = 0")
+    int claimOne(@Param("examId") Long examId, @Param("userId") Long userId, @Param("worker") String worker);
+
+    @Select("SELECT * FROM ai_report_job WHERE exam_id = #{examId} AND user_id = #{userId}")
+    AiReportJob selectByExamUser(@Param("examId") Long examId, @Param("userId") Long userId);
+
+    /*
+     * 以下状态更新只对本实例仍持有的任务生效；任务超时被放回并由其他实例领取后，原执行者的结果不再覆盖
+     */
+
+    @Update("UPDATE ai_report_job SET status = 2, report_id = #{reportId}, last_error = NULL, finished_at = NOW() " +
+            "WHERE id = #{id} AND status = 1 AND locked_by = #{worker}")
+    int markDone(@Param("id") Long id, @Param("reportId") Long reportId, @Param("worker") String worker);
+
+    @Update("UPDATE ai_report_job SET status = 0, last_error = #{error}, " +
+            "next_run_at = NOW() + INTERVAL #{delaySeconds} SECOND, locked_by = NULL, locked_at = NULL " +
+            "WHERE id = #{id} AND status = 1 AND locked_by = #{worker}")
+    int markRetry(@Param("id") Long id, @Param("error") String error, @Param("delaySeconds") long delaySeconds,
+                  @Param("worker") String worker);
+
+    /**
+     * 大模型不可用、只保存了规则报告时放回队列：撤销领取时增加的 attempts，改为累加 fallback_count
+     */
+    @Update("UPDATE ai_report_job SET status = 0, attempts = attempts - 1, fallback_count = fallback_count + 1, " +
+            "last_error = #{error}, next_run_at = NOW() + INTERVAL #{delaySeconds} SECOND, locked_by = NULL, locked_at = NULL " +
+            "WHERE id = #{id} AND status = 1 AND locked_by = #{worker}")
+    int markDeferred(@Param("id") Long id, @Param("error") String error, @Param("delaySeconds") long delaySeconds,
+                     @Param("worker") String worker);
+
+    @Update("UPDATE ai_report_job SET status = 3, last_error = #{error}, finished_at = NOW() " +
+            "WHERE id = #{id} AND status = 1 AND locked_by = #{worker}")
+    int markFailed(@Param("id") Long id, @Param("error") String error, @Param("worker") String worker);
+
+    /**
+     * 执行超时的任务（实例宕机或重启时遗留）放回队列
+     */
+    @Update("UPDATE ai_report_job SET status = 0, locked_by = NULL, locked_at = NULL " +
+            "WHERE status = 1 AND locked_at < NOW() - INTERVAL #{timeoutSeconds} SECOND")
+    int releaseStale(@Param("timeoutSeconds") long timeoutSeconds);
+
+    /**
+     * 实例停机时放回本实例未执行完的任务
+     */
+    @Update("UPDATE ai_report_job SET status = 0, locked_by = NULL, locked_at = NULL " +
+            "WHERE status = 1 AND locked_by = #{worker}")
+    int releaseLockedBy(@Param("worker") String worker);
+
+    @Select("SELECT status, COUNT(*) AS cnt FROM ai_report_job GROUP BY status")
+    List<Map<String, Object>> countByStatus();
+
+    /**
+     * 最早一个到期待执行任务的等待秒数，没有时为 null
+     */
+    @Select("SELECT TIMESTAMPDIFF(SECOND, MIN(next_run_at), NOW()) FROM ai_report_job " +
+            "WHERE status = 0 AND next_run_at <= NOW()")
+    Long selectOldestPendingSeconds();
+}
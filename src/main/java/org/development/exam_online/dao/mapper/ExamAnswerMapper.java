@@ -1,15 +1,91 @@
 package org.development.exam_online.dao.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+import org.development.exam_online.dao.dto.AnswerAnalysisRow;
+import org.development.exam_online.dao.dto.CubeFactRow;
+import org.development.exam_online.dao.dto.WrongAnswerRow;
 import org.development.exam_online.dao.entity.ExamAnswer;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Mapper
 public interface ExamAnswerMapper extends BaseMapper<ExamAnswer> {
     @Select("SELECT * FROM exam_answer WHERE record_id = #{recordId} AND question_id = #{questionId} LIMIT 1")
     ExamAnswer selectByRecordAndQuestionIgnoreDeleted(Long recordId, Long questionId);
-}
 
+    /**
+     * 流式读取某个考试已提交记录的全部作答及记录总分，逐行回调，不在内存中保留结果集
+     */
+    @Select("SELECT a.record_id, a.question_id, a.user_answer, a.score, r.total_score " +
+            "FROM exam_answer a JOIN exam_record r ON r.id = a.record_id " +
+            "WHERE r.exam_id = #{examId} AND r.deleted = 0 AND r.status >= 2 AND a.deleted = 0")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(AnswerAnalysisRow.class)
+    void streamAnswerRows(@Param("examId") Long examId, ResultHandler<AnswerAnalysisRow> handler);
+
+    /**
+     * 学生最近的错题作答（已确认成绩的考试记录，按记录由新到旧）
+     */
+    @Select("SELECT a.record_id, r.exam_id, a.question_id, a.user_answer " +
+            "FROM exam_record r " +
+            "JOIN exam_answer a ON a.record_id = r.id AND a.deleted = 0 " +
+            "JOIN question q ON q.id = a.question_id " +
+            "LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id " +
+            "WHERE r.user_id = #{userId} AND r.status = 5 AND r.deleted = 0 " +
+            "AND COALESCE(a.score, 0) < COALESCE(s.question_score, q.score, 0) " +
+            "ORDER BY r.id DESC, a.id LIMIT #{limit}")
+    List<WrongAnswerRow> selectRecentWrongAnswers(@Param("userId") Long userId, @Param("limit") int limit);
 
+    /**
+     * 流式读取某时间之后更新的、已确认成绩的考试记录的全部作答；满分取考试快照中的分值，没有快照时取题目分值
+     */
+    @Select("SELECT r.id AS record_id, r.user_id, r.exam_id, r.updated_at, a.question_id, " +
+            "COALESCE(a.score, 0) AS score, COALESCE(s.question_score, q.score, 0) AS full_score " +
+            "FROM exam_record r " +
+            "JOIN exam_answer a ON a.record_id = r.id AND a.deleted = 0 " +
+            "JOIN question q ON q.id = a.question_id " +
+            "LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id " +
+            "WHERE r.status = 5 AND r.deleted = 0 AND r.updated_at >= #{since}")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(CubeFactRow.class)
+    void streamCubeFacts(@Param("since") LocalDateTime since, ResultHandler<CubeFactRow> handler);
 
+    /**
+     * 批量写入人工评分：没有作答行时插入，已有时更新分数并标记为人工评分；
+     * 已逻辑删除的行恢复后清空原作答，与逐题评分时的处理一致
+     */
+    @Insert("<script>" +
+            "INSERT INTO exam_answer (record_id, question_id, score, is_manual_graded, deleted) VALUES " +
+            "<foreach collection='answers' item='a' separator=','>" +
+            "(#{a.recordId}, #{a.questionId}, #{a.score}, 1, 0)" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE " +
+            "user_answer = IF(deleted = 1, NULL, user_answer), " +
+            "score = VALUES(score), " +
+            "is_manual_graded = 1, " +
+            "deleted = 0" +
+            "</script>")
+    int upsertManualScores(@Param("answers") List<ExamAnswer> answers);
+
+    /**
+     * 锁定并读取一批考试记录中指定题目的当前作答（含已逻辑删除的行），用于计算评分前后的分差
+     */
+    @Select("<script>" +
+            "SELECT id, record_id, question_id, score, is_manual_graded, deleted FROM exam_answer WHERE record_id IN " +
+            "<foreach collection='recordIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " AND question_id IN " +
+            "<foreach collection='questionIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " FOR UPDATE" +
+            "</script>")
+    List<ExamAnswer> selectForUpdate(@Param("recordIds") List<Long> recordIds,
+                                     @Param("questionIds") List<Long> questionIds);
+}
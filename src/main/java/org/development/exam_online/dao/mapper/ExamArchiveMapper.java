@@ -0,0 +1,66 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
+import org.development.exam_online.dao.dto.ArchiveAnswerRow;
+import org.development.exam_online.dao.entity.ExamArchive;
+
+import java.util.List;
+
+@Mapper
+public interface ExamArchiveMapper extends BaseMapper<ExamArchive> {
+
+    /**
+     * 可归档的考试：已结束若干天、有考试记录且全部记录已确认成绩并计入题目统计、尚未归档
+     */
+    @Select("SELECT e.id FROM exam e " +
+            "WHERE e.deleted = 0 AND e.end_time < NOW() - INTERVAL #{afterDays} DAY " +
+            "AND NOT EXISTS (SELECT 1 FROM exam_archive a WHERE a.exam_id = e.id) " +
+            "AND EXISTS (SELECT 1 FROM exam_record r WHERE r.exam_id = e.id AND r.deleted = 0) " +
+            "AND NOT EXISTS (SELECT 1 FROM exam_record r WHERE r.exam_id = e.id AND r.deleted = 0 " +
+            "AND (r.status <> 5 OR r.stats_collected = 0)) " +
+            "ORDER BY e.id LIMIT #{limit}")
+    List<Long> selectArchivableExamIds(@Param("afterDays") int afterDays, @Param("limit") int limit);
+
+    @Select("SELECT COUNT(*) FROM exam WHERE id = #{examId} AND deleted = 0 AND end_time < NOW()")
+    long countEnded(@Param("examId") Long examId);
+
+    /**
+     * 未确认成绩或尚未计入题目统计的考试记录数
+     */
+    @Select("SELECT COUNT(*) FROM exam_record WHERE exam_id = #{examId} AND deleted = 0 " +
+            "AND (status <> 5 OR stats_collected = 0)")
+    long countUnfinishedRecords(@Param("examId") Long examId);
+
+    /**
+     * 流式读取一场考试全部作答，按考试记录、题目排序；满分取考试快照中的分值，没有快照时取题目分值
+     */
+    @Select("SELECT a.record_id, r.user_id, r.total_score, a.question_id, a.user_answer, a.score, a.is_manual_graded, " +
+            "COALESCE(s.question_score, q.score, 0) AS full_score " +
+            "FROM exam_record r " +
+            "JOIN exam_answer a ON a.record_id = r.id AND a.deleted = 0 " +
+            "JOIN question q ON q.id = a.question_id " +
+            "LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id " +
+            "WHERE r.exam_id = #{examId} AND r.deleted = 0 " +
+            "ORDER BY a.record_id, a.question_id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(ArchiveAnswerRow.class)
+    void streamArchiveRows(@Param("examId") Long examId, ResultHandler<ArchiveAnswerRow> handler);
+
+    /**
+     * 分批物理删除已归档考试的作答；只删除归档时写入文件的行（未删除记录的未删除作答）
+     */
+    @Delete("DELETE FROM exam_answer WHERE deleted = 0 AND record_id IN " +
+            "(SELECT id FROM (SELECT id FROM exam_record WHERE exam_id = #{examId} AND deleted = 0) t) LIMIT #{limit}")
+    int deleteAnswersOfExam(@Param("examId") Long examId, @Param("limit") int limit);
+
+    @Select("SELECT exam_id FROM exam_archive WHERE pruned = 1")
+    List<Long> selectPrunedExamIds();
+}
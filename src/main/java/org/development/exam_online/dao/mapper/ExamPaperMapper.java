@@ -1,11 +1,23 @@
 package org.development.exam_online.dao.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
 import org.development.exam_online.dao.entity.ExamPaper;
 
+import java.util.List;
+
 @Mapper
 public interface ExamPaperMapper extends BaseMapper<ExamPaper> {
-}
-
 
+    @Insert("<script>" +
+            "INSERT INTO exam_paper (name, description, build_type, rule_json, total_score, duration, created_by, deleted) VALUES " +
+            "<foreach collection='list' item='p' separator=','>" +
+            "(#{p.name}, #{p.description}, #{p.buildType}, #{p.ruleJson}, #{p.totalScore}, #{p.duration}, #{p.createdBy}, #{p.deleted})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "list.id", keyColumn = "id")
+    int insertBatch(@Param("list") List<ExamPaper> papers);
+}
@@ -1,11 +1,21 @@
 package org.development.exam_online.dao.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.development.exam_online.dao.entity.ExamPaperQuestion;
 
+import java.util.List;
+
 @Mapper
 public interface ExamPaperQuestionMapper extends BaseMapper<ExamPaperQuestion> {
-}
-
 
+    @Insert("<script>" +
+            "INSERT INTO exam_paper_question (paper_id, question_id, question_score, question_order) VALUES " +
+            "<foreach collection='list' item='q' separator=','>" +
+            "(#{q.paperId}, #{q.questionId}, #{q.questionScore}, #{q.questionOrder})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("list") List<ExamPaperQuestion> rows);
+}
@@ -2,10 +2,74 @@ package org.development.exam_online.dao.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.development.exam_online.dao.entity.ExamRecord;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Mapper
 public interface ExamRecordMapper extends BaseMapper<ExamRecord> {
-}
 
+    /**
+     * 在所给考试中至少有 minExams 场已确认成绩的学生
+     */
+    @Select("<script>" +
+            "SELECT user_id FROM exam_record WHERE deleted = 0 AND status = 5 AND exam_id IN " +
+            "<foreach collection='examIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " GROUP BY user_id HAVING COUNT(DISTINCT exam_id) &gt;= #{minExams} ORDER BY user_id" +
+            "</script>")
+    List<Long> selectUsersFinishedIn(@Param("examIds") List<Long> examIds, @Param("minExams") int minExams);
+
+    /**
+     * 按分差原子地调整记录得分，不读取其余作答；总分同样按分差调整，不依赖 SET 子句的求值顺序
+     */
+    @Update("UPDATE exam_record SET objective_score = objective_score + #{objectiveDelta}, " +
+            "subjective_score = subjective_score + #{subjectiveDelta}, " +
+            "total_score = total_score + #{objectiveDelta} + #{subjectiveDelta}, status = #{status}, updated_at = NOW() " +
+            "WHERE id = #{id} AND deleted = 0")
+    int addScores(@Param("id") Long id, @Param("objectiveDelta") BigDecimal objectiveDelta,
+                  @Param("subjectiveDelta") BigDecimal subjectiveDelta, @Param("status") int status);
 
+    /**
+     * 按作答汇总结果写入记录得分，只改得分列（status 非空时同时改状态）；已确认成绩的记录不修改
+     */
+    @Update("<script>" +
+            "UPDATE exam_record SET objective_score = #{objectiveScore}, subjective_score = #{subjectiveScore}, " +
+            "total_score = #{objectiveScore} + #{subjectiveScore}" +
+            "<if test='status != null'>, status = #{status}</if>" +
+            ", updated_at = NOW() WHERE id = #{id} AND deleted = 0 AND status &lt;&gt; 5" +
+            "</script>")
+    int updateScores(@Param("id") Long id, @Param("objectiveScore") BigDecimal objectiveScore,
+                     @Param("subjectiveScore") BigDecimal subjectiveScore, @Param("status") Integer status);
+
+    /**
+     * 将已评分（状态4）的记录确认为已完成（状态5），只改状态列；返回实际确认的条数
+     */
+    @Update("<script>" +
+            "UPDATE exam_record SET status = 5, updated_at = NOW() WHERE deleted = 0 AND status = 4 AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int confirmGraded(@Param("ids") List<Long> ids);
+
+    /**
+     * 某时间之后更新、未确认成绩的记录中，得分与作答汇总不一致的记录ID，按ID升序从 afterId 之后取一页；
+     * 只做粗筛（不区分题目是否属于该记录的试卷），由调用方按考试快照复核
+     */
+    @Select("SELECT r.id FROM exam_record r " +
+            "LEFT JOIN exam_answer a ON a.record_id = r.id AND a.deleted = 0 " +
+            "LEFT JOIN question q ON q.id = a.question_id " +
+            "WHERE r.deleted = 0 AND r.status BETWEEN 2 AND 4 AND r.updated_at >= #{since} AND r.id > #{afterId} " +
+            "GROUP BY r.id, r.objective_score, r.subjective_score, r.total_score " +
+            "HAVING COALESCE(SUM(CASE WHEN q.type IN ('single', 'multiple', 'judge', 'blank') THEN a.score END), 0) " +
+            "<> COALESCE(r.objective_score, 0) " +
+            "OR COALESCE(SUM(CASE WHEN q.type NOT IN ('single', 'multiple', 'judge', 'blank') THEN a.score END), 0) " +
+            "<> COALESCE(r.subjective_score, 0) " +
+            "OR COALESCE(r.total_score, 0) <> COALESCE(r.objective_score, 0) + COALESCE(r.subjective_score, 0) " +
+            "ORDER BY r.id LIMIT #{limit}")
+    List<Long> selectScoreDriftCandidates(@Param("since") LocalDateTime since, @Param("afterId") long afterId,
+                                          @Param("limit") int limit);
+}
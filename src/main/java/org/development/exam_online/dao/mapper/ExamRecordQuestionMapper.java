@@ -0,0 +1,9 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.development.exam_online.dao.entity.ExamRecordQuestion;
+
+@Mapper
+public interface ExamRecordQuestionMapper extends BaseMapper<ExamRecordQuestion> {
+}
@@ -0,0 +1,46 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.development.exam_online.dao.entity.ExamScoreBucket;
+
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface ExamScoreBucketMapper extends BaseMapper<ExamScoreBucket> {
+
+    @Insert("INSERT INTO exam_score_bucket (exam_id, bucket, record_count) VALUES (#{examId}, #{bucket}, #{delta}) " +
+            "ON DUPLICATE KEY UPDATE record_count = record_count + VALUES(record_count)")
+    int applyDelta(@Param("examId") Long examId, @Param("bucket") int bucket, @Param("delta") int delta);
+
+    @Delete("DELETE FROM exam_score_bucket WHERE exam_id = #{examId}")
+    int deleteByExamId(@Param("examId") Long examId);
+
+    @Insert("INSERT INTO exam_score_bucket (exam_id, bucket, record_count) " +
+            "SELECT exam_id, ROUND(total_score * 100), COUNT(*) FROM exam_record " +
+            "WHERE exam_id = #{examId} AND deleted = 0 AND status >= 2 AND total_score IS NOT NULL " +
+            "GROUP BY exam_id, ROUND(total_score * 100)")
+    int rebuild(@Param("examId") Long examId);
+
+    @Select("SELECT exam_id, bucket, record_count FROM exam_score_bucket " +
+            "WHERE exam_id = #{examId} AND record_count > 0 ORDER BY bucket")
+    List<ExamScoreBucket> selectNonEmpty(@Param("examId") Long examId);
+
+    /**
+     * 单条记录的名次与百分位（窗口函数），内存排名结构尚未加载时使用
+     *
+     * @return scoreRank 名次（同分同名次），percentRank 低于该记录的比例（0~1），scoredCount 参与排名人数；记录未参与排名时返回 null
+     */
+    @Select("SELECT t.score_rank AS scoreRank, t.lower_ratio AS percentRank, t.scored_count AS scoredCount FROM (" +
+            "SELECT id, RANK() OVER (ORDER BY total_score DESC) AS score_rank, " +
+            "PERCENT_RANK() OVER (ORDER BY total_score) AS lower_ratio, " +
+            "COUNT(*) OVER () AS scored_count " +
+            "FROM exam_record WHERE exam_id = #{examId} AND deleted = 0 AND status >= 2 AND total_score IS NOT NULL" +
+            ") t WHERE t.id = #{recordId}")
+    Map<String, Object> selectRankByWindow(@Param("examId") Long examId, @Param("recordId") Long recordId);
+}
@@ -0,0 +1,66 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.development.exam_online.dao.entity.ExamStatistics;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Mapper
+public interface ExamStatisticsMapper extends BaseMapper<ExamStatistics> {
+
+    /**
+     * 按增量累加统计值，统计行不存在时以增量作为初始值
+     */
+    @Insert("INSERT INTO exam_statistics (exam_id, participant_count, not_started_count, in_progress_count, " +
+            "ungraded_count, grading_count, graded_count, finished_count, scored_count, score_sum, score_square_sum, pass_count) " +
+            "VALUES (#{examId}, #{participantCount}, #{notStartedCount}, #{inProgressCount}, #{ungradedCount}, " +
+            "#{gradingCount}, #{gradedCount}, #{finishedCount}, #{scoredCount}, #{scoreSum}, #{scoreSquareSum}, #{passCount}) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "participant_count = participant_count + VALUES(participant_count), " +
+            "not_started_count = not_started_count + VALUES(not_started_count), " +
+            "in_progress_count = in_progress_count + VALUES(in_progress_count), " +
+            "ungraded_count = ungraded_count + VALUES(ungraded_count), " +
+            "grading_count = grading_count + VALUES(grading_count), " +
+            "graded_count = graded_count + VALUES(graded_count), " +
+            "finished_count = finished_count + VALUES(finished_count), " +
+            "scored_count = scored_count + VALUES(scored_count), " +
+            "score_sum = score_sum + VALUES(score_sum), " +
+            "score_square_sum = score_square_sum + VALUES(score_square_sum), " +
+            "pass_count = pass_count + VALUES(pass_count)")
+    int applyDelta(ExamStatistics delta);
+
+    /**
+     * 从考试记录重新计算某个考试的统计值
+     */
+    @Insert("INSERT INTO exam_statistics (exam_id, participant_count, not_started_count, in_progress_count, " +
+            "ungraded_count, grading_count, graded_count, finished_count, scored_count, score_sum, score_square_sum, pass_count) " +
+            "SELECT #{examId}, COUNT(*), " +
+            "COALESCE(SUM(status = 0), 0), COALESCE(SUM(status = 1), 0), COALESCE(SUM(status = 2), 0), " +
+            "COALESCE(SUM(status = 3), 0), COALESCE(SUM(status = 4), 0), COALESCE(SUM(status = 5), 0), " +
+            "COALESCE(SUM(status >= 2 AND total_score IS NOT NULL), 0), " +
+            "COALESCE(SUM(CASE WHEN status >= 2 THEN total_score END), 0), " +
+            "COALESCE(SUM(CASE WHEN status >= 2 THEN total_score * total_score END), 0), " +
+            "COALESCE(SUM(status >= 2 AND total_score >= #{passScore}), 0) " +
+            "FROM exam_record WHERE exam_id = #{examId} AND deleted = 0 " +
+            "ON DUPLICATE KEY UPDATE " +
+            "participant_count = VALUES(participant_count), " +
+            "not_started_count = VALUES(not_started_count), " +
+            "in_progress_count = VALUES(in_progress_count), " +
+            "ungraded_count = VALUES(ungraded_count), " +
+            "grading_count = VALUES(grading_count), " +
+            "graded_count = VALUES(graded_count), " +
+            "finished_count = VALUES(finished_count), " +
+            "scored_count = VALUES(scored_count), " +
+            "score_sum = VALUES(score_sum), " +
+            "score_square_sum = VALUES(score_square_sum), " +
+            "pass_count = VALUES(pass_count)")
+    int rebuild(@Param("examId") Long examId, @Param("passScore") BigDecimal passScore);
+
+    @Select("SELECT DISTINCT exam_id FROM exam_record WHERE deleted = 0")
+    List<Long> selectExamIdsWithRecords();
+}
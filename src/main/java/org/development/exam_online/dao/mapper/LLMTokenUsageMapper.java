@@ -0,0 +1,40 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.development.exam_online.dao.entity.LLMTokenUsage;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Mapper
+public interface LLMTokenUsageMapper extends BaseMapper<LLMTokenUsage> {
+
+    @Insert("INSERT INTO llm_token_usage (usage_date, model, exam_id, request_count, prompt_tokens, completion_tokens) " +
+            "VALUES (#{date}, #{model}, #{examId}, 1, #{promptTokens}, #{completionTokens}) " +
+            "ON DUPLICATE KEY UPDATE request_count = request_count + 1, " +
+            "prompt_tokens = prompt_tokens + VALUES(prompt_tokens), " +
+            "completion_tokens = completion_tokens + VALUES(completion_tokens)")
+    int accumulate(@Param("date") LocalDate date, @Param("model") String model, @Param("examId") Long examId,
+                   @Param("promptTokens") long promptTokens, @Param("completionTokens") long completionTokens);
+
+    @Select("SELECT COALESCE(SUM(prompt_tokens + completion_tokens), 0) FROM llm_token_usage WHERE usage_date = #{date}")
+    long sumTokensOfDay(@Param("date") LocalDate date);
+
+    @Select("SELECT usage_date AS usageDate, model, SUM(request_count) AS requestCount, " +
+            "SUM(prompt_tokens) AS promptTokens, SUM(completion_tokens) AS completionTokens " +
+            "FROM llm_token_usage WHERE usage_date BETWEEN #{from} AND #{to} " +
+            "GROUP BY usage_date, model ORDER BY usage_date, model")
+    List<Map<String, Object>> sumByDayAndModel(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Select("SELECT u.exam_id AS examId, e.name AS examName, SUM(u.request_count) AS requestCount, " +
+            "SUM(u.prompt_tokens) AS promptTokens, SUM(u.completion_tokens) AS completionTokens " +
+            "FROM llm_token_usage u LEFT JOIN exam e ON e.id = u.exam_id " +
+            "WHERE u.usage_date BETWEEN #{from} AND #{to} " +
+            "GROUP BY u.exam_id, e.name ORDER BY SUM(u.prompt_tokens + u.completion_tokens) DESC")
+    List<Map<String, Object>> sumByExam(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -2,9 +2,11 @@ package org.development.exam_online.dao.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.development.exam_online.dao.entity.Question;
 
+import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.List;
 
@@ -18,6 +20,12 @@ public interface QuestionMapper extends BaseMapper<Question> {
             "</foreach>" +
             "</script>")
     List<Question> selectBatchIdsIgnoreDeleted(Collection<Long> ids);
+
+    /**
+     * 某时间之后修改过的题目的分类维度（题型、难度、知识点），包含已删除的题目
+     */
+    @Select("SELECT id, type, difficulty, knowledge_id FROM question WHERE updated_at >= #{since}")
+    List<Question> selectDimensionsUpdatedSince(@Param("since") LocalDateTime since);
 }
 
 
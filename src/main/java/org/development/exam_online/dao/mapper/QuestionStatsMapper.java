@@ -0,0 +1,75 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.development.exam_online.dao.entity.QuestionStats;
+
+import java.util.List;
+
+@Mapper
+public interface QuestionStatsMapper extends BaseMapper<QuestionStats> {
+
+    /**
+     * 取一批已确认成绩、尚未计入题目统计的考试记录并加锁；多实例部署时跳过其他实例正在处理的记录
+     */
+    @Select("SELECT id FROM exam_record WHERE status = 5 AND stats_collected = 0 AND deleted = 0 " +
+            "ORDER BY id LIMIT #{limit} FOR UPDATE SKIP LOCKED")
+    List<Long> lockUncollectedRecordIds(@Param("limit") int limit);
+
+    /**
+     * 将一批考试记录的作答累加到题目统计；满分取考试快照中的分值，没有快照时取题目分值
+     */
+    @Insert("<script>" +
+            "INSERT INTO question_stats (question_id, attempt_count, correct_count, score_fraction_sum) " +
+            "SELECT t.question_id, COUNT(*), SUM(t.score &gt;= t.full_score), SUM(LEAST(t.score / t.full_score, 1)) FROM (" +
+            "SELECT a.question_id, COALESCE(a.score, 0) AS score, COALESCE(s.question_score, q.score) AS full_score " +
+            "FROM exam_answer a " +
+            "JOIN exam_record r ON r.id = a.record_id " +
+            "JOIN question q ON q.id = a.question_id " +
+            "LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id " +
+            "WHERE a.deleted = 0 AND a.record_id IN " +
+            "<foreach collection='recordIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            ") t WHERE t.full_score &gt; 0 GROUP BY t.question_id " +
+            "ON DUPLICATE KEY UPDATE " +
+            "attempt_count = attempt_count + VALUES(attempt_count), " +
+            "correct_count = correct_count + VALUES(correct_count), " +
+            "score_fraction_sum = score_fraction_sum + VALUES(score_fraction_sum)" +
+            "</script>")
+    int accumulate(@Param("recordIds") List<Long> recordIds);
+
+    @Select("<script>" +
+            "SELECT DISTINCT question_id FROM exam_answer WHERE deleted = 0 AND record_id IN " +
+            "<foreach collection='recordIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Long> selectQuestionIdsOfRecords(@Param("recordIds") List<Long> recordIds);
+
+    /**
+     * 按平均得分率重新计算实测难度
+     */
+    @Update("<script>" +
+            "UPDATE question_stats SET empirical_level = CASE " +
+            "WHEN attempt_count &lt; #{minAttempts} THEN NULL " +
+            "WHEN score_fraction_sum / attempt_count &gt;= #{easyRate} THEN 1 " +
+            "WHEN score_fraction_sum / attempt_count &gt;= #{hardRate} THEN 2 " +
+            "ELSE 3 END " +
+            "WHERE question_id IN " +
+            "<foreach collection='questionIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateEmpiricalLevels(@Param("questionIds") List<Long> questionIds,
+                              @Param("minAttempts") int minAttempts,
+                              @Param("easyRate") double easyRate,
+                              @Param("hardRate") double hardRate);
+
+    @Update("<script>" +
+            "UPDATE exam_record SET stats_collected = 1 WHERE id IN " +
+            "<foreach collection='recordIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int markCollected(@Param("recordIds") List<Long> recordIds);
+
+    @Select("SELECT question_id, empirical_level FROM question_stats WHERE empirical_level IS NOT NULL")
+    List<QuestionStats> selectEmpiricalLevels();
+}
@@ -0,0 +1,45 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.development.exam_online.dao.entity.StudentExamKnowledge;
+
+import java.util.List;
+
+@Mapper
+public interface StudentExamKnowledgeMapper extends BaseMapper<StudentExamKnowledge> {
+
+    /**
+     * 写入一批考试记录按知识点的汇总；每条记录对应一个（学生, 考试），重复写入时覆盖
+     */
+    @Insert("<script>" +
+            "INSERT INTO student_exam_knowledge (user_id, exam_id, knowledge_id, attempt_count, wrong_count, exam_time) " +
+            "SELECT t.user_id, t.exam_id, t.knowledge_id, COUNT(*), SUM(t.score &lt; t.full_score), MAX(t.submit_time) FROM (" +
+            "SELECT r.user_id, r.exam_id, r.submit_time, q.knowledge_id, COALESCE(a.score, 0) AS score, " +
+            "COALESCE(s.question_score, q.score, 0) AS full_score " +
+            "FROM exam_answer a " +
+            "JOIN exam_record r ON r.id = a.record_id " +
+            "JOIN question q ON q.id = a.question_id " +
+            "LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id " +
+            "WHERE a.deleted = 0 AND a.record_id IN " +
+            "<foreach collection='recordIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            ") t WHERE t.knowledge_id IS NOT NULL GROUP BY t.user_id, t.exam_id, t.knowledge_id " +
+            "ON DUPLICATE KEY UPDATE " +
+            "attempt_count = VALUES(attempt_count), " +
+            "wrong_count = VALUES(wrong_count), " +
+            "exam_time = VALUES(exam_time)" +
+            "</script>")
+    int upsert(@Param("recordIds") List<Long> recordIds);
+
+    @Select("<script>" +
+            "SELECT * FROM student_exam_knowledge WHERE user_id IN " +
+            "<foreach collection='userIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " AND exam_id IN " +
+            "<foreach collection='examIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<StudentExamKnowledge> selectByUsersAndExams(@Param("userIds") List<Long> userIds,
+                                                     @Param("examIds") List<Long> examIds);
+}
@@ -0,0 +1,39 @@
+package org.development.exam_online.dao.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.development.exam_online.dao.entity.StudentKnowledgeMastery;
+
+import java.util.List;
+
+@Mapper
+public interface StudentKnowledgeMasteryMapper extends BaseMapper<StudentKnowledgeMastery> {
+
+    /**
+     * 将一批考试记录的作答按学生、知识点累加；满分取考试快照中的分值，没有快照时取题目分值
+     */
+    @Insert("<script>" +
+            "INSERT INTO student_knowledge_mastery (user_id, knowledge_id, attempt_count, wrong_count, score_fraction_sum) " +
+            "SELECT t.user_id, t.knowledge_id, COUNT(*), SUM(t.score &lt; t.full_score), " +
+            "SUM(CASE WHEN t.full_score &gt; 0 THEN LEAST(t.score / t.full_score, 1) ELSE 0 END) FROM (" +
+            "SELECT r.user_id, q.knowledge_id, COALESCE(a.score, 0) AS score, COALESCE(s.question_score, q.score, 0) AS full_score " +
+            "FROM exam_answer a " +
+            "JOIN exam_record r ON r.id = a.record_id " +
+            "JOIN question q ON q.id = a.question_id " +
+            "LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id " +
+            "WHERE a.deleted = 0 AND a.record_id IN " +
+            "<foreach collection='recordIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            ") t WHERE t.knowledge_id IS NOT NULL GROUP BY t.user_id, t.knowledge_id " +
+            "ON DUPLICATE KEY UPDATE " +
+            "attempt_count = attempt_count + VALUES(attempt_count), " +
+            "wrong_count = wrong_count + VALUES(wrong_count), " +
+            "score_fraction_sum = score_fraction_sum + VALUES(score_fraction_sum)" +
+            "</script>")
+    int accumulate(@Param("recordIds") List<Long> recordIds);
+
+    @Select("SELECT * FROM student_knowledge_mastery WHERE user_id = #{userId}")
+    List<StudentKnowledgeMastery> selectByUserId(@Param("userId") Long userId);
+}
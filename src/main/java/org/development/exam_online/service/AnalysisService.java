@@ -5,6 +5,8 @@ import org.development.exam_online.dao.dto.KnowledgeStatistics;
 import org.development.exam_online.dao.entity.AiAnalysisReport;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * AI分析服务接口
@@ -13,4 +15,31 @@ public interface AnalysisService {
 
     AiAnalysisReport generateExamReport(Long userId, Long examId);
 
+    /**
+     * 异步生成单场考试报告：错题统计在调用线程完成，大模型响应后保存报告
+     */
+    CompletableFuture<AiAnalysisReport> generateExamReportAsync(Long userId, Long examId);
+
+    /**
+     * 为同一场考试的多名学生批量生成报告，合并请求以减少重复的提示词
+     * @return 与 userIds 一一对应，各学生独立完成或失败
+     */
+    List<CompletableFuture<AiAnalysisReport>> generateExamReportsBatch(Long examId, List<Long> userIds);
+
+    /**
+     * 流式生成单场考试报告，模型输出的每一段交给 onDelta，完成后保存完整报告
+     */
+    CompletableFuture<AiAnalysisReport> streamExamReport(Long userId, Long examId, Consumer<String> onDelta);
+
+    /**
+     * 为一批学生生成所选考试的多次考试趋势报告，趋势数据读取单场考试汇总，合并请求
+     * @return 与 userIds 一一对应
+     */
+    List<CompletableFuture<AiAnalysisReport>> generateTrendReportsBatch(List<Long> userIds, List<Long> examIds);
+
+    /**
+     * 立即生成并保存规则报告，大模型报告生成后在同一条记录上替换
+     */
+    AiAnalysisReport generateRuleReport(Long userId, Long examId);
+
 }
@@ -2,6 +2,7 @@ package org.development.exam_online.service;
 
 import org.development.exam_online.common.PageResult;
 import org.development.exam_online.dao.dto.AutoGeneratePaperRule;
+import org.development.exam_online.dao.dto.TemplateBatchGenerateRequest;
 import org.development.exam_online.dao.entity.ExamPaper;
 
 import java.util.List;
@@ -22,6 +23,10 @@ public interface ExamPaperService {
 
     Map<String, Object> previewTemplateGeneration(org.development.exam_online.dao.dto.TemplateGenerateRequest request);
 
+    Map<String, Object> previewAutoGeneration(AutoGeneratePaperRule rule);
+
+    Map<String, Object> generatePaperVariants(TemplateBatchGenerateRequest request);
+
     String saveAutoGeneratedPapers(Long paperId, List<Long> questionIds, List<Double> scores);
 
     Map<String, Object> getPaperById(Long paperId);
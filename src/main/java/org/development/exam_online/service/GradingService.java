@@ -1,8 +1,12 @@
 package org.development.exam_online.service;
 
 import org.development.exam_online.common.PageResult;
+import org.development.exam_online.dao.dto.GradeSubmission;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +22,19 @@ public interface GradingService {
 
     void gradeQuestions(Long recordId, Map<Long, BigDecimal> scores);
 
+    /**
+     * 批量人工评分，可包含多条考试记录；全部校验通过后才写入
+     * @return recordCount 涉及的考试记录数，gradedCount 写入的评分数
+     */
+    Map<String, Object> gradeBatch(List<GradeSubmission> grades);
+
+    /**
+     * 复核某时间之后更新过的未确认记录，修正与作答汇总不一致的得分；按记录ID分页，每次只检查ID大于 afterId 的一页
+     * @return checkedCount 粗筛出的记录数，driftedCount 修正的记录数，driftedRecordIds 修正的记录ID，
+     *         lastRecordId 本页最后一条记录ID，hasMore 是否可能还有下一页
+     */
+    Map<String, Object> verifyRecordScores(LocalDateTime since, long afterId);
+
     void autoGradeRecord(Long recordId);
 
     void autoGradeRecord(Long recordId, boolean forceOverride);
@@ -26,8 +43,24 @@ public interface GradingService {
 
     Map<String, Object> getExamStatistics(Long examId);
 
+    Map<String, Object> getScoreDistribution(Long examId);
+
+    Map<String, Object> getRecordRank(Long recordId);
+
+    Map<String, Object> getStudentRecordRank(Long recordId, Long userId);
+
     List<Map<String, Object>> getWrongQuestionAnalysis(Long examId);
 
+    List<Map<String, Object>> getItemAnalysis(Long examId);
+
+    /**
+     * 多名学生、多场考试的作答汇总分析
+     *
+     * @param groupBy 分组维度：KNOWLEDGE/TYPE/DIFFICULTY/EXAM/STUDENT
+     */
+    Map<String, Object> getCohortAnalytics(String groupBy, List<Long> examIds, List<Long> userIds,
+                                           List<Long> knowledgeIds, List<String> types, List<Integer> difficulties);
+
     Map<String, Object> getRecordScoreInfo(Long recordId);
 
     PageResult<Map<String, Object>> getStudentRecords(Long userId, Long page, Long size);
@@ -36,7 +69,37 @@ public interface GradingService {
 
     void confirmGrading(Long recordId);
 
+    /**
+     * 将全部成绩已确认的考试作答写入列式归档文件
+     */
+    Map<String, Object> archiveExam(Long examId);
+
     int confirmExamGrading(Long examId);
 
     Map<String, Object> getExamRecordAiReport(Long recordId);
+
+    /**
+     * 流式获取本人考试记录的AI分析报告：已生成时直接推送，否则边生成边推送
+     */
+    SseEmitter streamStudentAiReport(Long recordId, Long userId);
+
+    /**
+     * AI分析报告任务队列深度与执行情况
+     */
+    Map<String, Object> getAiReportJobMetrics();
+
+    /**
+     * 大模型 token 用量汇总，日期为空时取最近7天
+     */
+    Map<String, Object> getLlmTokenUsage(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 为在所选考试中至少两场已确认成绩的学生生成多次考试趋势报告（后台执行）
+     */
+    Map<String, Object> generateTrendReports(List<Long> examIds);
+
+    /**
+     * 学生最近一份多次考试趋势报告及趋势数据，没有时返回 null
+     */
+    Map<String, Object> getStudentTrendReport(Long userId);
 }
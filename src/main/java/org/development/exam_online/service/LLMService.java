@@ -1,6 +1,12 @@
 package org.development.exam_online.service;
 
 import org.development.exam_online.dao.dto.WrongQuestionStatistics;
+import org.development.exam_online.service.llm.LLMReport;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * 大语言模型服务接口
@@ -14,10 +20,40 @@ public interface LLMService {
      * @return 生成的分析报告（Markdown格式）
      */
     String generateAnalysisReport(WrongQuestionStatistics statistics, String promptTemplate);
+
+    /**
+     * 提示词（含模型与参数）的哈希，相同哈希的报告可以直接复用
+     */
+    String promptHash(WrongQuestionStatistics statistics, String promptTemplate);
+
+    /**
+     * 异步生成分析报告，等待接口响应期间不占用线程；相同输入已生成过时直接复用，接口不可用时以规则报告完成
+     */
+    CompletableFuture<LLMReport> generateAnalysisReportAsync(WrongQuestionStatistics statistics, String promptTemplate);
+
+    /**
+     * 流式生成分析报告，模型每输出一段调用一次 onDelta（复用已有报告时整篇调用一次）；
+     * 接口不可用时以规则报告完成（不经过 onDelta）
+     */
+    CompletableFuture<LLMReport> streamAnalysisReport(WrongQuestionStatistics statistics, String promptTemplate,
+                                                      Consumer<String> onDelta);
     
     /**
-     * 测试API连接
+     * 多名学生批量生成报告：未命中缓存的学生按 llm.batch-size 合并为一次请求，共用说明与输出要求，
+     * 输出按学生拆分；拆分不出的学生单独请求
+     * @return 与 statisticsList 一一对应
+     */
+    List<CompletableFuture<LLMReport>> generateAnalysisReportsBatch(List<WrongQuestionStatistics> statisticsList,
+                                                                    String promptTemplate);
+
+    /**
+     * 测试API连接；熔断打开时也会发送，结果用于判断熔断器能否恢复
      * @return 是否连接成功
      */
     boolean testConnection();
+
+    /**
+     * 调用统计、限流与熔断状态
+     */
+    Map<String, Object> getMetrics();
 }
@@ -20,9 +20,9 @@ public interface QuestionService {
 
     String deleteQuestions(List<Long> questionIds);
 
-    PageResult<Question> getQuestionList(Integer pageNum, Integer pageSize, String type, Long categoryId, Long knowledgeId, Integer difficulty, String keyword, Long createdBy);
+    PageResult<Question> getQuestionList(Integer pageNum, Integer pageSize, String type, Long categoryId, Long knowledgeId, Integer difficulty, Integer empiricalDifficulty, String keyword, Long createdBy);
 
-    PageResult<Question> searchQuestions(String keyword, String type, Long categoryId, Long knowledgeId, Integer difficulty, Integer pageNum, Integer pageSize);
+    PageResult<Question> searchQuestions(String keyword, String type, Long categoryId, Long knowledgeId, Integer difficulty, Integer empiricalDifficulty, Integer pageNum, Integer pageSize);
 
     String importQuestions(MultipartFile file);
 
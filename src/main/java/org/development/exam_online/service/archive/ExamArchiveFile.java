@@ -0,0 +1,435 @@
+package org.development.exam_online.service.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * 单场考试作答的列式归档文件
+ * <p>
+ * 文件布局（大端序）：
+ * <pre>
+ * 文件头   magic, version, examId, recordCount, questionCount, answerCount,
+ *          dictCount, dictRawLength, dictCompressedLength, crc32(文件头之后的全部内容)
+ * 考试记录 recordId[], userId[], totalScore[]            （按 recordId 升序）
+ * 题目     questionId[], fullScore[]
+ * 作答     offset[recordCount + 1], question[], score[], answer[], manual[]
+ *          （按考试记录分段，offset[i]..offset[i+1] 为第 i 条记录的作答）
+ * 字典     Deflate 压缩的作答文本，作答列存字典编号
+ * </pre>
+ * 分数以 0.01 分为单位存为 int，{@link #NULL_SCORE} 表示未评分。数值列定长，读取时直接在内存映射上按下标访问；
+ * 作答文本重复度高（选择题只有几个选项组合），字典编码后整体压缩，首次需要作答文本时才解压。
+ */
+public final class ExamArchiveFile {
+
+    static final int MAGIC = 0x45584152;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    static final int NULL_SCORE = Integer.MIN_VALUE;
+
+    /**
+     * 遍历作答的回调；分数未评分时为 null
+     */
+    @FunctionalInterface
+    public interface AnswerVisitor {
+        void visit(long recordId, long userId, BigDecimal totalScore, long questionId, BigDecimal fullScore,
+                   BigDecimal score, String userAnswer, boolean manualGraded);
+    }
+
+    private final long examId;
+    private final int recordCount;
+    private final int questionCount;
+    private final int answerCount;
+    private final int dictCount;
+    private final int dictRawLength;
+    private final int dictCompressedLength;
+    private final long checksum;
+    private final ByteBuffer buffer;
+
+    private final int recordIdPos;
+    private final int userIdPos;
+    private final int totalScorePos;
+    private final int questionIdPos;
+    private final int fullScorePos;
+    private final int offsetPos;
+    private final int questionPos;
+    private final int scorePos;
+    private final int answerPos;
+    private final int manualPos;
+    private final int dictPos;
+
+    private volatile String[] dictionary;
+
+    private ExamArchiveFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是考试归档文件");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("不支持的归档文件版本：" + buffer.getInt(4));
+        }
+        this.examId = buffer.getLong(8);
+        this.recordCount = buffer.getInt(16);
+        this.questionCount = buffer.getInt(20);
+        this.answerCount = buffer.getInt(24);
+        this.dictCount = buffer.getInt(28);
+        this.dictRawLength = buffer.getInt(32);
+        this.dictCompressedLength = buffer.getInt(36);
+        this.checksum = buffer.getLong(40);
+
+        int pos = HEADER_SIZE;
+        recordIdPos = pos;      pos += recordCount * 8;
+        userIdPos = pos;        pos += recordCount * 8;
+        totalScorePos = pos;    pos += recordCount * 4;
+        questionIdPos = pos;    pos += questionCount * 8;
+        fullScorePos = pos;     pos += questionCount * 4;
+        offsetPos = pos;        pos += (recordCount + 1) * 4;
+        questionPos = pos;      pos += answerCount * 4;
+        scorePos = pos;         pos += answerCount * 4;
+        answerPos = pos;        pos += answerCount * 4;
+        manualPos = pos;        pos += answerCount;
+        dictPos = pos;          pos += dictCompressedLength;
+        if (pos != buffer.capacity()) {
+            throw new IOException("归档文件长度不符，期望 " + pos + "，实际 " + buffer.capacity());
+        }
+    }
+
+    /**
+     * 以只读内存映射方式打开归档文件
+     */
+    public static ExamArchiveFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ExamArchiveFile(mapped);
+        }
+    }
+
+    public long examId() {
+        return examId;
+    }
+
+    public int recordCount() {
+        return recordCount;
+    }
+
+    public int answerCount() {
+        return answerCount;
+    }
+
+    public long checksum() {
+        return checksum;
+    }
+
+    /**
+     * 重新计算内容校验值并与文件头比对
+     */
+    public boolean verify() {
+        CRC32 crc = new CRC32();
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_SIZE);
+        crc.update(body);
+        return crc.getValue() == checksum;
+    }
+
+    /**
+     * 某条考试记录的作答；记录不在归档中时返回 null
+     */
+    public List<Answer> answersOfRecord(long recordId) {
+        int idx = findRecord(recordId);
+        if (idx < 0) {
+            return null;
+        }
+        String[] dict = dictionary();
+        int from = buffer.getInt(offsetPos + idx * 4);
+        int to = buffer.getInt(offsetPos + (idx + 1) * 4);
+        List<Answer> answers = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            answers.add(new Answer(buffer.getLong(questionIdPos + buffer.getInt(questionPos + i * 4) * 8),
+                    decodeScore(buffer.getInt(scorePos + i * 4)), text(dict, buffer.getInt(answerPos + i * 4)),
+                    buffer.get(manualPos + i) != 0));
+        }
+        return answers;
+    }
+
+    /**
+     * 按考试记录顺序遍历全部作答
+     *
+     * @param withAnswerText 为 false 时不解压字典，回调中作答文本为 null
+     */
+    public void forEachAnswer(boolean withAnswerText, AnswerVisitor visitor) {
+        String[] dict = withAnswerText ? dictionary() : null;
+        BigDecimal[] fullScores = new BigDecimal[questionCount];
+        for (int q = 0; q < questionCount; q++) {
+            fullScores[q] = decodeScore(buffer.getInt(fullScorePos + q * 4));
+        }
+        for (int r = 0; r < recordCount; r++) {
+            long recordId = buffer.getLong(recordIdPos + r * 8);
+            long userId = buffer.getLong(userIdPos + r * 8);
+            BigDecimal totalScore = decodeScore(buffer.getInt(totalScorePos + r * 4));
+            int from = buffer.getInt(offsetPos + r * 4);
+            int to = buffer.getInt(offsetPos + (r + 1) * 4);
+            for (int i = from; i < to; i++) {
+                int q = buffer.getInt(questionPos + i * 4);
+                visitor.visit(recordId, userId, totalScore, buffer.getLong(questionIdPos + q * 8), fullScores[q],
+                        decodeScore(buffer.getInt(scorePos + i * 4)),
+                        dict != null ? text(dict, buffer.getInt(answerPos + i * 4)) : null,
+                        buffer.get(manualPos + i) != 0);
+            }
+        }
+    }
+
+    /**
+     * 归档中的一道作答
+     */
+    public record Answer(long questionId, BigDecimal score, String userAnswer, boolean manualGraded) {}
+
+    private int findRecord(long recordId) {
+        int lo = 0;
+        int hi = recordCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long v = buffer.getLong(recordIdPos + mid * 8);
+            if (v < recordId) lo = mid + 1;
+            else if (v > recordId) hi = mid - 1;
+            else return mid;
+        }
+        return -1;
+    }
+
+    private static String text(String[] dict, int code) {
+        return code < 0 ? null : dict[code];
+    }
+
+    private String[] dictionary() {
+        String[] dict = dictionary;
+        if (dict != null) {
+            return dict;
+        }
+        synchronized (this) {
+            if (dictionary != null) {
+                return dictionary;
+            }
+            byte[] compressed = new byte[dictCompressedLength];
+            buffer.get(dictPos, compressed);
+            byte[] raw = new byte[dictRawLength];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                int n = 0;
+                while (n < raw.length && !inflater.finished()) {
+                    n += inflater.inflate(raw, n, raw.length - n);
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("归档文件字典损坏，examId=" + examId, e);
+            } finally {
+                inflater.end();
+            }
+            dict = new String[dictCount];
+            try (DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(raw))) {
+                for (int i = 0; i < dictCount; i++) {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    dict[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("归档文件字典损坏，examId=" + examId, e);
+            }
+            dictionary = dict;
+            return dict;
+        }
+    }
+
+    static int encodeScore(BigDecimal score) {
+        return score == null ? NULL_SCORE : score.setScale(2, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+    }
+
+    static BigDecimal decodeScore(int value) {
+        return value == NULL_SCORE ? null : BigDecimal.valueOf(value, 2);
+    }
+
+    /**
+     * 按考试记录、题目顺序逐行追加作答，最后一次性写出文件
+     */
+    public static final class Writer {
+
+        private final long examId;
+
+        private final LongColumn recordIds = new LongColumn();
+        private final LongColumn userIds = new LongColumn();
+        private final IntColumn totalScores = new IntColumn();
+
+        private final Map<Long, Integer> questionIndex = new LinkedHashMap<>();
+        private final IntColumn fullScores = new IntColumn();
+
+        private final IntColumn offsets = new IntColumn();
+        private final IntColumn questions = new IntColumn();
+        private final IntColumn scores = new IntColumn();
+        private final IntColumn answers = new IntColumn();
+        private final ByteArrayOutputStream manual = new ByteArrayOutputStream();
+
+        private final Map<String, Integer> dictIndex = new HashMap<>();
+        private final List<String> dict = new ArrayList<>();
+
+        public Writer(long examId) {
+            this.examId = examId;
+        }
+
+        /**
+         * 追加一道作答；同一考试记录的作答必须连续，考试记录按 ID 升序
+         */
+        public void add(long recordId, long userId, BigDecimal totalScore, long questionId, BigDecimal fullScore,
+                        BigDecimal score, String userAnswer, boolean manualGraded) {
+            int last = recordIds.size - 1;
+            if (last < 0 || recordIds.get(last) != recordId) {
+                if (last >= 0 && recordIds.get(last) > recordId) {
+                    throw new IllegalArgumentException("考试记录必须按ID升序追加");
+                }
+                recordIds.add(recordId);
+                userIds.add(userId);
+                totalScores.add(encodeScore(totalScore));
+                offsets.add(questions.size);
+            }
+            Integer q = questionIndex.get(questionId);
+            if (q == null) {
+                q = questionIndex.size();
+                questionIndex.put(questionId, q);
+                fullScores.add(encodeScore(fullScore));
+            }
+            questions.add(q);
+            scores.add(encodeScore(score));
+            if (userAnswer == null) {
+                answers.add(-1);
+            } else {
+                Integer code = dictIndex.get(userAnswer);
+                if (code == null) {
+                    code = dict.size();
+                    dict.add(userAnswer);
+                    dictIndex.put(userAnswer, code);
+                }
+                answers.add(code);
+            }
+            manual.write(manualGraded ? 1 : 0);
+        }
+
+        public int recordCount() {
+            return recordIds.size;
+        }
+
+        public int answerCount() {
+            return questions.size;
+        }
+
+        /**
+         * 写出到文件
+         *
+         * @return 内容校验值
+         */
+        public long writeTo(Path path) throws IOException {
+            ByteArrayOutputStream rawDict = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(rawDict)) {
+                for (String s : dict) {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            byte[] raw = rawDict.toByteArray();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (OutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+                out.write(raw);
+            } finally {
+                deflater.end();
+            }
+            byte[] dictBytes = compressed.toByteArray();
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(body)) {
+                recordIds.writeTo(out);
+                userIds.writeTo(out);
+                totalScores.writeTo(out);
+                for (Long questionId : questionIndex.keySet()) {
+                    out.writeLong(questionId);
+                }
+                fullScores.writeTo(out);
+                offsets.writeTo(out);
+                out.writeInt(questions.size);
+                questions.writeTo(out);
+                scores.writeTo(out);
+                answers.writeTo(out);
+                manual.writeTo(out);
+                out.write(dictBytes);
+            }
+            byte[] bodyBytes = body.toByteArray();
+            CRC32 crc = new CRC32();
+            crc.update(bodyBytes);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(examId)
+                    .putInt(recordIds.size).putInt(questionIndex.size()).putInt(questions.size)
+                    .putInt(dict.size()).putInt(raw.length).putInt(dictBytes.length)
+                    .putLong(crc.getValue());
+            header.flip();
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                channel.write(header);
+                ByteBuffer bodyBuffer = ByteBuffer.wrap(bodyBytes);
+                while (bodyBuffer.hasRemaining()) {
+                    channel.write(bodyBuffer);
+                }
+                channel.force(true);
+            }
+            return crc.getValue();
+        }
+    }
+
+    private static final class IntColumn {
+        int[] values = new int[64];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) out.writeInt(values[i]);
+        }
+    }
+
+    private static final class LongColumn {
+        long[] values = new long[64];
+        int size;
+
+        void add(long v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        long get(int i) {
+            return values[i];
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) out.writeLong(values[i]);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.development.exam_online.service.archive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.dao.mapper.ExamArchiveMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 定时归档已结束一段时间、全部成绩已确认的考试
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamArchiveJob {
+
+    private static final int BATCH_SIZE = 20;
+
+    private final ExamArchiveMapper archiveMapper;
+    private final ExamArchiveService archiveService;
+
+    @Value("${exam.archive.after-days:30}")
+    private int afterDays;
+
+    @Scheduled(cron = "${exam.archive.cron:0 0 2 * * ?}")
+    public void archive() {
+        List<Long> examIds = archiveMapper.selectArchivableExamIds(afterDays, BATCH_SIZE);
+        int failed = 0;
+        for (Long examId : examIds) {
+            try {
+                archiveService.archive(examId);
+            } catch (Exception e) {
+                failed++;
+                log.warn("考试归档失败，examId={}", examId, e);
+            }
+        }
+        if (!examIds.isEmpty()) {
+            log.info("考试归档任务完成，考试数={}，失败={}", examIds.size(), failed);
+        }
+    }
+}
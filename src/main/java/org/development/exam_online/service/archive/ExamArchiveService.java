@@ -0,0 +1,230 @@
+package org.development.exam_online.service.archive;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.common.exception.BusinessException;
+import org.development.exam_online.common.exception.ErrorCode;
+import org.development.exam_online.dao.dto.ArchiveAnswerRow;
+import org.development.exam_online.dao.entity.ExamAnswer;
+import org.development.exam_online.dao.entity.ExamArchive;
+import org.development.exam_online.dao.mapper.ExamArchiveMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 考试作答归档
+ * <p>
+ * 考试全部记录确认成绩后作答不再变化，将其写入本地列式归档文件（{@link ExamArchiveFile}），
+ * 统计类读取（试题分析、错题统计、分析数据立方）优先从内存映射的归档文件读取，不再访问 exam_answer。
+ * 开启 exam.archive.prune 时，归档校验通过后分批删除 exam_answer 中的对应行，
+ * 考试记录详情等按记录读取作答的接口随之改为读取归档。
+ * 归档登记表由各实例共享，删除作答前要求归档目录为各实例共享的存储（exam.archive.shared-storage），
+ * 否则其他实例读不到归档文件，作答也已不在数据库中。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamArchiveService {
+
+    private static final int MAX_OPEN_FILES = 64;
+    private static final int PRUNE_BATCH_SIZE = 5000;
+    /** 未归档结果的缓存时间，归档后最迟在这段时间后生效 */
+    private static final long MISS_TTL_MILLIS = 60_000L;
+
+    private final ExamArchiveMapper archiveMapper;
+
+    @Value("${exam.archive.dir:data/archive}")
+    private String archiveDir;
+
+    @Value("${exam.archive.prune:false}")
+    private boolean pruneEnabled;
+
+    /** 归档目录是否为各实例共享的存储（如 NFS 挂载），本地目录不删除作答 */
+    @Value("${exam.archive.shared-storage:false}")
+    private boolean sharedStorage;
+
+    /** 考试ID -> 归档信息；未归档的考试缓存为 null 值并带过期时间 */
+    private final Map<Long, Lookup> lookups = new ConcurrentHashMap<>();
+
+    private record Lookup(ExamArchive archive, long expireAt) {}
+
+    /** 已打开的归档文件，最近最少使用的先关闭（内存映射由 GC 回收） */
+    private final Map<Long, ExamArchiveFile> openFiles = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, ExamArchiveFile> eldest) {
+                    return size() > MAX_OPEN_FILES;
+                }
+            });
+
+    /**
+     * 归档一场考试
+     *
+     * @return 归档信息；已归档时直接返回已有信息
+     */
+    public synchronized ExamArchive archive(Long examId) {
+        ExamArchive existing = archiveMapper.selectById(examId);
+        if (existing != null) {
+            lookups.put(examId, new Lookup(existing, Long.MAX_VALUE));
+            return existing;
+        }
+        if (archiveMapper.countEnded(examId) == 0) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "考试尚未结束，不能归档");
+        }
+        if (archiveMapper.countUnfinishedRecords(examId) > 0) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "考试存在未确认成绩或未计入题目统计的记录，不能归档");
+        }
+
+        ExamArchiveFile.Writer writer = new ExamArchiveFile.Writer(examId);
+        archiveMapper.streamArchiveRows(examId, ctx -> {
+            ArchiveAnswerRow row = ctx.getResultObject();
+            writer.add(row.getRecordId(), row.getUserId(), row.getTotalScore(), row.getQuestionId(),
+                    row.getFullScore(), row.getScore(), row.getUserAnswer(),
+                    row.getIsManualGraded() != null && row.getIsManualGraded() == 1);
+        });
+        if (writer.recordCount() == 0) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "考试没有可归档的作答");
+        }
+
+        Path target = Paths.get(archiveDir, "exam-" + examId + ".col").toAbsolutePath();
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        long checksum;
+        ExamArchiveFile file;
+        try {
+            Files.createDirectories(target.getParent());
+            checksum = writer.writeTo(temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // 重新打开校验，确认落盘内容完整后再登记
+            file = ExamArchiveFile.open(target);
+            if (file.answerCount() != writer.answerCount() || !file.verify()) {
+                throw new IOException("归档文件校验失败");
+            }
+        } catch (IOException e) {
+            log.error("写入考试归档文件失败，examId={}", examId, e);
+            throw new BusinessException(ErrorCode.INTERNAL_ERROR, "写入归档文件失败");
+        }
+
+        ExamArchive archive = new ExamArchive();
+        archive.setExamId(examId);
+        archive.setFilePath(target.toString());
+        archive.setRecordCount(file.recordCount());
+        archive.setAnswerCount(file.answerCount());
+        archive.setFileSize(target.toFile().length());
+        archive.setChecksum(checksum);
+        archive.setPruned(0);
+        archive.setArchivedAt(LocalDateTime.now());
+        archiveMapper.insert(archive);
+        openFiles.put(examId, file);
+        lookups.put(examId, new Lookup(archive, Long.MAX_VALUE));
+        log.info("考试归档完成，examId={}，记录数={}，作答数={}，文件大小={}",
+                examId, file.recordCount(), file.answerCount(), archive.getFileSize());
+
+        if (pruneEnabled) {
+            prune(archive);
+        }
+        return archive;
+    }
+
+    /**
+     * 从 exam_answer 删除已归档考试的作答，分批提交避免长事务；归档目录不是共享存储时不删除
+     */
+    public void prune(ExamArchive archive) {
+        if (!sharedStorage) {
+            log.warn("归档目录不是共享存储，不删除已归档考试的作答，examId={}", archive.getExamId());
+            return;
+        }
+        int deleted = 0;
+        int n;
+        do {
+            n = archiveMapper.deleteAnswersOfExam(archive.getExamId(), PRUNE_BATCH_SIZE);
+            deleted += n;
+        } while (n >= PRUNE_BATCH_SIZE);
+        archive.setPruned(1);
+        archiveMapper.updateById(archive);
+        lookups.put(archive.getExamId(), new Lookup(archive, Long.MAX_VALUE));
+        log.info("已删除归档考试的作答，examId={}，行数={}", archive.getExamId(), deleted);
+    }
+
+    /**
+     * 已归档考试的归档文件；未归档或文件不可用时返回 null
+     */
+    public ExamArchiveFile file(Long examId) {
+        ExamArchiveFile file = openFiles.get(examId);
+        if (file != null) {
+            return file;
+        }
+        ExamArchive archive = find(examId);
+        if (archive == null) {
+            return null;
+        }
+        try {
+            file = ExamArchiveFile.open(Paths.get(archive.getFilePath()));
+        } catch (IOException e) {
+            if (archive.getPruned() != null && archive.getPruned() == 1) {
+                throw new BusinessException(ErrorCode.INTERNAL_ERROR, "考试归档文件不可用：" + archive.getFilePath());
+            }
+            log.warn("打开考试归档文件失败，改为读取数据库，examId={}", examId, e);
+            return null;
+        }
+        openFiles.put(examId, file);
+        return file;
+    }
+
+    /**
+     * 作答已从 exam_answer 删除的考试ID
+     */
+    public List<Long> prunedExamIds() {
+        return archiveMapper.selectPrunedExamIds();
+    }
+
+    public boolean isPruned(Long examId) {
+        ExamArchive archive = find(examId);
+        return archive != null && archive.getPruned() != null && archive.getPruned() == 1;
+    }
+
+    /**
+     * 归档信息；归档后不再变化，命中后长期缓存
+     */
+    public ExamArchive find(Long examId) {
+        long now = System.currentTimeMillis();
+        Lookup lookup = lookups.get(examId);
+        if (lookup == null || lookup.expireAt() <= now) {
+            ExamArchive archive = archiveMapper.selectById(examId);
+            lookup = new Lookup(archive, archive != null ? Long.MAX_VALUE : now + MISS_TTL_MILLIS);
+            lookups.put(examId, lookup);
+        }
+        return lookup.archive();
+    }
+
+    /**
+     * 从归档读取某条考试记录的作答，转换为 exam_answer 实体（无ID）
+     */
+    public List<ExamAnswer> answersOfRecord(Long examId, Long recordId) {
+        ExamArchiveFile file = file(examId);
+        List<ExamArchiveFile.Answer> answers = file != null ? file.answersOfRecord(recordId) : null;
+        if (answers == null) {
+            return Collections.emptyList();
+        }
+        List<ExamAnswer> result = new ArrayList<>(answers.size());
+        for (ExamArchiveFile.Answer a : answers) {
+            ExamAnswer answer = new ExamAnswer();
+            answer.setRecordId(recordId);
+            answer.setQuestionId(a.questionId());
+            answer.setUserAnswer(a.userAnswer());
+            answer.setScore(a.score());
+            answer.setIsManualGraded(a.manualGraded() ? 1 : 0);
+            answer.setDeleted(0);
+            result.add(answer);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,20 @@
+package org.development.exam_online.service.cache;
+
+import org.development.exam_online.dao.entity.ExamPaperQuestionSnapshot;
+import org.development.exam_online.dao.entity.Question;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 考试题目快照（按 question_order 排序）及其题目详情的只读视图，调用方不得修改其中的对象
+ *
+ * @param items      快照题目
+ * @param questions  题目ID -> 题目（含已逻辑删除的题目）
+ * @param totalScore 快照总分
+ */
+public record ExamSnapshot(List<ExamPaperQuestionSnapshot> items,
+                           Map<Long, Question> questions,
+                           BigDecimal totalScore) {
+}
@@ -0,0 +1,243 @@
+package org.development.exam_online.service.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.dao.entity.Exam;
+import org.development.exam_online.dao.entity.ExamPaperQuestionSnapshot;
+import org.development.exam_online.dao.entity.ExamRecordQuestion;
+import org.development.exam_online.dao.entity.Question;
+import org.development.exam_online.dao.mapper.ExamPaperQuestionSnapshotMapper;
+import org.development.exam_online.dao.mapper.ExamRecordQuestionMapper;
+import org.development.exam_online.dao.mapper.QuestionMapper;
+import org.development.exam_online.service.taking.ExamQuestionDrawer;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 考试快照缓存
+ * <p>
+ * 快照在考试创建时冻结，考试期间所有考生反复读取同一份题目列表和题目详情，
+ * 这里按考试缓存，过期或题目被修改时失效。
+ * <p>
+ * 随机抽题的考试每个考生题目不同，按考试记录缓存抽题结果（容量有限，最近最少使用的先淘汰），
+ * 题目详情由各考生共享，只回表加载尚未缓存的题目。
+ * 试题分析、错题统计等整场考试的统计使用考试快照与全部考生抽到题目的并集。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamSnapshotCache {
+
+    private static final long TTL_MILLIS = 10 * 60 * 1000L;
+    private static final int MAX_RECORD_ENTRIES = 20_000;
+    private static final int MAX_QUESTION_DETAILS = 50_000;
+
+    private final ExamPaperQuestionSnapshotMapper snapshotMapper;
+    private final QuestionMapper questionMapper;
+    private final ExamRecordQuestionMapper recordQuestionMapper;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    /** 考试记录ID -> 该考生的快照，仅随机抽题的考试使用 */
+    private final Map<Long, Entry> recordEntries = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                    return size() > MAX_RECORD_ENTRIES;
+                }
+            });
+    /** 考试ID -> 随机抽题考试涉及的全部题目 */
+    private final Map<Long, Entry> unionEntries = new ConcurrentHashMap<>();
+    /** 随机抽题考试共享的题目详情，与快照相同的过期时间（其他实例上的修改最迟在过期后生效），容量有限 */
+    private final Map<Long, Detail> questionDetails = Collections.synchronizedMap(
+            new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Detail> eldest) {
+                    return size() > MAX_QUESTION_DETAILS;
+                }
+            });
+
+    public ExamSnapshot get(Long examId) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(examId);
+        if (entry != null && entry.expireAt > now) {
+            return entry.snapshot;
+        }
+        Entry loaded = entries.compute(examId, (id, old) ->
+                old != null && old.expireAt > now ? old : new Entry(load(id), now + TTL_MILLIS));
+        return loaded.snapshot;
+    }
+
+    /**
+     * 某个考生的快照：随机抽题的考试返回该考生抽到的题目，否则与 {@link #get(Long)} 相同
+     */
+    public ExamSnapshot forRecord(Exam exam, Long recordId) {
+        if (!ExamQuestionDrawer.isDrawMode(exam) || recordId == null) {
+            return get(exam.getId());
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = recordEntries.get(recordId);
+        if (entry != null && entry.expireAt > now) {
+            return entry.snapshot;
+        }
+        ExamRecordQuestion row = recordQuestionMapper.selectById(recordId);
+        if (row == null) {
+            // 设置抽题规则之前开考的记录，仍使用考试快照
+            return get(exam.getId());
+        }
+        ExamSnapshot snapshot = loadDrawn(exam.getId(), ExamQuestionDrawer.decode(row));
+        recordEntries.put(recordId, new Entry(snapshot, now + TTL_MILLIS));
+        return snapshot;
+    }
+
+    /**
+     * 整场考试涉及的全部题目：随机抽题的考试为考试快照与各考生抽到题目的并集（分值取首次出现的），
+     * 否则与 {@link #get(Long)} 相同
+     */
+    public ExamSnapshot forExam(Exam exam) {
+        if (!ExamQuestionDrawer.isDrawMode(exam)) {
+            return get(exam.getId());
+        }
+        long now = System.currentTimeMillis();
+        Entry entry = unionEntries.get(exam.getId());
+        if (entry != null && entry.expireAt > now) {
+            return entry.snapshot;
+        }
+        ExamSnapshot base = get(exam.getId());
+        Map<Long, BigDecimal> scores = new LinkedHashMap<>();
+        for (ExamPaperQuestionSnapshot item : base.items()) {
+            scores.putIfAbsent(item.getQuestionId(), item.getQuestionScore());
+        }
+        LambdaQueryWrapper<ExamRecordQuestion> q = new LambdaQueryWrapper<>();
+        q.select(ExamRecordQuestion::getRecordId, ExamRecordQuestion::getQuestionIds,
+                        ExamRecordQuestion::getQuestionScores)
+                .eq(ExamRecordQuestion::getExamId, exam.getId());
+        for (ExamRecordQuestion row : recordQuestionMapper.selectList(q)) {
+            ExamQuestionDrawer.Draw draw = ExamQuestionDrawer.decode(row);
+            for (int i = 0; i < draw.questionIds().size(); i++) {
+                scores.putIfAbsent(draw.questionIds().get(i), draw.scores().get(i));
+            }
+        }
+
+        List<ExamPaperQuestionSnapshot> items = new ArrayList<>(scores.size());
+        scores.forEach((questionId, score) -> {
+            ExamPaperQuestionSnapshot item = new ExamPaperQuestionSnapshot();
+            item.setExamId(exam.getId());
+            item.setQuestionId(questionId);
+            item.setQuestionScore(score);
+            item.setQuestionOrder(items.size() + 1);
+            items.add(item);
+        });
+        Map<Long, Question> questions = new HashMap<>(base.questions());
+        questions.putAll(sharedDetails(scores.keySet().stream().filter(id -> !questions.containsKey(id)).toList()));
+        ExamSnapshot snapshot = new ExamSnapshot(Collections.unmodifiableList(items),
+                Collections.unmodifiableMap(questions), base.totalScore());
+        unionEntries.put(exam.getId(), new Entry(snapshot, now + TTL_MILLIS));
+        return snapshot;
+    }
+
+    public void evict(Long examId) {
+        if (examId != null) {
+            entries.remove(examId);
+            unionEntries.remove(examId);
+        }
+    }
+
+    /**
+     * 题目内容变更后，使包含该题的考试缓存失效
+     */
+    public void onQuestionChanged(Long questionId) {
+        if (questionId == null) return;
+        onQuestionsChanged(Collections.singletonList(questionId));
+    }
+
+    /**
+     * 批量题目变更后调用，每个缓存项只检查一遍
+     */
+    public void onQuestionsChanged(Collection<Long> questionIds) {
+        if (questionIds == null || questionIds.isEmpty()) return;
+        Set<Long> changed = new HashSet<>(questionIds);
+        entries.entrySet().removeIf(e -> containsAny(e.getValue().snapshot, changed));
+        unionEntries.entrySet().removeIf(e -> containsAny(e.getValue().snapshot, changed));
+        changed.forEach(questionDetails::remove);
+        synchronized (recordEntries) {
+            recordEntries.values().removeIf(e -> containsAny(e.snapshot, changed));
+        }
+    }
+
+    private static boolean containsAny(ExamSnapshot snapshot, Set<Long> questionIds) {
+        for (Long id : snapshot.questions().keySet()) {
+            if (questionIds.contains(id)) return true;
+        }
+        return false;
+    }
+
+    private ExamSnapshot loadDrawn(Long examId, ExamQuestionDrawer.Draw draw) {
+        List<ExamPaperQuestionSnapshot> items = new ArrayList<>(draw.questionIds().size());
+        for (int i = 0; i < draw.questionIds().size(); i++) {
+            ExamPaperQuestionSnapshot item = new ExamPaperQuestionSnapshot();
+            item.setExamId(examId);
+            item.setQuestionId(draw.questionIds().get(i));
+            item.setQuestionScore(draw.scores().get(i));
+            item.setQuestionOrder(i + 1);
+            items.add(item);
+        }
+
+        return new ExamSnapshot(Collections.unmodifiableList(items),
+                Collections.unmodifiableMap(sharedDetails(draw.questionIds())), draw.totalScore());
+    }
+
+    /**
+     * 从共享的题目详情中取题，只回表加载尚未缓存的题目
+     */
+    private Map<Long, Question> sharedDetails(Collection<Long> questionIds) {
+        long now = System.currentTimeMillis();
+        Map<Long, Question> questions = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (questionDetails) {
+            for (Long id : questionIds) {
+                Detail detail = questionDetails.get(id);
+                if (detail != null && detail.expireAt > now) {
+                    questions.put(id, detail.question);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Question q : questionMapper.selectBatchIdsIgnoreDeleted(missing.stream().distinct().toList())) {
+                questionDetails.put(q.getId(), new Detail(q, now + TTL_MILLIS));
+                questions.put(q.getId(), q);
+            }
+        }
+        return questions;
+    }
+
+    private ExamSnapshot load(Long examId) {
+        LambdaQueryWrapper<ExamPaperQuestionSnapshot> q = new LambdaQueryWrapper<>();
+        q.eq(ExamPaperQuestionSnapshot::getExamId, examId)
+                .orderByAsc(ExamPaperQuestionSnapshot::getQuestionOrder);
+        List<ExamPaperQuestionSnapshot> items = snapshotMapper.selectList(q);
+
+        Map<Long, Question> questions = Collections.emptyMap();
+        if (!items.isEmpty()) {
+            List<Long> qIds = items.stream().map(ExamPaperQuestionSnapshot::getQuestionId).toList();
+            questions = questionMapper.selectBatchIdsIgnoreDeleted(qIds).stream()
+                    .collect(Collectors.toMap(Question::getId, Function.identity()));
+        }
+        BigDecimal totalScore = items.stream()
+                .map(s -> s.getQuestionScore() != null ? s.getQuestionScore() : BigDecimal.ZERO)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        log.debug("加载考试快照，examId={}，题目数={}", examId, items.size());
+        return new ExamSnapshot(Collections.unmodifiableList(items), Collections.unmodifiableMap(questions), totalScore);
+    }
+
+    private record Entry(ExamSnapshot snapshot, long expireAt) {}
+
+    private record Detail(Question question, long expireAt) {}
+}
@@ -0,0 +1,67 @@
+package org.development.exam_online.service.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.development.exam_online.dao.entity.QuestionKnowledge;
+import org.development.exam_online.dao.mapper.QuestionKnowledgeMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 知识点名称字典
+ * <p>
+ * 统计类接口需要大量知识点ID到名称的转换，这里缓存名称，未缓存或已过期的ID合并成一次批量查询。
+ * 知识点修改或删除时由知识点服务调用 {@link #evict(Long)} 失效；{@code evict} 只作用于本实例，
+ * 其他实例上的名称依赖过期时间刷新。
+ */
+@Component
+@RequiredArgsConstructor
+public class KnowledgeDictionary {
+
+    private static final long TTL_MILLIS = 10 * 60 * 1000L;
+
+    private final QuestionKnowledgeMapper knowledgeMapper;
+
+    private final Map<Long, Entry> names = new ConcurrentHashMap<>();
+
+    /**
+     * 批量获取知识点名称；不存在或已删除的知识点不出现在结果中
+     */
+    public Map<Long, String> names(Collection<Long> knowledgeIds) {
+        if (knowledgeIds == null || knowledgeIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, String> result = new HashMap<>(knowledgeIds.size() * 2);
+        Set<Long> missing = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+        for (Long id : knowledgeIds) {
+            if (id == null || result.containsKey(id)) continue;
+            Entry entry = names.get(id);
+            if (entry != null && entry.expireAt > now) {
+                result.put(id, entry.name);
+            } else {
+                if (entry != null) {
+                    names.remove(id, entry);
+                }
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (QuestionKnowledge knowledge : knowledgeMapper.selectBatchIds(missing)) {
+                if (knowledge.getName() == null) continue;
+                names.put(knowledge.getId(), new Entry(knowledge.getName(), now + TTL_MILLIS));
+                result.put(knowledge.getId(), knowledge.getName());
+            }
+        }
+        return result;
+    }
+
+    public void evict(Long knowledgeId) {
+        if (knowledgeId != null) {
+            names.remove(knowledgeId);
+        }
+    }
+
+    private record Entry(String name, long expireAt) {}
+}
@@ -0,0 +1,348 @@
+package org.development.exam_online.service.grading;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.common.enums.QuestionType;
+import org.development.exam_online.dao.dto.AnswerAnalysisRow;
+import org.development.exam_online.dao.entity.ExamPaperQuestionSnapshot;
+import org.development.exam_online.dao.entity.Question;
+import org.development.exam_online.dao.mapper.ExamAnswerMapper;
+import org.development.exam_online.service.archive.ExamArchiveFile;
+import org.development.exam_online.service.archive.ExamArchiveService;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * 客观题试题分析
+ * <p>
+ * 对 exam_answer 与考试记录总分的连接结果做一次流式遍历，按题目累积到基本类型数组中，
+ * 之后各题并行计算：
+ * <ul>
+ *     <li>难度（P 值）：平均得分率</li>
+ *     <li>点二列相关：答对与否和"总分减本题得分"的相关系数</li>
+ *     <li>区分度（D 值）：总分前 27% 与后 27% 考生的答对率之差</li>
+ *     <li>选项分析：各选项整体及高低分组的选择人数</li>
+ * </ul>
+ * 考试结束且成绩全部确认后结果不再变化，按考试缓存；考试记录变化时由
+ * {@link org.development.exam_online.service.statistics.ExamStatisticsAggregator} 清除。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ItemAnalyzer {
+
+    /** 高低分组各占考生的比例 */
+    private static final double GROUP_RATIO = 0.27;
+    private static final int MAX_CACHED_EXAMS = 256;
+    private static final List<String> JUDGE_OPTIONS = List.of("true", "false");
+
+    private final ExamAnswerMapper examAnswerMapper;
+    private final ExamArchiveService archiveService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<Long, List<ItemStats>> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, List<ItemStats>> eldest) {
+                    return size() > MAX_CACHED_EXAMS;
+                }
+            });
+
+    /**
+     * @param count      选择该选项的人数
+     * @param rate       选择率
+     * @param upperCount 高分组中选择该选项的人数
+     * @param lowerCount 低分组中选择该选项的人数
+     * @param correct    是否为正确选项
+     */
+    public record OptionStats(String option, int count, double rate, int upperCount, int lowerCount, boolean correct) {}
+
+    /**
+     * @param pValue         难度（平均得分率，越高越容易）
+     * @param pointBiserial  点二列相关系数，无法计算时为 null
+     * @param discrimination 高低分组答对率之差，无法计算时为 null
+     * @param options        选项分析，填空题为空
+     */
+    public record ItemStats(Long questionId, String type, int attempts, int correctCount, int unanswered,
+                            double pValue, Double pointBiserial, Double discrimination, List<OptionStats> options) {}
+
+    /**
+     * 分析一场考试的客观题
+     *
+     * @param items     考试题目（用于确定分值与题目顺序）
+     * @param questions 题目详情
+     * @param cacheable 考试已结束且成绩已全部确认时为 true，结果将被缓存
+     */
+    public List<ItemStats> analyze(Long examId, List<ExamPaperQuestionSnapshot> items,
+                                   Map<Long, Question> questions, boolean cacheable) {
+        List<ItemStats> cached = cache.get(examId);
+        if (cached != null) {
+            return cached;
+        }
+
+        Map<Long, Accumulator> accumulators = new LinkedHashMap<>();
+        for (ExamPaperQuestionSnapshot item : items) {
+            Question q = questions.get(item.getQuestionId());
+            if (q == null || !GradingHelper.isObjectiveQuestion(q.getType())) continue;
+            BigDecimal fullScore = item.getQuestionScore() != null ? item.getQuestionScore() : q.getScore();
+            accumulators.put(q.getId(), new Accumulator(q, fullScore != null ? fullScore.doubleValue() : 0.0,
+                    optionKeys(q), parseCorrectOptions(q)));
+        }
+        if (accumulators.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 单次流式遍历：记录总分按考试记录编号，作答按题目累积；已归档的考试读取归档文件
+        Map<Long, Integer> recordIndex = new HashMap<>();
+        DoubleList recordTotals = new DoubleList();
+        ExamArchiveFile archive = archiveService.file(examId);
+        if (archive != null) {
+            archive.forEachAnswer(true, (recordId, userId, totalScore, questionId, fullScore, score, userAnswer, manual) ->
+                    accumulate(accumulators, recordIndex, recordTotals, recordId, questionId, totalScore, score, userAnswer));
+        } else {
+            examAnswerMapper.streamAnswerRows(examId, ctx -> {
+                AnswerAnalysisRow row = ctx.getResultObject();
+                accumulate(accumulators, recordIndex, recordTotals, row.getRecordId(), row.getQuestionId(),
+                        row.getTotalScore(), row.getScore(), row.getUserAnswer());
+            });
+        }
+
+        byte[] groups = groupRecords(recordTotals);
+        List<ItemStats> result = accumulators.values().parallelStream()
+                .map(acc -> acc.compute(recordTotals, groups))
+                .toList();
+
+        if (cacheable) {
+            cache.put(examId, result);
+        }
+        log.debug("试题分析完成，examId={}，题目数={}，考试记录数={}", examId, result.size(), recordTotals.size());
+        return result;
+    }
+
+    private void accumulate(Map<Long, Accumulator> accumulators, Map<Long, Integer> recordIndex, DoubleList recordTotals,
+                            Long recordId, Long questionId, BigDecimal totalScore, BigDecimal score, String userAnswer) {
+        Accumulator acc = accumulators.get(questionId);
+        if (acc == null) return;
+        Integer idx = recordIndex.get(recordId);
+        if (idx == null) {
+            idx = recordTotals.size();
+            recordIndex.put(recordId, idx);
+            recordTotals.add(totalScore != null ? totalScore.doubleValue() : 0.0);
+        }
+        acc.add(idx, score != null ? score.doubleValue() : 0.0, selectionMask(acc, userAnswer));
+    }
+
+    public void evict(Long examId) {
+        cache.remove(examId);
+    }
+
+    /**
+     * 按总分排序，前 27% 标记为高分组（1），后 27% 标记为低分组（-1）
+     */
+    private static byte[] groupRecords(DoubleList totals) {
+        int n = totals.size();
+        byte[] groups = new byte[n];
+        int groupSize = (int) Math.ceil(n * GROUP_RATIO);
+        if (n < 2 || groupSize * 2 > n) {
+            return groups;
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(totals::get));
+        for (int i = 0; i < groupSize; i++) {
+            groups[order[i]] = -1;
+            groups[order[n - 1 - i]] = 1;
+        }
+        return groups;
+    }
+
+    private List<String> optionKeys(Question q) {
+        if (QuestionType.JUDGE.getCode().equals(q.getType())) {
+            return JUDGE_OPTIONS;
+        }
+        if (!QuestionType.SINGLE.getCode().equals(q.getType()) && !QuestionType.MULTIPLE.getCode().equals(q.getType())) {
+            return Collections.emptyList();
+        }
+        JsonNode node = readJson(q.getOptionsJson());
+        if (node == null || !node.isObject()) {
+            return Collections.emptyList();
+        }
+        List<String> keys = new ArrayList<>();
+        node.fieldNames().forEachRemaining(keys::add);
+        return keys.size() <= 31 ? keys : keys.subList(0, 31);
+    }
+
+    private Set<String> parseCorrectOptions(Question q) {
+        return answerKeys(readJson(q.getAnswerJson()));
+    }
+
+    /**
+     * 作答选中的选项位图；未作答返回 -1，无法识别的选项忽略
+     */
+    private int selectionMask(Accumulator acc, String userAnswer) {
+        if (userAnswer == null || userAnswer.isBlank()) {
+            return -1;
+        }
+        if (acc.options.isEmpty()) {
+            return 0;
+        }
+        int mask = 0;
+        for (String key : answerKeys(readJson(userAnswer))) {
+            int i = acc.options.indexOf(key);
+            if (i >= 0) mask |= 1 << i;
+        }
+        return mask;
+    }
+
+    private static Set<String> answerKeys(JsonNode node) {
+        if (node == null || node.isNull()) return Collections.emptySet();
+        Set<String> keys = new LinkedHashSet<>();
+        if (node.isArray()) {
+            node.forEach(n -> keys.add(n.asText()));
+        } else {
+            keys.add(node.asText());
+        }
+        return keys;
+    }
+
+    private JsonNode readJson(String json) {
+        if (json == null || json.isBlank()) return null;
+        try {
+            return objectMapper.readTree(json);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static double round(double v) {
+        return BigDecimal.valueOf(v).setScale(3, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    /**
+     * 单题的作答累积：考试记录编号、得分、选项位图三列
+     */
+    private static final class Accumulator {
+
+        final Question question;
+        final double fullScore;
+        final List<String> options;
+        final Set<String> correctOptions;
+
+        int size;
+        int[] records = new int[16];
+        double[] scores = new double[16];
+        int[] selections = new int[16];
+
+        Accumulator(Question question, double fullScore, List<String> options, Set<String> correctOptions) {
+            this.question = question;
+            this.fullScore = fullScore;
+            this.options = options;
+            this.correctOptions = correctOptions;
+        }
+
+        void add(int record, double score, int selection) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+                selections = Arrays.copyOf(selections, size * 2);
+            }
+            records[size] = record;
+            scores[size] = score;
+            selections[size] = selection;
+            size++;
+        }
+
+        ItemStats compute(DoubleList totals, byte[] groups) {
+            int correct = 0;
+            int unanswered = 0;
+            double scoreSum = 0;
+            // 点二列相关：x 为是否答对，y 为总分减本题得分
+            double sx = 0, sy = 0, sxy = 0, syy = 0;
+            int upper = 0, upperCorrect = 0, lower = 0, lowerCorrect = 0;
+            int[] optionCounts = new int[options.size()];
+            int[] optionUpper = new int[options.size()];
+            int[] optionLower = new int[options.size()];
+
+            for (int i = 0; i < size; i++) {
+                boolean isCorrect = fullScore > 0 && scores[i] >= fullScore;
+                double x = isCorrect ? 1 : 0;
+                double y = totals.get(records[i]) - scores[i];
+                if (isCorrect) correct++;
+                scoreSum += scores[i];
+                sx += x;
+                sy += y;
+                sxy += x * y;
+                syy += y * y;
+
+                byte group = groups[records[i]];
+                if (group > 0) {
+                    upper++;
+                    if (isCorrect) upperCorrect++;
+                } else if (group < 0) {
+                    lower++;
+                    if (isCorrect) lowerCorrect++;
+                }
+
+                int mask = selections[i];
+                if (mask < 0) {
+                    unanswered++;
+                    continue;
+                }
+                for (int o = 0; o < optionCounts.length; o++) {
+                    if ((mask & (1 << o)) != 0) {
+                        optionCounts[o]++;
+                        if (group > 0) optionUpper[o]++;
+                        else if (group < 0) optionLower[o]++;
+                    }
+                }
+            }
+
+            int n = size;
+            double pValue = n == 0 || fullScore <= 0 ? 0.0 : round(scoreSum / (n * fullScore));
+            Double pointBiserial = null;
+            double varX = n * sx - sx * sx;
+            double varY = n * syy - sy * sy;
+            if (n > 1 && varX > 0 && varY > 0) {
+                pointBiserial = round((n * sxy - sx * sy) / Math.sqrt(varX * varY));
+            }
+            Double discrimination = upper > 0 && lower > 0
+                    ? round(upperCorrect / (double) upper - lowerCorrect / (double) lower)
+                    : null;
+
+            List<OptionStats> optionStats = new ArrayList<>(options.size());
+            for (int o = 0; o < options.size(); o++) {
+                String key = options.get(o);
+                optionStats.add(new OptionStats(key, optionCounts[o], n == 0 ? 0.0 : round(optionCounts[o] / (double) n),
+                        optionUpper[o], optionLower[o], correctOptions.contains(key)));
+            }
+            return new ItemStats(question.getId(), question.getType(), n, correct, unanswered,
+                    pValue, pointBiserial, discrimination, optionStats);
+        }
+    }
+
+    private static final class DoubleList {
+
+        private double[] values = new double[64];
+        private int size;
+
+        void add(double v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
+        }
+
+        double get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
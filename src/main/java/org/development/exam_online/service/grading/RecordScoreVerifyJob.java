@@ -0,0 +1,52 @@
+package org.development.exam_online.service.grading;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.service.GradingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 定时复核记录得分：人工评分按分差增量维护记录得分，
+ * 这里检查上次运行以来更新过的记录，发现与作答汇总不一致时修正并记录日志；
+ * 候选记录按ID分页逐页检查，全部检查完才推进复核起点
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RecordScoreVerifyJob {
+
+    private final GradingService gradingService;
+
+    @Value("${grading.score-verify.lookback-minutes:60}")
+    private long lookbackMinutes;
+
+    /** 本次复核的起点；首次运行回看 lookbackMinutes */
+    private LocalDateTime since;
+
+    @Scheduled(fixedDelayString = "${grading.score-verify.interval-ms:600000}")
+    public void verify() {
+        LocalDateTime start = LocalDateTime.now();
+        LocalDateTime from = since != null ? since : start.minusMinutes(lookbackMinutes);
+        try {
+            long afterId = 0L;
+            Map<String, Object> result;
+            do {
+                result = gradingService.verifyRecordScores(from, afterId);
+                Object drifted = result.get("driftedCount");
+                if (drifted instanceof Integer n && n > 0) {
+                    log.warn("考试记录得分与作答汇总不一致，已修正，记录数={}，记录ID={}", n, result.get("driftedRecordIds"));
+                }
+                afterId = ((Number) result.get("lastRecordId")).longValue();
+            } while (Boolean.TRUE.equals(result.get("hasMore")));
+            // 留出一分钟重叠，覆盖运行期间提交的评分
+            since = start.minusMinutes(1);
+        } catch (Exception e) {
+            log.warn("考试记录得分复核失败，since={}", from, e);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.development.exam_online.service.llm;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 异步并发限制
+ * <p>
+ * 同时进行中的任务不超过上限，超出的任务在队列中等待前面的任务完成，等待期间不占用线程。
+ */
+public final class AsyncLimiter {
+
+    private final int maxConcurrency;
+    private final Executor executor;
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private int active;
+
+    public AsyncLimiter(int maxConcurrency, Executor executor) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.executor = executor;
+    }
+
+    /**
+     * 取得许可后执行任务，任务返回的 future 完成时归还许可
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> {
+            CompletableFuture<T> future;
+            try {
+                future = task.get();
+            } catch (Throwable e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        };
+        synchronized (this) {
+            if (active >= maxConcurrency) {
+                waiting.addLast(start);
+                return result;
+            }
+            active++;
+        }
+        start.run();
+        return result;
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiting.pollFirst();
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        // 许可直接转给下一个任务，在线程池中启动，避免在完成回调里层层递归
+        executor.execute(next);
+    }
+
+    public synchronized int active() {
+        return active;
+    }
+
+    public synchronized int waiting() {
+        return waiting.size();
+    }
+}
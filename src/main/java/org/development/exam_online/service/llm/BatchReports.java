@@ -0,0 +1,51 @@
+package org.development.exam_online.service.llm;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 多名学生合并请求的输出格式：每份报告前单独一行 "===REPORT k==="（k 从 1 开始）
+ */
+public final class BatchReports {
+
+    private static final Pattern MARKER = Pattern.compile("(?m)^\\s*=+\\s*REPORT\\s+(\\d{1,6})\\s*=+\\s*$");
+
+    private BatchReports() {}
+
+    public static String formatInstruction(int count) {
+        return "输出格式：按学生编号依次输出" + count + "份报告，每份报告前单独占一行写“===REPORT 编号===”"
+                + "（例如 ===REPORT 1===），报告之间不要输出其他内容。";
+    }
+
+    /**
+     * 按编号拆分模型输出
+     *
+     * @return 长度为 count 的数组，缺失或为空的报告为 null
+     */
+    public static String[] split(String content, int count) {
+        String[] reports = new String[count];
+        if (content == null) {
+            return reports;
+        }
+        Matcher matcher = MARKER.matcher(content);
+        int current = -1;
+        int start = 0;
+        while (matcher.find()) {
+            put(reports, current, content.substring(start, matcher.start()));
+            current = Integer.parseInt(matcher.group(1)) - 1;
+            start = matcher.end();
+        }
+        put(reports, current, content.substring(start));
+        return reports;
+    }
+
+    private static void put(String[] reports, int index, String text) {
+        if (index < 0 || index >= reports.length || reports[index] != null) {
+            return;
+        }
+        String trimmed = text.strip();
+        if (!trimmed.isEmpty()) {
+            reports[index] = trimmed;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.development.exam_online.service.llm;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 熔断器
+ * <p>
+ * 统计最近 windowSize 次请求的结果，样本不少于 minCalls 且失败率达到阈值时打开，
+ * 打开期间请求直接拒绝（调用方退回规则报告）。打开 openMillis 后由探测任务发起一次探测请求（半开），
+ * 探测成功则关闭并清空统计，失败则重新计时；探测超过 openMillis 仍无结果时按失败处理，
+ * 避免探测请求卡住后熔断器一直停在半开状态。
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;
+    private final int minCalls;
+    private final int failureRatePercent;
+    private final long openMillis;
+
+    private State state = State.CLOSED;
+    private int index;
+    private int count;
+    private int failures;
+    private long openedAt;
+    private long probeStartedAt;
+    private long openedTimes;
+    private long rejected;
+
+    public CircuitBreaker(int windowSize, int minCalls, int failureRatePercent, long openMillis) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minCalls = Math.max(1, Math.min(minCalls, window.length));
+        this.failureRatePercent = failureRatePercent;
+        this.openMillis = openMillis;
+    }
+
+    /**
+     * 普通请求是否放行；拒绝时计数
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    /**
+     * 记录普通请求的结果（仅关闭状态下计入）
+     */
+    public synchronized void record(boolean success) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        if (count == window.length) {
+            if (!window[index]) {
+                failures--;
+            }
+        } else {
+            count++;
+        }
+        window[index] = success;
+        if (!success) {
+            failures++;
+        }
+        index = (index + 1) % window.length;
+        if (count >= minCalls && failures * 100 >= failureRatePercent * count) {
+            open();
+        }
+    }
+
+    /**
+     * 打开时间已满时进入半开状态，返回 true 表示应发起一次探测；
+     * 半开超过 openMillis 仍未记录探测结果时重新打开，下次打开时间满后再探测
+     */
+    public synchronized boolean tryBeginProbe() {
+        long now = System.currentTimeMillis();
+        if (state == State.HALF_OPEN && now - probeStartedAt >= openMillis) {
+            open();
+            return false;
+        }
+        if (state == State.OPEN && now - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            probeStartedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 记录探测结果；不在半开状态时按普通请求记录
+     */
+    public synchronized void recordProbe(boolean success) {
+        if (state != State.HALF_OPEN) {
+            record(success);
+            return;
+        }
+        if (success) {
+            state = State.CLOSED;
+            index = 0;
+            count = 0;
+            failures = 0;
+        } else {
+            open();
+        }
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+        openedTimes++;
+    }
+
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("state", state.name());
+        result.put("windowCalls", count);
+        result.put("windowFailures", failures);
+        result.put("failureRate", count == 0 ? 0.0 : Math.round(failures * 1000.0 / count) / 10.0);
+        result.put("openedTimes", openedTimes);
+        result.put("rejected", rejected);
+        return result;
+    }
+}
@@ -0,0 +1,445 @@
+package org.development.exam_online.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.config.LLMConfig;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 大模型 chat/completions 接口的异步客户端
+ * <p>
+ * 基于 JDK HttpClient，连接复用（keep-alive），连接超时与请求超时取自 {@link LLMConfig}。
+ * HttpClient 的请求超时只覆盖收到响应头之前的等待，读取响应体另有限制：普通请求限制总时长，
+ * 流式请求限制两段输出之间的间隔，超时后取消请求并释放并发许可。
+ * 请求经 {@link AsyncLimiter} 限制并发，失败后按指数退避延迟重试，等待和重试都不阻塞线程，
+ * 少量线程即可同时处理大量进行中的请求。
+ * <p>
+ * 发送前按服务商配额（每分钟请求数、每分钟 token 数）预占 {@link TokenBucket}，额度不足时延迟发送；
+ * {@link CircuitBreaker} 在失败率过高时直接拒绝请求，由探测任务（{@link LLMHealthJob}）确认恢复。
+ */
+@Slf4j
+@Component
+public class LLMClient {
+
+    private static final int IO_THREADS = 4;
+
+    private final LLMConfig config;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final AsyncLimiter limiter;
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final CircuitBreaker breaker;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rateLimitRejected = new AtomicLong();
+
+    public LLMClient(LLMConfig config) {
+        this.config = config;
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.executor = Executors.newFixedThreadPool(IO_THREADS, r -> {
+            Thread t = new Thread(r, "llm-http-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeout()))
+                .executor(executor)
+                .build();
+        this.limiter = new AsyncLimiter(config.getMaxConcurrency(), executor);
+        this.requestBucket = new TokenBucket(config.getRequestsPerMinute());
+        this.tokenBucket = new TokenBucket(config.getTokensPerMinute());
+        this.breaker = new CircuitBreaker(config.getCircuitWindowSize(), config.getCircuitMinCalls(),
+                config.getCircuitFailureRate(), config.getCircuitOpenMillis());
+    }
+
+    /**
+     * 发送一轮对话，返回模型回复内容
+     */
+    public CompletableFuture<LLMCompletion> chat(String systemPrompt, String userPrompt) {
+        return chat(systemPrompt, userPrompt, config.getMaxTokens());
+    }
+
+    /**
+     * 发送一轮对话，指定输出 token 上限（多名学生合并请求时按人数放大）
+     */
+    public CompletableFuture<LLMCompletion> chat(String systemPrompt, String userPrompt, int maxTokens) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(requestBody(systemPrompt, userPrompt, maxTokens));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return attempt(body, estimateTokens(systemPrompt, userPrompt, maxTokens), 1);
+    }
+
+    /**
+     * 探测请求：熔断打开时也发送，结果决定熔断器是否恢复；不重试
+     */
+    public CompletableFuture<LLMCompletion> probe(String systemPrompt, String userPrompt) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(requestBody(systemPrompt, userPrompt, config.getMaxTokens()));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return guarded(estimateTokens(systemPrompt, userPrompt, config.getMaxTokens()), true, () -> send(body));
+    }
+
+    /**
+     * 熔断打开时间已满时进入半开状态，返回 true 表示应发起探测
+     */
+    public boolean tryBeginProbe() {
+        return breaker.tryBeginProbe();
+    }
+
+    private CompletableFuture<LLMCompletion> attempt(byte[] body, long tokens, int attempt) {
+        return guarded(tokens, false, () -> send(body))
+                .handle((content, error) -> {
+                    if (error == null) {
+                        return CompletableFuture.completedFuture(content);
+                    }
+                    Throwable cause = unwrap(error);
+                    if (attempt >= config.getMaxRetries() || !retryable(cause)) {
+                        return CompletableFuture.<LLMCompletion>failedFuture(cause);
+                    }
+                    long delay = config.getRetryBackoff() << Math.min(attempt - 1, 16);
+                    log.warn("调用大模型API失败，{}ms后第{}次重试：{}", delay, attempt + 1, cause.toString());
+                    retried.incrementAndGet();
+                    Executor delayed = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor);
+                    return CompletableFuture.supplyAsync(() -> body, delayed)
+                            .thenCompose(b -> attempt(b, tokens, attempt + 1));
+                })
+                .thenCompose(f -> f);
+    }
+
+    /**
+     * 以流式（stream: true）发送一轮对话，每收到一段回复调用一次 onDelta，完成时返回完整回复；
+     * 请求 stream_options.include_usage，用量取自最后一个片段
+     * <p>
+     * 已有内容输出后无法撤回，因此流式请求不重试；超过请求超时时间没有收到新的内容时取消请求。
+     */
+    public CompletableFuture<LLMCompletion> chatStream(String systemPrompt, String userPrompt, Consumer<String> onDelta) {
+        byte[] body;
+        try {
+            Map<String, Object> requestBody = requestBody(systemPrompt, userPrompt, config.getMaxTokens());
+            requestBody.put("stream", true);
+            requestBody.put("stream_options", Map.of("include_usage", true));
+            body = objectMapper.writeValueAsBytes(requestBody);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return guarded(estimateTokens(systemPrompt, userPrompt, config.getMaxTokens()), false, () -> {
+            StreamCollector collector = new StreamCollector(onDelta);
+            HttpResponse.BodyHandler<LLMCompletion> handler = info -> info.statusCode() == 200
+                    ? HttpResponse.BodySubscribers.fromLineSubscriber(collector, StreamCollector::completion,
+                            StandardCharsets.UTF_8, null)
+                    : HttpResponse.BodySubscribers.replacing(null);
+            CompletableFuture<HttpResponse<LLMCompletion>> exchange =
+                    httpClient.sendAsync(request(body, "text/event-stream"), handler);
+            CompletableFuture<LLMCompletion> completion = exchange.thenApply(response -> {
+                if (response.statusCode() != 200) {
+                    throw new LLMException(response.statusCode(), "大模型API返回状态码 " + response.statusCode());
+                }
+                return response.body();
+            });
+            CompletableFuture<LLMCompletion> idle = collector.watchIdle(config.getTimeout());
+            return completion.applyToEither(idle, c -> c)
+                    .whenComplete((c, error) -> {
+                        idle.cancel(false);
+                        if (error != null) {
+                            exchange.cancel(true);
+                        }
+                    });
+        });
+    }
+
+    /**
+     * 熔断检查、限流预占与并发限制，结果计入熔断统计；本地拒绝的请求不计入
+     */
+    private <T> CompletableFuture<T> guarded(long tokens, boolean probe, Supplier<CompletableFuture<T>> call) {
+        if (!probe && !breaker.allowRequest()) {
+            return CompletableFuture.failedFuture(new LLMRejectedException(503, "大模型接口熔断中"));
+        }
+        long waitNanos = Math.max(requestBucket.reserve(1), tokenBucket.reserve(tokens));
+        if (waitNanos > TimeUnit.MILLISECONDS.toNanos(config.getTimeout())) {
+            requestBucket.refund(1);
+            tokenBucket.refund(tokens);
+            rateLimitRejected.incrementAndGet();
+            if (probe) {
+                breaker.recordProbe(false);
+            }
+            return CompletableFuture.failedFuture(new LLMRejectedException(429, "超出每分钟调用额度"));
+        }
+        CompletableFuture<T> result;
+        if (waitNanos > 0) {
+            throttled.incrementAndGet();
+            Executor delayed = CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, executor);
+            result = CompletableFuture.supplyAsync(() -> null, delayed).thenCompose(v -> limiter.submit(call));
+        } else {
+            result = limiter.submit(call);
+        }
+        if (probe) {
+            // 探测结果决定熔断器能否离开半开状态，等待并发许可也计入时限，保证一定记录结果
+            result = result.orTimeout(config.getTimeout(), TimeUnit.MILLISECONDS);
+        }
+        sent.incrementAndGet();
+        return result.whenComplete((value, error) -> {
+            boolean success = error == null;
+            (success ? succeeded : failed).incrementAndGet();
+            if (probe) {
+                breaker.recordProbe(success);
+            } else {
+                breaker.record(success);
+            }
+        });
+    }
+
+    /**
+     * 按字符数粗略估计输入 token，加上输出上限
+     */
+    private static long estimateTokens(String systemPrompt, String userPrompt, int maxTokens) {
+        return (long) systemPrompt.length() + userPrompt.length() + maxTokens;
+    }
+
+    /**
+     * 发送普通请求，从发出到读完响应体不超过请求超时时间；超时按可重试的 {@link HttpTimeoutException} 失败
+     */
+    private CompletableFuture<LLMCompletion> send(byte[] body) {
+        CompletableFuture<HttpResponse<String>> exchange =
+                httpClient.sendAsync(request(body, "application/json"), HttpResponse.BodyHandlers.ofString());
+        return exchange.orTimeout(config.getTimeout(), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(error -> {
+                    exchange.cancel(true);
+                    Throwable cause = unwrap(error);
+                    return CompletableFuture.failedFuture(cause instanceof TimeoutException
+                            ? new HttpTimeoutException("读取大模型API响应超时") : cause);
+                })
+                .thenApply(this::parse);
+    }
+
+    private HttpRequest request(byte[] body, String accept) {
+        return HttpRequest.newBuilder(URI.create(config.getApiUrl()))
+                .timeout(Duration.ofMillis(config.getTimeout()))
+                .header("Content-Type", "application/json")
+                .header("Accept", accept)
+                .header("Authorization", "Bearer " + config.getApiKey())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+    }
+
+    /**
+     * 逐行解析流式响应（data: {...}），取出 choices[0].delta.content
+     */
+    private final class StreamCollector implements Flow.Subscriber<String> {
+
+        private final Consumer<String> onDelta;
+        private final StringBuilder text = new StringBuilder();
+        private int promptTokens;
+        private int completionTokens;
+        private volatile Flow.Subscription subscription;
+        private volatile long lastActivityNanos = System.nanoTime();
+
+        StreamCollector(Consumer<String> onDelta) {
+            this.onDelta = onDelta;
+        }
+
+        /**
+         * 超过 idleMillis 没有收到响应内容时取消订阅，返回的 future 以 {@link HttpTimeoutException} 失败；
+         * 正常结束后由调用方取消返回的 future，检查随之停止
+         */
+        CompletableFuture<LLMCompletion> watchIdle(long idleMillis) {
+            CompletableFuture<LLMCompletion> idle = new CompletableFuture<>();
+            scheduleIdleCheck(idle, TimeUnit.MILLISECONDS.toNanos(idleMillis), TimeUnit.MILLISECONDS.toNanos(idleMillis));
+            return idle;
+        }
+
+        private void scheduleIdleCheck(CompletableFuture<LLMCompletion> idle, long idleNanos, long delayNanos) {
+            Executor delayed = CompletableFuture.delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor);
+            delayed.execute(() -> {
+                if (idle.isDone()) {
+                    return;
+                }
+                long quiet = System.nanoTime() - lastActivityNanos;
+                if (quiet < idleNanos) {
+                    scheduleIdleCheck(idle, idleNanos, idleNanos - quiet);
+                    return;
+                }
+                Flow.Subscription s = subscription;
+                if (s != null) {
+                    s.cancel();
+                }
+                idle.completeExceptionally(new HttpTimeoutException("流式响应超过 "
+                        + TimeUnit.NANOSECONDS.toMillis(idleNanos) + "ms 没有新内容"));
+            });
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            lastActivityNanos = System.nanoTime();
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            lastActivityNanos = System.nanoTime();
+            if (!line.startsWith("data:")) {
+                return;
+            }
+            String data = line.substring(5).trim();
+            if (data.isEmpty() || "[DONE]".equals(data)) {
+                return;
+            }
+            String delta;
+            try {
+                JsonNode chunk = objectMapper.readTree(data);
+                JsonNode usage = chunk.get("usage");
+                if (usage != null && usage.isObject()) {
+                    promptTokens = usage.path("prompt_tokens").asInt(promptTokens);
+                    completionTokens = usage.path("completion_tokens").asInt(completionTokens);
+                }
+                JsonNode choices = chunk.get("choices");
+                JsonNode content = choices != null && choices.size() > 0
+                        ? choices.get(0).path("delta").get("content") : null;
+                if (content == null || content.isNull()) {
+                    return;
+                }
+                delta = content.asText();
+            } catch (IOException e) {
+                log.warn("无法解析流式响应片段：{}", data);
+                return;
+            }
+            if (delta.isEmpty()) {
+                return;
+            }
+            text.append(delta);
+            try {
+                onDelta.accept(delta);
+            } catch (Exception e) {
+                // 下游（如已断开的浏览器连接）出错不影响完整回复的接收
+                log.debug("处理流式片段失败", e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        LLMCompletion completion() {
+            return new LLMCompletion(text.toString(), promptTokens, completionTokens);
+        }
+    }
+
+    private LLMCompletion parse(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            throw new LLMException(response.statusCode(), "大模型API返回状态码 " + response.statusCode());
+        }
+        try {
+            JsonNode root = objectMapper.readTree(response.body());
+            JsonNode choices = root.get("choices");
+            if (choices != null && choices.isArray() && choices.size() > 0) {
+                JsonNode content = choices.get(0).path("message").get("content");
+                if (content != null && !content.isNull()) {
+                    JsonNode usage = root.path("usage");
+                    return new LLMCompletion(content.asText(), usage.path("prompt_tokens").asInt(0),
+                            usage.path("completion_tokens").asInt(0));
+                }
+            }
+        } catch (IOException e) {
+            throw new LLMException(response.statusCode(), "API响应不是合法的JSON");
+        }
+        throw new LLMException(response.statusCode(), "API响应格式错误");
+    }
+
+    private Map<String, Object> requestBody(String systemPrompt, String userPrompt, int maxTokens) {
+        Map<String, Object> requestBody = new LinkedHashMap<>();
+        requestBody.put("model", config.getDefaultModel());
+        requestBody.put("max_tokens", maxTokens);
+        requestBody.put("temperature", config.getTemperature());
+        requestBody.put("messages", List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", userPrompt)));
+        return requestBody;
+    }
+
+    /**
+     * 超时、连接失败、限流（429）和服务端错误（5xx）可重试；其他 4xx 和响应格式错误不重试
+     */
+    private static boolean retryable(Throwable error) {
+        if (error instanceof LLMRejectedException e) {
+            return e.getStatusCode() == 429;
+        }
+        if (error instanceof LLMException e) {
+            return e.getStatusCode() == 429 || e.getStatusCode() >= 500;
+        }
+        return error instanceof IOException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * 调用统计、限流与熔断状态
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("sent", sent.get());
+        result.put("succeeded", succeeded.get());
+        result.put("failed", failed.get());
+        result.put("retried", retried.get());
+        result.put("active", limiter.active());
+        result.put("waiting", limiter.waiting());
+        result.put("throttled", throttled.get());
+        result.put("rateLimitRejected", rateLimitRejected.get());
+        result.put("availableRequests", requestBucket.available());
+        result.put("availableTokens", tokenBucket.available());
+        result.put("circuit", breaker.snapshot());
+        return result;
+    }
+
+    /** 正在进行的请求数 */
+    public int activeRequests() {
+        return limiter.active();
+    }
+
+    /** 等待并发许可的请求数 */
+    public int waitingRequests() {
+        return limiter.waiting();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
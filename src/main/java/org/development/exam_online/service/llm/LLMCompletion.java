@@ -0,0 +1,11 @@
+package org.development.exam_online.service.llm;
+
+/**
+ * 一次对话的回复与 token 用量（接口未返回 usage 时用量为 0）
+ */
+public record LLMCompletion(String content, int promptTokens, int completionTokens) {
+
+    public boolean hasUsage() {
+        return promptTokens > 0 || completionTokens > 0;
+    }
+}
@@ -0,0 +1,18 @@
+package org.development.exam_online.service.llm;
+
+import lombok.Getter;
+
+/**
+ * 大模型API返回非预期结果
+ */
+@Getter
+public class LLMException extends RuntimeException {
+
+    /** HTTP 状态码 */
+    private final int statusCode;
+
+    public LLMException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+}
@@ -0,0 +1,32 @@
+package org.development.exam_online.service.llm;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.service.LLMService;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 熔断打开时间已满后，用 {@link LLMService#testConnection()} 探测大模型接口是否恢复
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LLMHealthJob {
+
+    private final LLMClient llmClient;
+    private final LLMService llmService;
+
+    @Scheduled(fixedDelayString = "${llm.probe-interval-ms:10000}")
+    public void probe() {
+        if (!llmClient.tryBeginProbe()) {
+            return;
+        }
+        boolean ok = llmService.testConnection();
+        if (ok) {
+            log.info("大模型接口探测成功，熔断已关闭");
+        } else {
+            log.warn("大模型接口探测失败，继续熔断");
+        }
+    }
+}
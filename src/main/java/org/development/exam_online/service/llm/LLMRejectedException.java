@@ -0,0 +1,11 @@
+package org.development.exam_online.service.llm;
+
+/**
+ * 请求在本地被拒绝，未发送到大模型接口：熔断打开（503）或限流等待超过请求超时（429）
+ */
+public class LLMRejectedException extends LLMException {
+
+    public LLMRejectedException(int statusCode, String message) {
+        super(statusCode, message);
+    }
+}
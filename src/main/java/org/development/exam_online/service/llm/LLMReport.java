@@ -0,0 +1,27 @@
+package org.development.exam_online.service.llm;
+
+/**
+ * 一次报告生成的结果
+ *
+ * @param content  报告内容（Markdown）
+ * @param dataHash 提示词哈希（{@link ReportCache#hash}），规则报告为 null
+ * @param cached   是否复用了相同输入已生成的报告
+ * @param fallback 是否为接口不可用或超出预算时的规则报告
+ * @param promptTokens     本报告消耗的输入 token（合并请求按人数分摊；复用和规则报告为 0）
+ * @param completionTokens 本报告消耗的输出 token
+ */
+public record LLMReport(String content, String dataHash, boolean cached, boolean fallback,
+                        long promptTokens, long completionTokens) {
+
+    public static LLMReport cached(String content, String dataHash) {
+        return new LLMReport(content, dataHash, true, false, 0L, 0L);
+    }
+
+    public static LLMReport fallback(String content) {
+        return new LLMReport(content, null, false, true, 0L, 0L);
+    }
+
+    public long totalTokens() {
+        return promptTokens + completionTokens;
+    }
+}
@@ -0,0 +1,71 @@
+package org.development.exam_online.service.llm;
+
+import lombok.RequiredArgsConstructor;
+import org.development.exam_online.dao.mapper.AiAnalysisReportMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按提示词内容寻址的报告缓存
+ * <p>
+ * 键为提示词、系统提示词、模型与参数的 SHA-256；先查内存 LRU，再查 ai_analysis_report 中相同哈希的报告。
+ * 只缓存大模型生成的报告，规则报告不入缓存。
+ */
+@Component
+@RequiredArgsConstructor
+public class ReportCache {
+
+    private final AiAnalysisReportMapper reportMapper;
+
+    @Value("${ai.report.cache-size:1000}")
+    private int maxSize;
+
+    private final Map<String, String> entries = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > maxSize;
+                }
+            });
+
+    public static String hash(String model, Object temperature, Object maxTokens, String systemPrompt, String prompt) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Object part : new Object[]{model, temperature, maxTokens, systemPrompt, prompt}) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            // 分隔各部分，避免拼接歧义
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * 已生成过的报告内容，没有时返回 null
+     */
+    public String get(String hash) {
+        String content = entries.get(hash);
+        if (content == null) {
+            content = reportMapper.selectReportByHash(hash);
+            if (content != null) {
+                entries.put(hash, content);
+            }
+        }
+        return content;
+    }
+
+    public void put(String hash, String content) {
+        entries.put(hash, content);
+    }
+}
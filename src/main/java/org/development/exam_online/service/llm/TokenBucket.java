@@ -0,0 +1,62 @@
+package org.development.exam_online.service.llm;
+
+/**
+ * 令牌桶限流
+ * <p>
+ * 每分钟补充 perMinute 个令牌，最多积累一分钟的量。预占可以透支未来的令牌，
+ * 返回需要等待的时间，调用方等待后直接发送，不再二次检查。perMinute 不大于 0 时不限流。
+ */
+public final class TokenBucket {
+
+    private final double capacity;
+    private final double refillPerNano;
+    private double available;
+    private long lastRefill;
+
+    public TokenBucket(long perMinute) {
+        this.capacity = Math.max(perMinute, 0);
+        this.refillPerNano = capacity / 60e9;
+        this.available = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 预占令牌
+     *
+     * @return 需要等待的纳秒数，0 表示可以立即发送
+     */
+    public synchronized long reserve(long permits) {
+        if (capacity <= 0) {
+            return 0L;
+        }
+        refill();
+        // 单次超过桶容量时按容量计算，否则永远等不到
+        available -= Math.min(permits, capacity);
+        return available >= 0 ? 0L : (long) Math.ceil(-available / refillPerNano);
+    }
+
+    /**
+     * 归还预占但未使用的令牌
+     */
+    public synchronized void refund(long permits) {
+        if (capacity <= 0) {
+            return;
+        }
+        refill();
+        available = Math.min(capacity, available + Math.min(permits, capacity));
+    }
+
+    public synchronized long available() {
+        if (capacity <= 0) {
+            return -1L;
+        }
+        refill();
+        return (long) Math.floor(available);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
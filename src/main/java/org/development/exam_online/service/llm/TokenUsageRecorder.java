@@ -0,0 +1,99 @@
+package org.development.exam_online.service.llm;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.config.LLMConfig;
+import org.development.exam_online.dao.mapper.LLMTokenUsageMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 大模型 token 用量记录与每日预算
+ * <p>
+ * 用量按天、模型、考试累计到 llm_token_usage；当天已用量在内存中累加（跨天或重启时从表中读取），
+ * 达到 llm.daily-token-budget 后 {@link #withinBudget()} 返回 false，调用方改用规则报告。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenUsageRecorder {
+
+    private final LLMConfig llmConfig;
+    private final LLMTokenUsageMapper usageMapper;
+
+    private volatile LocalDate day;
+    private final AtomicLong usedToday = new AtomicLong();
+    private final AtomicLong overBudget = new AtomicLong();
+
+    /**
+     * 今天的用量是否仍在预算内；超出时计数
+     */
+    public boolean withinBudget() {
+        long budget = llmConfig.getDailyTokenBudget();
+        if (budget <= 0) {
+            return true;
+        }
+        if (today() < budget) {
+            return true;
+        }
+        overBudget.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * 记录一次调用的用量
+     *
+     * @param examId 考试ID，非考试报告传 null
+     */
+    public void record(Long examId, long promptTokens, long completionTokens) {
+        if (promptTokens <= 0 && completionTokens <= 0) {
+            return;
+        }
+        today();
+        usedToday.addAndGet(promptTokens + completionTokens);
+        try {
+            usageMapper.accumulate(LocalDate.now(), llmConfig.getDefaultModel(), examId != null ? examId : 0L,
+                    promptTokens, completionTokens);
+        } catch (Exception e) {
+            log.warn("记录大模型 token 用量失败", e);
+        }
+    }
+
+    public Map<String, Object> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long budget = llmConfig.getDailyTokenBudget();
+        long used = today();
+        result.put("usedToday", used);
+        result.put("dailyBudget", budget);
+        result.put("remainingToday", budget > 0 ? Math.max(budget - used, 0L) : -1L);
+        result.put("overBudgetFallbacks", overBudget.get());
+        return result;
+    }
+
+    /**
+     * 当天已用量；跨天后从表中重新读取
+     */
+    private long today() {
+        LocalDate now = LocalDate.now();
+        if (!now.equals(day)) {
+            synchronized (this) {
+                if (!now.equals(day)) {
+                    long used;
+                    try {
+                        used = usageMapper.sumTokensOfDay(now);
+                    } catch (Exception e) {
+                        log.warn("读取当天 token 用量失败", e);
+                        used = 0L;
+                    }
+                    usedToday.set(used);
+                    day = now;
+                }
+            }
+        }
+        return usedToday.get();
+    }
+}
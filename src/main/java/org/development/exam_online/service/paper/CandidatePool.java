@@ -0,0 +1,79 @@
+package org.development.exam_online.service.paper;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 某一题型在给定分类/知识点筛选下的候选题视图，按难度分组。
+ * 只持有题目序号及只读属性列，不包含题干、选项、答案等大字段。
+ */
+public final class CandidatePool {
+
+    private final Map<Integer, OrdinalPool> byDifficulty;
+    private final OrdinalPool all;
+    private final long[] ids;
+    private final double[] scores;
+    private final QuestionCandidateIndex.BucketKey[] keys;
+    /** 按实测难度分组时非空，0 表示该题没有实测难度 */
+    private final byte[] empiricalLevels;
+
+    CandidatePool(Map<Integer, OrdinalPool> byDifficulty, long[] ids, double[] scores,
+                  QuestionCandidateIndex.BucketKey[] keys, byte[] empiricalLevels) {
+        this.byDifficulty = byDifficulty;
+        this.all = OrdinalPool.concat(byDifficulty.values().toArray(new OrdinalPool[0]));
+        this.ids = ids;
+        this.scores = scores;
+        this.keys = keys;
+        this.empiricalLevels = empiricalLevels;
+    }
+
+    public boolean isEmpty() {
+        return all.isEmpty();
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    public Set<Integer> difficulties() {
+        return byDifficulty.keySet();
+    }
+
+    public OrdinalPool ofDifficulty(int difficulty) {
+        return byDifficulty.getOrDefault(difficulty, OrdinalPool.EMPTY);
+    }
+
+    public OrdinalPool all() {
+        return all;
+    }
+
+    public long idOf(int ordinal) {
+        return ids[ordinal];
+    }
+
+    public double scoreOf(int ordinal) {
+        return scores[ordinal];
+    }
+
+    /**
+     * 与分组一致的难度；题目在建池之后被删除时返回 null
+     */
+    public Integer difficultyOf(int ordinal) {
+        QuestionCandidateIndex.BucketKey key = keys[ordinal];
+        if (key == null) return null;
+        if (empiricalLevels != null && ordinal < empiricalLevels.length && empiricalLevels[ordinal] != 0) {
+            return (int) empiricalLevels[ordinal];
+        }
+        return key.difficulty();
+    }
+
+    public Long categoryIdOf(int ordinal) {
+        QuestionCandidateIndex.BucketKey key = keys[ordinal];
+        return key != null ? key.categoryId() : null;
+    }
+
+    public Long knowledgeIdOf(int ordinal) {
+        QuestionCandidateIndex.BucketKey key = keys[ordinal];
+        return key != null ? key.knowledgeId() : null;
+    }
+}
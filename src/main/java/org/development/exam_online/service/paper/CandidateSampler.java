@@ -0,0 +1,114 @@
+package org.development.exam_online.service.paper;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * 候选题无放回抽样
+ * <p>
+ * 采用"虚拟"Fisher–Yates 部分洗牌：只记录被交换过的位置，不复制、不打乱整个候选池，
+ * 抽取 k 道题的期望开销为 O(k)，与候选池大小无关（被排除的题目占比不高时）。
+ * 相同的随机源与相同的候选池得到相同的结果，因此可通过 randomSeed 复现组卷。
+ */
+public final class CandidateSampler {
+
+    private CandidateSampler() {}
+
+    /**
+     * 从候选池中抽取至多 count 个未被排除的序号
+     *
+     * @param pool     候选池
+     * @param count    需要的数量
+     * @param excluded 已排除的序号；抽中的序号会被写入该集合
+     * @param random   随机源
+     * @return 抽中的序号，按抽取顺序排列
+     */
+    public static int[] sample(OrdinalPool pool, int count, BitSet excluded, Random random) {
+        int n = pool.size();
+        if (n == 0 || count <= 0) {
+            return new int[0];
+        }
+        int[] picked = new int[Math.min(count, n)];
+        int pickedCount = 0;
+        SwapTable swaps = new SwapTable(Math.min(n, 2 * picked.length));
+
+        for (int i = 0; i < n && pickedCount < picked.length; i++) {
+            int j = i + random.nextInt(n - i);
+            int atJ = swaps.get(j);
+            swaps.put(j, swaps.get(i));
+            int ordinal = pool.get(atJ);
+            if (excluded.get(ordinal)) {
+                continue;
+            }
+            excluded.set(ordinal);
+            picked[pickedCount++] = ordinal;
+        }
+        return pickedCount == picked.length ? picked : Arrays.copyOf(picked, pickedCount);
+    }
+
+    /**
+     * 记录虚拟数组中被交换过的位置（开放寻址，int→int），未记录的位置值等于下标
+     */
+    private static final class SwapTable {
+
+        private int[] keys;
+        private int[] values;
+        private int size;
+
+        SwapTable(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, -1);
+        }
+
+        int get(int key) {
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                int k = keys[slot];
+                if (k == key) return values[slot];
+                if (k == -1) return key;
+            }
+        }
+
+        void put(int key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                int k = keys[slot];
+                if (k == key) {
+                    values[slot] = value;
+                    return;
+                }
+                if (k == -1) {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    size++;
+                    return;
+                }
+            }
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            Arrays.fill(keys, -1);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.development.exam_online.service.paper;
+
+import java.util.Arrays;
+
+/**
+ * 候选题序号池：由若干只读的 int[] 分段拼接而成，避免为组卷复制候选集合。
+ * 序号（ordinal）是题目在 {@link QuestionCandidateIndex} 中的紧凑编号。
+ */
+public final class OrdinalPool {
+
+    static final OrdinalPool EMPTY = new OrdinalPool(new int[0][]);
+
+    private final int[][] segments;
+    private final int[] offsets;
+    private final int size;
+
+    OrdinalPool(int[][] segments) {
+        // 丢弃空分段，保证 offsets 严格递增
+        this.segments = Arrays.stream(segments).filter(seg -> seg.length > 0).toArray(int[][]::new);
+        this.offsets = new int[this.segments.length];
+        int total = 0;
+        for (int i = 0; i < this.segments.length; i++) {
+            offsets[i] = total;
+            total += this.segments[i].length;
+        }
+        this.size = total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按虚拟下标取序号，O(log 分段数)
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " out of " + size);
+        }
+        int seg = Arrays.binarySearch(offsets, index);
+        if (seg < 0) {
+            seg = -seg - 2;
+        }
+        return segments[seg][index - offsets[seg]];
+    }
+
+    public int[] toArray() {
+        int[] result = new int[size];
+        for (int i = 0; i < segments.length; i++) {
+            System.arraycopy(segments[i], 0, result, offsets[i], segments[i].length);
+        }
+        return result;
+    }
+
+    static OrdinalPool concat(OrdinalPool... pools) {
+        int count = 0;
+        for (OrdinalPool p : pools) {
+            count += p.segments.length;
+        }
+        int[][] merged = new int[count][];
+        int i = 0;
+        for (OrdinalPool p : pools) {
+            for (int[] seg : p.segments) {
+                merged[i++] = seg;
+            }
+        }
+        return new OrdinalPool(merged);
+    }
+}
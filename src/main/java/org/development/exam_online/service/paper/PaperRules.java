@@ -0,0 +1,95 @@
+package org.development.exam_online.service.paper;
+
+import org.development.exam_online.dao.dto.AutoGeneratePaperRule;
+
+import java.util.*;
+
+/**
+ * 组卷规则的公共计算：难度题量分配、单题型抽题。试卷自动组卷与考生随机抽题共用。
+ */
+public final class PaperRules {
+
+    private PaperRules() {}
+
+    /**
+     * 按难度模式计算每个难度需要的题量
+     *
+     * @return 难度 -> 题量；未设置难度模式时返回 null 表示不限制难度
+     */
+    public static Map<Integer, Integer> difficultyNeeds(AutoGeneratePaperRule rule, int totalCount) {
+        if (rule.getDifficultyMode() == null) {
+            return null; // 不限制难度
+        }
+
+        Map<Integer, Integer> needs = new HashMap<>();
+
+        if (rule.getDifficultyMode() == AutoGeneratePaperRule.DifficultyMode.QUOTA) {
+            Map<Integer, Integer> quota = rule.getDifficultyQuota();
+            if (quota != null) {
+                needs.putAll(quota);
+            }
+        } else if (rule.getDifficultyMode() == AutoGeneratePaperRule.DifficultyMode.RATIO) {
+            Map<Integer, Double> ratio = rule.getDifficultyRatio();
+            if (ratio != null) {
+                int assigned = 0;
+                List<Map.Entry<Integer, Double>> entries = new ArrayList<>(ratio.entrySet());
+                for (int i = 0; i < entries.size(); i++) {
+                    Map.Entry<Integer, Double> e = entries.get(i);
+                    int count;
+                    if (i == entries.size() - 1) {
+                        count = totalCount - assigned;
+                    } else {
+                        count = (int) Math.round(totalCount * e.getValue());
+                    }
+                    if (count > 0) {
+                        needs.put(e.getKey(), count);
+                        assigned += count;
+                    }
+                }
+            }
+        }
+
+        return needs;
+    }
+
+    /**
+     * 从一个题型的候选池中抽题：先按难度分配抽取，不足部分从该题型其余题目中补齐
+     *
+     * @param excluded 已排除的序号；抽中的序号会被写入
+     * @return 抽中的序号
+     */
+    public static List<Integer> drawType(CandidatePool candidates, Map<Integer, Integer> difficultyNeeds,
+                                         int requiredCount, BitSet excluded, Random random) {
+        List<Integer> selected = new ArrayList<>();
+
+        if (difficultyNeeds != null && !difficultyNeeds.isEmpty()) {
+            // 按难度分配
+            int totalShortage = 0;
+
+            for (Map.Entry<Integer, Integer> dEntry : difficultyNeeds.entrySet()) {
+                int difficulty = dEntry.getKey();
+                int need = dEntry.getValue();
+                int[] picked = CandidateSampler.sample(candidates.ofDifficulty(difficulty), need, excluded, random);
+                for (int ordinal : picked) {
+                    selected.add(ordinal);
+                }
+
+                if (picked.length < need) {
+                    totalShortage += (need - picked.length);
+                }
+            }
+
+            // 不足的情况：从该题型其余未选题目中补齐
+            if (totalShortage > 0) {
+                for (int ordinal : CandidateSampler.sample(candidates.all(), totalShortage, excluded, random)) {
+                    selected.add(ordinal);
+                }
+            }
+        } else {
+            for (int ordinal : CandidateSampler.sample(candidates.all(), requiredCount, excluded, random)) {
+                selected.add(ordinal);
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,471 @@
+package org.development.exam_online.service.paper;
+
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.common.exception.BusinessException;
+import org.development.exam_online.common.exception.ErrorCode;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 约束组卷求解器（模拟退火）
+ * <p>
+ * 硬约束：各题型题量、排除题目、同题型内不重复——由解的结构直接保证；
+ * 软约束：总分目标、各题型难度分布、知识点覆盖、分类均衡——按权重计入代价，代价为 0 即全部满足。
+ * <p>
+ * 多条退火链并行搜索，在时间预算内返回代价最低的解，并列出未能满足（被放宽）的约束。
+ * 指定随机种子且在预算内跑完全部迭代时，结果可复现。
+ * 求解线程池满时直接拒绝请求，不在调用方（请求）线程上运行退火；
+ * 调用方被中断或某条链失败时取消其余链，退火链响应中断后提前结束。
+ */
+@Slf4j
+public final class PaperSolver {
+
+    public static final long DEFAULT_TIME_BUDGET_MS = 2000L;
+    public static final long MAX_TIME_BUDGET_MS = 10000L;
+
+    private static final int ITERATIONS_PER_CHAIN = 200_000;
+    private static final double START_TEMPERATURE = 10.0;
+    private static final double END_TEMPERATURE = 0.01;
+
+    private static final double WEIGHT_SCORE = 1.0;
+    private static final double WEIGHT_DIFFICULTY = 2.0;
+    private static final double WEIGHT_COVERAGE = 10.0;
+    private static final double WEIGHT_CATEGORY = 1.0;
+    private static final double EPS = 1e-6;
+
+    private static final int CHAINS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ThreadPoolExecutor SOLVER_EXECUTOR = new ThreadPoolExecutor(
+            CHAINS,
+            CHAINS,
+            60L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(64),
+            new ThreadFactory() {
+                private final AtomicInteger threadNumber = new AtomicInteger(1);
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "paper-solver-" + threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            },
+            new ThreadPoolExecutor.AbortPolicy()
+    );
+
+    /**
+     * 单个题型的出题要求
+     *
+     * @param typeCode        题型代码
+     * @param typeLabel       题型名称，用于提示信息
+     * @param pool            该题型候选池
+     * @param count           需要的题量
+     * @param fixedScore      每题分值，为空时使用题目自身分值
+     * @param difficultyNeeds 各难度需要的题量，为空表示不限制难度
+     */
+    public record TypeSlot(String typeCode, String typeLabel, CandidatePool pool, int count,
+                           Double fixedScore, Map<Integer, Integer> difficultyNeeds) {}
+
+    /**
+     * @param slots                题型要求
+     * @param excluded             禁止选用的题目序号
+     * @param targetTotalScore     目标总分，为空表示不限制
+     * @param coverKnowledgeIds    需要至少各出一题的知识点，为空表示不限制
+     * @param balanceCategoryIds   需要均衡出题的分类，为空表示不限制
+     * @param timeBudgetMs         时间预算
+     * @param seed                 随机种子，为空时随机
+     */
+    public record Problem(List<TypeSlot> slots, BitSet excluded, Double targetTotalScore,
+                          List<Long> coverKnowledgeIds, List<Long> balanceCategoryIds,
+                          long timeBudgetMs, Long seed) {}
+
+    /**
+     * 被放宽的约束
+     *
+     * @param constraint 约束类型：COUNT / TOTAL_SCORE / DIFFICULTY / KNOWLEDGE_COVERAGE / CATEGORY_BALANCE
+     */
+    public record Relaxation(String constraint, String message) {}
+
+    /**
+     * @param picks      与 slots 一一对应，每个题型选中的题目序号
+     * @param totalScore 选中题目总分
+     */
+    public record Solution(List<int[]> picks, double totalScore, double cost, List<Relaxation> relaxations,
+                           long iterations, int chains, long elapsedMs) {}
+
+    private PaperSolver() {}
+
+    public static Solution solve(Problem problem) {
+        long start = System.currentTimeMillis();
+        long budget = problem.timeBudgetMs() > 0
+                ? Math.min(problem.timeBudgetMs(), MAX_TIME_BUDGET_MS) : DEFAULT_TIME_BUDGET_MS;
+        long deadline = start + budget;
+        Model model = new Model(problem);
+        long baseSeed = problem.seed() != null ? problem.seed() : new Random().nextLong();
+
+        List<Future<Chain>> futures = new ArrayList<>(CHAINS);
+        try {
+            for (int i = 0; i < CHAINS; i++) {
+                long chainSeed = baseSeed + i * 0x9E3779B97F4A7C15L;
+                futures.add(SOLVER_EXECUTOR.submit(() -> new Chain(model, new Random(chainSeed)).run(deadline)));
+            }
+        } catch (RejectedExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            log.warn("组卷求解线程池已满，拒绝本次请求");
+            throw new BusinessException(ErrorCode.AUTO_GENERATE_SOLVER_BUSY);
+        }
+
+        // 按链序号取最优，代价相同时取序号小的，保证可复现
+        Chain best = null;
+        long iterations = 0;
+        for (Future<Chain> future : futures) {
+            Chain chain;
+            try {
+                chain = future.get();
+            } catch (InterruptedException e) {
+                futures.forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("组卷求解被中断", e);
+            } catch (ExecutionException e) {
+                futures.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("组卷求解失败", e.getCause());
+            }
+            iterations += chain.iterations;
+            if (best == null || chain.bestCost < best.bestCost - EPS) {
+                best = chain;
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("约束组卷完成，代价：{}，迭代：{}，耗时：{}ms", best.bestCost, iterations, elapsed);
+        return model.toSolution(best, iterations, CHAINS, elapsed);
+    }
+
+    /**
+     * 求解用的只读数据：每个题型的候选题属性展开成以局部下标访问的数组
+     */
+    private static final class Model {
+
+        final Problem problem;
+        final int slotCount;
+        final int[][] ordinals;
+        final double[][] scores;
+        final int[][] difficulties;
+        final int[][] knowledge;
+        final int[][] categories;
+        final int[] counts;
+        /** 各题型各难度（稠密下标）需要的题量，不限制难度的题型为 null */
+        final int[][] difficultyNeeds;
+        final int[] difficultyLevels;
+        final List<Long> knowledgeIds;
+        final List<Long> categoryIds;
+        final double categoryIdeal;
+        final Double target;
+
+        Model(Problem problem) {
+            this.problem = problem;
+            List<TypeSlot> slots = problem.slots();
+            this.slotCount = slots.size();
+            this.target = problem.targetTotalScore();
+            this.knowledgeIds = problem.coverKnowledgeIds() != null ? problem.coverKnowledgeIds() : List.of();
+            this.categoryIds = problem.balanceCategoryIds() != null ? problem.balanceCategoryIds() : List.of();
+            Map<Long, Integer> knowledgeIndex = denseIndex(knowledgeIds);
+            Map<Long, Integer> categoryIndex = denseIndex(categoryIds);
+
+            TreeSet<Integer> levels = new TreeSet<>();
+            for (TypeSlot slot : slots) {
+                levels.addAll(slot.pool().difficulties());
+                if (slot.difficultyNeeds() != null) {
+                    levels.addAll(slot.difficultyNeeds().keySet());
+                }
+            }
+            this.difficultyLevels = levels.stream().mapToInt(Integer::intValue).toArray();
+
+            ordinals = new int[slotCount][];
+            scores = new double[slotCount][];
+            difficulties = new int[slotCount][];
+            knowledge = new int[slotCount][];
+            categories = new int[slotCount][];
+            counts = new int[slotCount];
+            difficultyNeeds = new int[slotCount][];
+            int totalCount = 0;
+
+            for (int t = 0; t < slotCount; t++) {
+                TypeSlot slot = slots.get(t);
+                CandidatePool pool = slot.pool();
+                int[] ord = pool.all().toArray();
+                int[] level = new int[ord.length];
+                int n = 0;
+                for (int ordinal : ord) {
+                    if (problem.excluded() != null && problem.excluded().get(ordinal)) continue;
+                    // 建池后被删除或修改了难度的题目跳过
+                    Integer difficulty = pool.difficultyOf(ordinal);
+                    int d = difficulty != null ? Arrays.binarySearch(difficultyLevels, difficulty) : -1;
+                    if (d < 0) continue;
+                    level[n] = d;
+                    ord[n++] = ordinal;
+                }
+                ordinals[t] = Arrays.copyOf(ord, n);
+                scores[t] = new double[n];
+                difficulties[t] = Arrays.copyOf(level, n);
+                knowledge[t] = new int[n];
+                categories[t] = new int[n];
+                for (int i = 0; i < n; i++) {
+                    int ordinal = ordinals[t][i];
+                    scores[t][i] = slot.fixedScore() != null ? slot.fixedScore() : pool.scoreOf(ordinal);
+                    knowledge[t][i] = knowledgeIndex.getOrDefault(pool.knowledgeIdOf(ordinal), -1);
+                    categories[t][i] = categoryIndex.getOrDefault(pool.categoryIdOf(ordinal), -1);
+                }
+                counts[t] = Math.min(slot.count(), n);
+                totalCount += counts[t];
+
+                if (slot.difficultyNeeds() != null && !slot.difficultyNeeds().isEmpty()) {
+                    difficultyNeeds[t] = new int[difficultyLevels.length];
+                    for (Map.Entry<Integer, Integer> e : slot.difficultyNeeds().entrySet()) {
+                        difficultyNeeds[t][Arrays.binarySearch(difficultyLevels, e.getKey())] = e.getValue();
+                    }
+                }
+            }
+            this.categoryIdeal = categoryIds.isEmpty() ? 0 : (double) totalCount / categoryIds.size();
+        }
+
+        Solution toSolution(Chain chain, long iterations, int chains, long elapsedMs) {
+            List<int[]> picks = new ArrayList<>(slotCount);
+            for (int t = 0; t < slotCount; t++) {
+                int[] local = chain.best[t];
+                int[] result = new int[local.length];
+                for (int i = 0; i < local.length; i++) {
+                    result[i] = ordinals[t][local[i]];
+                }
+                picks.add(result);
+            }
+            Chain view = chain.replayBest();
+            return new Solution(picks, view.total, chain.bestCost, relaxations(view), iterations, chains, elapsedMs);
+        }
+
+        private List<Relaxation> relaxations(Chain state) {
+            List<Relaxation> result = new ArrayList<>();
+            for (int t = 0; t < slotCount; t++) {
+                TypeSlot slot = problem.slots().get(t);
+                if (counts[t] < slot.count()) {
+                    result.add(new Relaxation("COUNT", String.format("题型【%s】需要%d道题，但只找到%d道可用题目",
+                            slot.typeLabel(), slot.count(), counts[t])));
+                }
+                if (difficultyNeeds[t] != null) {
+                    for (int d = 0; d < difficultyLevels.length; d++) {
+                        if (state.difficultyCount[t][d] != difficultyNeeds[t][d]) {
+                            result.add(new Relaxation("DIFFICULTY", String.format("题型【%s】难度%d需要%d道题，实际%d道",
+                                    slot.typeLabel(), difficultyLevels[d], difficultyNeeds[t][d],
+                                    state.difficultyCount[t][d])));
+                        }
+                    }
+                }
+            }
+            if (target != null && Math.abs(state.total - target) > EPS) {
+                result.add(new Relaxation("TOTAL_SCORE", String.format("目标总分%s分，实际总分%s分",
+                        formatScore(target), formatScore(state.total))));
+            }
+            for (int k = 0; k < knowledgeIds.size(); k++) {
+                if (state.knowledgeCount[k] == 0) {
+                    result.add(new Relaxation("KNOWLEDGE_COVERAGE",
+                            String.format("知识点（ID：%d）未被覆盖", knowledgeIds.get(k))));
+                }
+            }
+            if (state.categoryCount.length > 1
+                    && Arrays.stream(state.categoryCount).max().getAsInt()
+                    - Arrays.stream(state.categoryCount).min().getAsInt() > 1) {
+                Map<Long, Integer> distribution = new LinkedHashMap<>();
+                for (int c = 0; c < categoryIds.size(); c++) {
+                    distribution.put(categoryIds.get(c), state.categoryCount[c]);
+                }
+                result.add(new Relaxation("CATEGORY_BALANCE", "分类题量未能均衡分布：" + distribution));
+            }
+            return result;
+        }
+
+        private static Map<Long, Integer> denseIndex(List<Long> ids) {
+            Map<Long, Integer> index = new HashMap<>();
+            for (Long id : ids) {
+                index.putIfAbsent(id, index.size());
+            }
+            return index;
+        }
+
+        private static String formatScore(double score) {
+            return java.math.BigDecimal.valueOf(score).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    /**
+     * 一条退火链：当前解及其增量维护的统计量
+     */
+    private static final class Chain {
+
+        final Model m;
+        final Random random;
+
+        final int[][] current;
+        final boolean[][] inUse;
+        final int[][] difficultyCount;
+        final int[] knowledgeCount;
+        final int[] categoryCount;
+        double total;
+        int difficultyDeviation;
+        int uncovered;
+        double categoryDeviation;
+
+        int[][] best;
+        double bestCost = Double.MAX_VALUE;
+        long iterations;
+
+        Chain(Model m, Random random) {
+            this.m = m;
+            this.random = random;
+            current = new int[m.slotCount][];
+            inUse = new boolean[m.slotCount][];
+            difficultyCount = new int[m.slotCount][m.difficultyLevels.length];
+            knowledgeCount = new int[m.knowledgeIds.size()];
+            categoryCount = new int[m.categoryIds.size()];
+            // 空解时的偏差：所有需求均未满足
+            uncovered = knowledgeCount.length;
+            categoryDeviation = m.categoryIdeal * categoryCount.length;
+            for (int[] needs : m.difficultyNeeds) {
+                if (needs != null) {
+                    difficultyDeviation += Arrays.stream(needs).sum();
+                }
+            }
+        }
+
+        Chain run(long deadline) {
+            initRandom();
+            recordBest();
+            double cost = cost();
+            double cooling = Math.log(END_TEMPERATURE / START_TEMPERATURE);
+
+            while (m.slotCount > 0 && iterations < ITERATIONS_PER_CHAIN && bestCost > EPS) {
+                if ((iterations & 1023) == 0
+                        && (System.currentTimeMillis() >= deadline || Thread.currentThread().isInterrupted())) {
+                    break;
+                }
+                iterations++;
+                int t = random.nextInt(m.slotCount);
+                if (m.counts[t] == 0 || m.counts[t] == m.ordinals[t].length) {
+                    continue;
+                }
+                int pos = random.nextInt(m.counts[t]);
+                int incoming = random.nextInt(m.ordinals[t].length);
+                if (inUse[t][incoming]) {
+                    continue;
+                }
+                int outgoing = current[t][pos];
+                swap(t, pos, outgoing, incoming);
+                double next = cost();
+                double delta = next - cost;
+                double temperature = START_TEMPERATURE * Math.exp(cooling * iterations / ITERATIONS_PER_CHAIN);
+                if (delta <= 0 || random.nextDouble() < Math.exp(-delta / temperature)) {
+                    cost = next;
+                    if (cost < bestCost - EPS) {
+                        recordBest();
+                    }
+                } else {
+                    swap(t, pos, incoming, outgoing);
+                }
+            }
+            return this;
+        }
+
+        /**
+         * 按最优解重新统计，供生成放宽说明使用
+         */
+        Chain replayBest() {
+            Chain view = new Chain(m, random);
+            for (int t = 0; t < m.slotCount; t++) {
+                view.current[t] = best[t].clone();
+                view.inUse[t] = new boolean[m.ordinals[t].length];
+                for (int local : view.current[t]) {
+                    view.inUse[t][local] = true;
+                    view.add(t, local, 1);
+                }
+            }
+            return view;
+        }
+
+        private void initRandom() {
+            for (int t = 0; t < m.slotCount; t++) {
+                int n = m.ordinals[t].length;
+                inUse[t] = new boolean[n];
+                current[t] = new int[m.counts[t]];
+                // 部分洗牌取初始解
+                int[] perm = new int[n];
+                for (int i = 0; i < n; i++) perm[i] = i;
+                for (int i = 0; i < m.counts[t]; i++) {
+                    int j = i + random.nextInt(n - i);
+                    int tmp = perm[i];
+                    perm[i] = perm[j];
+                    perm[j] = tmp;
+                    current[t][i] = perm[i];
+                    inUse[t][perm[i]] = true;
+                    add(t, perm[i], 1);
+                }
+            }
+        }
+
+        private void swap(int t, int pos, int outgoing, int incoming) {
+            add(t, outgoing, -1);
+            inUse[t][outgoing] = false;
+            current[t][pos] = incoming;
+            inUse[t][incoming] = true;
+            add(t, incoming, 1);
+        }
+
+        /**
+         * 增减一道题，同步维护各项偏差
+         */
+        private void add(int t, int local, int sign) {
+            total += sign * m.scores[t][local];
+
+            int d = m.difficulties[t][local];
+            if (m.difficultyNeeds[t] != null) {
+                int need = m.difficultyNeeds[t][d];
+                difficultyDeviation -= Math.abs(difficultyCount[t][d] - need);
+                difficultyCount[t][d] += sign;
+                difficultyDeviation += Math.abs(difficultyCount[t][d] - need);
+            } else {
+                difficultyCount[t][d] += sign;
+            }
+
+            int k = m.knowledge[t][local];
+            if (k >= 0) {
+                if (sign > 0 && knowledgeCount[k]++ == 0) uncovered--;
+                if (sign < 0 && --knowledgeCount[k] == 0) uncovered++;
+            }
+
+            int c = m.categories[t][local];
+            if (c >= 0) {
+                categoryDeviation -= Math.abs(categoryCount[c] - m.categoryIdeal);
+                categoryCount[c] += sign;
+                categoryDeviation += Math.abs(categoryCount[c] - m.categoryIdeal);
+            }
+        }
+
+        private double cost() {
+            double cost = WEIGHT_DIFFICULTY * difficultyDeviation
+                    + WEIGHT_COVERAGE * uncovered
+                    + WEIGHT_CATEGORY * categoryDeviation;
+            if (m.target != null) {
+                cost += WEIGHT_SCORE * Math.abs(total - m.target);
+            }
+            return cost;
+        }
+
+        private void recordBest() {
+            bestCost = cost();
+            best = new int[m.slotCount][];
+            for (int t = 0; t < m.slotCount; t++) {
+                best[t] = current[t].clone();
+            }
+        }
+    }
+}
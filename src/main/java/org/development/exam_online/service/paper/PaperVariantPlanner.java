@@ -0,0 +1,288 @@
+package org.development.exam_online.service.paper;
+
+import java.util.*;
+
+/**
+ * 多套等价试卷（AB卷）规划
+ * <p>
+ * 每个题型、每个难度的候选题按种子打乱后首尾相接，第 v 套试卷取其中第 v 段；
+ * 候选题不够分时每绕一轮重新打乱一次，使重复题分散到不同的试卷对之间。
+ * 各套试卷的题型/难度结构完全相同，候选题充足时互不重复。
+ * <p>
+ * 各套试卷依次组装：每段先取尚未被前面试卷用过的题，不够时再取重复题，
+ * 重复题优先取被较少试卷用过的，且只在与每套已组装试卷的相同题数都未达到上限时才会选用，上限在选题时即生效。
+ */
+public final class PaperVariantPlanner {
+
+    /**
+     * @param variants          每套试卷、每个题型选中的题目序号，variants[v][t]
+     * @param maxShared         任意两套试卷之间相同题目数的最大值
+     * @param shortages         每套试卷各题型缺少的题量，shortages[v][t]
+     * @param limitedByOverlap  是否有题型因相同题数上限而未能选满
+     */
+    public record Plan(int[][][] variants, int maxShared, int[][] shortages, boolean limitedByOverlap) {}
+
+    private PaperVariantPlanner() {}
+
+    /**
+     * @param maxSharedQuestions 任意两套试卷相同题目数上限，为空表示不限制
+     */
+    public static Plan plan(List<PaperSolver.TypeSlot> slots, BitSet excluded, int variantCount,
+                            Integer maxSharedQuestions, long seed) {
+        Random random = new Random(seed);
+        int slotCount = slots.size();
+        // 各题型按难度分组的候选序列，以及用于补足的全题型序列
+        List<List<Sequence>> groups = new ArrayList<>(slotCount);
+        Sequence[] fallback = new Sequence[slotCount];
+        for (int t = 0; t < slotCount; t++) {
+            PaperSolver.TypeSlot slot = slots.get(t);
+            List<Sequence> slotGroups = new ArrayList<>();
+            Map<Integer, Integer> difficultyNeeds = slot.difficultyNeeds();
+            if (difficultyNeeds != null && !difficultyNeeds.isEmpty()) {
+                for (Map.Entry<Integer, Integer> e : new TreeMap<>(difficultyNeeds).entrySet()) {
+                    slotGroups.add(new Sequence(slot.pool().ofDifficulty(e.getKey()), excluded,
+                            e.getValue(), variantCount, random));
+                }
+            } else {
+                slotGroups.add(new Sequence(slot.pool().all(), excluded, slot.count(), variantCount, random));
+            }
+            fallback[t] = new Sequence(slot.pool().all(), excluded, slot.count(), variantCount, random);
+            groups.add(slotGroups);
+        }
+
+        int limit = maxSharedQuestions != null ? Math.max(0, maxSharedQuestions) : Integer.MAX_VALUE;
+        Plan plan = assemble(slots, groups, fallback, new Overlap(variantCount, limit, false));
+        if (plan.limitedByOverlap()) {
+            // 前面的试卷尽量不重复会把新题用光，后面的试卷只能与少数几套大量重复；改为把新题均摊到各套试卷再试一次
+            Plan rationed = assemble(slots, groups, fallback, new Overlap(variantCount, limit, true));
+            if (!rationed.limitedByOverlap()) {
+                return rationed;
+            }
+        }
+        return plan;
+    }
+
+    private static Plan assemble(List<PaperSolver.TypeSlot> slots, List<List<Sequence>> groups,
+                                 Sequence[] fallback, Overlap overlap) {
+        int variantCount = overlap.used.length;
+        int slotCount = slots.size();
+        int[][][] variants = new int[variantCount][][];
+        int[][] shortages = new int[variantCount][slotCount];
+        boolean limitedByOverlap = false;
+        for (int v = 0; v < variantCount; v++) {
+            variants[v] = new int[slotCount][];
+            for (int t = 0; t < slotCount; t++) {
+                int count = slots.get(t).count();
+                overlap.rejected = false;
+                Set<Integer> chosen = new LinkedHashSet<>();
+                for (Sequence group : groups.get(t)) {
+                    group.take(v, group.need, chosen, count, overlap);
+                }
+                // 按难度取不足时，从该题型全部候选中补足
+                if (chosen.size() < count) {
+                    fallback[t].take(v, count - chosen.size(), chosen, count, overlap);
+                }
+                variants[v][t] = chosen.stream().mapToInt(Integer::intValue).toArray();
+                shortages[v][t] = count - chosen.size();
+                if (shortages[v][t] > 0 && overlap.rejected) {
+                    limitedByOverlap = true;
+                }
+            }
+        }
+        return new Plan(variants, maxShared(variants), shortages, limitedByOverlap);
+    }
+
+    /**
+     * 已组装试卷的选题及两两之间的相同题数
+     */
+    private static final class Overlap {
+
+        final int limit;
+        /** 为 true 时每套试卷只取分摊给它的新题，其余用重复题补足 */
+        final boolean rationFresh;
+        final BitSet[] used;
+        final int[][] shared;
+        /** 当前题型选题时是否有候选题因相同题数上限被跳过 */
+        boolean rejected;
+
+        Overlap(int variantCount, int limit, boolean rationFresh) {
+            this.limit = limit;
+            this.rationFresh = rationFresh;
+            this.used = new BitSet[variantCount];
+            for (int v = 0; v < variantCount; v++) {
+                used[v] = new BitSet();
+            }
+            this.shared = new int[variantCount][variantCount];
+        }
+
+        /**
+         * 前 v 套试卷中用过该题的套数
+         */
+        int usedCount(int ordinal, int v) {
+            int n = 0;
+            for (int u = 0; u < v; u++) {
+                if (used[u].get(ordinal)) n++;
+            }
+            return n;
+        }
+
+        /**
+         * 选用重复题的代价：先比较被用过的套数，再比较与这些试卷已有的最大相同题数
+         */
+        long cost(int ordinal, int v) {
+            int count = 0;
+            int maxShared = 0;
+            for (int u = 0; u < v; u++) {
+                if (used[u].get(ordinal)) {
+                    count++;
+                    maxShared = Math.max(maxShared, shared[u][v]);
+                }
+            }
+            return ((long) count << 32) | maxShared;
+        }
+
+        boolean allowed(int ordinal, int v) {
+            for (int u = 0; u < v; u++) {
+                if (used[u].get(ordinal) && shared[u][v] >= limit) {
+                    rejected = true;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void add(int ordinal, int v) {
+            for (int u = 0; u < v; u++) {
+                if (used[u].get(ordinal)) shared[u][v]++;
+            }
+            used[v].set(ordinal);
+        }
+    }
+
+    /**
+     * 首尾相接的候选序列，每一轮是同一批候选题的不同排列
+     */
+    private static final class Sequence {
+
+        final int need;
+        final int length;
+        final int[][] rounds;
+
+        Sequence(OrdinalPool pool, BitSet excluded, int need, int variantCount, Random random) {
+            int[] base = pool.toArray();
+            int n = 0;
+            for (int ordinal : base) {
+                if (excluded == null || !excluded.get(ordinal)) {
+                    base[n++] = ordinal;
+                }
+            }
+            this.need = need;
+            this.length = n;
+            int roundCount = n == 0 ? 0 : (int) Math.min(variantCount, ((long) variantCount * need + n - 1) / n + 1);
+            this.rounds = new int[roundCount][];
+            for (int r = 0; r < roundCount; r++) {
+                int[] arr = Arrays.copyOf(base, n);
+                for (int i = n - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int tmp = arr[i];
+                    arr[i] = arr[j];
+                    arr[j] = tmp;
+                }
+                rounds[r] = arr;
+            }
+        }
+
+        /**
+         * 从第 v 段开始取题，跳过本套已选的题目：先取前面试卷未用过的，
+         * 不够时逐题选取重复代价最低的重复题（被用过的套数最少，其次与已有试卷的相同题数最少）
+         */
+        void take(int v, int count, Set<Integer> chosen, int limit, Overlap overlap) {
+            if (length == 0 || count <= 0) return;
+            long start = (long) v * need;
+            int[] round = rounds[(int) ((start / length) % rounds.length)];
+            int fresh = count;
+            if (overlap.rationFresh && v > 0) {
+                int unused = 0;
+                for (int ordinal : round) {
+                    if (!chosen.contains(ordinal) && overlap.usedCount(ordinal, v) == 0) unused++;
+                }
+                int remaining = overlap.used.length - v;
+                int maxRepeated = (int) Math.min(count, (long) v * overlap.limit);
+                fresh = Math.min(count, Math.max((unused + remaining - 1) / remaining, count - maxRepeated));
+            }
+            int taken = takeFresh(v, fresh, chosen, limit, overlap, start, round);
+            taken += takeRepeated(v, count - taken, chosen, limit, overlap, start, round);
+            // 重复题受上限限制取不满时，超出分摊的新题也可以用
+            takeFresh(v, count - taken, chosen, limit, overlap, start, round);
+        }
+
+        private int takeFresh(int v, int count, Set<Integer> chosen, int limit, Overlap overlap,
+                              long start, int[] round) {
+            int taken = 0;
+            for (long p = start; p < start + length + count && taken < count && chosen.size() < limit; p++) {
+                int r = (int) ((p / length) % rounds.length);
+                taken += tryTake(rounds[r][(int) (p % length)], v, chosen, overlap) ? 1 : 0;
+            }
+            // 跨轮的两段排列不同，可能漏看个别候选题，按一整轮再补看一遍
+            for (int i = 0; i < length && taken < count && chosen.size() < limit; i++) {
+                taken += tryTake(round[i], v, chosen, overlap) ? 1 : 0;
+            }
+            return taken;
+        }
+
+        private int takeRepeated(int v, int count, Set<Integer> chosen, int limit, Overlap overlap,
+                                 long start, int[] round) {
+            int taken = 0;
+            while (taken < count && chosen.size() < limit) {
+                int best = -1;
+                long bestCost = Long.MAX_VALUE;
+                for (int i = 0; i < length; i++) {
+                    int ordinal = round[(int) ((start + i) % length)];
+                    if (chosen.contains(ordinal) || !overlap.allowed(ordinal, v)) continue;
+                    long cost = overlap.cost(ordinal, v);
+                    if (cost == 0) continue; // 新题，留给分摊之外的补足
+                    if (cost < bestCost) {
+                        best = ordinal;
+                        bestCost = cost;
+                    }
+                }
+                if (best < 0) break;
+                chosen.add(best);
+                overlap.add(best, v);
+                taken++;
+            }
+            return taken;
+        }
+
+        /**
+         * 只取前面试卷未用过的题
+         */
+        private static boolean tryTake(int ordinal, int v, Set<Integer> chosen, Overlap overlap) {
+            if (chosen.contains(ordinal) || overlap.usedCount(ordinal, v) > 0) return false;
+            chosen.add(ordinal);
+            overlap.add(ordinal, v);
+            return true;
+        }
+    }
+
+    private static int maxShared(int[][][] variants) {
+        BitSet[] sets = new BitSet[variants.length];
+        for (int v = 0; v < variants.length; v++) {
+            sets[v] = new BitSet();
+            for (int[] picks : variants[v]) {
+                for (int ordinal : picks) {
+                    sets[v].set(ordinal);
+                }
+            }
+        }
+        int max = 0;
+        for (int a = 0; a < sets.length; a++) {
+            for (int b = a + 1; b < sets.length; b++) {
+                BitSet shared = (BitSet) sets[a].clone();
+                shared.and(sets[b]);
+                max = Math.max(max, shared.cardinality());
+            }
+        }
+        return max;
+    }
+}
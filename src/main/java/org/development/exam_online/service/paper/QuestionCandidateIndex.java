@@ -0,0 +1,496 @@
+package org.development.exam_online.service.paper;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.dao.entity.Question;
+import org.development.exam_online.dao.entity.QuestionStats;
+import org.development.exam_online.dao.mapper.QuestionMapper;
+import org.development.exam_online.dao.mapper.QuestionStatsMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.CollectionUtils;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 组卷候选题内存索引
+ * <p>
+ * 按（题型, 难度, 分类, 知识点）分桶，每个桶只保存题目序号的 int[]；
+ * 题目ID、分值、难度以序号为下标存放在基本类型数组中。
+ * 组卷时只在索引上抽样，最后仅按选中的ID回表加载题目详情。
+ * <p>
+ * 首次使用时从数据库加载未删除题目的轻量投影，之后由题目增删改在事务提交后增量维护；
+ * 全量加载期间收到的变更先记下，加载完成后重放，避免被加载结果覆盖。
+ * 题目的实测难度（question_stats）作为单独一列保存，组卷规则要求按实测难度抽题时，
+ * 有实测难度的题目按实测难度分组，其余仍按题目设置的难度。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuestionCandidateIndex {
+
+    /** 题目未设置难度时按"普通"处理，与组卷逻辑保持一致 */
+    private static final int DEFAULT_DIFFICULTY = 2;
+
+    private final QuestionMapper questionMapper;
+    private final QuestionStatsMapper questionStatsMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean loaded = false;
+
+    /** 全量加载期间收到变更的题目ID，加载完成后重放；为 null 表示没有加载在进行 */
+    private Set<Long> pendingChanges;
+    private final Object pendingLock = new Object();
+
+    // 以序号为下标的属性列；交给候选池后视为只读，之后的修改先复制（见 unshareColumns）
+    private long[] ids = new long[0];
+    private double[] scores = new double[0];
+    private BucketKey[] keys = new BucketKey[0];
+    /** 实测难度，0 表示没有；写时复制，已交给候选池的数组不会再被修改 */
+    private byte[] empiricalLevels = new byte[0];
+    private int ordinalCount = 0;
+    /** ids、scores、keys 是否已交给候选池；为 true 时下一次修改前先复制 */
+    private volatile boolean columnsShared = false;
+
+    private final Map<Long, Integer> ordinalById = new HashMap<>();
+    /** 桶内序号升序排列，写时复制，读者拿到的数组不会再被修改 */
+    private final Map<BucketKey, int[]> buckets = new HashMap<>();
+
+    /**
+     * 查询某题型的候选池
+     *
+     * @param type         题型代码
+     * @param categoryIds  分类筛选，为空表示不限
+     * @param knowledgeIds 知识点筛选，为空表示不限
+     */
+    public CandidatePool pool(String type, Collection<Long> categoryIds, Collection<Long> knowledgeIds) {
+        return pool(type, categoryIds, knowledgeIds, false);
+    }
+
+    /**
+     * 查询某题型的候选池
+     *
+     * @param empiricalDifficulty 为 true 时按实测难度分组，没有实测难度的题目按设置的难度
+     */
+    public CandidatePool pool(String type, Collection<Long> categoryIds, Collection<Long> knowledgeIds,
+                              boolean empiricalDifficulty) {
+        ensureLoaded();
+        Set<Long> categoryFilter = CollectionUtils.isEmpty(categoryIds) ? null : new HashSet<>(categoryIds);
+        Set<Long> knowledgeFilter = CollectionUtils.isEmpty(knowledgeIds) ? null : new HashSet<>(knowledgeIds);
+
+        lock.readLock().lock();
+        try {
+            // 按桶键排序，保证相同随机种子下结果可复现
+            Map<Integer, List<BucketKey>> matched = new TreeMap<>();
+            for (BucketKey key : buckets.keySet()) {
+                if (!Objects.equals(key.type(), type)) continue;
+                if (categoryFilter != null && !categoryFilter.contains(key.categoryId())) continue;
+                if (knowledgeFilter != null && !knowledgeFilter.contains(key.knowledgeId())) continue;
+                matched.computeIfAbsent(key.difficulty(), d -> new ArrayList<>()).add(key);
+            }
+
+            if (empiricalDifficulty) {
+                return empiricalPool(matched);
+            }
+            Map<Integer, OrdinalPool> byDifficulty = new TreeMap<>();
+            for (Map.Entry<Integer, List<BucketKey>> e : matched.entrySet()) {
+                List<BucketKey> keyList = e.getValue();
+                keyList.sort(BucketKey.ORDER);
+                int[][] segments = new int[keyList.size()][];
+                for (int i = 0; i < keyList.size(); i++) {
+                    segments[i] = buckets.get(keyList.get(i));
+                }
+                byDifficulty.put(e.getKey(), new OrdinalPool(segments));
+            }
+            columnsShared = true;
+            return new CandidatePool(byDifficulty, ids, scores, keys, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按实测难度重新分组，需在读锁内调用；开销与候选题数量成正比
+     */
+    private CandidatePool empiricalPool(Map<Integer, List<BucketKey>> matched) {
+        Map<Integer, List<int[]>> segments = new TreeMap<>();
+        for (Map.Entry<Integer, List<BucketKey>> e : matched.entrySet()) {
+            List<BucketKey> keyList = e.getValue();
+            keyList.sort(BucketKey.ORDER);
+            for (BucketKey key : keyList) {
+                int[] bucket = buckets.get(key);
+                Map<Integer, int[]> split = new TreeMap<>();
+                Map<Integer, Integer> sizes = new HashMap<>();
+                for (int ordinal : bucket) {
+                    int level = empiricalLevels[ordinal] != 0 ? empiricalLevels[ordinal] : key.difficulty();
+                    int[] arr = split.computeIfAbsent(level, l -> new int[bucket.length]);
+                    int n = sizes.merge(level, 1, Integer::sum);
+                    arr[n - 1] = ordinal;
+                }
+                for (Map.Entry<Integer, int[]> part : split.entrySet()) {
+                    segments.computeIfAbsent(part.getKey(), l -> new ArrayList<>())
+                            .add(Arrays.copyOf(part.getValue(), sizes.get(part.getKey())));
+                }
+            }
+        }
+        Map<Integer, OrdinalPool> byDifficulty = new TreeMap<>();
+        for (Map.Entry<Integer, List<int[]>> e : segments.entrySet()) {
+            byDifficulty.put(e.getKey(), new OrdinalPool(e.getValue().toArray(new int[0][])));
+        }
+        columnsShared = true;
+        return new CandidatePool(byDifficulty, ids, scores, keys, empiricalLevels);
+    }
+
+    /**
+     * 题目统计任务更新实测难度后调用，只刷新本实例
+     */
+    public void onEmpiricalLevelsChanged(Collection<Long> questionIds) {
+        if (!loaded || CollectionUtils.isEmpty(questionIds)) return;
+        List<QuestionStats> rows = questionStatsMapper.selectBatchIds(questionIds);
+        lock.writeLock().lock();
+        try {
+            byte[] levels = Arrays.copyOf(empiricalLevels, empiricalLevels.length);
+            for (QuestionStats row : rows) {
+                Integer ordinal = ordinalById.get(row.getQuestionId());
+                if (ordinal != null) {
+                    levels[ordinal] = levelOf(row.getEmpiricalLevel());
+                }
+            }
+            empiricalLevels = levels;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 重新读取全部实测难度；统计任务只在执行它的实例上刷新索引，各实例定时调用以同步其他实例写入的结果
+     */
+    public void reloadEmpiricalLevels() {
+        if (!loaded) return;
+        List<QuestionStats> rows = questionStatsMapper.selectEmpiricalLevels();
+        lock.writeLock().lock();
+        try {
+            byte[] levels = new byte[ids.length];
+            for (QuestionStats row : rows) {
+                Integer ordinal = ordinalById.get(row.getQuestionId());
+                if (ordinal != null) {
+                    levels[ordinal] = levelOf(row.getEmpiricalLevel());
+                }
+            }
+            empiricalLevels = levels;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询题目ID对应的序号集合，不在索引中的ID忽略
+     */
+    public BitSet ordinalsOf(Collection<Long> questionIds) {
+        BitSet result = new BitSet();
+        if (CollectionUtils.isEmpty(questionIds)) {
+            return result;
+        }
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            for (Long id : questionIds) {
+                Integer ordinal = ordinalById.get(id);
+                if (ordinal != null) {
+                    result.set(ordinal);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * 题目新增或修改后调用；存在事务时延迟到提交后生效
+     */
+    public void onQuestionSaved(Long questionId) {
+        if (questionId == null) return;
+        afterCommit(() -> refreshQuestions(Collections.singletonList(questionId)));
+    }
+
+    /**
+     * 批量题目新增或修改后调用
+     */
+    public void onQuestionsSaved(Collection<Long> questionIds) {
+        if (CollectionUtils.isEmpty(questionIds)) return;
+        List<Long> copy = new ArrayList<>(questionIds);
+        afterCommit(() -> refreshQuestions(copy));
+    }
+
+    /**
+     * 题目删除后调用
+     */
+    public void onQuestionRemoved(Long questionId) {
+        if (questionId == null) return;
+        onQuestionsRemoved(Collections.singletonList(questionId));
+    }
+
+    /**
+     * 批量题目删除后调用（如删除分类、知识点时级联删除的题目）
+     */
+    public void onQuestionsRemoved(Collection<Long> questionIds) {
+        if (CollectionUtils.isEmpty(questionIds)) return;
+        List<Long> copy = new ArrayList<>(questionIds);
+        afterCommit(() -> {
+            if (!track(copy)) return;
+            lock.writeLock().lock();
+            try {
+                copy.forEach(this::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /**
+     * 从数据库全量重建索引；读库在锁外进行，期间的题目变更在替换完成后重放
+     */
+    public synchronized void rebuild() {
+        synchronized (pendingLock) {
+            pendingChanges = new HashSet<>();
+        }
+        List<Question> rows;
+        List<QuestionStats> levels;
+        try {
+            rows = questionMapper.selectList(projection().eq(Question::getDeleted, 0)
+                    .orderByAsc(Question::getId));
+            levels = questionStatsMapper.selectEmpiricalLevels();
+        } catch (RuntimeException e) {
+            synchronized (pendingLock) {
+                pendingChanges = null;
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            ids = new long[Math.max(16, rows.size())];
+            scores = new double[ids.length];
+            keys = new BucketKey[ids.length];
+            empiricalLevels = new byte[ids.length];
+            columnsShared = false;
+            ordinalCount = 0;
+            ordinalById.clear();
+            buckets.clear();
+
+            Map<BucketKey, List<Integer>> grouped = new HashMap<>();
+            for (Question q : rows) {
+                int ordinal = allocate(q);
+                grouped.computeIfAbsent(keys[ordinal], k -> new ArrayList<>()).add(ordinal);
+            }
+            for (Map.Entry<BucketKey, List<Integer>> e : grouped.entrySet()) {
+                buckets.put(e.getKey(), e.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            for (QuestionStats level : levels) {
+                Integer ordinal = ordinalById.get(level.getQuestionId());
+                if (ordinal != null) {
+                    empiricalLevels[ordinal] = levelOf(level.getEmpiricalLevel());
+                }
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("组卷候选题索引已加载，题目数：{}，分桶数：{}", rows.size(), buckets.size());
+
+        Set<Long> replay;
+        synchronized (pendingLock) {
+            replay = pendingChanges;
+            pendingChanges = null;
+        }
+        if (!replay.isEmpty()) {
+            refreshQuestions(new ArrayList<>(replay));
+        }
+    }
+
+    /**
+     * 已加载时全量重建，由 {@link QuestionCandidateIndexJob} 定时调用
+     */
+    public void rebuildIfLoaded() {
+        if (loaded) {
+            rebuild();
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        synchronized (this) {
+            if (!loaded) {
+                rebuild();
+            }
+        }
+    }
+
+    /**
+     * 全量加载进行中时记下变更的题目
+     *
+     * @return 索引是否已加载，未加载时变更无需立即应用
+     */
+    private boolean track(Collection<Long> questionIds) {
+        synchronized (pendingLock) {
+            if (pendingChanges != null) {
+                pendingChanges.addAll(questionIds);
+            }
+        }
+        return loaded;
+    }
+
+    private void refreshQuestions(List<Long> questionIds) {
+        if (!track(questionIds)) return;
+        List<Question> rows = questionMapper.selectList(projection().in(Question::getId, questionIds));
+        Set<Long> found = new HashSet<>();
+        lock.writeLock().lock();
+        try {
+            for (Question q : rows) {
+                found.add(q.getId());
+                if (q.getDeleted() != null && q.getDeleted() == 1) {
+                    remove(q.getId());
+                } else {
+                    upsert(q);
+                }
+            }
+            for (Long id : questionIds) {
+                if (!found.contains(id)) {
+                    remove(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private LambdaQueryWrapper<Question> projection() {
+        LambdaQueryWrapper<Question> q = new LambdaQueryWrapper<>();
+        q.select(Question::getId, Question::getType, Question::getDifficulty,
+                Question::getCategoryId, Question::getKnowledgeId, Question::getScore, Question::getDeleted);
+        return q;
+    }
+
+    // ==================== 以下方法需在写锁内调用 ====================
+
+    /**
+     * 属性列已交给候选池时先复制一份再修改：组卷求解在其他线程上长时间读取候选池，
+     * 不能看到分值或分桶在求解中途变化；一批修改只复制一次
+     */
+    private void unshareColumns() {
+        if (!columnsShared) return;
+        ids = ids.clone();
+        scores = scores.clone();
+        keys = keys.clone();
+        columnsShared = false;
+    }
+
+    private int allocate(Question q) {
+        unshareColumns();
+        if (ordinalCount == ids.length) {
+            int capacity = Math.max(16, ids.length * 2);
+            ids = Arrays.copyOf(ids, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            keys = Arrays.copyOf(keys, capacity);
+            empiricalLevels = Arrays.copyOf(empiricalLevels, capacity);
+        }
+        int ordinal = ordinalCount++;
+        ids[ordinal] = q.getId();
+        scores[ordinal] = q.getScore() != null ? q.getScore().doubleValue() : 0.0;
+        keys[ordinal] = BucketKey.of(q);
+        ordinalById.put(q.getId(), ordinal);
+        return ordinal;
+    }
+
+    private void upsert(Question q) {
+        Integer existing = ordinalById.get(q.getId());
+        if (existing == null) {
+            int ordinal = allocate(q);
+            addToBucket(keys[ordinal], ordinal);
+            return;
+        }
+        unshareColumns();
+        int ordinal = existing;
+        BucketKey newKey = BucketKey.of(q);
+        BucketKey oldKey = keys[ordinal];
+        scores[ordinal] = q.getScore() != null ? q.getScore().doubleValue() : 0.0;
+        if (oldKey == null) {
+            keys[ordinal] = newKey;
+            addToBucket(newKey, ordinal);
+        } else if (!oldKey.equals(newKey)) {
+            removeFromBucket(oldKey, ordinal);
+            keys[ordinal] = newKey;
+            addToBucket(newKey, ordinal);
+        }
+    }
+
+    /**
+     * 序号不回收，仅从桶中摘除；重建索引时统一压缩
+     */
+    private void remove(Long questionId) {
+        Integer ordinal = ordinalById.get(questionId);
+        if (ordinal == null || keys[ordinal] == null) return;
+        unshareColumns();
+        removeFromBucket(keys[ordinal], ordinal);
+        keys[ordinal] = null;
+    }
+
+    private void addToBucket(BucketKey key, int ordinal) {
+        int[] old = buckets.getOrDefault(key, new int[0]);
+        int pos = Arrays.binarySearch(old, ordinal);
+        if (pos >= 0) return;
+        pos = -pos - 1;
+        int[] updated = new int[old.length + 1];
+        System.arraycopy(old, 0, updated, 0, pos);
+        updated[pos] = ordinal;
+        System.arraycopy(old, pos, updated, pos + 1, old.length - pos);
+        buckets.put(key, updated);
+    }
+
+    private void removeFromBucket(BucketKey key, int ordinal) {
+        int[] old = buckets.get(key);
+        if (old == null) return;
+        int pos = Arrays.binarySearch(old, ordinal);
+        if (pos < 0) return;
+        if (old.length == 1) {
+            buckets.remove(key);
+            return;
+        }
+        int[] updated = new int[old.length - 1];
+        System.arraycopy(old, 0, updated, 0, pos);
+        System.arraycopy(old, pos + 1, updated, pos, old.length - pos - 1);
+        buckets.put(key, updated);
+    }
+
+    private static byte levelOf(Integer level) {
+        return level != null ? level.byteValue() : 0;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    record BucketKey(String type, int difficulty, Long categoryId, Long knowledgeId) {
+
+        static final Comparator<BucketKey> ORDER = Comparator
+                .comparing(BucketKey::categoryId, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(BucketKey::knowledgeId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+        static BucketKey of(Question q) {
+            int difficulty = q.getDifficulty() != null ? q.getDifficulty() : DEFAULT_DIFFICULTY;
+            return new BucketKey(q.getType(), difficulty, q.getCategoryId(), q.getKnowledgeId());
+        }
+    }
+}
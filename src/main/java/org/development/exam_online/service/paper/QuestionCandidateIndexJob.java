@@ -0,0 +1,36 @@
+package org.development.exam_online.service.paper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时全量重建组卷候选题索引，清理增量维护遗漏的变更（包括其他实例上的题目修改）；
+ * 实测难度由任一实例上的题目统计任务写入，各实例更频繁地单独重新读取
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuestionCandidateIndexJob {
+
+    private final QuestionCandidateIndex index;
+
+    @Scheduled(cron = "${paper.candidate-index.rebuild-cron:0 15 * * * ?}")
+    public void rebuild() {
+        try {
+            index.rebuildIfLoaded();
+        } catch (Exception e) {
+            log.warn("组卷候选题索引重建失败", e);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${paper.candidate-index.levels-refresh-interval-ms:300000}")
+    public void reloadEmpiricalLevels() {
+        try {
+            index.reloadEmpiricalLevels();
+        } catch (Exception e) {
+            log.warn("组卷候选题实测难度刷新失败", e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.development.exam_online.service.report;
+
+import lombok.RequiredArgsConstructor;
+import org.development.exam_online.config.LLMConfig;
+import org.development.exam_online.dao.entity.AiAnalysisReport;
+import org.development.exam_online.dao.entity.AiReportJob;
+import org.development.exam_online.dao.mapper.AiReportJobMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * AI分析报告任务队列（ai_report_job 表）
+ * <p>
+ * 入队随确认成绩的事务一起提交，重启不丢失；领取时行锁跳过其他实例已锁定的任务，
+ * 失败的任务按指数退避重新排队，超过最大次数后标记为失败。
+ * 大模型不可用时报告服务退回规则报告并正常返回，这种任务不结束也不计为失败，
+ * 按退避间隔（最长30分钟）一直重试，直到大模型恢复后把规则报告替换为大模型报告。
+ */
+@Component
+@RequiredArgsConstructor
+public class AiReportJobQueue {
+
+    /** 本实例标识，记录在领取的任务上，停机时据此放回未完成的任务 */
+    public static final String INSTANCE_ID = ManagementFactory.getRuntimeMXBean().getName();
+
+    public static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_DELAY_SECONDS = 30L;
+    private static final long MAX_DELAY_SECONDS = 30 * 60L;
+    private static final int ENQUEUE_BATCH_SIZE = 500;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final AiReportJobMapper jobMapper;
+    private final LLMConfig llmConfig;
+
+    /**
+     * 为一场考试的学生入队报告任务，已有任务的学生忽略
+     *
+     * @return 新入队的任务数
+     */
+    public int enqueue(Long examId, List<Long> userIds) {
+        int count = 0;
+        for (int from = 0; from < userIds.size(); from += ENQUEUE_BATCH_SIZE) {
+            count += jobMapper.enqueue(examId, userIds.subList(from, Math.min(from + ENQUEUE_BATCH_SIZE, userIds.size())));
+        }
+        return count;
+    }
+
+    /**
+     * 领取至多 limit 个到期任务并标记为执行中
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public List<AiReportJob> claim(int limit) {
+        List<AiReportJob> jobs = jobMapper.lockDueJobs(limit);
+        if (jobs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(jobs.size());
+        for (AiReportJob job : jobs) {
+            ids.add(job.getId());
+            job.setAttempts(job.getAttempts() + 1);
+        }
+        jobMapper.markRunning(ids, INSTANCE_ID);
+        return jobs;
+    }
+
+    /**
+     * 领取指定学生、指定考试的报告任务（没有时先入队），供前台即时生成；任务正在执行时返回 null
+     */
+    public AiReportJob claimOne(Long examId, Long userId) {
+        jobMapper.enqueue(examId, Collections.singletonList(userId));
+        if (jobMapper.claimOne(examId, userId, INSTANCE_ID) == 0) {
+            return null;
+        }
+        return jobMapper.selectByExamUser(examId, userId);
+    }
+
+    /**
+     * 该学生该场考试的报告任务是否还在等待或执行
+     */
+    public boolean isPending(Long examId, Long userId) {
+        AiReportJob job = jobMapper.selectByExamUser(examId, userId);
+        Integer status = job != null ? job.getStatus() : null;
+        return status != null && (status == AiReportJob.PENDING || status == AiReportJob.RUNNING);
+    }
+
+    /**
+     * 报告已保存后结束任务；保存的是代替大模型报告的规则报告时放回队列延迟重试，本次执行不计入失败次数
+     *
+     * @return 任务是否已完成
+     */
+    public boolean complete(AiReportJob job, AiAnalysisReport report) {
+        if (isFallback(report)) {
+            int fallbacks = job.getFallbackCount() != null ? job.getFallbackCount() : 0;
+            jobMapper.markDeferred(job.getId(), "大模型不可用，已保存规则报告",
+                    retryDelaySeconds(fallbacks + 1), INSTANCE_ID);
+            return false;
+        }
+        jobMapper.markDone(job.getId(), report.getId(), INSTANCE_ID);
+        return true;
+    }
+
+    /**
+     * 大模型可用但本次得到的是规则报告（接口失败、熔断或超出预算）
+     */
+    private boolean isFallback(AiAnalysisReport report) {
+        return Boolean.TRUE.equals(llmConfig.getEnabled())
+                && RuleReportEngine.MODEL_NAME.equals(report.getModelName());
+    }
+
+    /**
+     * 记录失败；未达最大次数时延迟重试
+     *
+     * @return 是否会重试
+     */
+    public boolean fail(AiReportJob job, Throwable error) {
+        String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        if (message.length() > MAX_ERROR_LENGTH) {
+            message = message.substring(0, MAX_ERROR_LENGTH);
+        }
+        int attempts = job.getAttempts();
+        if (attempts >= MAX_ATTEMPTS) {
+            jobMapper.markFailed(job.getId(), message, INSTANCE_ID);
+            return false;
+        }
+        jobMapper.markRetry(job.getId(), message, retryDelaySeconds(attempts), INSTANCE_ID);
+        return true;
+    }
+
+    /**
+     * 第 n 次失败后的等待时间：30秒起每次翻倍，最长30分钟
+     */
+    static long retryDelaySeconds(int attempts) {
+        int shift = Math.min(Math.max(attempts - 1, 0), 16);
+        return Math.min(BASE_DELAY_SECONDS << shift, MAX_DELAY_SECONDS);
+    }
+
+    public int releaseStale(long timeoutSeconds) {
+        return jobMapper.releaseStale(timeoutSeconds);
+    }
+
+    /**
+     * 放回本实例领取但未完成的任务
+     */
+    public int releaseOwned() {
+        return jobMapper.releaseLockedBy(INSTANCE_ID);
+    }
+
+    /**
+     * 各状态的任务数，以及最早到期的待执行任务已等待的秒数
+     */
+    public Map<String, Object> depth() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        long[] counts = new long[4];
+        for (Map<String, Object> row : jobMapper.countByStatus()) {
+            int status = ((Number) row.get("status")).intValue();
+            if (status >= 0 && status < counts.length) {
+                counts[status] = ((Number) row.get("cnt")).longValue();
+            }
+        }
+        result.put("pending", counts[AiReportJob.PENDING]);
+        result.put("running", counts[AiReportJob.RUNNING]);
+        result.put("done", counts[AiReportJob.DONE]);
+        result.put("failed", counts[AiReportJob.FAILED]);
+        Long oldest = jobMapper.selectOldestPendingSeconds();
+        result.put("oldestPendingSeconds", oldest != null ? Math.max(oldest, 0L) : 0L);
+        return result;
+    }
+}
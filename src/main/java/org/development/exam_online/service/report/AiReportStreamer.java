@@ -0,0 +1,179 @@
+package org.development.exam_online.service.report;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.dao.entity.AiAnalysisReport;
+import org.development.exam_online.dao.entity.AiReportJob;
+import org.development.exam_online.service.AnalysisService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI分析报告流式输出（SSE）
+ * <p>
+ * 学生查看报告时若尚未生成，直接领取该学生的报告任务，把模型输出逐段推送给浏览器，
+ * 完成后保存完整报告并结束任务；浏览器中途断开不影响报告生成与保存。
+ * 事件：start（立即发送）、draft（先行展示的规则报告，大模型报告完成后替换）、delta（{"text": 片段}）、
+ * done（完整报告）、pending（后台正在生成）、error。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AiReportStreamer {
+
+    private static final long EMITTER_TIMEOUT_MILLIS = 10 * 60_000L;
+
+    private final AnalysisService analysisService;
+    private final AiReportJobQueue jobQueue;
+
+    @Value("${ai.report.stream-threads:4}")
+    private int streamThreads;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        int threads = Math.max(1, streamThreads);
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        // 线程只用于查询错题统计，等待模型输出期间不占用
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(100), r -> {
+                    Thread t = new Thread(r, "ai-report-stream-" + threadNumber.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 已有报告时一次性推送
+     */
+    public SseEmitter replay(Map<String, Object> report) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        Stream stream = new Stream(emitter);
+        stream.send("done", report);
+        stream.complete();
+        return emitter;
+    }
+
+    /**
+     * 生成并流式推送报告
+     *
+     * @param draft 已有的规则报告，非空时在开始后先推送
+     */
+    public SseEmitter stream(Long examId, Long userId, Map<String, Object> draft) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        Stream stream = new Stream(emitter);
+        stream.send("start", Map.of("examId", examId));
+        if (draft != null) {
+            stream.send("draft", draft);
+        }
+
+        AiReportJob job = jobQueue.claimOne(examId, userId);
+        if (job == null) {
+            stream.send("pending", Map.of("message", "报告正在后台生成，请稍后查看"));
+            stream.complete();
+            return emitter;
+        }
+        try {
+            executor.execute(() -> generate(job, stream));
+        } catch (RejectedExecutionException e) {
+            onFailed(job, stream, e);
+        }
+        return emitter;
+    }
+
+    private void generate(AiReportJob job, Stream stream) {
+        CompletableFuture<AiAnalysisReport> future;
+        try {
+            future = analysisService.streamExamReport(job.getUserId(), job.getExamId(),
+                    delta -> stream.send("delta", Map.of("text", delta)));
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((report, error) -> {
+            if (error != null) {
+                onFailed(job, stream, error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                return;
+            }
+            boolean completed = true;
+            try {
+                completed = jobQueue.complete(job, report);
+            } catch (Exception e) {
+                log.error("记录AI报告任务完成状态出错，jobId={}", job.getId(), e);
+            }
+            Map<String, Object> done = new LinkedHashMap<>();
+            done.put("reportId", report.getId());
+            done.put("aiReport", report.getAiReport());
+            done.put("modelName", report.getModelName());
+            done.put("createdTime", report.getCreatedTime());
+            done.put("generationTime", report.getGenerationTime());
+            // 规则报告：任务已放回队列，大模型恢复后替换
+            done.put("upgrading", !completed);
+            stream.send("done", done);
+            stream.complete();
+        });
+    }
+
+    private void onFailed(AiReportJob job, Stream stream, Throwable error) {
+        log.warn("流式生成AI报告失败，examId={}，userId={}", job.getExamId(), job.getUserId(), error);
+        try {
+            jobQueue.fail(job, error);
+        } catch (Exception e) {
+            log.error("记录AI报告任务失败状态出错，jobId={}", job.getId(), e);
+        }
+        stream.send("error", Map.of("message", "报告生成失败，稍后将自动重试"));
+        stream.complete();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 浏览器断开后不再推送，但不中断生成
+     */
+    private static final class Stream {
+
+        private final SseEmitter emitter;
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        Stream(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(() -> open.set(false));
+            emitter.onTimeout(() -> open.set(false));
+            emitter.onError(e -> open.set(false));
+        }
+
+        void send(String event, Object data) {
+            if (!open.get()) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                open.set(false);
+            }
+        }
+
+        void complete() {
+            if (open.compareAndSet(true, false)) {
+                emitter.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package org.development.exam_online.service.report;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.dao.entity.AiAnalysisReport;
+import org.development.exam_online.dao.entity.AiReportJob;
+import org.development.exam_online.service.AnalysisService;
+import org.development.exam_online.service.LLMService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI分析报告后台执行
+ * <p>
+ * 定时从 {@link AiReportJobQueue} 领取任务，进行中的任务数不超过 ai.report.max-in-flight，
+ * 超出的任务留在表中等待，不会回到调用方线程执行。工作线程只负责查询错题统计，
+ * 等待大模型响应期间不占用线程，少量线程即可同时进行大量报告。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AiReportWorker {
+
+    private final AiReportJobQueue jobQueue;
+    private final AnalysisService analysisService;
+    private final LLMService llmService;
+
+    @Value("${ai.report.workers:4}")
+    private int workers;
+
+    @Value("${ai.report.max-in-flight:64}")
+    private int maxInFlight;
+
+    @Value("${llm.batch-size:4}")
+    private int batchSize;
+
+    /** 执行中的任务超过该时间未完成视为实例异常，放回队列 */
+    @Value("${ai.report.job-timeout-seconds:600}")
+    private long jobTimeoutSeconds;
+
+    private volatile ThreadPoolExecutor executor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        workers = Math.max(1, workers);
+        maxInFlight = Math.max(workers, maxInFlight);
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        // 领取数量不超过进行中任务的空位，队列不会溢出
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxInFlight), r -> {
+                    Thread t = new Thread(r, "ai-report-" + threadNumber.getAndIncrement());
+                    t.setDaemon(false);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Scheduled(fixedDelayString = "${ai.report.poll-interval-ms:2000}")
+    public void poll() {
+        ThreadPoolExecutor pool = executor;
+        if (pool == null || pool.isShutdown()) {
+            return;
+        }
+        int free = maxInFlight - inFlight.get();
+        if (free <= 0) {
+            return;
+        }
+        List<AiReportJob> jobs;
+        try {
+            jobs = jobQueue.claim(free);
+        } catch (Exception e) {
+            log.warn("领取AI报告任务失败", e);
+            return;
+        }
+        // 同一场考试的任务按合并请求的人数分组，一组在一个线程中查询统计后合并调用大模型
+        Map<Long, List<AiReportJob>> byExam = new LinkedHashMap<>();
+        for (AiReportJob job : jobs) {
+            byExam.computeIfAbsent(job.getExamId(), k -> new ArrayList<>()).add(job);
+        }
+        int groupSize = Math.max(1, batchSize);
+        for (List<AiReportJob> examJobs : byExam.values()) {
+            for (int from = 0; from < examJobs.size(); from += groupSize) {
+                List<AiReportJob> group = examJobs.subList(from, Math.min(from + groupSize, examJobs.size()));
+                inFlight.addAndGet(group.size());
+                try {
+                    pool.execute(() -> run(group));
+                } catch (RejectedExecutionException e) {
+                    // 停机过程中提交失败，任务留给停机释放或超时回收
+                    inFlight.addAndGet(-group.size());
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ai.report.stale-check-interval-ms:60000}")
+    public void releaseStale() {
+        try {
+            int n = jobQueue.releaseStale(jobTimeoutSeconds);
+            if (n > 0) {
+                log.warn("{} 个AI报告任务执行超时，已放回队列", n);
+            }
+        } catch (Exception e) {
+            log.warn("回收超时AI报告任务失败", e);
+        }
+    }
+
+    private void run(List<AiReportJob> group) {
+        long start = System.currentTimeMillis();
+        List<Long> userIds = new ArrayList<>(group.size());
+        for (AiReportJob job : group) {
+            userIds.add(job.getUserId());
+        }
+        List<CompletableFuture<AiAnalysisReport>> futures;
+        try {
+            futures = analysisService.generateExamReportsBatch(group.get(0).getExamId(), userIds);
+        } catch (Exception e) {
+            futures = Collections.nCopies(group.size(), CompletableFuture.<AiAnalysisReport>failedFuture(e));
+        }
+        for (int i = 0; i < group.size(); i++) {
+            AiReportJob job = group.get(i);
+            futures.get(i).whenComplete((report, error) -> {
+                try {
+                    if (error == null) {
+                        onSucceeded(job, report, System.currentTimeMillis() - start);
+                    } else {
+                        onFailed(job, error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error);
+                    }
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+    }
+
+    private void onSucceeded(AiReportJob job, AiAnalysisReport report, long elapsed) {
+        try {
+            if (!jobQueue.complete(job, report)) {
+                retried.incrementAndGet();
+                log.warn("大模型不可用，已保存规则报告，稍后重试，examId={}，userId={}，第{}次",
+                        job.getExamId(), job.getUserId(), job.getAttempts());
+                return;
+            }
+        } catch (Exception e) {
+            log.error("记录AI报告任务完成状态出错，jobId={}", job.getId(), e);
+        }
+        succeeded.incrementAndGet();
+        totalLatencyMillis.addAndGet(elapsed);
+        maxLatencyMillis.accumulateAndGet(elapsed, Math::max);
+    }
+
+    private void onFailed(AiReportJob job, Throwable error) {
+        try {
+            if (jobQueue.fail(job, error)) {
+                retried.incrementAndGet();
+                log.warn("AI报告生成失败，稍后重试，examId={}，userId={}，第{}次", job.getExamId(), job.getUserId(),
+                        job.getAttempts(), error);
+            } else {
+                failed.incrementAndGet();
+                log.error("AI报告生成失败，已达最大重试次数，examId={}，userId={}", job.getExamId(), job.getUserId(), error);
+            }
+        } catch (Exception e) {
+            log.error("记录AI报告任务失败状态出错，jobId={}", job.getId(), e);
+        }
+    }
+
+    /**
+     * 队列深度与执行情况
+     */
+    public Map<String, Object> metrics() {
+        Map<String, Object> result = new LinkedHashMap<>(jobQueue.depth());
+        long done = succeeded.get();
+        result.put("workers", workers);
+        result.put("maxInFlight", maxInFlight);
+        result.put("inFlight", inFlight.get());
+        result.put("succeeded", done);
+        result.put("retried", retried.get());
+        result.put("failedPermanently", failed.get());
+        result.put("avgLatencyMillis", done > 0 ? totalLatencyMillis.get() / done : 0L);
+        result.put("maxLatencyMillis", maxLatencyMillis.get());
+        result.put("llm", llmService.getMetrics());
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ThreadPoolExecutor pool = executor;
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(30, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        try {
+            int n = jobQueue.releaseOwned();
+            if (n > 0) {
+                log.info("停机时放回 {} 个未完成的AI报告任务", n);
+            }
+        } catch (Exception e) {
+            log.warn("停机时放回AI报告任务失败", e);
+        }
+    }
+}
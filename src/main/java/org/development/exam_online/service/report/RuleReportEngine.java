@@ -0,0 +1,300 @@
+package org.development.exam_online.service.report;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.common.enums.QuestionType;
+import org.development.exam_online.dao.dto.KnowledgeStatistics;
+import org.development.exam_online.dao.dto.TypeStatistics;
+import org.development.exam_online.dao.dto.WrongQuestionDetail;
+import org.development.exam_online.dao.dto.WrongQuestionStatistics;
+import org.development.exam_online.dao.entity.Question;
+import org.development.exam_online.dao.mapper.QuestionMapper;
+import org.development.exam_online.service.paper.CandidatePool;
+import org.development.exam_online.service.paper.OrdinalPool;
+import org.development.exam_online.service.paper.QuestionCandidateIndex;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 规则分析报告
+ * <p>
+ * 只根据错题统计套用模板生成 Markdown 报告，不访问大模型：成绩公布后学生立即看到这份报告，
+ * 大模型报告生成后原地替换；大模型不可用或超出用量预算时也用它代替。
+ * 推荐练习题从组卷候选题索引中按薄弱知识点选取，薄弱题型优先，排除本次做错的题，
+ * 只按选中的少量ID回表读取题干。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RuleReportEngine {
+
+    /** 规则报告的模型名称，用于区分待替换的报告 */
+    public static final String MODEL_NAME = "rule";
+
+    public static final String NOTE_PENDING = "AI分析报告正在生成，完成后将自动替换本报告。";
+    public static final String NOTE_FALLBACK = "由于AI服务暂时不可用，以下是基于规则生成的简化报告。";
+
+    private static final double WEAK_ACCURACY = 70;
+    private static final int MAX_WEAK_KNOWLEDGE = 5;
+    private static final int RECOMMEND_KNOWLEDGE = 3;
+    private static final int RECOMMEND_PER_KNOWLEDGE = 3;
+    private static final int STEM_PREVIEW_LENGTH = 60;
+
+    private final QuestionCandidateIndex candidateIndex;
+    private final QuestionMapper questionMapper;
+
+    /**
+     * @param note 报告开头的提示，为空时不显示
+     */
+    public String render(WrongQuestionStatistics statistics, String note) {
+        boolean multi = statistics.getExamCount() != null && statistics.getExamCount() > 1;
+        List<KnowledgeStatistics> weakKnowledge = weakKnowledge(statistics);
+        List<TypeStatistics> types = typesByAccuracy(statistics);
+
+        StringBuilder report = new StringBuilder(2048);
+        report.append(multi ? "# 综合错题分析报告\n\n" : "# 错题分析报告\n\n");
+        if (note != null && !note.isEmpty()) {
+            report.append("> ").append(note).append("\n\n");
+        }
+
+        report.append(multi ? "## 1. 学习进展总结\n\n" : "## 1. 本次考试总体表现\n\n");
+        if (multi) {
+            report.append("- 参与考试次数：").append(statistics.getExamCount()).append("\n");
+            if (statistics.getExamAccuracy() != null) {
+                StringJoiner series = new StringJoiner(" → ");
+                statistics.getExamAccuracy().forEach(accuracy -> series.add(percent(accuracy)));
+                report.append("- 各次考试正确率：").append(series).append("\n");
+            }
+        }
+        report.append("- 总答题数：").append(nz(statistics.getTotalQuestions())).append("\n");
+        report.append("- 错题数：").append(nz(statistics.getWrongQuestions())).append("\n");
+        report.append("- 正确率：").append(percent(statistics.getAccuracy())).append("\n\n");
+        report.append(overallComment(value(statistics.getAccuracy()))).append("\n\n");
+
+        report.append(multi ? "## 2. 持续薄弱的知识点\n\n" : "## 2. 薄弱知识点分析\n\n");
+        if (weakKnowledge.isEmpty()) {
+            report.append("各知识点掌握率均不低于70%，没有明显的薄弱知识点。\n\n");
+        } else {
+            for (KnowledgeStatistics ks : weakKnowledge) {
+                report.append("- **").append(ks.getKnowledgeName()).append("**：共 ").append(nz(ks.getTotal()))
+                      .append(" 题，错 ").append(nz(ks.getWrong())).append(" 题，正确率 ")
+                      .append(percent(ks.getAccuracy())).append("，").append(knowledgeComment(value(ks.getAccuracy())))
+                      .append("\n");
+            }
+            report.append("\n");
+        }
+
+        report.append(multi ? "## 3. 题型掌握趋势\n\n" : "## 3. 题型分析\n\n");
+        if (types.isEmpty()) {
+            report.append("暂无题型数据。\n\n");
+        } else {
+            for (TypeStatistics ts : types) {
+                report.append("- ").append(ts.getTypeName()).append("：共 ").append(nz(ts.getTotal()))
+                      .append(" 题，错 ").append(nz(ts.getWrong())).append(" 题，正确率 ")
+                      .append(percent(ts.getAccuracy())).append("\n");
+            }
+            TypeStatistics weakest = types.get(0);
+            if (value(weakest.getAccuracy()) < WEAK_ACCURACY) {
+                report.append("\n").append(weakest.getTypeName()).append("的正确率最低，建议优先加强。\n");
+            }
+            report.append("\n");
+        }
+
+        report.append(multi ? "## 4. 综合学习建议\n\n" : "## 4. 学习建议\n\n");
+        int n = 1;
+        if (!weakKnowledge.isEmpty()) {
+            report.append(n++).append(". 针对").append(names(weakKnowledge)).append("进行专项练习，先回顾概念再做题\n");
+        }
+        if (!types.isEmpty() && value(types.get(0).getAccuracy()) < WEAK_ACCURACY) {
+            report.append(n++).append(". 多做").append(types.get(0).getTypeName()).append("，总结这类题的审题和作答方法\n");
+        }
+        report.append(n++).append(". 整理错题，写下每道题的错误原因，过几天再重做一遍\n");
+        report.append(n).append(". 定期进行知识点巩固测试，检验薄弱环节是否改善\n\n");
+
+        report.append("## 5. 推荐练习\n\n");
+        Map<Long, List<Question>> recommended = recommend(statistics, weakKnowledge, types);
+        if (recommended.isEmpty()) {
+            report.append("暂无推荐练习题，请复习本次错题。\n");
+        } else {
+            for (KnowledgeStatistics ks : weakKnowledge) {
+                List<Question> questions = recommended.get(ks.getKnowledgeId());
+                if (questions == null) continue;
+                report.append("**").append(ks.getKnowledgeName()).append("**\n\n");
+                for (Question q : questions) {
+                    QuestionType type = QuestionType.of(q.getType());
+                    report.append("- [").append(type != null ? type.getLabel() : q.getType()).append("] ")
+                          .append(preview(q.getStem())).append("（题目ID：").append(q.getId()).append("）\n");
+                }
+                report.append("\n");
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * 正确率低于 70% 的知识点，最弱的在前
+     */
+    private List<KnowledgeStatistics> weakKnowledge(WrongQuestionStatistics statistics) {
+        if (statistics.getByKnowledge() == null) {
+            return Collections.emptyList();
+        }
+        List<KnowledgeStatistics> result = new ArrayList<>();
+        for (KnowledgeStatistics ks : statistics.getByKnowledge()) {
+            if (ks.getAccuracy() != null && value(ks.getAccuracy()) < WEAK_ACCURACY) {
+                result.add(ks);
+            }
+        }
+        result.sort(Comparator.comparingDouble((KnowledgeStatistics ks) -> value(ks.getAccuracy()))
+                .thenComparing(ks -> -nz(ks.getWrong())));
+        return result.size() > MAX_WEAK_KNOWLEDGE ? result.subList(0, MAX_WEAK_KNOWLEDGE) : result;
+    }
+
+    private List<TypeStatistics> typesByAccuracy(WrongQuestionStatistics statistics) {
+        if (statistics.getByQuestionType() == null) {
+            return Collections.emptyList();
+        }
+        List<TypeStatistics> result = new ArrayList<>(statistics.getByQuestionType().values());
+        result.sort(Comparator.comparingDouble(ts -> value(ts.getAccuracy())));
+        return result;
+    }
+
+    /**
+     * 为最弱的几个知识点各选几道练习题：薄弱题型优先，同题型内难度低的优先，
+     * 起点按学生错开，不同学生拿到的题目不完全相同
+     */
+    private Map<Long, List<Question>> recommend(WrongQuestionStatistics statistics,
+                                                List<KnowledgeStatistics> weakKnowledge, List<TypeStatistics> types) {
+        if (weakKnowledge.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            List<String> typeOrder = typeOrder(types);
+            Set<Long> wrongIds = new HashSet<>();
+            if (statistics.getWrongQuestionDetails() != null) {
+                for (WrongQuestionDetail detail : statistics.getWrongQuestionDetails()) {
+                    wrongIds.add(detail.getQuestionId());
+                }
+            }
+            BitSet excluded = candidateIndex.ordinalsOf(wrongIds);
+            long seed = statistics.getUserId() != null ? statistics.getUserId() : 0L;
+
+            Map<Long, List<Long>> picked = new LinkedHashMap<>();
+            List<Long> allIds = new ArrayList<>();
+            for (KnowledgeStatistics ks : weakKnowledge.subList(0, Math.min(RECOMMEND_KNOWLEDGE, weakKnowledge.size()))) {
+                if (ks.getKnowledgeId() == null) continue;
+                List<Long> ids = new ArrayList<>(RECOMMEND_PER_KNOWLEDGE);
+                for (String type : typeOrder) {
+                    if (ids.size() >= RECOMMEND_PER_KNOWLEDGE) break;
+                    CandidatePool pool = candidateIndex.pool(type, null, List.of(ks.getKnowledgeId()));
+                    for (int difficulty : new TreeSet<>(pool.difficulties())) {
+                        OrdinalPool ordinals = pool.ofDifficulty(difficulty);
+                        int size = ordinals.size();
+                        int start = (int) Math.floorMod(seed, (long) Math.max(size, 1));
+                        for (int i = 0; i < size && ids.size() < RECOMMEND_PER_KNOWLEDGE; i++) {
+                            int ordinal = ordinals.get((start + i) % size);
+                            long id = pool.idOf(ordinal);
+                            if (!excluded.get(ordinal) && !allIds.contains(id)) {
+                                ids.add(id);
+                                allIds.add(id);
+                            }
+                        }
+                        if (ids.size() >= RECOMMEND_PER_KNOWLEDGE) break;
+                    }
+                }
+                if (!ids.isEmpty()) {
+                    picked.put(ks.getKnowledgeId(), ids);
+                }
+            }
+            if (allIds.isEmpty()) {
+                return Collections.emptyMap();
+            }
+
+            Map<Long, Question> questions = new HashMap<>();
+            for (Question q : questionMapper.selectBatchIds(allIds)) {
+                questions.put(q.getId(), q);
+            }
+            Map<Long, List<Question>> result = new LinkedHashMap<>();
+            for (Map.Entry<Long, List<Long>> e : picked.entrySet()) {
+                List<Question> list = new ArrayList<>();
+                for (Long id : e.getValue()) {
+                    Question q = questions.get(id);
+                    if (q != null) list.add(q);
+                }
+                if (!list.isEmpty()) result.put(e.getKey(), list);
+            }
+            return result;
+        } catch (Exception e) {
+            // 推荐题只是报告的一部分，失败时不影响报告
+            log.warn("选取推荐练习题失败", e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 学生正确率低的题型在前，没有作答记录的题型排在最后
+     */
+    private List<String> typeOrder(List<TypeStatistics> types) {
+        List<String> order = new ArrayList<>();
+        for (TypeStatistics ts : types) {
+            for (QuestionType type : QuestionType.values()) {
+                if (type.getLabel().equals(ts.getTypeName()) && !order.contains(type.getCode())) {
+                    order.add(type.getCode());
+                }
+            }
+        }
+        for (QuestionType type : QuestionType.values()) {
+            if (!order.contains(type.getCode())) {
+                order.add(type.getCode());
+            }
+        }
+        return order;
+    }
+
+    private static String overallComment(double accuracy) {
+        if (accuracy >= 90) {
+            return "整体表现优秀，基础扎实，继续保持，可以适当挑战更有难度的题目。";
+        }
+        if (accuracy >= 75) {
+            return "整体表现良好，大部分知识点掌握得不错，查漏补缺后还能更进一步。";
+        }
+        if (accuracy >= 60) {
+            return "整体表现基本合格，但还有一些知识点不够牢固，需要有针对性地复习。";
+        }
+        return "这次考试遇到了不少困难，不要灰心，从薄弱知识点入手逐个突破，一定会有进步。";
+    }
+
+    private static String knowledgeComment(double accuracy) {
+        if (accuracy < 40) {
+            return "需要重新学习基础概念";
+        }
+        return "需要重点加强";
+    }
+
+    private static String names(List<KnowledgeStatistics> knowledge) {
+        StringJoiner joiner = new StringJoiner("、");
+        for (KnowledgeStatistics ks : knowledge.subList(0, Math.min(RECOMMEND_KNOWLEDGE, knowledge.size()))) {
+            joiner.add("「" + ks.getKnowledgeName() + "」");
+        }
+        return joiner.toString();
+    }
+
+    private static String preview(String stem) {
+        if (stem == null) return "";
+        String text = stem.replaceAll("\\s+", " ").trim();
+        return text.length() > STEM_PREVIEW_LENGTH ? text.substring(0, STEM_PREVIEW_LENGTH) + "…" : text;
+    }
+
+    private static String percent(BigDecimal accuracy) {
+        return accuracy != null ? accuracy.stripTrailingZeros().toPlainString() + "%" : "-";
+    }
+
+    private static double value(BigDecimal accuracy) {
+        return accuracy != null ? accuracy.doubleValue() : 0;
+    }
+
+    private static int nz(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -3,6 +3,8 @@ package org.development.exam_online.service.serviceImpl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.common.exception.BusinessException;
+import org.development.exam_online.common.exception.ErrorCode;
 import org.development.exam_online.config.LLMConfig;
 import org.development.exam_online.dao.dto.WrongQuestionStatistics;
 import org.development.exam_online.dao.entity.AiAnalysisReport;
@@ -10,9 +12,19 @@ import org.development.exam_online.dao.mapper.AiAnalysisReportMapper;
 import org.development.exam_online.service.AnalysisService;
 import org.development.exam_online.service.LLMService;
 import org.development.exam_online.service.WrongQuestionStatisticsService;
+import org.development.exam_online.service.llm.LLMReport;
+import org.development.exam_online.service.llm.TokenUsageRecorder;
+import org.development.exam_online.service.report.RuleReportEngine;
+import org.development.exam_online.service.statistics.StudentTrendBuilder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -23,34 +35,206 @@ public class AnalysisServiceImpl implements AnalysisService {
     private final LLMService llmService;
     private final AiAnalysisReportMapper reportMapper;
     private final LLMConfig llmConfig;
+    private final TokenUsageRecorder tokenUsage;
+    private final RuleReportEngine ruleReportEngine;
+    private final StudentTrendBuilder trendBuilder;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
     public AiAnalysisReport generateExamReport(Long userId, Long examId) {
+        return generateExamReportAsync(userId, examId).join();
+    }
+
+    @Override
+    public CompletableFuture<AiAnalysisReport> generateExamReportAsync(Long userId, Long examId) {
 
         long startTime = System.currentTimeMillis();
         
         // 获取错题数据
         WrongQuestionStatistics statistics = statisticsService.getExamStatistics(userId, examId);
+
+        // 相同输入已为该学生生成过时不再生成
+        AiAnalysisReport existing = findExisting(userId, examId.toString(), "single_exam", statistics);
+        if (existing != null) {
+            return CompletableFuture.completedFuture(existing);
+        }
         
         // 调用大模型生成报告
-        String aiReport = llmService.generateAnalysisReport(statistics, "single_exam");
-        
-        long generationTime = (int) (System.currentTimeMillis() - startTime);
-        
-        // 保存
+        return llmService.generateAnalysisReportAsync(statistics, "single_exam")
+                .thenApply(result -> saveReport(userId, "single_exam", examId.toString(), examId, statistics, result, startTime));
+    }
+
+    @Override
+    public List<CompletableFuture<AiAnalysisReport>> generateExamReportsBatch(Long examId, List<Long> userIds) {
+        long startTime = System.currentTimeMillis();
+        List<CompletableFuture<AiAnalysisReport>> results = new ArrayList<>(userIds.size());
+        List<Integer> pending = new ArrayList<>();
+        List<WrongQuestionStatistics> pendingStatistics = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            Long userId = userIds.get(i);
+            try {
+                WrongQuestionStatistics statistics = statisticsService.getExamStatistics(userId, examId);
+                AiAnalysisReport existing = findExisting(userId, examId.toString(), "single_exam", statistics);
+                if (existing != null) {
+                    results.add(CompletableFuture.completedFuture(existing));
+                    continue;
+                }
+                results.add(null);
+                pending.add(i);
+                pendingStatistics.add(statistics);
+            } catch (Exception e) {
+                results.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        if (pending.isEmpty()) {
+            return results;
+        }
+        List<CompletableFuture<LLMReport>> generated =
+                llmService.generateAnalysisReportsBatch(pendingStatistics, "single_exam");
+        for (int k = 0; k < pending.size(); k++) {
+            int i = pending.get(k);
+            Long userId = userIds.get(i);
+            WrongQuestionStatistics statistics = pendingStatistics.get(k);
+            results.set(i, generated.get(k)
+                    .thenApply(result -> saveReport(userId, "single_exam", examId.toString(), examId, statistics, result, startTime)));
+        }
+        return results;
+    }
+
+    @Override
+    public CompletableFuture<AiAnalysisReport> streamExamReport(Long userId, Long examId, Consumer<String> onDelta) {
+        long startTime = System.currentTimeMillis();
+        WrongQuestionStatistics statistics = statisticsService.getExamStatistics(userId, examId);
+        AiAnalysisReport existing = findExisting(userId, examId.toString(), "single_exam", statistics);
+        if (existing != null) {
+            onDelta.accept(existing.getAiReport());
+            return CompletableFuture.completedFuture(existing);
+        }
+        return llmService.streamAnalysisReport(statistics, "single_exam", onDelta)
+                .thenApply(result -> saveReport(userId, "single_exam", examId.toString(), examId, statistics, result, startTime));
+    }
+
+    @Override
+    public List<CompletableFuture<AiAnalysisReport>> generateTrendReportsBatch(List<Long> userIds, List<Long> examIds) {
+        long startTime = System.currentTimeMillis();
+        String examIdsKey = examIdsKey(examIds);
+        Map<Long, WrongQuestionStatistics> trends = trendBuilder.build(userIds, examIds);
+
+        List<CompletableFuture<AiAnalysisReport>> results = new ArrayList<>(userIds.size());
+        List<Integer> pending = new ArrayList<>();
+        List<WrongQuestionStatistics> pendingStatistics = new ArrayList<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            Long userId = userIds.get(i);
+            WrongQuestionStatistics statistics = trends.get(userId);
+            if (statistics == null) {
+                results.add(CompletableFuture.failedFuture(
+                        new BusinessException(ErrorCode.BAD_REQUEST, "该学生在所选考试中没有已确认成绩的记录")));
+                continue;
+            }
+            AiAnalysisReport existing = findExisting(userId, examIdsKey, "multi_exam", statistics);
+            if (existing != null) {
+                results.add(CompletableFuture.completedFuture(existing));
+                continue;
+            }
+            results.add(null);
+            pending.add(i);
+            pendingStatistics.add(statistics);
+        }
+        if (pending.isEmpty()) {
+            return results;
+        }
+        List<CompletableFuture<LLMReport>> generated =
+                llmService.generateAnalysisReportsBatch(pendingStatistics, "multi_exam");
+        for (int k = 0; k < pending.size(); k++) {
+            int i = pending.get(k);
+            Long userId = userIds.get(i);
+            WrongQuestionStatistics statistics = pendingStatistics.get(k);
+            results.set(i, generated.get(k).thenApply(result ->
+                    saveReport(userId, "multi_exam", examIdsKey, null, statistics, result, startTime)));
+        }
+        return results;
+    }
+
+    /**
+     * 多次考试报告的考试ID按升序以逗号连接，相同考试集合得到相同的键
+     */
+    private static String examIdsKey(List<Long> examIds) {
+        return examIds.stream().distinct().sorted().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public AiAnalysisReport generateRuleReport(Long userId, Long examId) {
+        long startTime = System.currentTimeMillis();
+        WrongQuestionStatistics statistics = statisticsService.getExamStatistics(userId, examId);
+
         AiAnalysisReport report = new AiAnalysisReport();
         report.setUserId(userId);
         report.setReportType("single_exam");
         report.setExamIds(examId.toString());
         report.setAnalysisData(toJson(statistics));
-        report.setAiReport(aiReport);
-        report.setModelName(llmConfig.getDefaultModel());
+        // 未启用大模型时规则报告即最终报告，不提示“正在生成”
+        report.setAiReport(ruleReportEngine.render(statistics,
+                Boolean.TRUE.equals(llmConfig.getEnabled()) ? RuleReportEngine.NOTE_PENDING : null));
+        report.setModelName(RuleReportEngine.MODEL_NAME);
+        report.setTokenUsage(0);
+        report.setGenerationTime((int) (System.currentTimeMillis() - startTime));
+        report.setCreatedTime(LocalDateTime.now());
+        report.setDeleted(0);
+        // 并发查看时只保留先插入的一份，都返回这一份
+        reportMapper.insertDraft(report);
+        AiAnalysisReport draft = reportMapper.selectDraft(userId, report.getExamIds(), report.getReportType(),
+                RuleReportEngine.MODEL_NAME);
+        return draft != null ? draft : report;
+    }
+
+    private AiAnalysisReport findExisting(Long userId, String examIds, String reportType,
+                                          WrongQuestionStatistics statistics) {
+        if (!llmConfig.getEnabled()) {
+            return null;
+        }
+        String dataHash = llmService.promptHash(statistics, reportType);
+        return reportMapper.selectByUserAndHash(userId, examIds, reportType, dataHash);
+    }
+
+    /**
+     * @param usageExamId 用量记入的考试，多次考试报告为 null
+     */
+    private AiAnalysisReport saveReport(Long userId, String reportType, String examIds, Long usageExamId,
+                                        WrongQuestionStatistics statistics, LLMReport result, long startTime) {
+        long generationTime = System.currentTimeMillis() - startTime;
+
+        // 保存
+        AiAnalysisReport report = new AiAnalysisReport();
+        report.setUserId(userId);
+        report.setReportType(reportType);
+        report.setExamIds(examIds);
+        report.setAnalysisData(toJson(statistics));
+        report.setDataHash(result.dataHash());
+        report.setAiReport(result.content());
+        report.setModelName(result.fallback() ? RuleReportEngine.MODEL_NAME : llmConfig.getDefaultModel());
+        report.setTokenUsage((int) result.totalTokens());
         report.setGenerationTime((int) generationTime);
         report.setCreatedTime(LocalDateTime.now());
         report.setDeleted(0);
-        
-        reportMapper.insert(report);
+
+        // 已有先行展示的规则报告时原地替换，报告ID不变
+        AiAnalysisReport draft = reportMapper.selectDraft(userId, examIds, reportType, RuleReportEngine.MODEL_NAME);
+        if (draft == null && result.fallback()) {
+            // 规则报告每份只保留一条：并发插入时以已有的为准，再写入本次内容
+            reportMapper.insertDraft(report);
+            draft = reportMapper.selectDraft(userId, examIds, reportType, RuleReportEngine.MODEL_NAME);
+        }
+        if (draft != null) {
+            report.setId(draft.getId());
+            report.setCreatedTime(draft.getCreatedTime());
+            report.setUpdatedTime(LocalDateTime.now());
+            reportMapper.updateById(report);
+        } else {
+            reportMapper.insert(report);
+        }
+        if (!result.cached() && !result.fallback()) {
+            tokenUsage.record(usageExamId, result.promptTokens(), result.completionTokens());
+        }
 
         return report;
     }
@@ -11,6 +11,7 @@ import org.development.exam_online.common.enums.QuestionType;
 import org.development.exam_online.common.exception.BusinessException;
 import org.development.exam_online.common.exception.ErrorCode;
 import org.development.exam_online.dao.dto.AutoGeneratePaperRule;
+import org.development.exam_online.dao.dto.TemplateBatchGenerateRequest;
 import org.development.exam_online.dao.dto.TemplateGenerateRequest;
 import org.development.exam_online.dao.entity.Exam;
 import org.development.exam_online.dao.entity.ExamPaper;
@@ -22,6 +23,11 @@ import org.development.exam_online.dao.mapper.ExamPaperQuestionMapper;
 import org.development.exam_online.dao.mapper.QuestionMapper;
 import org.development.exam_online.security.AuthContext;
 import org.development.exam_online.service.ExamPaperService;
+import org.development.exam_online.service.paper.CandidatePool;
+import org.development.exam_online.service.paper.PaperRules;
+import org.development.exam_online.service.paper.PaperSolver;
+import org.development.exam_online.service.paper.PaperVariantPlanner;
+import org.development.exam_online.service.paper.QuestionCandidateIndex;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
@@ -39,6 +45,12 @@ public class ExamPaperServiceImpl implements ExamPaperService {
     private final ExamPaperQuestionMapper examPaperQuestionMapper;
     private final QuestionMapper questionMapper;
     private final ExamMapper examMapper;
+    private final QuestionCandidateIndex candidateIndex;
+
+    /** 单条批量插入语句的最大行数 */
+    private static final int INSERT_BATCH_SIZE = 500;
+    /** 一次批量生成的最大试卷套数 */
+    private static final int MAX_PAPER_VARIANTS = 50;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -223,18 +235,33 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         // 3. 选题
         List<SelectedQuestion> selectedQuestions = new ArrayList<>();
         List<String> warnings = new ArrayList<>();
-        selectQuestionsWithWarnings(rule, selectedQuestions, warnings);
+        Map<String, Object> solverInfo = selectQuestionsWithWarnings(rule, selectedQuestions, warnings);
 
         // 4. 构建预览结果/不创建试卷
-        Map<String, Object> result = new HashMap<>();
-        
+        Map<String, Object> result = buildPreviewResult(selectedQuestions, warnings, solverInfo);
+
         // 基本信息
         result.put("name", request.getName());
         result.put("description", request.getDescription());
         result.put("duration", request.getDuration());
         result.put("templateCode", request.getTemplateCode());
         result.put("templateName", template.getName());
-        
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> previewAutoGeneration(AutoGeneratePaperRule rule) {
+        List<SelectedQuestion> selectedQuestions = new ArrayList<>();
+        List<String> warnings = new ArrayList<>();
+        Map<String, Object> solverInfo = selectQuestionsWithWarnings(rule, selectedQuestions, warnings);
+        return buildPreviewResult(selectedQuestions, warnings, solverInfo);
+    }
+
+    private Map<String, Object> buildPreviewResult(List<SelectedQuestion> selectedQuestions,
+                                                   List<String> warnings,
+                                                   Map<String, Object> solverInfo) {
+        Map<String, Object> result = new HashMap<>();
+
         // 总分
         BigDecimal totalScore = selectedQuestions.stream()
                 .map(sq -> sq.score)
@@ -286,6 +313,9 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         } else {
             result.put("hasWarnings", false);
         }
+        if (solverInfo != null) {
+            result.put("solver", solverInfo);
+        }
 
         return result;
     }
@@ -337,15 +367,39 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         rule.setAllowDuplicate(false);
         rule.setFallbackMode(AutoGeneratePaperRule.FallbackMode.IGNORE);
 
+        // 5. 约束组卷配置
+        rule.setTargetTotalScore(request.getTargetTotalScore());
+        rule.setRequireKnowledgeCoverage(request.getRequireKnowledgeCoverage());
+        rule.setBalanceCategories(request.getBalanceCategories());
+        rule.setExcludeQuestionIds(request.getExcludeQuestionIds());
+        rule.setTimeBudgetMs(request.getTimeBudgetMs());
+        rule.setUseEmpiricalDifficulty(request.getUseEmpiricalDifficulty());
+
         return rule;
     }
 
-    private void selectQuestionsWithWarnings(AutoGeneratePaperRule rule, 
-                                            List<SelectedQuestion> selectedQuestions,
-                                            List<String> warnings) {
+    /**
+     * 选题；设置了总分、知识点覆盖或分类均衡约束时使用约束求解，否则随机抽题
+     *
+     * @return 约束求解信息，随机抽题时为 null
+     */
+    private Map<String, Object> selectQuestionsWithWarnings(AutoGeneratePaperRule rule,
+                                                            List<SelectedQuestion> selectedQuestions,
+                                                            List<String> warnings) {
+        if (rule.getTypeRules() == null || rule.getTypeRules().isEmpty()) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "题型规则不能为空");
+        }
+        BitSet excludedOrdinals = candidateIndex.ordinalsOf(rule.getExcludeQuestionIds());
+        if (requiresSolver(rule)) {
+            return solveWithConstraints(rule, excludedOrdinals, selectedQuestions, warnings);
+        }
+
         Random random = rule.getRandomSeed() != null ? new Random(rule.getRandomSeed()) : new Random();
         boolean allowDuplicate = Boolean.TRUE.equals(rule.getAllowDuplicate());
-        Set<Long> usedQuestionIds = new HashSet<>();
+        // 跨题型已使用的题目序号（不允许重复时共享），初始为排除的题目
+        BitSet usedOrdinals = (BitSet) excludedOrdinals.clone();
+        // 先在候选索引上只抽取题目序号，最后一次性回表加载选中的题目
+        List<PickedCandidate> picks = new ArrayList<>();
 
         for (Map.Entry<String, AutoGeneratePaperRule.TypeRule> entry : rule.getTypeRules().entrySet()) {
             String typeCode = entry.getKey();
@@ -354,17 +408,9 @@ public class ExamPaperServiceImpl implements ExamPaperService {
             BigDecimal scorePerQuestion = typeRule.getScore() != null
                     ? BigDecimal.valueOf(typeRule.getScore()) : null;
 
-            // 该题型的题目
-            LambdaQueryWrapper<Question> q = new LambdaQueryWrapper<>();
-            q.eq(Question::getType, typeCode)
-                    .eq(Question::getDeleted, 0);
-            if (!CollectionUtils.isEmpty(rule.getCategoryIds())) {
-                q.in(Question::getCategoryId, rule.getCategoryIds());
-            }
-            if (!CollectionUtils.isEmpty(rule.getKnowledgeIds())) {
-                q.in(Question::getKnowledgeId, rule.getKnowledgeIds());
-            }
-            List<Question> candidates = questionMapper.selectList(q);
+            // 该题型的候选池（按难度分组）
+            CandidatePool candidates = candidateIndex.pool(typeCode, rule.getCategoryIds(), rule.getKnowledgeIds(),
+                    Boolean.TRUE.equals(rule.getUseEmpiricalDifficulty()));
 
             if (candidates.isEmpty()) {
                 String typeName = QuestionType.of(typeCode).getLabel();
@@ -372,70 +418,127 @@ public class ExamPaperServiceImpl implements ExamPaperService {
                 continue;
             }
 
-            // 难度分组
-            Map<Integer, List<Question>> byDifficulty = candidates.stream()
-                    .collect(Collectors.groupingBy(question ->
-                            question.getDifficulty() != null ? question.getDifficulty() : 2));
-
             // 每个难度需要的题量
-            Map<Integer, Integer> difficultyNeeds = calculateDifficultyNeeds(
-                    rule, requiredCount, byDifficulty.keySet());
-
-            List<Question> selected = new ArrayList<>();
-
-            if (difficultyNeeds != null && !difficultyNeeds.isEmpty()) {
-                // 按难度分配
-                int totalShortage = 0;
+            Map<Integer, Integer> difficultyNeeds = PaperRules.difficultyNeeds(rule, requiredCount);
 
-                for (Map.Entry<Integer, Integer> dEntry : difficultyNeeds.entrySet()) {
-                    int difficulty = dEntry.getKey();
-                    int need = dEntry.getValue();
-                    List<Question> pool = byDifficulty.getOrDefault(difficulty, Collections.emptyList());
+            // 本题型的排除集合：抽中的序号会被写入，保证同一题型内不重复
+            BitSet excluded = allowDuplicate ? (BitSet) excludedOrdinals.clone() : usedOrdinals;
+            List<Integer> selected = PaperRules.drawType(candidates, difficultyNeeds, requiredCount, excluded, random);
 
-                    if (!allowDuplicate) {
-                        pool = pool.stream()
-                                .filter(qq -> !usedQuestionIds.contains(qq.getId()))
-                                .collect(Collectors.toList());
-                    }
+            if (selected.size() < requiredCount) {
+                String typeName = org.development.exam_online.common.enums.QuestionType.of(typeCode).getLabel();
+                warnings.add(String.format("题型【%s】需要%d道题，但只找到%d道可用题目", 
+                        typeName, requiredCount, selected.size()));
+            }
 
-                    List<Question> picked = pickRandom(pool, need, random);
-                    selected.addAll(picked);
+            for (Integer ordinal : selected) {
+                picks.add(new PickedCandidate(candidates.idOf(ordinal), scorePerQuestion));
+            }
+        }
 
-                    if (picked.size() < need) {
-                        totalShortage += (need - picked.size());
-                    }
-                }
+        loadSelectedQuestions(picks, selectedQuestions);
+        return null;
+    }
 
-                // 不足的情况
-                if (totalShortage > 0) {
-                    Set<Long> selectedIds = selected.stream().map(Question::getId).collect(Collectors.toSet());
-                    List<Question> remaining = candidates.stream()
-                            .filter(qq -> !selectedIds.contains(qq.getId()))
-                            .filter(qq -> allowDuplicate || !usedQuestionIds.contains(qq.getId()))
-                            .collect(Collectors.toList());
+    private boolean requiresSolver(AutoGeneratePaperRule rule) {
+        return rule.getTargetTotalScore() != null
+                || Boolean.TRUE.equals(rule.getRequireKnowledgeCoverage())
+                || Boolean.TRUE.equals(rule.getBalanceCategories());
+    }
 
-                    List<Question> extra = pickRandom(remaining, totalShortage, random);
-                    selected.addAll(extra);
-                }
-            } else {
-                List<Question> pool = allowDuplicate ? candidates :
-                        candidates.stream()
-                                .filter(qq -> !usedQuestionIds.contains(qq.getId()))
-                                .collect(Collectors.toList());
-                selected = pickRandom(pool, requiredCount, random);
+    /**
+     * 约束求解组卷：同时考虑题量、总分、难度分布、知识点覆盖、分类均衡，时间预算内取最优解
+     */
+    private Map<String, Object> solveWithConstraints(AutoGeneratePaperRule rule, BitSet excludedOrdinals,
+                                                     List<SelectedQuestion> selectedQuestions,
+                                                     List<String> warnings) {
+        List<PaperSolver.TypeSlot> slots = buildTypeSlots(rule, warnings);
+
+        List<Long> coverKnowledgeIds = Boolean.TRUE.equals(rule.getRequireKnowledgeCoverage())
+                ? rule.getKnowledgeIds() : null;
+        List<Long> balanceCategoryIds = Boolean.TRUE.equals(rule.getBalanceCategories())
+                ? rule.getCategoryIds() : null;
+        if (Boolean.TRUE.equals(rule.getRequireKnowledgeCoverage()) && CollectionUtils.isEmpty(coverKnowledgeIds)) {
+            warnings.add("未指定知识点，已忽略知识点覆盖要求");
+        }
+        if (Boolean.TRUE.equals(rule.getBalanceCategories()) && CollectionUtils.isEmpty(balanceCategoryIds)) {
+            warnings.add("未指定分类，已忽略分类均衡要求");
+        }
+
+        PaperSolver.Solution solution = PaperSolver.solve(new PaperSolver.Problem(
+                slots, excludedOrdinals, rule.getTargetTotalScore(), coverKnowledgeIds, balanceCategoryIds,
+                rule.getTimeBudgetMs() != null ? rule.getTimeBudgetMs() : PaperSolver.DEFAULT_TIME_BUDGET_MS,
+                rule.getRandomSeed()));
+
+        List<PickedCandidate> picks = new ArrayList<>();
+        for (int t = 0; t < slots.size(); t++) {
+            PaperSolver.TypeSlot slot = slots.get(t);
+            BigDecimal scorePerQuestion = slot.fixedScore() != null ? BigDecimal.valueOf(slot.fixedScore()) : null;
+            for (int ordinal : solution.picks().get(t)) {
+                picks.add(new PickedCandidate(slot.pool().idOf(ordinal), scorePerQuestion));
             }
+        }
 
-            if (selected.size() < requiredCount) {
-                String typeName = org.development.exam_online.common.enums.QuestionType.of(typeCode).getLabel();
-                warnings.add(String.format("题型【%s】需要%d道题，但只找到%d道可用题目", 
-                        typeName, requiredCount, selected.size()));
+        List<Map<String, Object>> relaxed = new ArrayList<>();
+        for (PaperSolver.Relaxation relaxation : solution.relaxations()) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("constraint", relaxation.constraint());
+            m.put("message", relaxation.message());
+            relaxed.add(m);
+            warnings.add(relaxation.message());
+        }
+
+        loadSelectedQuestions(picks, selectedQuestions);
+
+        Map<String, Object> info = new HashMap<>();
+        info.put("engine", "CONSTRAINT_SOLVER");
+        info.put("relaxedConstraints", relaxed);
+        info.put("allConstraintsSatisfied", relaxed.isEmpty());
+        info.put("iterations", solution.iterations());
+        info.put("chains", solution.chains());
+        info.put("elapsedMs", solution.elapsedMs());
+        return info;
+    }
+
+    /**
+     * 按题型规则查询候选池并计算各难度题量，没有候选题的题型跳过并记录警告
+     */
+    private List<PaperSolver.TypeSlot> buildTypeSlots(AutoGeneratePaperRule rule, List<String> warnings) {
+        List<PaperSolver.TypeSlot> slots = new ArrayList<>();
+        for (Map.Entry<String, AutoGeneratePaperRule.TypeRule> entry : rule.getTypeRules().entrySet()) {
+            String typeCode = entry.getKey();
+            AutoGeneratePaperRule.TypeRule typeRule = entry.getValue();
+            String typeName = QuestionType.of(typeCode).getLabel();
+            CandidatePool candidates = candidateIndex.pool(typeCode, rule.getCategoryIds(), rule.getKnowledgeIds(),
+                    Boolean.TRUE.equals(rule.getUseEmpiricalDifficulty()));
+            if (candidates.isEmpty()) {
+                warnings.add(String.format("题型【%s】没有可用的题目，已跳过该题型", typeName));
+                continue;
             }
+            int requiredCount = typeRule.getCount() != null ? typeRule.getCount() : 0;
+            Map<Integer, Integer> difficultyNeeds = PaperRules.difficultyNeeds(rule, requiredCount);
+            slots.add(new PaperSolver.TypeSlot(typeCode, typeName, candidates, requiredCount,
+                    typeRule.getScore(), difficultyNeeds));
+        }
+        return slots;
+    }
 
-            for (Question sq : selected) {
-                usedQuestionIds.add(sq.getId());
-                BigDecimal finalScore = scorePerQuestion != null ? scorePerQuestion : sq.getScore();
+    /**
+     * 仅按选中的题目ID回表加载题目详情
+     */
+    private void loadSelectedQuestions(List<PickedCandidate> picks, List<SelectedQuestion> selectedQuestions) {
+        if (!picks.isEmpty()) {
+            List<Long> pickedIds = picks.stream().map(p -> p.questionId).distinct().collect(Collectors.toList());
+            // selectBatchIds 不带逻辑删除条件，索引尚未摘除的已删除题目在这里跳过
+            Map<Long, Question> questionMap = questionMapper.selectBatchIds(pickedIds).stream()
+                    .filter(q -> !Objects.equals(q.getDeleted(), 1))
+                    .collect(Collectors.toMap(Question::getId, q -> q));
+            for (PickedCandidate pick : picks) {
+                Question question = questionMap.get(pick.questionId);
+                if (question == null) continue;
+                BigDecimal finalScore = pick.score != null ? pick.score : question.getScore();
                 if (finalScore == null) finalScore = BigDecimal.ZERO;
-                selectedQuestions.add(new SelectedQuestion(sq, finalScore));
+                selectedQuestions.add(new SelectedQuestion(question, finalScore));
             }
         }
 
@@ -444,6 +547,143 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         }
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Map<String, Object> generatePaperVariants(TemplateBatchGenerateRequest request) {
+        TemplateGenerateRequest templateRequest = request.getTemplate();
+        PaperTemplate template = PaperTemplate.fromCode(templateRequest.getTemplateCode());
+        if (template == null) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "无效的模板代码: " + templateRequest.getTemplateCode());
+        }
+        int variantCount = request.getVariantCount();
+        if (variantCount < 2 || variantCount > MAX_PAPER_VARIANTS) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "试卷套数需在2到" + MAX_PAPER_VARIANTS + "之间");
+        }
+
+        AutoGeneratePaperRule rule = buildRuleFromTemplate(template, templateRequest);
+        long seed = request.getRandomSeed() != null ? request.getRandomSeed() : new Random().nextLong();
+        rule.setRandomSeed(seed);
+
+        // 1. 在候选索引上规划各套试卷
+        List<String> warnings = new ArrayList<>();
+        List<PaperSolver.TypeSlot> slots = buildTypeSlots(rule, warnings);
+        if (slots.isEmpty()) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "未能选出任何题目，请检查分类和知识点筛选条件");
+        }
+        Integer maxShared = request.getMaxSharedQuestions();
+        PaperVariantPlanner.Plan plan = PaperVariantPlanner.plan(
+                slots, candidateIndex.ordinalsOf(rule.getExcludeQuestionIds()), variantCount, maxShared, seed);
+
+        if (plan.limitedByOverlap()) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, String.format(
+                    "题库题量不足，无法生成%d套相同题目不超过%d道的试卷", variantCount, maxShared));
+        }
+        for (int t = 0; t < slots.size(); t++) {
+            PaperSolver.TypeSlot slot = slots.get(t);
+            // 按找到的题量归并各套试卷，每种缺题情况只提示一次
+            Map<Integer, List<Integer>> variantsByFound = new TreeMap<>();
+            for (int v = 0; v < variantCount; v++) {
+                if (plan.shortages()[v][t] > 0) {
+                    variantsByFound.computeIfAbsent(slot.count() - plan.shortages()[v][t], k -> new ArrayList<>())
+                            .add(v + 1);
+                }
+            }
+            variantsByFound.forEach((found, variantNos) -> warnings.add(String.format(
+                    "题型【%s】需要%d道题，但第%s套只找到%d道可用题目", slot.typeLabel(), slot.count(),
+                    variantNos.stream().map(String::valueOf).collect(Collectors.joining("、")), found)));
+        }
+
+        // 2. 组装试卷和试卷题目（分值取自候选索引，不回表）
+        String ruleJson;
+        try {
+            ruleJson = new ObjectMapper().writeValueAsString(rule);
+        } catch (Exception e) {
+            ruleJson = "{}";
+        }
+        Long userId = AuthContext.getUserId();
+        List<ExamPaper> papers = new ArrayList<>(variantCount);
+        List<List<ExamPaperQuestion>> paperQuestions = new ArrayList<>(variantCount);
+        List<Map<Integer, Integer>> difficultyDistributions = new ArrayList<>(variantCount);
+        for (int v = 0; v < variantCount; v++) {
+            List<ExamPaperQuestion> rows = new ArrayList<>();
+            Map<Integer, Integer> difficultyDistribution = new TreeMap<>();
+            BigDecimal totalScore = BigDecimal.ZERO;
+            for (int t = 0; t < slots.size(); t++) {
+                PaperSolver.TypeSlot slot = slots.get(t);
+                for (int ordinal : plan.variants()[v][t]) {
+                    BigDecimal score = slot.fixedScore() != null
+                            ? BigDecimal.valueOf(slot.fixedScore())
+                            : BigDecimal.valueOf(slot.pool().scoreOf(ordinal));
+                    ExamPaperQuestion epq = new ExamPaperQuestion();
+                    epq.setQuestionId(slot.pool().idOf(ordinal));
+                    epq.setQuestionScore(score);
+                    epq.setQuestionOrder(rows.size() + 1);
+                    rows.add(epq);
+                    totalScore = totalScore.add(score);
+                    Integer difficulty = slot.pool().difficultyOf(ordinal);
+                    difficultyDistribution.merge(difficulty != null ? difficulty : 2, 1, Integer::sum);
+                }
+            }
+            ExamPaper paper = new ExamPaper();
+            paper.setName(String.format("%s（第%d套）", templateRequest.getName(), v + 1));
+            paper.setDescription(templateRequest.getDescription());
+            paper.setDuration(templateRequest.getDuration());
+            paper.setBuildType(2); // 模板组卷
+            paper.setRuleJson(ruleJson);
+            paper.setTotalScore(totalScore);
+            paper.setCreatedBy(userId);
+            paper.setDeleted(0);
+            papers.add(paper);
+            paperQuestions.add(rows);
+            difficultyDistributions.add(difficultyDistribution);
+        }
+
+        // 3. 批量写入
+        examPaperMapper.insertBatch(papers);
+        List<ExamPaperQuestion> allRows = new ArrayList<>();
+        for (int v = 0; v < variantCount; v++) {
+            Long paperId = papers.get(v).getId();
+            for (ExamPaperQuestion epq : paperQuestions.get(v)) {
+                epq.setPaperId(paperId);
+                allRows.add(epq);
+            }
+        }
+        insertPaperQuestionsInBatches(allRows);
+
+        // 4. 返回结果
+        List<Map<String, Object>> paperList = new ArrayList<>();
+        for (int v = 0; v < variantCount; v++) {
+            ExamPaper paper = papers.get(v);
+            Map<String, Object> m = new HashMap<>();
+            m.put("paperId", paper.getId());
+            m.put("name", paper.getName());
+            m.put("totalScore", paper.getTotalScore());
+            m.put("totalQuestions", paperQuestions.get(v).size());
+            m.put("difficultyDistribution", difficultyDistributions.get(v));
+            paperList.add(m);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("templateCode", templateRequest.getTemplateCode());
+        result.put("templateName", template.getName());
+        result.put("variantCount", variantCount);
+        result.put("randomSeed", seed);
+        result.put("maxSharedQuestions", plan.maxShared());
+        result.put("papers", paperList);
+        if (!warnings.isEmpty()) {
+            result.put("warnings", warnings);
+            result.put("hasWarnings", true);
+        } else {
+            result.put("hasWarnings", false);
+        }
+        return result;
+    }
+
+    private void insertPaperQuestionsInBatches(List<ExamPaperQuestion> rows) {
+        for (int from = 0; from < rows.size(); from += INSERT_BATCH_SIZE) {
+            examPaperQuestionMapper.insertBatch(rows.subList(from, Math.min(rows.size(), from + INSERT_BATCH_SIZE)));
+        }
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public String saveAutoGeneratedPapers(Long paperId, List<Long> questionIds, List<Double> scores) {
@@ -457,6 +697,7 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         examPaperQuestionMapper.delete(clearQ);
 
         // 添加新题目
+        List<ExamPaperQuestion> rows = new ArrayList<>(questionIds.size());
         for (int i = 0; i < questionIds.size(); i++) {
             ExamPaperQuestion epq = new ExamPaperQuestion();
             epq.setPaperId(paperId);
@@ -466,8 +707,9 @@ public class ExamPaperServiceImpl implements ExamPaperService {
                     : BigDecimal.ZERO;
             epq.setQuestionScore(score);
             epq.setQuestionOrder(i + 1);
-            examPaperQuestionMapper.insert(epq);
+            rows.add(epq);
         }
+        insertPaperQuestionsInBatches(rows);
         updatePaperTotalScore(paperId);
         return "自动组卷结果保存成功";
     }
@@ -484,51 +726,14 @@ public class ExamPaperServiceImpl implements ExamPaperService {
         }
     }
 
-    private Map<Integer, Integer> calculateDifficultyNeeds(
-            AutoGeneratePaperRule rule, int totalCount, Set<Integer> availableDifficulties) {
-
-        if (rule.getDifficultyMode() == null) {
-            return null; // 不限制难度
-        }
-
-        Map<Integer, Integer> needs = new HashMap<>();
-
-        if (rule.getDifficultyMode() == AutoGeneratePaperRule.DifficultyMode.QUOTA) {
-            Map<Integer, Integer> quota = rule.getDifficultyQuota();
-            if (quota != null) {
-                needs.putAll(quota);
-            }
-        } else if (rule.getDifficultyMode() == AutoGeneratePaperRule.DifficultyMode.RATIO) {
-            Map<Integer, Double> ratio = rule.getDifficultyRatio();
-            if (ratio != null) {
-                int assigned = 0;
-                List<Map.Entry<Integer, Double>> entries = new ArrayList<>(ratio.entrySet());
-                for (int i = 0; i < entries.size(); i++) {
-                    Map.Entry<Integer, Double> e = entries.get(i);
-                    int count;
-                    if (i == entries.size() - 1) {
-                        count = totalCount - assigned;
-                    } else {
-                        count = (int) Math.round(totalCount * e.getValue());
-                    }
-                    if (count > 0) {
-                        needs.put(e.getKey(), count);
-                        assigned += count;
-                    }
-                }
-            }
-        }
-
-        return needs;
-    }
+    private static class PickedCandidate {
+        long questionId;
+        BigDecimal score;
 
-    private List<Question> pickRandom(List<Question> pool, int count, Random random) {
-        if (pool == null || pool.isEmpty() || count <= 0) {
-            return new ArrayList<>();
+        PickedCandidate(long questionId, BigDecimal score) {
+            this.questionId = questionId;
+            this.score = score;
         }
-        List<Question> shuffled = new ArrayList<>(pool);
-        Collections.shuffle(shuffled, random);
-        return shuffled.subList(0, Math.min(count, shuffled.size()));
     }
 
 //    private Map<String, Object> buildAutoGenerateResult(ExamPaper paper, List<SelectedQuestion> selectedQuestions) {
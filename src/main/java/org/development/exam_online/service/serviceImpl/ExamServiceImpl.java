@@ -7,23 +7,26 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.development.exam_online.common.PageResult;
-import org.development.exam_online.common.constants.ExamRecordStatus;
+import org.development.exam_online.common.constants.ExamShuffleMode;
 import org.development.exam_online.common.exception.BusinessException;
 import org.development.exam_online.common.exception.ErrorCode;
 import org.development.exam_online.dao.entity.Exam;
 import org.development.exam_online.dao.entity.ExamPaper;
 import org.development.exam_online.dao.entity.ExamRecord;
+import org.development.exam_online.dao.entity.ExamScoreBucket;
+import org.development.exam_online.dao.entity.ExamStatistics;
 import org.development.exam_online.dao.mapper.ExamMapper;
 import org.development.exam_online.dao.mapper.ExamPaperMapper;
 import org.development.exam_online.dao.mapper.ExamPaperQuestionSnapshotMapper;
 import org.development.exam_online.dao.mapper.ExamRecordMapper;
 import org.development.exam_online.security.AuthContext;
 import org.development.exam_online.service.ExamService;
+import org.development.exam_online.service.statistics.ExamStatisticsAggregator;
+import org.development.exam_online.service.taking.ExamQuestionDrawer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -36,6 +39,8 @@ public class ExamServiceImpl implements ExamService {
     private final ExamPaperMapper examPaperMapper;
     private final ExamRecordMapper examRecordMapper;
     private final ExamPaperQuestionSnapshotMapper snapshotMapper;
+    private final ExamQuestionDrawer questionDrawer;
+    private final ExamStatisticsAggregator statisticsAggregator;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
@@ -51,6 +56,8 @@ public class ExamServiceImpl implements ExamService {
         if (paper == null || Objects.equals(paper.getDeleted(), 1)) {
             throw new BusinessException(ErrorCode.EXAM_PAPER_NOT_FOUND);
         }
+        validateShuffleMode(exam);
+        validateDrawRule(exam);
         exam.setId(null);
         exam.setDeleted(0);
         if (exam.getCreatedBy() == null) {
@@ -85,6 +92,8 @@ public class ExamServiceImpl implements ExamService {
         if (exam == null) {
             exam = new Exam();
         }
+        validateShuffleMode(exam);
+        validateDrawRule(exam);
         exam.setId(null);
         exam.setPaperId(paperId);
         if (!StringUtils.hasText(exam.getName())) {
@@ -128,6 +137,8 @@ public class ExamServiceImpl implements ExamService {
         if (exam == null) {
             throw new BusinessException(ErrorCode.BAD_REQUEST, "考试信息不能为空");
         }
+        validateShuffleMode(exam);
+        validateDrawRule(exam);
         exam.setId(examId);
         int updated = examMapper.updateById(exam);
         if (updated <= 0) {
@@ -323,67 +334,42 @@ public class ExamServiceImpl implements ExamService {
     @Override
     public Map<String, Object> getExamStatistics(Long examId) {
         Exam exam = requireActiveExam(examId);
-        LambdaQueryWrapper<ExamRecord> q = new LambdaQueryWrapper<>();
-        q.eq(ExamRecord::getExamId, examId)
-                .eq(ExamRecord::getDeleted, 0);
-        List<ExamRecord> records = examRecordMapper.selectList(q);
+        ExamStatistics stats = statisticsAggregator.get(examId);
 
         Map<String, Object> statistics = new HashMap<>();
         statistics.put("examId", examId);
         statistics.put("examName", exam.getName());
-        statistics.put("totalParticipants", records.size());
+        statistics.put("totalParticipants", stats.getParticipantCount());
+        statistics.put("completedCount", ExamStatisticsAggregator.submittedCount(stats));
+        statistics.put("inProgressCount", (long) stats.getInProgressCount());
+        statistics.put("notStartedCount", (long) stats.getNotStartedCount());
 
-        if (records.isEmpty()) {
-            statistics.put("completedCount", 0L);
-            statistics.put("inProgressCount", 0L);
-            statistics.put("notStartedCount", 0L);
+        List<ExamScoreBucket> buckets = stats.getScoredCount() > 0
+                ? statisticsAggregator.buckets(examId) : Collections.emptyList();
+        if (buckets.isEmpty()) {
             statistics.put("averageScore", 0);
             statistics.put("highestScore", 0);
             statistics.put("lowestScore", 0);
-            return statistics;
+        } else {
+            statistics.put("averageScore", ExamStatisticsAggregator.average(stats).doubleValue());
+            statistics.put("highestScore",
+                    ExamStatisticsAggregator.scoreOf(buckets.get(buckets.size() - 1).getBucket()).doubleValue());
+            statistics.put("lowestScore", ExamStatisticsAggregator.scoreOf(buckets.get(0).getBucket()).doubleValue());
         }
 
-        long completedCount = records.stream()
-                .filter(r -> ExamRecordStatus.isSubmitted(r.getStatus()) || r.getSubmitTime() != null)
-                .count();
-        long inProgressCount = records.stream()
-                .filter(r -> ExamRecordStatus.isInProgress(r.getStatus()) && r.getSubmitTime() == null)
-                .count();
-        long notStartedCount = records.stream()
-                .filter(r -> r.getStartTime() == null)
-                .count();
-
-        statistics.put("completedCount", completedCount);
-        statistics.put("inProgressCount", inProgressCount);
-        statistics.put("notStartedCount", notStartedCount);
+        return statistics;
+    }
 
-        List<ExamRecord> submitted = records.stream()
-                .filter(r -> r.getTotalScore() != null)
-                .toList();
-        if (submitted.isEmpty()) {
-            statistics.put("averageScore", 0);
-            statistics.put("highestScore", 0);
-            statistics.put("lowestScore", 0);
-        } else {
-            BigDecimal totalScore = submitted.stream()
-                    .map(ExamRecord::getTotalScore)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            BigDecimal average = totalScore
-                    .divide(BigDecimal.valueOf(submitted.size()), 2, java.math.RoundingMode.HALF_UP);
-            BigDecimal highest = submitted.stream()
-                    .map(ExamRecord::getTotalScore)
-                    .max(BigDecimal::compareTo)
-                    .orElse(BigDecimal.ZERO);
-            BigDecimal lowest = submitted.stream()
-                    .map(ExamRecord::getTotalScore)
-                    .min(BigDecimal::compareTo)
-                    .orElse(BigDecimal.ZERO);
-            statistics.put("averageScore", average.doubleValue());
-            statistics.put("highestScore", highest.doubleValue());
-            statistics.put("lowestScore", lowest.doubleValue());
+    private void validateShuffleMode(Exam exam) {
+        if (exam != null && !ExamShuffleMode.isValid(exam.getShuffleMode())) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "乱序方式无效，可选值：0不乱序 1题目乱序 2选项乱序 3全部乱序");
         }
+    }
 
-        return statistics;
+    private void validateDrawRule(Exam exam) {
+        if (ExamQuestionDrawer.isDrawMode(exam)) {
+            questionDrawer.validateRule(exam.getDrawRuleJson());
+        }
     }
 
     private Exam requireActiveExam(Long examId) {
@@ -4,13 +4,19 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.development.exam_online.common.constants.ExamRecordStatus;
+import org.development.exam_online.common.constants.ExamShuffleMode;
 import org.development.exam_online.common.exception.BusinessException;
 import org.development.exam_online.common.exception.ErrorCode;
 import org.development.exam_online.common.enums.QuestionType;
 import org.development.exam_online.dao.entity.*;
 import org.development.exam_online.dao.mapper.*;
 import org.development.exam_online.service.ExamTakingService;
+import org.development.exam_online.service.cache.ExamSnapshot;
+import org.development.exam_online.service.cache.ExamSnapshotCache;
 import org.development.exam_online.service.grading.GradingHelper;
+import org.development.exam_online.service.statistics.ExamStatisticsAggregator;
+import org.development.exam_online.service.taking.ExamQuestionDrawer;
+import org.development.exam_online.service.taking.ExamShuffle;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,10 +34,13 @@ public class ExamTakingServiceImpl implements ExamTakingService {
     private final ExamPaperMapper examPaperMapper;
     private final ExamPaperQuestionMapper examPaperQuestionMapper;
     private final ExamPaperQuestionSnapshotMapper snapshotMapper;
-    private final QuestionMapper questionMapper;
     private final ExamRecordMapper examRecordMapper;
     private final ExamAnswerMapper examAnswerMapper;
     private final ExamCheatLogMapper examCheatLogMapper;
+    private final ExamRecordQuestionMapper recordQuestionMapper;
+    private final ExamSnapshotCache snapshotCache;
+    private final ExamQuestionDrawer questionDrawer;
+    private final ExamStatisticsAggregator statisticsAggregator;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Override
@@ -70,16 +79,27 @@ public class ExamTakingServiceImpl implements ExamTakingService {
         if (inserted <= 0) {
             throw new BusinessException(ErrorCode.DATABASE_ERROR, "创建考试记录失败");
         }
-
-        long questionCount = getSnapshotQuestionCount(examId);
+        statisticsAggregator.onRecordCreated(record);
+
+        long questionCount;
+        BigDecimal snapshotTotalScore;
+        if (ExamQuestionDrawer.isDrawMode(exam)) {
+            // 随机抽题：在候选题索引上为该考生抽题并保存，题量和总分取自抽题结果
+            ExamQuestionDrawer.Draw draw = questionDrawer.draw(exam, record.getId());
+            if (draw.questionIds().isEmpty()) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, "题库中没有符合抽题规则的题目");
+            }
+            recordQuestionMapper.insert(ExamQuestionDrawer.encode(examId, record.getId(), draw));
+            questionCount = draw.questionIds().size();
+            snapshotTotalScore = draw.totalScore();
+        } else {
+            // 题量和总分取自快照缓存
+            ExamSnapshot snapshot = snapshotCache.get(examId);
+            questionCount = snapshot.items().size();
+            snapshotTotalScore = snapshot.totalScore();
+        }
         int duration = resolveDuration(exam, paper);
 
-        // 从快照计算试卷总分
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(examId);
-        BigDecimal snapshotTotalScore = snapshots.stream()
-                .map(s -> s.getQuestionScore() != null ? s.getQuestionScore() : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
         Map<String, Object> result = new HashMap<>();
         result.put("examId", examId);
         result.put("examName", exam.getName());
@@ -139,9 +159,9 @@ public class ExamTakingServiceImpl implements ExamTakingService {
             throw new BusinessException(ErrorCode.EXAM_ALREADY_SUBMITTED);
         }
 
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(examId);
         Map<Long, ExamAnswer> answerMap = getAnswerMap(record.getId());
-        Map<String, Object> result = buildQuestionViewFromSnapshot(exam, paper, record, snapshots, answerMap, false);
+        Map<String, Object> result = buildQuestionViewFromSnapshot(exam, paper, record,
+                snapshotCache.forRecord(exam, record.getId()), answerMap, false);
         return result;
     }
 
@@ -151,7 +171,7 @@ public class ExamTakingServiceImpl implements ExamTakingService {
         Exam exam = requireActiveExam(examId);
         ExamRecord record = requireExamRecord(examId, userId);
         validateExamInProgress(exam, record);
-        upsertAnswer(record.getId(), questionId, answer);
+        upsertAnswer(record.getId(), questionId, toCanonicalAnswer(exam, record, questionId, answer));
     }
 
     @Override
@@ -164,7 +184,7 @@ public class ExamTakingServiceImpl implements ExamTakingService {
             return;
         }
         for (Map.Entry<Long, String> e : answers.entrySet()) {
-            upsertAnswer(record.getId(), e.getKey(), e.getValue());
+            upsertAnswer(record.getId(), e.getKey(), toCanonicalAnswer(exam, record, e.getKey(), e.getValue()));
         }
     }
 
@@ -223,14 +243,13 @@ public class ExamTakingServiceImpl implements ExamTakingService {
         ExamPaper paper = requireActivePaper(exam.getPaperId());
         ExamRecord record = requireExamRecord(examId, userId);
         validateExamInProgress(exam, record);
+        ExamStatisticsAggregator.RecordState before = ExamStatisticsAggregator.RecordState.of(record);
 
-        // 客观题自动判分（使用快照中的试卷分值）
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(examId);
+        // 客观题自动判分（使用快照中的试卷分值；答案已按原始选项字母保存）
+        ExamSnapshot snapshot = snapshotCache.forRecord(exam, record.getId());
+        List<ExamPaperQuestionSnapshot> snapshots = snapshot.items();
         Map<Long, ExamAnswer> answers = getAnswerMap(record.getId());
-        List<Long> qIds = snapshots.stream().map(ExamPaperQuestionSnapshot::getQuestionId).toList();
-        List<Question> questions = questionMapper.selectBatchIdsIgnoreDeleted(qIds);
-        Map<Long, Question> questionMap = questions.stream()
-                .collect(Collectors.toMap(Question::getId, q -> q));
+        Map<Long, Question> questionMap = snapshot.questions();
 
         BigDecimal objectiveScore = BigDecimal.ZERO;
         for (ExamPaperQuestionSnapshot snap : snapshots) {
@@ -288,6 +307,7 @@ public class ExamTakingServiceImpl implements ExamTakingService {
         }
         record.setSubmitTime(LocalDateTime.now());
         examRecordMapper.updateById(record);
+        statisticsAggregator.onRecordChanged(examId, before, record);
 
         Map<String, Object> result = new HashMap<>();
         result.put("examId", examId);
@@ -304,9 +324,9 @@ public class ExamTakingServiceImpl implements ExamTakingService {
         ExamPaper paper = requireActivePaper(exam.getPaperId());
         ExamRecord record = requireExamRecord(examId, userId);
 
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(examId);
         Map<Long, ExamAnswer> answerMap = getAnswerMap(record.getId());
-        Map<String, Object> view = buildQuestionViewFromSnapshot(exam, paper, record, snapshots, answerMap, true);
+        Map<String, Object> view = buildQuestionViewFromSnapshot(exam, paper, record,
+                snapshotCache.forRecord(exam, record.getId()), answerMap, true);
         long remainingSeconds = computeRemainingSeconds(exam, record);
         view.put("remainingTime", remainingSeconds);
         return view;
@@ -348,12 +368,6 @@ public class ExamTakingServiceImpl implements ExamTakingService {
         return records.get(0);
     }
 
-    private long getSnapshotQuestionCount(Long examId) {
-        LambdaQueryWrapper<ExamPaperQuestionSnapshot> q = new LambdaQueryWrapper<>();
-        q.eq(ExamPaperQuestionSnapshot::getExamId, examId);
-        return snapshotMapper.selectCount(q);
-    }
-
     private int resolveDuration(Exam exam, ExamPaper paper) {
         if (paper.getDuration() != null && paper.getDuration() > 0) {
             return paper.getDuration();
@@ -372,16 +386,6 @@ public class ExamTakingServiceImpl implements ExamTakingService {
         return examPaperQuestionMapper.selectList(q);
     }
 
-    /**
-     * 从快照表获取考试的题目列表（考试发布时冻结的版本）
-     */
-    private List<ExamPaperQuestionSnapshot> getSnapshotQuestions(Long examId) {
-        LambdaQueryWrapper<ExamPaperQuestionSnapshot> q = new LambdaQueryWrapper<>();
-        q.eq(ExamPaperQuestionSnapshot::getExamId, examId)
-                .orderByAsc(ExamPaperQuestionSnapshot::getQuestionOrder);
-        return snapshotMapper.selectList(q);
-    }
-
     private Map<Long, ExamAnswer> getAnswerMap(Long recordId) {
         LambdaQueryWrapper<ExamAnswer> q = new LambdaQueryWrapper<>();
         q.eq(ExamAnswer::getRecordId, recordId)
@@ -507,31 +511,49 @@ public class ExamTakingServiceImpl implements ExamTakingService {
         return Math.max(seconds, 0L);
     }
 
+    /**
+     * 按考试的乱序设置，将考生提交的答案转换为原始选项字母
+     */
+    private String toCanonicalAnswer(Exam exam, ExamRecord record, Long questionId, String answerJson) {
+        if (!ExamShuffleMode.shuffleOptions(exam.getShuffleMode()) || questionId == null) {
+            return answerJson;
+        }
+        Question q = snapshotCache.forRecord(exam, record.getId()).questions().get(questionId);
+        ExamShuffle.OptionLayout layout = ExamShuffle.optionLayout(q, ExamShuffle.seed(exam.getId(), record.getId()));
+        return layout != null ? layout.toCanonical(answerJson) : answerJson;
+    }
+
     private Map<String, Object> buildQuestionViewFromSnapshot(Exam exam,
                                                   ExamPaper paper,
                                                   ExamRecord record,
-                                                  List<ExamPaperQuestionSnapshot> snapshots,
+                                                  ExamSnapshot snapshot,
                                                   Map<Long, ExamAnswer> answers,
                                                   boolean includeAnswers) {
-        List<Long> qIds = snapshots.stream().map(ExamPaperQuestionSnapshot::getQuestionId).toList();
-        List<Question> questions = questionMapper.selectBatchIdsIgnoreDeleted(qIds);
-        Map<Long, Question> questionMap = questions.stream()
-                .collect(Collectors.toMap(Question::getId, q -> q));
+        Map<Long, Question> questionMap = snapshot.questions();
+        long seed = ExamShuffle.seed(exam.getId(), record.getId());
+        boolean shuffleQuestions = ExamShuffleMode.shuffleQuestions(exam.getShuffleMode());
+        boolean shuffleOptions = ExamShuffleMode.shuffleOptions(exam.getShuffleMode());
+        List<ExamPaperQuestionSnapshot> snapshots = shuffleQuestions
+                ? ExamShuffle.shuffleQuestions(snapshot.items(), seed)
+                : snapshot.items();
 
         List<Map<String, Object>> questionViews = new ArrayList<>();
+        int order = 0;
         for (ExamPaperQuestionSnapshot snap : snapshots) {
             Question q = questionMap.get(snap.getQuestionId());
             if (q == null) continue;
+            ExamShuffle.OptionLayout layout = shuffleOptions ? ExamShuffle.optionLayout(q, seed) : null;
             Map<String, Object> m = new HashMap<>();
             m.put("id", q.getId());
             m.put("type", q.getType());
             m.put("stem", q.getStem());
-            m.put("optionsJson", q.getOptionsJson());
+            m.put("optionsJson", layout != null ? layout.displayOptionsJson() : q.getOptionsJson());
             if (includeAnswers) {
                 ExamAnswer ans = answers.get(q.getId());
                 if (ans != null && ans.getUserAnswer() != null) {
+                    String userAnswer = layout != null ? layout.toDisplay(ans.getUserAnswer()) : ans.getUserAnswer();
                     try {
-                        m.put("userAnswer", objectMapper.readTree(ans.getUserAnswer()));
+                        m.put("userAnswer", objectMapper.readTree(userAnswer));
                     } catch (Exception e) {
                         throw new BusinessException(ErrorCode.INTERNAL_ERROR, "存储的答案JSON无效");
                     }
@@ -541,7 +563,7 @@ public class ExamTakingServiceImpl implements ExamTakingService {
             }
             m.put("score", snap.getQuestionScore());
             m.put("difficulty", q.getDifficulty());
-            m.put("order", snap.getQuestionOrder());
+            m.put("order", shuffleQuestions ? ++order : snap.getQuestionOrder());
             questionViews.add(m);
         }
 
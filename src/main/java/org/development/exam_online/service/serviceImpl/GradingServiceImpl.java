@@ -9,51 +9,70 @@ import org.development.exam_online.common.constants.ExamRecordStatus;
 import org.development.exam_online.common.exception.BusinessException;
 import org.development.exam_online.common.exception.ErrorCode;
 import org.development.exam_online.common.enums.QuestionType;
+import org.development.exam_online.dao.dto.GradeSubmission;
+import org.development.exam_online.dao.dto.WrongQuestionStatistics;
 import org.development.exam_online.dao.entity.*;
 import org.development.exam_online.dao.mapper.*;
 import org.development.exam_online.service.AnalysisService;
 import org.development.exam_online.service.GradingService;
+import org.development.exam_online.service.archive.ExamArchiveService;
+import org.development.exam_online.service.cache.ExamSnapshot;
+import org.development.exam_online.service.cache.ExamSnapshotCache;
+import org.development.exam_online.service.cache.KnowledgeDictionary;
+import org.development.exam_online.service.grading.ItemAnalyzer;
+import org.development.exam_online.service.report.AiReportJobQueue;
+import org.development.exam_online.service.report.AiReportStreamer;
+import org.development.exam_online.service.report.AiReportWorker;
+import org.development.exam_online.service.report.RuleReportEngine;
+import org.development.exam_online.service.statistics.AnalyticsCube;
+import org.development.exam_online.service.statistics.ExamScoreRanking;
+import org.development.exam_online.service.statistics.ExamStatisticsAggregator;
+import org.development.exam_online.service.statistics.StudentMasteryAggregator;
+import org.development.exam_online.service.statistics.StudentTrendBuilder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class GradingServiceImpl implements GradingService {
 
+    /** 批量评分单次最多条数 */
+    private static final int MAX_BATCH_GRADES = 5000;
+    private static final int GRADE_UPSERT_BATCH_SIZE = 500;
+    private static final int SCORE_VERIFY_LIMIT = 1000;
+
     private final ExamMapper examMapper;
     private final ExamRecordMapper examRecordMapper;
     private final ExamPaperMapper examPaperMapper;
-    private final ExamPaperQuestionSnapshotMapper snapshotMapper;
     private final QuestionMapper questionMapper;
     private final ExamAnswerMapper examAnswerMapper;
     private final UserMapper userMapper;
-    private final AnalysisService analysisService;
     private final AiAnalysisReportMapper aiAnalysisReportMapper;
     private final ExamCheatLogMapper examCheatLogMapper;
-
-    private static final ThreadPoolExecutor AI_REPORT_EXECUTOR = new ThreadPoolExecutor(
-            2,
-            10,
-            60L,
-            TimeUnit.SECONDS,
-            new LinkedBlockingQueue<>(100),
-            new ThreadFactory() {
-                private final java.util.concurrent.atomic.AtomicInteger threadNumber = new java.util.concurrent.atomic.AtomicInteger(1);
-                @Override
-                public Thread newThread(Runnable r) {
-                    Thread t = new Thread(r, "ai-report-" + threadNumber.getAndIncrement());
-                    t.setDaemon(false);
-                    return t;
-                }
-            },
-            new ThreadPoolExecutor.CallerRunsPolicy()
-    );
+    private final ExamSnapshotCache snapshotCache;
+    private final ExamStatisticsAggregator statisticsAggregator;
+    private final StudentMasteryAggregator masteryAggregator;
+    private final ExamScoreRanking scoreRanking;
+    private final ItemAnalyzer itemAnalyzer;
+    private final ExamArchiveService archiveService;
+    private final AnalyticsCube analyticsCube;
+    private final KnowledgeDictionary knowledgeDictionary;
+    private final AiReportJobQueue aiReportJobQueue;
+    private final AiReportWorker aiReportWorker;
+    private final AiReportStreamer aiReportStreamer;
+    private final LLMTokenUsageMapper tokenUsageMapper;
+    private final AnalysisService analysisService;
+    private final StudentTrendBuilder trendBuilder;
 
     @Override
     public PageResult<Map<String, Object>> getPendingGradingRecords(Long examId, Long page, Long size) {
@@ -112,8 +131,8 @@ public class GradingServiceImpl implements GradingService {
         Exam exam = requireExam(record.getExamId());
         ExamPaper paper = requirePaper(exam.getPaperId());
 
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(exam.getId());
-        Map<Long, ExamAnswer> answerMap = getAnswerMap(recordId);
+        List<ExamPaperQuestionSnapshot> snapshots = getRecordQuestions(exam, recordId);
+        Map<Long, ExamAnswer> answerMap = getAnswerMap(exam, recordId);
 
         List<Long> qIds = snapshots.stream().map(ExamPaperQuestionSnapshot::getQuestionId).toList();
         Map<Long, Question> questionMap = questionMapper.selectBatchIdsIgnoreDeleted(qIds).stream()
@@ -181,57 +200,168 @@ public class GradingServiceImpl implements GradingService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void gradeQuestion(Long recordId, Long questionId, BigDecimal score) {
-        if (score == null || score.compareTo(BigDecimal.ZERO) < 0) {
-            throw new BusinessException(ErrorCode.SUBJECTIVE_QUESTION_SCORE_INVALID);
+        gradeBatch(Collections.singletonList(new GradeSubmission(recordId, questionId, score)));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void gradeQuestions(Long recordId, Map<Long, BigDecimal> scores) {
+        if (scores == null || scores.isEmpty()) return;
+        List<GradeSubmission> grades = new ArrayList<>(scores.size());
+        scores.forEach((questionId, score) -> grades.add(new GradeSubmission(recordId, questionId, score)));
+        gradeBatch(grades);
+    }
+
+    /**
+     * 批量人工评分：先用缓存的考试快照校验全部分数，任何一项不合法时整体不写入；
+     * 校验通过后锁定旧作答计算分差，分批 upsert 作答得分，再按分差原子更新记录得分
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Map<String, Object> gradeBatch(List<GradeSubmission> grades) {
+        if (grades == null || grades.isEmpty()) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "评分列表不能为空");
         }
-        ExamRecord record = requireRecord(recordId);
-        
-        // 检查考试记录状态，状态5（已结束/已评分）不允许修改
-        if (record.getStatus() != null && record.getStatus() == ExamRecordStatus.FINISHED) {
-            throw new BusinessException(ErrorCode.BAD_REQUEST, "成绩已确认，不允许修改评分");
+        if (grades.size() > MAX_BATCH_GRADES) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "单次最多提交" + MAX_BATCH_GRADES + "条评分");
+        }
+        // 同一记录同一题以最后一次为准
+        Map<Long, Map<Long, BigDecimal>> byRecord = new LinkedHashMap<>();
+        for (GradeSubmission grade : grades) {
+            if (grade == null || grade.getRecordId() == null || grade.getQuestionId() == null) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, "评分缺少考试记录ID或题目ID");
+            }
+            byRecord.computeIfAbsent(grade.getRecordId(), k -> new LinkedHashMap<>())
+                    .put(grade.getQuestionId(), grade.getScore());
         }
-        
-        Exam exam = requireExam(record.getExamId());
-        ExamPaper paper = requirePaper(exam.getPaperId());
 
-        // 从快照获取题目列表
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(exam.getId());
-        Map<Long, ExamPaperQuestionSnapshot> snapMap = snapshots.stream()
-                .collect(Collectors.toMap(ExamPaperQuestionSnapshot::getQuestionId, e -> e));
-        ExamPaperQuestionSnapshot snap = snapMap.get(questionId);
-        if (snap == null) {
-            throw new BusinessException(ErrorCode.EXAM_PAPER_QUESTION_NOT_FOUND);
+        // 先按ID顺序锁定考试记录：评分前的得分与状态在本事务内不再被并发评分、判分或确认修改
+        Map<Long, ExamRecord> records = examRecordMapper.selectList(new LambdaQueryWrapper<ExamRecord>()
+                        .in(ExamRecord::getId, byRecord.keySet())
+                        .orderByAsc(ExamRecord::getId)
+                        .last("FOR UPDATE")).stream()
+                .filter(r -> !Objects.equals(r.getDeleted(), 1))
+                .collect(Collectors.toMap(ExamRecord::getId, r -> r));
+        Map<Long, Exam> exams = new HashMap<>();
+        Map<Long, ExamSnapshot> snapshots = new HashMap<>();
+        List<ExamAnswer> answers = new ArrayList<>(grades.size());
+        for (Map.Entry<Long, Map<Long, BigDecimal>> entry : byRecord.entrySet()) {
+            Long recordId = entry.getKey();
+            ExamRecord record = records.get(recordId);
+            if (record == null) {
+                throw new BusinessException(ErrorCode.EXAM_RECORD_NOT_FOUND, "考试记录不存在：" + recordId);
+            }
+            // 状态5（已结束/已评分）不允许修改
+            if (record.getStatus() != null && record.getStatus() == ExamRecordStatus.FINISHED) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, "成绩已确认，不允许修改评分：考试记录" + recordId);
+            }
+            Exam exam = exams.computeIfAbsent(record.getExamId(), this::requireExam);
+            ExamSnapshot snapshot = snapshotCache.forRecord(exam, recordId);
+            snapshots.put(recordId, snapshot);
+            Map<Long, ExamPaperQuestionSnapshot> items = new HashMap<>(snapshot.items().size() * 2);
+            for (ExamPaperQuestionSnapshot item : snapshot.items()) {
+                items.put(item.getQuestionId(), item);
+            }
+
+            for (Map.Entry<Long, BigDecimal> e : entry.getValue().entrySet()) {
+                Long questionId = e.getKey();
+                BigDecimal score = e.getValue();
+                String where = "考试记录" + recordId + "，题目" + questionId + "：";
+                if (score == null || score.compareTo(BigDecimal.ZERO) < 0) {
+                    throw new BusinessException(ErrorCode.SUBJECTIVE_QUESTION_SCORE_INVALID,
+                            where + ErrorCode.SUBJECTIVE_QUESTION_SCORE_INVALID.getMessage());
+                }
+                ExamPaperQuestionSnapshot item = items.get(questionId);
+                if (item == null) {
+                    throw new BusinessException(ErrorCode.EXAM_PAPER_QUESTION_NOT_FOUND,
+                            where + ErrorCode.EXAM_PAPER_QUESTION_NOT_FOUND.getMessage());
+                }
+                Question question = snapshot.questions().get(questionId);
+                if (question == null) {
+                    throw new BusinessException(ErrorCode.QUESTION_NOT_FOUND,
+                            where + ErrorCode.QUESTION_NOT_FOUND.getMessage());
+                }
+                // 允许教师对任何题目（包括客观题）进行手动评分，以覆盖自动判分结果
+                BigDecimal fullScore = item.getQuestionScore() != null ? item.getQuestionScore() : question.getScore();
+                if (fullScore == null) fullScore = BigDecimal.ZERO;
+                if (score.compareTo(fullScore) > 0) {
+                    throw new BusinessException(ErrorCode.SUBJECTIVE_QUESTION_SCORE_EXCEED,
+                            where + ErrorCode.SUBJECTIVE_QUESTION_SCORE_EXCEED.getMessage());
+                }
+                ExamAnswer answer = new ExamAnswer();
+                answer.setRecordId(recordId);
+                answer.setQuestionId(questionId);
+                answer.setScore(score);
+                answers.add(answer);
+            }
         }
 
-        Question question = questionMapper.selectById(questionId);
-        if (question == null) {
-            throw new BusinessException(ErrorCode.QUESTION_NOT_FOUND);
+        // 锁定将被覆盖的作答并读取旧分，按“新分 - 旧分”得到每条记录的分差
+        Map<Long, Map<Long, ExamAnswer>> current = lockAnswers(byRecord);
+        Map<Long, BigDecimal[]> deltas = new LinkedHashMap<>();
+        for (ExamAnswer answer : answers) {
+            ExamAnswer old = current.getOrDefault(answer.getRecordId(), Collections.emptyMap()).get(answer.getQuestionId());
+            BigDecimal oldScore = old == null || Objects.equals(old.getDeleted(), 1) || old.getScore() == null
+                    ? BigDecimal.ZERO : old.getScore();
+            Question question = snapshots.get(answer.getRecordId()).questions().get(answer.getQuestionId());
+            BigDecimal[] delta = deltas.computeIfAbsent(answer.getRecordId(),
+                    k -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO});
+            int i = isObjective(question.getType()) ? 0 : 1;
+            delta[i] = delta[i].add(answer.getScore().subtract(oldScore));
         }
 
-        // 允许教师对任何题目（包括客观题）进行手动评分，以覆盖自动判分结果
-        BigDecimal fullScore = snap.getQuestionScore() != null ? snap.getQuestionScore() : question.getScore();
-        if (fullScore == null) fullScore = BigDecimal.ZERO;
-        if (score.compareTo(fullScore) > 0) {
-            throw new BusinessException(ErrorCode.SUBJECTIVE_QUESTION_SCORE_EXCEED);
+        for (int from = 0; from < answers.size(); from += GRADE_UPSERT_BATCH_SIZE) {
+            examAnswerMapper.upsertManualScores(answers.subList(from,
+                    Math.min(from + GRADE_UPSERT_BATCH_SIZE, answers.size())));
         }
 
-        // 更新答案得分，并标记为人工评分
-        ExamAnswer answer = getOrCreateAnswer(recordId, questionId);
-        answer.setScore(score);
-        answer.setIsManualGraded(1); // 标记为人工评分
-        examAnswerMapper.updateById(answer);
+        // 已有得分的记录按分差原子更新，开销与试卷题量无关；尚无得分基线的记录重新汇总
+        List<ExamRecord> recalc = new ArrayList<>();
+        Map<Long, ExamStatisticsAggregator.RecordState> before = new HashMap<>();
+        for (Map.Entry<Long, BigDecimal[]> entry : deltas.entrySet()) {
+            ExamRecord record = records.get(entry.getKey());
+            if (record.getObjectiveScore() == null || record.getSubjectiveScore() == null
+                    || record.getTotalScore() == null) {
+                recalc.add(record);
+                continue;
+            }
+            before.put(record.getId(), ExamStatisticsAggregator.RecordState.of(record));
+            BigDecimal[] delta = entry.getValue();
+            examRecordMapper.addScores(record.getId(), delta[0], delta[1], ExamRecordStatus.SUBMITTED_GRADED);
+        }
+        if (!before.isEmpty()) {
+            for (ExamRecord after : examRecordMapper.selectBatchIds(before.keySet())) {
+                statisticsAggregator.onRecordChanged(after.getExamId(), before.get(after.getId()), after);
+            }
+        }
+        if (!recalc.isEmpty()) {
+            recalcRecordScores(recalc, snapshots);
+        }
 
-        // 重新汇总主观题得分与总分
-        recalcRecordScores(recordId, exam, paper);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("recordCount", deltas.size());
+        result.put("gradedCount", answers.size());
+        return result;
     }
 
-    @Override
-    @Transactional(rollbackFor = Exception.class)
-    public void gradeQuestions(Long recordId, Map<Long, BigDecimal> scores) {
-        if (scores == null || scores.isEmpty()) return;
-        for (Map.Entry<Long, BigDecimal> e : scores.entrySet()) {
-            gradeQuestion(recordId, e.getKey(), e.getValue());
+    /**
+     * 以 FOR UPDATE 锁定待评分记录中被评分题目的现有作答（含已逻辑删除的行），防止并发评分使分差重复计入
+     *
+     * @return 记录ID -> 题目ID -> 作答
+     */
+    private Map<Long, Map<Long, ExamAnswer>> lockAnswers(Map<Long, Map<Long, BigDecimal>> byRecord) {
+        Map<Long, Map<Long, ExamAnswer>> result = new HashMap<>();
+        List<Long> recordIds = new ArrayList<>(byRecord.keySet());
+        for (int from = 0; from < recordIds.size(); from += GRADE_UPSERT_BATCH_SIZE) {
+            List<Long> batch = recordIds.subList(from, Math.min(from + GRADE_UPSERT_BATCH_SIZE, recordIds.size()));
+            Set<Long> questionIds = new HashSet<>();
+            batch.forEach(id -> questionIds.addAll(byRecord.get(id).keySet()));
+            for (ExamAnswer answer : examAnswerMapper.selectForUpdate(batch, new ArrayList<>(questionIds))) {
+                result.computeIfAbsent(answer.getRecordId(), k -> new HashMap<>())
+                        .put(answer.getQuestionId(), answer);
+            }
         }
+        return result;
     }
 
     @Override
@@ -243,21 +373,22 @@ public class GradingServiceImpl implements GradingService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void autoGradeRecord(Long recordId, boolean forceOverride) {
-            ExamRecord record = requireRecord(recordId);
+            // 锁定记录，主观题得分在重新汇总期间不会被并发评分修改
+            ExamRecord record = lockRecord(recordId);
             
             // 检查考试记录状态，状态5（已结束/已评分）不允许修改
             if (record.getStatus() != null && record.getStatus() == ExamRecordStatus.FINISHED) {
                 throw new BusinessException(ErrorCode.BAD_REQUEST, "成绩已确认，不允许重新判分");
             }
+            ExamStatisticsAggregator.RecordState before = ExamStatisticsAggregator.RecordState.of(record);
             
             Exam exam = requireExam(record.getExamId());
             ExamPaper paper = requirePaper(exam.getPaperId());
-            List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(exam.getId());
-            Map<Long, ExamAnswer> answerMap = getAnswerMap(recordId);
-
-            List<Long> qIds = snapshots.stream().map(ExamPaperQuestionSnapshot::getQuestionId).toList();
-            Map<Long, Question> questionMap = questionMapper.selectBatchIdsIgnoreDeleted(qIds).stream()
-                    .collect(Collectors.toMap(Question::getId, q -> q));
+            // 快照与题目取自缓存；考生答案已按原始选项字母保存，选项乱序无需还原
+            ExamSnapshot snapshot = snapshotCache.forRecord(exam, recordId);
+            List<ExamPaperQuestionSnapshot> snapshots = snapshot.items();
+            Map<Long, ExamAnswer> answerMap = getAnswerMap(exam, recordId);
+            Map<Long, Question> questionMap = snapshot.questions();
 
             BigDecimal objectiveScore = BigDecimal.ZERO;
             for (ExamPaperQuestionSnapshot snap : snapshots) {
@@ -304,7 +435,8 @@ public class GradingServiceImpl implements GradingService {
                 record.setSubjectiveScore(BigDecimal.ZERO);
             }
             record.setTotalScore(objectiveScore.add(record.getSubjectiveScore()));
-            examRecordMapper.updateById(record);
+            examRecordMapper.updateScores(recordId, objectiveScore, record.getSubjectiveScore(), null);
+            statisticsAggregator.onRecordChanged(exam.getId(), before, record);
         }
 
 
@@ -332,149 +464,116 @@ public class GradingServiceImpl implements GradingService {
     @Override
     public Map<String, Object> getExamStatistics(Long examId) {
         Exam exam = requireExam(examId);
-        LambdaQueryWrapper<ExamRecord> q = new LambdaQueryWrapper<>();
-        q.eq(ExamRecord::getExamId, examId)
-                .eq(ExamRecord::getDeleted, 0);
-        List<ExamRecord> records = examRecordMapper.selectList(q);
+        // 统计值由提交、评分、确认时增量维护，这里只读汇总表
+        ExamStatistics stats = statisticsAggregator.get(examId);
+        List<ExamScoreBucket> buckets = statisticsAggregator.buckets(examId);
 
         Map<String, Object> statistics = new HashMap<>();
         statistics.put("examId", examId);
         statistics.put("examName", exam.getName());
-        statistics.put("totalParticipants", records.size());
+        statistics.put("totalParticipants", stats.getParticipantCount());
+        statistics.put("completedCount", (long) stats.getScoredCount());
+        statistics.put("inProgressCount", (long) stats.getInProgressCount());
+        statistics.put("notStartedCount", (long) stats.getNotStartedCount());
 
-        if (records.isEmpty()) {
-            statistics.put("completedCount", 0L);
-            statistics.put("inProgressCount", 0L);
-            statistics.put("notStartedCount", 0L);
-            statistics.put("averageScore", 0);
-            statistics.put("highestScore", 0);
-            statistics.put("lowestScore", 0);
-            statistics.put("passRate", 0);
-            return statistics;
-        }
-
-        long completedCount = records.stream()
-                .filter(r -> r.getTotalScore() != null)
-                .count();
-        long inProgressCount = records.stream()
-                .filter(r -> ExamRecordStatus.isInProgress(r.getStatus()))
-                .count();
-        long notStartedCount = records.stream()
-                .filter(r -> r.getStartTime() == null)
-                .count();
-
-        statistics.put("completedCount", completedCount);
-        statistics.put("inProgressCount", inProgressCount);
-        statistics.put("notStartedCount", notStartedCount);
-
-        List<ExamRecord> submitted = records.stream()
-                .filter(r -> r.getTotalScore() != null)
-                .toList();
-        if (submitted.isEmpty()) {
+        if (buckets.isEmpty()) {
             statistics.put("averageScore", 0);
             statistics.put("highestScore", 0);
             statistics.put("lowestScore", 0);
             statistics.put("passRate", 0);
+            statistics.put("standardDeviation", 0);
+            statistics.put("scoreDistribution", Collections.emptyList());
         } else {
-            BigDecimal totalScore = submitted.stream()
-                    .map(ExamRecord::getTotalScore)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            BigDecimal average = totalScore
-                    .divide(BigDecimal.valueOf(submitted.size()), 2, RoundingMode.HALF_UP);
-            BigDecimal highest = submitted.stream()
-                    .map(ExamRecord::getTotalScore)
-                    .max(BigDecimal::compareTo)
-                    .orElse(BigDecimal.ZERO);
-            BigDecimal lowest = submitted.stream()
-                    .map(ExamRecord::getTotalScore)
-                    .min(BigDecimal::compareTo)
-                    .orElse(BigDecimal.ZERO);
-
-            long passCount = submitted.stream()
-                    .filter(r -> r.getTotalScore().compareTo(BigDecimal.valueOf(60)) >= 0)
-                    .count();
-            double passRate = submitted.isEmpty() ? 0.0 :
-                    BigDecimal.valueOf(passCount * 100.0 / submitted.size())
-                            .setScale(2, RoundingMode.HALF_UP)
-                            .doubleValue();
-
-            statistics.put("averageScore", average.doubleValue());
-            statistics.put("highestScore", highest.doubleValue());
-            statistics.put("lowestScore", lowest.doubleValue());
-            statistics.put("passRate", passRate);
+            statistics.put("averageScore", ExamStatisticsAggregator.average(stats).doubleValue());
+            statistics.put("highestScore",
+                    ExamStatisticsAggregator.scoreOf(buckets.get(buckets.size() - 1).getBucket()).doubleValue());
+            statistics.put("lowestScore", ExamStatisticsAggregator.scoreOf(buckets.get(0).getBucket()).doubleValue());
+            statistics.put("passRate", ExamStatisticsAggregator.passRate(stats));
+            statistics.put("standardDeviation", ExamStatisticsAggregator.standardDeviation(stats));
+            statistics.put("scoreDistribution", ExamStatisticsAggregator.histogram(buckets));
         }
 
         return statistics;
     }
 
     @Override
-    public List<Map<String, Object>> getWrongQuestionAnalysis(Long examId) {
+    public Map<String, Object> getScoreDistribution(Long examId) {
         Exam exam = requireExam(examId);
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(examId);
-
-        if (snapshots.isEmpty()) return Collections.emptyList();
-
-        List<Long> qIds = snapshots.stream().map(ExamPaperQuestionSnapshot::getQuestionId).toList();
-        Map<Long, Question> questionMap = questionMapper.selectBatchIdsIgnoreDeleted(qIds).stream()
-                .collect(Collectors.toMap(Question::getId, q -> q));
+        ExamStatistics stats = statisticsAggregator.get(examId);
 
-        // 仅统计客观题
-        List<Long> objectiveIds = questionMap.values().stream()
-                .filter(q -> {
-                    String type = q.getType();
-                    return QuestionType.SINGLE.getCode().equals(type)
-                            || QuestionType.MULTIPLE.getCode().equals(type)
-                            || QuestionType.JUDGE.getCode().equals(type)
-                            || QuestionType.BLANK.getCode().equals(type);
-                })
-                .map(Question::getId)
-                .toList();
-        if (objectiveIds.isEmpty()) return Collections.emptyList();
+        Map<String, Object> result = new HashMap<>();
+        result.put("examId", examId);
+        result.put("examName", exam.getName());
+        result.put("scoredCount", stats.getScoredCount());
+        result.put("averageScore", ExamStatisticsAggregator.average(stats).doubleValue());
+        result.put("standardDeviation", ExamStatisticsAggregator.standardDeviation(stats));
+        result.put("histogram", ExamStatisticsAggregator.histogram(statisticsAggregator.buckets(examId)));
+
+        // 分位数取自内存排名结构
+        Map<String, Object> quartiles = new LinkedHashMap<>();
+        quartiles.put("min", scoreRanking.quantile(examId, 0.0));
+        quartiles.put("q1", scoreRanking.quantile(examId, 0.25));
+        quartiles.put("median", scoreRanking.quantile(examId, 0.5));
+        quartiles.put("q3", scoreRanking.quantile(examId, 0.75));
+        quartiles.put("max", scoreRanking.quantile(examId, 1.0));
+        result.put("quartiles", quartiles);
+        return result;
+    }
 
-        LambdaQueryWrapper<ExamRecord> rcQ = new LambdaQueryWrapper<>();
-        rcQ.eq(ExamRecord::getExamId, examId)
-                .eq(ExamRecord::getDeleted, 0);
-        List<ExamRecord> records = examRecordMapper.selectList(rcQ);
-        if (records.isEmpty()) return Collections.emptyList();
-        List<Long> recordIds = records.stream().map(ExamRecord::getId).toList();
+    @Override
+    public Map<String, Object> getRecordRank(Long recordId) {
+        return buildRankView(requireRecord(recordId));
+    }
 
-        LambdaQueryWrapper<ExamAnswer> ansQ = new LambdaQueryWrapper<>();
-        ansQ.in(ExamAnswer::getRecordId, recordIds)
-                .in(ExamAnswer::getQuestionId, objectiveIds)
-                .eq(ExamAnswer::getDeleted, 0);
-        List<ExamAnswer> answers = examAnswerMapper.selectList(ansQ);
-        if (answers.isEmpty()) return Collections.emptyList();
+    @Override
+    public Map<String, Object> getStudentRecordRank(Long recordId, Long userId) {
+        ExamRecord record = requireRecord(recordId);
+        if (!Objects.equals(record.getUserId(), userId)) {
+            throw new BusinessException(ErrorCode.FORBIDDEN);
+        }
+        // 与成绩详情一致：成绩确认后才能查看排名
+        if (!ExamRecordStatus.isFinished(record.getStatus())) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "成绩尚未发布，暂不能查看排名");
+        }
+        return buildRankView(record);
+    }
 
-        Map<Long, List<ExamAnswer>> byQuestion = answers.stream()
-                .collect(Collectors.groupingBy(ExamAnswer::getQuestionId));
+    private Map<String, Object> buildRankView(ExamRecord record) {
+        ExamScoreRanking.Rank rank = ExamRecordStatus.isSubmitted(record.getStatus())
+                ? scoreRanking.rankOf(record.getExamId(), record.getId(), record.getTotalScore())
+                : null;
+        if (rank == null) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "该考试记录尚未提交，没有排名");
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("examId", record.getExamId());
+        result.put("recordId", record.getId());
+        result.put("totalScore", record.getTotalScore());
+        result.put("rank", rank.rank());
+        result.put("percentile", rank.percentile());
+        result.put("scoredCount", rank.scoredCount());
+        return result;
+    }
 
+    @Override
+    public List<Map<String, Object>> getWrongQuestionAnalysis(Long examId) {
+        // 随机抽题的考试包含各考生抽到的全部题目
+        Exam exam = requireExam(examId);
+        ExamSnapshot snapshot = snapshotCache.forExam(exam);
         List<Map<String, Object>> analysis = new ArrayList<>();
-        for (Long qId : objectiveIds) {
-            Question q = questionMap.get(qId);
-            if (q == null) continue;
-            List<ExamAnswer> qAnswers = byQuestion.getOrDefault(qId, Collections.emptyList());
-            int attempts = qAnswers.size();
-            if (attempts == 0) continue;
-
-            String correct = q.getAnswerJson();
-            int wrong = 0;
-            for (ExamAnswer a : qAnswers) {
-                if (!Objects.equals(correct, a.getUserAnswer())) {
-                    wrong++;
-                }
-            }
-            double wrongRate = attempts == 0 ? 0.0 :
-                    BigDecimal.valueOf(wrong * 1.0 / attempts)
-                            .setScale(3, RoundingMode.HALF_UP)
-                            .doubleValue();
-
+        for (ItemAnalyzer.ItemStats item : analyzeItems(exam, snapshot)) {
+            if (item.attempts() == 0) continue;
+            Question q = snapshot.questions().get(item.questionId());
+            int wrong = item.attempts() - item.correctCount();
             Map<String, Object> m = new HashMap<>();
-            m.put("questionId", qId);
+            m.put("questionId", item.questionId());
             m.put("stem", q.getStem());
-            m.put("type", q.getType());
-            m.put("attempts", attempts);
+            m.put("type", item.type());
+            m.put("attempts", item.attempts());
             m.put("wrongCount", wrong);
-            m.put("wrongRate", wrongRate);
+            m.put("wrongRate", BigDecimal.valueOf(wrong * 1.0 / item.attempts())
+                    .setScale(3, RoundingMode.HALF_UP)
+                    .doubleValue());
             analysis.add(m);
         }
 
@@ -483,6 +582,115 @@ public class GradingServiceImpl implements GradingService {
         return analysis;
     }
 
+    @Override
+    public List<Map<String, Object>> getItemAnalysis(Long examId) {
+        // 随机抽题的考试包含各考生抽到的全部题目
+        Exam exam = requireExam(examId);
+        ExamSnapshot snapshot = snapshotCache.forExam(exam);
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ItemAnalyzer.ItemStats item : analyzeItems(exam, snapshot)) {
+            Question q = snapshot.questions().get(item.questionId());
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("questionId", item.questionId());
+            m.put("stem", q.getStem());
+            m.put("type", item.type());
+            m.put("attempts", item.attempts());
+            m.put("correctCount", item.correctCount());
+            m.put("unanswered", item.unanswered());
+            m.put("pValue", item.pValue());
+            m.put("pointBiserial", item.pointBiserial());
+            m.put("discrimination", item.discrimination());
+            m.put("options", item.options());
+            result.add(m);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getCohortAnalytics(String groupBy, List<Long> examIds, List<Long> userIds,
+                                                  List<Long> knowledgeIds, List<String> types, List<Integer> difficulties) {
+        AnalyticsCube.Dimension dimension;
+        try {
+            dimension = AnalyticsCube.Dimension.valueOf(groupBy == null ? "KNOWLEDGE" : groupBy.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "分组维度无效，可选：KNOWLEDGE/TYPE/DIFFICULTY/EXAM/STUDENT");
+        }
+        if (types != null) {
+            for (String type : types) {
+                if (!QuestionType.isValid(type)) {
+                    throw new BusinessException(ErrorCode.QUESTION_TYPE_INVALID, "题型代码无效：" + type);
+                }
+            }
+        }
+
+        AnalyticsCube.Result cube = analyticsCube.query(dimension,
+                new AnalyticsCube.Filter(examIds, userIds, knowledgeIds, types, difficulties));
+        Map<Object, String> names = cohortKeyNames(dimension, cube.cells());
+
+        List<Map<String, Object>> cells = new ArrayList<>(cube.cells().size());
+        for (AnalyticsCube.Cell cell : cube.cells()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("key", cell.key());
+            m.put("name", names.getOrDefault(cell.key(), "未知"));
+            m.put("attempts", cell.attempts());
+            m.put("wrong", cell.wrong());
+            m.put("accuracy", BigDecimal.valueOf((cell.attempts() - cell.wrong()) * 100.0 / cell.attempts())
+                    .setScale(2, RoundingMode.HALF_UP));
+            m.put("scoreRate", BigDecimal.valueOf(cell.scoreFractionSum() * 100.0 / cell.attempts())
+                    .setScale(2, RoundingMode.HALF_UP));
+            m.put("studentCount", cell.studentCount());
+            cells.add(m);
+        }
+        // 按正确率升序，薄弱项在前
+        cells.sort(Comparator.comparing(m -> (BigDecimal) m.get("accuracy")));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("groupBy", dimension.name());
+        result.put("cells", cells);
+        result.put("factCount", cube.factCount());
+        result.put("refreshedAt", cube.refreshedAt());
+        return result;
+    }
+
+    private Map<Object, String> cohortKeyNames(AnalyticsCube.Dimension dimension, List<AnalyticsCube.Cell> cells) {
+        Map<Object, String> names = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (AnalyticsCube.Cell cell : cells) {
+            if (cell.key() instanceof Long id) ids.add(id);
+        }
+        switch (dimension) {
+            case KNOWLEDGE -> names.putAll(knowledgeDictionary.names(ids));
+            case EXAM -> {
+                if (!ids.isEmpty()) examMapper.selectBatchIds(ids).forEach(e -> names.put(e.getId(), e.getName()));
+            }
+            case STUDENT -> {
+                if (!ids.isEmpty()) userMapper.selectBatchIds(ids).forEach(u -> names.put(u.getId(), u.getRealName()));
+            }
+            case TYPE -> {
+                for (QuestionType type : QuestionType.values()) names.put(type.getCode(), type.getLabel());
+            }
+            case DIFFICULTY -> {
+                names.put(0, "未设置");
+                names.put(1, "简单");
+                names.put(2, "普通");
+                names.put(3, "困难");
+            }
+        }
+        return names;
+    }
+
+    /**
+     * 客观题试题分析；考试已结束且成绩全部确认后结果不再变化，才允许缓存，考试记录变化时由统计汇总清除缓存
+     */
+    private List<ItemAnalyzer.ItemStats> analyzeItems(Exam exam, ExamSnapshot snapshot) {
+        ExamStatistics stats = statisticsAggregator.get(exam.getId());
+        boolean ended = exam.getEndTime() != null && exam.getEndTime().isBefore(LocalDateTime.now());
+        boolean allConfirmed = stats.getFinishedCount() > 0
+                && stats.getInProgressCount() + stats.getUngradedCount()
+                    + stats.getGradingCount() + stats.getGradedCount() == 0;
+        return itemAnalyzer.analyze(exam.getId(), snapshot.items(), snapshot.questions(), ended && allConfirmed);
+    }
+
     @Override
     public PageResult<Map<String, Object>> getStudentRecords(Long userId, Long page, Long size) {
         long p = (page == null || page < 1) ? 1 : page;
@@ -548,8 +756,8 @@ public class GradingServiceImpl implements GradingService {
         Exam exam = requireExam(record.getExamId());
         ExamPaper paper = requirePaper(exam.getPaperId());
 
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(exam.getId());
-        Map<Long, ExamAnswer> answerMap = getAnswerMap(recordId);
+        List<ExamPaperQuestionSnapshot> snapshots = getRecordQuestions(exam, recordId);
+        Map<Long, ExamAnswer> answerMap = getAnswerMap(exam, recordId);
 
         List<Long> qIds = snapshots.stream().map(ExamPaperQuestionSnapshot::getQuestionId).toList();
         Map<Long, Question> questionMap = questionMapper.selectBatchIdsIgnoreDeleted(qIds).stream()
@@ -654,103 +862,165 @@ public class GradingServiceImpl implements GradingService {
         return record;
     }
 
-    private List<ExamPaperQuestionSnapshot> getSnapshotQuestions(Long examId) {
-        LambdaQueryWrapper<ExamPaperQuestionSnapshot> q = new LambdaQueryWrapper<>();
-        q.eq(ExamPaperQuestionSnapshot::getExamId, examId)
-                .orderByAsc(ExamPaperQuestionSnapshot::getQuestionOrder);
-        return snapshotMapper.selectList(q);
+    /**
+     * 以 FOR UPDATE 读取考试记录，需在事务内调用
+     */
+    private ExamRecord lockRecord(Long recordId) {
+        if (recordId == null) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "考试记录ID不能为空");
+        }
+        ExamRecord record = examRecordMapper.selectOne(new LambdaQueryWrapper<ExamRecord>()
+                .eq(ExamRecord::getId, recordId)
+                .last("FOR UPDATE"));
+        if (record == null || Objects.equals(record.getDeleted(), 1)) {
+            throw new BusinessException(ErrorCode.EXAM_RECORD_NOT_FOUND);
+        }
+        return record;
+    }
+
+    /**
+     * 某条考试记录的题目列表：随机抽题的考试为该考生抽到的题目，否则为考试快照
+     */
+    private List<ExamPaperQuestionSnapshot> getRecordQuestions(Exam exam, Long recordId) {
+        return snapshotCache.forRecord(exam, recordId).items();
     }
 
-    private Map<Long, ExamAnswer> getAnswerMap(Long recordId) {
-        LambdaQueryWrapper<ExamAnswer> q = new LambdaQueryWrapper<>();
-        q.eq(ExamAnswer::getRecordId, recordId)
-                .eq(ExamAnswer::getDeleted, 0);
-        List<ExamAnswer> list = examAnswerMapper.selectList(q);
+    private Map<Long, ExamAnswer> getAnswerMap(Exam exam, Long recordId) {
+        List<ExamAnswer> list;
+        if (archiveService.isPruned(exam.getId())) {
+            // 作答已归档并从数据库删除
+            list = archiveService.answersOfRecord(exam.getId(), recordId);
+        } else {
+            LambdaQueryWrapper<ExamAnswer> q = new LambdaQueryWrapper<>();
+            q.eq(ExamAnswer::getRecordId, recordId)
+                    .eq(ExamAnswer::getDeleted, 0);
+            list = examAnswerMapper.selectList(q);
+        }
         if (list == null || list.isEmpty()) return Collections.emptyMap();
         return list.stream().collect(Collectors.toMap(ExamAnswer::getQuestionId, a -> a));
     }
 
-    private ExamAnswer getOrCreateAnswer(Long recordId, Long questionId) {
-        ExamAnswer ans = examAnswerMapper.selectByRecordAndQuestionIgnoreDeleted(recordId, questionId);
-        
-        if (ans == null) {
-            try {
-                ans = new ExamAnswer();
-                ans.setRecordId(recordId);
-                ans.setQuestionId(questionId);
-                ans.setDeleted(0);
-                ans.setIsManualGraded(0);
-                examAnswerMapper.insert(ans);
-            } catch (Exception e) {
-                if (e.getMessage() != null && e.getMessage().contains("Duplicate entry")) {
-                    //不抛出异常
-                    ans = examAnswerMapper.selectByRecordAndQuestionIgnoreDeleted(recordId, questionId);
-                    if (ans == null) {
-                        ans = new ExamAnswer();
-                        ans.setRecordId(recordId);
-                        ans.setQuestionId(questionId);
-                        ans.setDeleted(0);
-                        ans.setIsManualGraded(0);
-                    }
-                } else {
-                    throw e;
-                }
-            }
-        }
+    /**
+     * 按作答重新汇总一批考试记录的客观题、主观题得分与总分；作答一次查出，题型取自考试快照。
+     * 调用方需已锁定这些记录
+     */
+    private void recalcRecordScores(List<ExamRecord> records, Map<Long, ExamSnapshot> snapshots) {
+        Map<Long, Map<Long, ExamAnswer>> answersByRecord = loadAnswers(
+                records.stream().map(ExamRecord::getId).collect(Collectors.toList()));
 
-        if (ans != null && ans.getDeleted() != null && ans.getDeleted() == 1) {
-            com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper<ExamAnswer> uw =
-                    new com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper<>();
-            uw.eq(ExamAnswer::getId, ans.getId())
-              .set(ExamAnswer::getDeleted, 0)
-              .set(ExamAnswer::getIsManualGraded, 0)
-              .set(ExamAnswer::getUserAnswer, null)
-              .set(ExamAnswer::getScore, null);
-            examAnswerMapper.update(null, uw);
-            ans.setDeleted(0);
-            ans.setIsManualGraded(0);
-            ans.setUserAnswer(null);
-            ans.setScore(null);
+        for (ExamRecord record : records) {
+            ExamStatisticsAggregator.RecordState before = ExamStatisticsAggregator.RecordState.of(record);
+            BigDecimal[] sums = sumScores(snapshots.get(record.getId()),
+                    answersByRecord.getOrDefault(record.getId(), Collections.emptyMap()));
+
+            record.setObjectiveScore(sums[0]);
+            record.setSubjectiveScore(sums[1]);
+            record.setTotalScore(sums[0].add(sums[1]));
+            // 教师完成全部评分
+            record.setStatus(ExamRecordStatus.SUBMITTED_GRADED);
+            examRecordMapper.updateScores(record.getId(), sums[0], sums[1], ExamRecordStatus.SUBMITTED_GRADED);
+            statisticsAggregator.onRecordChanged(record.getExamId(), before, record);
         }
-        return ans;
     }
 
-    private void recalcRecordScores(Long recordId, Exam exam, ExamPaper paper) {
-        ExamRecord record = requireRecord(recordId);
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(exam.getId());
-        List<Long> qIds = snapshots.stream().map(ExamPaperQuestionSnapshot::getQuestionId).toList();
-        Map<Long, Question> qMap = questionMapper.selectBatchIdsIgnoreDeleted(qIds).stream()
-                .collect(Collectors.toMap(Question::getId, q -> q));
-
-        Map<Long, ExamAnswer> ansMap = getAnswerMap(recordId);
+    /**
+     * @return 记录ID -> 题目ID -> 未删除的作答
+     */
+    private Map<Long, Map<Long, ExamAnswer>> loadAnswers(List<Long> recordIds) {
+        Map<Long, Map<Long, ExamAnswer>> answersByRecord = new HashMap<>();
+        for (int from = 0; from < recordIds.size(); from += GRADE_UPSERT_BATCH_SIZE) {
+            LambdaQueryWrapper<ExamAnswer> q = new LambdaQueryWrapper<>();
+            q.in(ExamAnswer::getRecordId, recordIds.subList(from, Math.min(from + GRADE_UPSERT_BATCH_SIZE, recordIds.size())))
+                    .eq(ExamAnswer::getDeleted, 0);
+            for (ExamAnswer answer : examAnswerMapper.selectList(q)) {
+                answersByRecord.computeIfAbsent(answer.getRecordId(), k -> new HashMap<>())
+                        .put(answer.getQuestionId(), answer);
+            }
+        }
+        return answersByRecord;
+    }
 
-        BigDecimal subjectiveScore = BigDecimal.ZERO;
+    /**
+     * 按试卷快照汇总一条记录的作答得分
+     *
+     * @return [客观题得分, 主观题得分]
+     */
+    private BigDecimal[] sumScores(ExamSnapshot snapshot, Map<Long, ExamAnswer> ansMap) {
         BigDecimal objectiveScore = BigDecimal.ZERO;
-
-        for (ExamPaperQuestionSnapshot snap : snapshots) {
-            Question q = qMap.get(snap.getQuestionId());
+        BigDecimal subjectiveScore = BigDecimal.ZERO;
+        for (ExamPaperQuestionSnapshot snap : snapshot.items()) {
+            Question q = snapshot.questions().get(snap.getQuestionId());
             if (q == null) continue;
             ExamAnswer ans = ansMap.get(q.getId());
             if (ans == null || ans.getScore() == null) continue;
-
-            String type = q.getType();
-            boolean isObjective = QuestionType.SINGLE.getCode().equals(type)
-                    || QuestionType.MULTIPLE.getCode().equals(type)
-                    || QuestionType.JUDGE.getCode().equals(type)
-                    || QuestionType.BLANK.getCode().equals(type);
-            if (isObjective) {
+            if (isObjective(q.getType())) {
                 objectiveScore = objectiveScore.add(ans.getScore());
             } else {
                 subjectiveScore = subjectiveScore.add(ans.getScore());
             }
         }
+        return new BigDecimal[]{objectiveScore, subjectiveScore};
+    }
 
-        record.setObjectiveScore(objectiveScore);
-        record.setSubjectiveScore(subjectiveScore);
-        record.setTotalScore(objectiveScore.add(subjectiveScore));
-        // 教师完成全部评分
-        record.setStatus(ExamRecordStatus.SUBMITTED_GRADED);
-        examRecordMapper.updateById(record);
+    private static boolean isObjective(String type) {
+        return QuestionType.SINGLE.getCode().equals(type)
+                || QuestionType.MULTIPLE.getCode().equals(type)
+                || QuestionType.JUDGE.getCode().equals(type)
+                || QuestionType.BLANK.getCode().equals(type);
+    }
+
+    /**
+     * 复核某时间之后更新过、未确认成绩的记录：SQL 粗筛出得分与作答汇总不一致的记录，
+     * 再按考试快照精确汇总，确有偏差的按作答修正得分（不改变记录状态）
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Map<String, Object> verifyRecordScores(LocalDateTime since, long afterId) {
+        List<Long> candidates = examRecordMapper.selectScoreDriftCandidates(since, afterId, SCORE_VERIFY_LIMIT);
+        List<Long> drifted = new ArrayList<>();
+        if (!candidates.isEmpty()) {
+            Map<Long, Exam> exams = new HashMap<>();
+            // 锁定后再汇总，避免与并发评分交错时把刚加上的分差覆盖掉
+            List<ExamRecord> locked = examRecordMapper.selectList(new LambdaQueryWrapper<ExamRecord>()
+                    .in(ExamRecord::getId, candidates)
+                    .orderByAsc(ExamRecord::getId)
+                    .last("FOR UPDATE"));
+            Map<Long, Map<Long, ExamAnswer>> answersByRecord = loadAnswers(candidates);
+            for (ExamRecord record : locked) {
+                if (Objects.equals(record.getDeleted(), 1)
+                        || record.getStatus() == null || record.getStatus() == ExamRecordStatus.FINISHED) {
+                    continue;
+                }
+                Exam exam = exams.computeIfAbsent(record.getExamId(), examMapper::selectById);
+                if (exam == null) continue;
+                BigDecimal[] sums = sumScores(snapshotCache.forRecord(exam, record.getId()),
+                        answersByRecord.getOrDefault(record.getId(), Collections.emptyMap()));
+                BigDecimal total = sums[0].add(sums[1]);
+                if (sameScore(record.getObjectiveScore(), sums[0]) && sameScore(record.getSubjectiveScore(), sums[1])
+                        && sameScore(record.getTotalScore(), total)) {
+                    continue;
+                }
+                ExamStatisticsAggregator.RecordState before = ExamStatisticsAggregator.RecordState.of(record);
+                record.setObjectiveScore(sums[0]);
+                record.setSubjectiveScore(sums[1]);
+                record.setTotalScore(total);
+                examRecordMapper.updateScores(record.getId(), sums[0], sums[1], null);
+                statisticsAggregator.onRecordChanged(record.getExamId(), before, record);
+                drifted.add(record.getId());
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("checkedCount", candidates.size());
+        result.put("driftedCount", drifted.size());
+        result.put("driftedRecordIds", drifted);
+        result.put("lastRecordId", candidates.isEmpty() ? afterId : candidates.get(candidates.size() - 1));
+        result.put("hasMore", candidates.size() >= SCORE_VERIFY_LIMIT);
+        return result;
+    }
+
+    private static boolean sameScore(BigDecimal stored, BigDecimal expected) {
+        return (stored != null ? stored : BigDecimal.ZERO).compareTo(expected) == 0;
     }
 
 
@@ -764,7 +1034,7 @@ public class GradingServiceImpl implements GradingService {
 
         // 从快照计算试卷总分，避免试卷修改后影响已有记录
         Exam exam = requireExam(record.getExamId());
-        List<ExamPaperQuestionSnapshot> snapshots = getSnapshotQuestions(exam.getId());
+        List<ExamPaperQuestionSnapshot> snapshots = getRecordQuestions(exam, recordId);
         BigDecimal snapshotTotalScore = snapshots.stream()
                 .map(s -> s.getQuestionScore() != null ? s.getQuestionScore() : BigDecimal.ZERO)
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
@@ -822,7 +1092,8 @@ public class GradingServiceImpl implements GradingService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void confirmGrading(Long recordId) {
-        ExamRecord record = requireRecord(recordId);
+        // 锁定记录后再判断状态，并发确认时后到者读到已确认状态，掌握度不会重复累加
+        ExamRecord record = lockRecord(recordId);
         if (!ExamRecordStatus.isGraded(record.getStatus())) {
             throw new BusinessException(ErrorCode.BAD_REQUEST, 
                 "只有已评分的记录才能确认，当前状态：" + ExamRecordStatus.getDescription(record.getStatus()));
@@ -830,8 +1101,13 @@ public class GradingServiceImpl implements GradingService {
         if (record.getStatus() == ExamRecordStatus.FINISHED) {
             throw new BusinessException(ErrorCode.BAD_REQUEST, "该记录已确认评分，无需重复操作");
         }
+        ExamStatisticsAggregator.RecordState before = ExamStatisticsAggregator.RecordState.of(record);
+        if (examRecordMapper.confirmGraded(Collections.singletonList(recordId)) == 0) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "该记录已确认评分，无需重复操作");
+        }
         record.setStatus(ExamRecordStatus.FINISHED);
-        examRecordMapper.updateById(record);
+        statisticsAggregator.onRecordChanged(record.getExamId(), before, record);
+        masteryAggregator.onRecordsConfirmed(Collections.singletonList(recordId));
     }
 
     @Override
@@ -841,36 +1117,141 @@ public class GradingServiceImpl implements GradingService {
         LambdaQueryWrapper<ExamRecord> q = new LambdaQueryWrapper<>();
         q.eq(ExamRecord::getExamId, examId)
                 .eq(ExamRecord::getStatus, ExamRecordStatus.SUBMITTED_GRADED)
-                .eq(ExamRecord::getDeleted, 0);
+                .eq(ExamRecord::getDeleted, 0)
+                .last("FOR UPDATE");
+        // 锁定读取：并发的整场确认会等待本事务提交，之后读到的记录已不是待确认状态
         List<ExamRecord> records = examRecordMapper.selectList(q);
+        if (records.isEmpty()) {
+            return 0;
+        }
 
         List<Long> userIds = new ArrayList<>();
+        List<Long> recordIds = records.stream().map(ExamRecord::getId).toList();
+        examRecordMapper.confirmGraded(recordIds);
 
         for (ExamRecord record : records) {
+            ExamStatisticsAggregator.RecordState before = ExamStatisticsAggregator.RecordState.of(record);
             record.setStatus(ExamRecordStatus.FINISHED);
-            examRecordMapper.updateById(record);
+            statisticsAggregator.onRecordChanged(examId, before, record);
             userIds.add(record.getUserId());
         }
+        masteryAggregator.onRecordsConfirmed(recordIds);
 
-        // 异步生成AI分析报告
+        // AI分析报告任务随事务入队，由后台工作线程生成
         if (!userIds.isEmpty()) {
-            generateReportsAsync(examId, userIds);
+            aiReportJobQueue.enqueue(examId, userIds);
         }
 
         return records.size();
     }
 
-    private void generateReportsAsync(Long examId, List<Long> userIds) {
-        for (Long userId : userIds) {
-            AI_REPORT_EXECUTOR.execute(() -> {
-                try {
-                    analysisService.generateExamReport(userId, examId);
-                } catch (Exception e) {
-                    // 系统错误报告
-                    System.err.println("为学生 " + userId + " 生成考试 " + examId + " 的AI报告失败: " + e.getMessage());
+    @Override
+    public Map<String, Object> archiveExam(Long examId) {
+        requireExam(examId);
+        ExamArchive archive = archiveService.archive(examId);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("examId", archive.getExamId());
+        result.put("recordCount", archive.getRecordCount());
+        result.put("answerCount", archive.getAnswerCount());
+        result.put("fileSize", archive.getFileSize());
+        result.put("pruned", archive.getPruned() != null && archive.getPruned() == 1);
+        result.put("archivedAt", archive.getArchivedAt());
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getAiReportJobMetrics() {
+        return aiReportWorker.metrics();
+    }
+
+    @Override
+    public Map<String, Object> getLlmTokenUsage(LocalDate startDate, LocalDate endDate) {
+        LocalDate to = endDate != null ? endDate : LocalDate.now();
+        LocalDate from = startDate != null ? startDate : to.minusDays(6);
+        if (from.isAfter(to)) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "开始日期不能晚于结束日期");
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("startDate", from);
+        result.put("endDate", to);
+        result.put("byDayAndModel", tokenUsageMapper.sumByDayAndModel(from, to));
+        result.put("byExam", tokenUsageMapper.sumByExam(from, to));
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> generateTrendReports(List<Long> examIds) {
+        List<Long> ids = examIds == null ? Collections.emptyList()
+                : examIds.stream().filter(Objects::nonNull).distinct().sorted().collect(Collectors.toList());
+        if (ids.size() < 2) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "请至少选择两场考试");
+        }
+        ids.forEach(this::requireExam);
+        List<Long> userIds = examRecordMapper.selectUsersFinishedIn(ids, 2);
+
+        // 报告在后台生成，接口只返回参与的学生数
+        List<CompletableFuture<AiAnalysisReport>> futures = analysisService.generateTrendReportsBatch(userIds, ids);
+        for (int i = 0; i < futures.size(); i++) {
+            Long userId = userIds.get(i);
+            futures.get(i).whenComplete((report, error) -> {
+                if (error != null) {
+                    log.warn("生成多次考试报告失败，userId={}，examIds={}", userId, ids, error);
                 }
             });
         }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("examIds", ids);
+        result.put("studentCount", userIds.size());
+        return result;
+    }
+
+    @Override
+    public Map<String, Object> getStudentTrendReport(Long userId) {
+        LambdaQueryWrapper<AiAnalysisReport> q = new LambdaQueryWrapper<>();
+        q.eq(AiAnalysisReport::getUserId, userId)
+         .eq(AiAnalysisReport::getReportType, "multi_exam")
+         .eq(AiAnalysisReport::getDeleted, 0)
+         .orderByDesc(AiAnalysisReport::getId)
+         .last("LIMIT 1");
+        AiAnalysisReport report = aiAnalysisReportMapper.selectOne(q);
+        if (report == null) {
+            return null;
+        }
+        List<Long> examIds = Arrays.stream(report.getExamIds().split(","))
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("reportId", report.getId());
+        result.put("examIds", examIds);
+        result.put("aiReport", report.getAiReport());
+        result.put("modelName", report.getModelName());
+        result.put("createdTime", report.getCreatedTime());
+        // 趋势数据从单场考试汇总读取，包含报告生成后新确认的成绩
+        WrongQuestionStatistics trend = trendBuilder.build(userId, examIds);
+        if (trend != null) {
+            result.put("examNames", trend.getExamNames());
+            result.put("examAccuracy", trend.getExamAccuracy());
+            result.put("typeTrends", trend.getTypeTrends());
+            result.put("knowledgeTrends", trend.getKnowledgeTrends());
+        }
+        return result;
+    }
+
+    @Override
+    public SseEmitter streamStudentAiReport(Long recordId, Long userId) {
+        ExamRecord record = requireRecord(recordId);
+        if (!Objects.equals(record.getUserId(), userId)) {
+            throw new BusinessException(ErrorCode.FORBIDDEN);
+        }
+        if (!ExamRecordStatus.isFinished(record.getStatus())) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "成绩尚未发布，暂不能查看分析报告");
+        }
+        Map<String, Object> existing = getExamRecordAiReport(recordId);
+        if (existing != null && !Boolean.TRUE.equals(existing.get("upgrading"))) {
+            return aiReportStreamer.replay(existing);
+        }
+        // 先推送规则报告，再流式推送大模型报告
+        return aiReportStreamer.stream(record.getExamId(), userId, existing);
     }
 
     @Override
@@ -887,17 +1268,26 @@ public class GradingServiceImpl implements GradingService {
          .last("LIMIT 1");
         
         List<AiAnalysisReport> reports = aiAnalysisReportMapper.selectList(q);
-        if (reports.isEmpty()) {
+        AiAnalysisReport report;
+        if (!reports.isEmpty()) {
+            report = reports.get(0);
+        } else if (ExamRecordStatus.isFinished(record.getStatus())) {
+            // 还没有报告时立即生成规则报告，大模型报告完成后原地替换
+            report = analysisService.generateRuleReport(record.getUserId(), record.getExamId());
+            aiReportJobQueue.enqueue(record.getExamId(), Collections.singletonList(record.getUserId()));
+        } else {
             return null;
         }
-        
-        AiAnalysisReport report = reports.get(0);
+        boolean rule = RuleReportEngine.MODEL_NAME.equals(report.getModelName());
+
         Map<String, Object> result = new HashMap<>();
         result.put("reportId", report.getId());
         result.put("aiReport", report.getAiReport());
         result.put("modelName", report.getModelName());
         result.put("createdTime", report.getCreatedTime());
         result.put("generationTime", report.getGenerationTime());
+        result.put("source", rule ? "rule" : "llm");
+        result.put("upgrading", rule && aiReportJobQueue.isPending(record.getExamId(), record.getUserId()));
         
         return result;
     }
@@ -1,22 +1,35 @@
 package org.development.exam_online.service.serviceImpl;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.development.exam_online.config.LLMConfig;
 import org.development.exam_online.dao.dto.KnowledgeStatistics;
+import org.development.exam_online.dao.dto.TrendSeries;
 import org.development.exam_online.dao.dto.TypeStatistics;
 import org.development.exam_online.dao.dto.WrongQuestionDetail;
 import org.development.exam_online.dao.dto.WrongQuestionStatistics;
 import org.development.exam_online.service.LLMService;
-import org.springframework.http.*;
+import org.development.exam_online.service.llm.BatchReports;
+import org.development.exam_online.service.llm.LLMClient;
+import org.development.exam_online.service.llm.LLMCompletion;
+import org.development.exam_online.service.llm.LLMReport;
+import org.development.exam_online.service.llm.ReportCache;
+import org.development.exam_online.service.llm.TokenUsageRecorder;
+import org.development.exam_online.service.report.RuleReportEngine;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.HashMap;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -24,143 +37,311 @@ import java.util.Map;
 public class LLMServiceImpl implements LLMService {
 
     private final LLMConfig llmConfig;
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LLMClient llmClient;
+    private final ReportCache reportCache;
+    private final TokenUsageRecorder tokenUsage;
+    private final RuleReportEngine ruleReportEngine;
+
+    private final AtomicLong batchRequests = new AtomicLong();
+    private final AtomicLong batchedReports = new AtomicLong();
+    private final AtomicLong batchMisses = new AtomicLong();
+    private final AtomicLong savedPromptChars = new AtomicLong();
+
+    /** 趋势报告中列出的知识点数，其余知识点只计入总体正确率 */
+    private static final int MAX_TREND_KNOWLEDGE = 15;
+
+    private static final String SYSTEM_PROMPT = "你是一位经验丰富的教育专家，擅长分析学生的学习情况并提供个性化的学习建议。";
 
     @Override
     public String generateAnalysisReport(WrongQuestionStatistics statistics, String promptTemplate) {
+        return generateAnalysisReportAsync(statistics, promptTemplate).join().content();
+    }
+
+    @Override
+    public String promptHash(WrongQuestionStatistics statistics, String promptTemplate) {
+        return hash(buildPrompt(statistics, promptTemplate));
+    }
+
+    @Override
+    public CompletableFuture<LLMReport> generateAnalysisReportAsync(WrongQuestionStatistics statistics, String promptTemplate) {
+        if (!llmConfig.getEnabled()) {
+            return CompletableFuture.completedFuture(disabledReport(statistics));
+        }
+        String prompt = buildPrompt(statistics, promptTemplate);
+        String hash = hash(prompt);
+        String cached = reportCache.get(hash);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(LLMReport.cached(cached, hash));
+        }
+        if (!tokenUsage.withinBudget()) {
+            return CompletableFuture.completedFuture(LLMReport.fallback(generateFallbackReport(statistics)));
+        }
+        log.info("调用大模型API: {}", llmConfig.getApiUrl());
+        // 重试由客户端完成，全部失败后退回规则报告
+        return llmClient.chat(SYSTEM_PROMPT, prompt)
+                .thenApply(completion -> generated(hash, prompt, completion))
+                .exceptionally(e -> {
+                    log.warn("大模型生成报告失败，使用规则报告：{}", e.toString());
+                    return LLMReport.fallback(generateFallbackReport(statistics));
+                });
+    }
+
+    @Override
+    public CompletableFuture<LLMReport> streamAnalysisReport(WrongQuestionStatistics statistics, String promptTemplate,
+                                                             Consumer<String> onDelta) {
         if (!llmConfig.getEnabled()) {
-            return "分析功能未使用";
+            LLMReport report = disabledReport(statistics);
+            onDelta.accept(report.content());
+            return CompletableFuture.completedFuture(report);
         }
-        int maxRetries = llmConfig.getMaxRetries();
-
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                // 构建提示词
-                String prompt = buildPrompt(statistics, promptTemplate);
-                
-                // 调用API
-                String response = callLLMAPI(prompt);
-                return response;
-            } catch (Exception e) {
-                if (attempt < maxRetries) {
-                    try {
-                        long waitTime = (long) (2000 * Math.pow(2, attempt - 1));
-                        Thread.sleep(waitTime);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
+        String prompt = buildPrompt(statistics, promptTemplate);
+        String hash = hash(prompt);
+        String cached = reportCache.get(hash);
+        if (cached != null) {
+            onDelta.accept(cached);
+            return CompletableFuture.completedFuture(LLMReport.cached(cached, hash));
+        }
+        if (!tokenUsage.withinBudget()) {
+            LLMReport fallback = LLMReport.fallback(generateFallbackReport(statistics));
+            onDelta.accept(fallback.content());
+            return CompletableFuture.completedFuture(fallback);
+        }
+        log.info("流式调用大模型API: {}", llmConfig.getApiUrl());
+        return llmClient.chatStream(SYSTEM_PROMPT, prompt, onDelta)
+                .thenApply(completion -> generated(hash, prompt, completion))
+                .exceptionally(e -> {
+                    log.warn("大模型流式生成报告失败，使用规则报告：{}", e.toString());
+                    return LLMReport.fallback(generateFallbackReport(statistics));
+                });
+    }
+
+    @Override
+    public List<CompletableFuture<LLMReport>> generateAnalysisReportsBatch(List<WrongQuestionStatistics> statisticsList,
+                                                                           String promptTemplate) {
+        int n = statisticsList.size();
+        List<CompletableFuture<LLMReport>> results = new ArrayList<>(n);
+        if (!llmConfig.getEnabled()) {
+            for (int i = 0; i < n; i++) {
+                results.add(CompletableFuture.completedFuture(disabledReport(statisticsList.get(i))));
+            }
+            return results;
+        }
+        String[] prompts = new String[n];
+        String[] hashes = new String[n];
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            prompts[i] = buildPrompt(statisticsList.get(i), promptTemplate);
+            hashes[i] = hash(prompts[i]);
+            String cached = reportCache.get(hashes[i]);
+            if (cached != null) {
+                results.add(CompletableFuture.completedFuture(LLMReport.cached(cached, hashes[i])));
+            } else {
+                results.add(new CompletableFuture<>());
+                pending.add(i);
+            }
+        }
+        int batchSize = Math.max(1, llmConfig.getBatchSize());
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<Integer> chunk = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            if (!tokenUsage.withinBudget()) {
+                for (int i : chunk) {
+                    results.get(i).complete(LLMReport.fallback(generateFallbackReport(statisticsList.get(i))));
                 }
+            } else if (chunk.size() == 1) {
+                int i = chunk.get(0);
+                forward(generateAnalysisReportAsync(statisticsList.get(i), promptTemplate), results.get(i));
+            } else {
+                sendBatch(chunk, statisticsList, promptTemplate, prompts, hashes, results);
             }
         }
-        return generateFallbackReport(statistics);
+        return results;
+    }
+
+    private void sendBatch(List<Integer> chunk, List<WrongQuestionStatistics> statisticsList, String promptTemplate,
+                           String[] prompts, String[] hashes, List<CompletableFuture<LLMReport>> results) {
+        List<WrongQuestionStatistics> batch = new ArrayList<>(chunk.size());
+        long separateChars = 0;
+        for (int i : chunk) {
+            batch.add(statisticsList.get(i));
+            separateChars += SYSTEM_PROMPT.length() + prompts[i].length();
+        }
+        String prompt = buildBatchPrompt(batch, promptTemplate);
+        long savedChars = separateChars - SYSTEM_PROMPT.length() - prompt.length();
+        int maxTokens = Math.min(llmConfig.getMaxTokens() * batch.size(), llmConfig.getBatchMaxTokens());
+        log.info("合并调用大模型API：{}名学生，提示词{}字符，比逐个请求少{}字符", batch.size(), prompt.length(), savedChars);
+
+        llmClient.chat(SYSTEM_PROMPT, prompt, maxTokens).whenComplete((completion, error) -> {
+            if (error != null) {
+                log.warn("大模型合并生成报告失败，使用规则报告：{}", error.toString());
+                for (int i : chunk) {
+                    results.get(i).complete(LLMReport.fallback(generateFallbackReport(statisticsList.get(i))));
+                }
+                return;
+            }
+            batchRequests.incrementAndGet();
+            savedPromptChars.addAndGet(savedChars);
+            String[] reports = BatchReports.split(completion.content(), chunk.size());
+            // 用量按解析出的报告数平均分摊；缺失的报告单独请求，用量另计
+            long found = Arrays.stream(reports).filter(Objects::nonNull).count();
+            long promptTokens = completion.hasUsage() ? completion.promptTokens() : estimate(prompt);
+            long completionTokens = completion.hasUsage() ? completion.completionTokens() : estimate(completion.content());
+            if (found == 0) {
+                // 没有可用的报告，用量无法归到学生，单独记录
+                tokenUsage.record(null, promptTokens, completionTokens);
+            }
+            for (int k = 0; k < chunk.size(); k++) {
+                int i = chunk.get(k);
+                if (reports[k] != null) {
+                    batchedReports.incrementAndGet();
+                    reportCache.put(hashes[i], reports[k]);
+                    results.get(i).complete(new LLMReport(reports[k], hashes[i], false, false,
+                            promptTokens / found, completionTokens / found));
+                } else {
+                    // 输出中缺少该学生的报告，单独请求
+                    batchMisses.incrementAndGet();
+                    forward(generateAnalysisReportAsync(statisticsList.get(i), promptTemplate), results.get(i));
+                }
+            }
+        });
+    }
+
+    private static <T> void forward(CompletableFuture<T> source, CompletableFuture<T> target) {
+        source.whenComplete((value, error) -> {
+            if (error != null) {
+                target.completeExceptionally(error);
+            } else {
+                target.complete(value);
+            }
+        });
+    }
+
+    /**
+     * 接口未返回 usage 时按字符数估算用量
+     */
+    private LLMReport generated(String hash, String prompt, LLMCompletion completion) {
+        String content = completion.content();
+        reportCache.put(hash, content);
+        if (completion.hasUsage()) {
+            return new LLMReport(content, hash, false, false, completion.promptTokens(), completion.completionTokens());
+        }
+        return new LLMReport(content, hash, false, false, estimate(SYSTEM_PROMPT + prompt), estimate(content));
+    }
+
+    /**
+     * 中文文本大致一字一 token
+     */
+    private static long estimate(String text) {
+        return text != null ? text.length() : 0L;
+    }
+
+    private String hash(String prompt) {
+        return ReportCache.hash(llmConfig.getDefaultModel(), llmConfig.getTemperature(), llmConfig.getMaxTokens(),
+                SYSTEM_PROMPT, prompt);
     }
 
     @Override
     public boolean testConnection() {
         try {
-            String testPrompt = "请回复：连接成功";
-            String response = callLLMAPI(testPrompt);
-            return response != null && !response.isEmpty();
+            LLMCompletion response = llmClient.probe(SYSTEM_PROMPT, "请回复：连接成功")
+                    .get(llmConfig.getTimeout(), TimeUnit.MILLISECONDS);
+            // 连接测试不受预算限制，用量记在非考试报告下
+            tokenUsage.record(null, response.promptTokens(), response.completionTokens());
+            return response.content() != null && !response.content().isEmpty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
             log.error("测试API连接失败", e);
             return false;
         }
     }
 
-    /**
-     * 调用大模型API
-     */
-    private String callLLMAPI(String userPrompt) throws Exception {
-        // 请求体
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", llmConfig.getDefaultModel());
-        requestBody.put("max_tokens", llmConfig.getMaxTokens());
-        requestBody.put("temperature", llmConfig.getTemperature());
-        
-        // 消息列表
-        Map<String, String> systemMessage = new HashMap<>();
-        systemMessage.put("role", "system");
-        systemMessage.put("content", "你是一位经验丰富的教育专家，擅长分析学生的学习情况并提供个性化的学习建议。");
-        
-        Map<String, String> userMessage = new HashMap<>();
-        userMessage.put("role", "user");
-        userMessage.put("content", userPrompt);
-        
-        requestBody.put("messages", List.of(systemMessage, userMessage));
-
-        // 请求头
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        headers.set("Authorization", "Bearer " + llmConfig.getApiKey());
-
-        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-
-        // 发送请求
-        log.info("调用大模型API: {}", llmConfig.getApiUrl());
-        ResponseEntity<String> response = restTemplate.exchange(
-                llmConfig.getApiUrl(),
-                HttpMethod.POST,
-                entity,
-                String.class
-        );
-
-        // 解析
-        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-            JsonNode jsonNode = objectMapper.readTree(response.getBody());
-            JsonNode choices = jsonNode.get("choices");
-            if (choices != null && choices.isArray() && choices.size() > 0) {
-                JsonNode message = choices.get(0).get("message");
-                if (message != null) {
-                    return message.get("content").asText();
-                }
-            }
-        }
-
-        throw new RuntimeException("API响应格式错误");
+    @Override
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> result = llmClient.metrics();
+        Map<String, Object> batch = new LinkedHashMap<>();
+        batch.put("requests", batchRequests.get());
+        batch.put("reports", batchedReports.get());
+        batch.put("missedReports", batchMisses.get());
+        // 中文提示词大致一字一 token
+        batch.put("savedPromptChars", savedPromptChars.get());
+        result.put("batch", batch);
+        result.put("tokens", tokenUsage.metrics());
+        return result;
     }
 
     private String buildPrompt(WrongQuestionStatistics statistics, String promptTemplate) {
-        if ("single_exam".equals(promptTemplate)) {
-            return buildSingleExamPrompt(statistics);
-        } else if ("multi_exam".equals(promptTemplate)) {
-            return buildMultiExamPrompt(statistics);
+        if ("multi_exam".equals(promptTemplate)) {
+            return MULTI_EXAM_INTRO + multiExamData(statistics) + MULTI_EXAM_INSTRUCTIONS;
         }
-        return buildSingleExamPrompt(statistics);
+        return SINGLE_EXAM_INTRO + singleExamData(statistics) + SINGLE_EXAM_INSTRUCTIONS;
     }
 
-    private String buildSingleExamPrompt(WrongQuestionStatistics statistics) {
+    /**
+     * 多名学生共用一次请求：说明与输出要求只出现一次，每名学生只附数据部分
+     */
+    private String buildBatchPrompt(List<WrongQuestionStatistics> statisticsList, String promptTemplate) {
+        boolean multi = "multi_exam".equals(promptTemplate);
         StringBuilder prompt = new StringBuilder();
-        prompt.append("请根据以下学生在单次考试中的表现，生成一份个性化的错题分析报告。\n\n");
-        
+        prompt.append("请根据以下").append(statisticsList.size()).append("名学生")
+              .append(multi ? "在多次考试中的表现，分别为每名学生生成一份综合性的错题分析报告。\n\n"
+                            : "在单次考试中的表现，分别为每名学生生成一份个性化的错题分析报告。\n\n");
+        for (int i = 0; i < statisticsList.size(); i++) {
+            prompt.append("======== 学生 ").append(i + 1).append(" ========\n");
+            prompt.append(multi ? multiExamData(statisticsList.get(i)) : singleExamData(statisticsList.get(i)));
+        }
+        prompt.append("对每名学生，").append(multi ? MULTI_EXAM_INSTRUCTIONS : SINGLE_EXAM_INSTRUCTIONS);
+        prompt.append("\n\n").append(BatchReports.formatInstruction(statisticsList.size()));
+        return prompt.toString();
+    }
+
+    private static final String SINGLE_EXAM_INTRO = "请根据以下学生在单次考试中的表现，生成一份个性化的错题分析报告。\n\n";
+
+    private static final String SINGLE_EXAM_INSTRUCTIONS = "请从以下几个方面进行分析，用Markdown格式输出：\n\n"
+            + "## 1. 本次考试总体表现\n"
+            + "简要评价学生的整体表现（2-3句话）\n\n"
+            + "## 2. 薄弱知识点分析\n"
+            + "列出掌握率低于70%的知识点，并分析可能的原因\n\n"
+            + "## 3. 题型分析\n"
+            + "分析各题型的掌握情况，指出需要加强的题型\n\n"
+            + "## 4. 学习建议\n"
+            + "提供3-5条具体可行的学习建议\n\n"
+            + "## 5. 推荐练习重点\n"
+            + "列出优先需要加强的知识点和题型\n\n"
+            + "请用友好、鼓励的语气，避免使用过于专业的术语。";
+
+    private static final String MULTI_EXAM_INTRO = "请根据以下学生在多次考试中的表现，生成一份综合性的错题分析报告。\n\n";
+
+    private static final String MULTI_EXAM_INSTRUCTIONS = "请从以下几个方面进行分析，用Markdown格式输出：\n\n"
+            + "## 1. 学习进展总结\n"
+            + "总结学生在多次考试中的整体表现和进步情况\n\n"
+            + "## 2. 持续薄弱的知识点\n"
+            + "列出在多次考试中反复出错的知识点\n\n"
+            + "## 3. 题型掌握趋势\n"
+            + "分析各题型的掌握情况和变化趋势\n\n"
+            + "## 4. 综合学习建议\n"
+            + "提供系统性的学习改进建议（3-5条）\n\n"
+            + "## 5. 长期学习规划\n"
+            + "建议学生制定的学习计划和重点方向\n\n"
+            + "请用友好、鼓励的语气，关注学生的进步和潜力。";
+
+    /**
+     * 单场考试提示词中每名学生各不相同的数据部分
+     */
+    private String singleExamData(WrongQuestionStatistics statistics) {
+        StringBuilder prompt = new StringBuilder();
+        // 不带姓名：统计相同的学生得到相同的提示词，可以复用报告
         prompt.append("【学生信息】\n");
-        prompt.append("- 姓名：").append(statistics.getUserName()).append("\n");
         prompt.append("- 总答题数：").append(statistics.getTotalQuestions()).append("\n");
         prompt.append("- 错题数：").append(statistics.getWrongQuestions()).append("\n");
         prompt.append("- 正确率：").append(statistics.getAccuracy()).append("%\n\n");
 
         prompt.append("【题型掌握情况】\n");
-        if (statistics.getByQuestionType() != null && !statistics.getByQuestionType().isEmpty()) {
-            for (Map.Entry<String, TypeStatistics> entry : statistics.getByQuestionType().entrySet()) {
-                TypeStatistics ts = entry.getValue();
-                prompt.append("- ").append(ts.getTypeName())
-                      .append("：总数 ").append(ts.getTotal())
-                      .append("，错误 ").append(ts.getWrong())
-                      .append("，正确率 ").append(ts.getAccuracy()).append("%\n");
-            }
-        }
+        appendTypeStatistics(prompt, statistics);
         prompt.append("\n");
 
         prompt.append("【知识点掌握情况】\n");
-        if (statistics.getByKnowledge() != null && !statistics.getByKnowledge().isEmpty()) {
-            for (KnowledgeStatistics ks : statistics.getByKnowledge()) {
-                prompt.append("- ").append(ks.getKnowledgeName())
-                      .append("：总数 ").append(ks.getTotal())
-                      .append("，错误 ").append(ks.getWrong())
-                      .append("，正确率 ").append(ks.getAccuracy()).append("%\n");
-            }
-        }
+        appendKnowledgeStatistics(prompt, statistics);
         prompt.append("\n");
 
         prompt.append("【典型错题示例（最多5题）】\n");
@@ -175,35 +356,67 @@ public class LLMServiceImpl implements LLMService {
                 prompt.append("   - 正确答案：").append(detail.getCorrectAnswer()).append("\n\n");
             }
         }
-
-        prompt.append("请从以下几个方面进行分析，用Markdown格式输出：\n\n");
-        prompt.append("## 1. 本次考试总体表现\n");
-        prompt.append("简要评价学生的整体表现（2-3句话）\n\n");
-        prompt.append("## 2. 薄弱知识点分析\n");
-        prompt.append("列出掌握率低于70%的知识点，并分析可能的原因\n\n");
-        prompt.append("## 3. 题型分析\n");
-        prompt.append("分析各题型的掌握情况，指出需要加强的题型\n\n");
-        prompt.append("## 4. 学习建议\n");
-        prompt.append("提供3-5条具体可行的学习建议\n\n");
-        prompt.append("## 5. 推荐练习重点\n");
-        prompt.append("列出优先需要加强的知识点和题型\n\n");
-        prompt.append("请用友好、鼓励的语气，避免使用过于专业的术语。");
-
         return prompt.toString();
     }
 
-    private String buildMultiExamPrompt(WrongQuestionStatistics statistics) {
+    /**
+     * 多场考试提示词中每名学生各不相同的数据部分
+     */
+    private String multiExamData(WrongQuestionStatistics statistics) {
         StringBuilder prompt = new StringBuilder();
-        prompt.append("请根据以下学生在多次考试中的表现，生成一份综合性的错题分析报告。\n\n");
-        
+        // 不带姓名：统计相同的学生得到相同的提示词，可以复用报告
         prompt.append("【学生信息】\n");
-        prompt.append("- 姓名：").append(statistics.getUserName()).append("\n");
         prompt.append("- 参与考试次数：").append(statistics.getExamCount()).append("\n");
         prompt.append("- 总答题数：").append(statistics.getTotalQuestions()).append("\n");
         prompt.append("- 总错题数：").append(statistics.getWrongQuestions()).append("\n");
         prompt.append("- 平均正确率：").append(statistics.getAccuracy()).append("%\n\n");
 
+        if (statistics.getExamNames() != null) {
+            appendTrends(prompt, statistics);
+            return prompt.toString();
+        }
+
         prompt.append("【题型掌握情况（综合统计）】\n");
+        appendTypeStatistics(prompt, statistics);
+        prompt.append("\n");
+
+        prompt.append("【知识点掌握情况（综合统计）】\n");
+        appendKnowledgeStatistics(prompt, statistics);
+        prompt.append("\n");
+        return prompt.toString();
+    }
+
+    /**
+     * 趋势数据：每个序列一行，按考试顺序列出正确率，未涉及的考试记为"-"
+     */
+    private void appendTrends(StringBuilder prompt, WrongQuestionStatistics statistics) {
+        prompt.append("【考试顺序与总体正确率】\n");
+        for (int i = 0; i < statistics.getExamNames().size(); i++) {
+            prompt.append(i + 1).append(". ").append(statistics.getExamNames().get(i)).append("：")
+                  .append(statistics.getExamAccuracy().get(i)).append("%\n");
+        }
+        prompt.append("\n【题型正确率变化（按考试顺序）】\n");
+        for (TrendSeries series : statistics.getTypeTrends()) {
+            appendSeries(prompt, series);
+        }
+        prompt.append("\n【知识点正确率变化（按考试顺序，掌握最差的前").append(MAX_TREND_KNOWLEDGE).append("个）】\n");
+        List<TrendSeries> knowledge = statistics.getKnowledgeTrends();
+        for (TrendSeries series : knowledge.subList(0, Math.min(MAX_TREND_KNOWLEDGE, knowledge.size()))) {
+            appendSeries(prompt, series);
+        }
+        prompt.append("\n");
+    }
+
+    private static void appendSeries(StringBuilder prompt, TrendSeries series) {
+        StringJoiner points = new StringJoiner("→");
+        for (BigDecimal point : series.getAccuracy()) {
+            points.add(point != null ? point.stripTrailingZeros().toPlainString() : "-");
+        }
+        prompt.append("- ").append(series.getName()).append("：").append(points)
+              .append("，综合 ").append(series.getOverall()).append("%\n");
+    }
+
+    private void appendTypeStatistics(StringBuilder prompt, WrongQuestionStatistics statistics) {
         if (statistics.getByQuestionType() != null && !statistics.getByQuestionType().isEmpty()) {
             for (Map.Entry<String, TypeStatistics> entry : statistics.getByQuestionType().entrySet()) {
                 TypeStatistics ts = entry.getValue();
@@ -213,9 +426,9 @@ public class LLMServiceImpl implements LLMService {
                       .append("，正确率 ").append(ts.getAccuracy()).append("%\n");
             }
         }
-        prompt.append("\n");
+    }
 
-        prompt.append("【知识点掌握情况（综合统计）】\n");
+    private void appendKnowledgeStatistics(StringBuilder prompt, WrongQuestionStatistics statistics) {
         if (statistics.getByKnowledge() != null && !statistics.getByKnowledge().isEmpty()) {
             for (KnowledgeStatistics ks : statistics.getByKnowledge()) {
                 prompt.append("- ").append(ks.getKnowledgeName())
@@ -224,50 +437,16 @@ public class LLMServiceImpl implements LLMService {
                       .append("，正确率 ").append(ks.getAccuracy()).append("%\n");
             }
         }
-        prompt.append("\n");
-
-        prompt.append("请从以下几个方面进行分析，用Markdown格式输出：\n\n");
-        prompt.append("## 1. 学习进展总结\n");
-        prompt.append("总结学生在多次考试中的整体表现和进步情况\n\n");
-        prompt.append("## 2. 持续薄弱的知识点\n");
-        prompt.append("列出在多次考试中反复出错的知识点\n\n");
-        prompt.append("## 3. 题型掌握趋势\n");
-        prompt.append("分析各题型的掌握情况和变化趋势\n\n");
-        prompt.append("## 4. 综合学习建议\n");
-        prompt.append("提供系统性的学习改进建议（3-5条）\n\n");
-        prompt.append("## 5. 长期学习规划\n");
-        prompt.append("建议学生制定的学习计划和重点方向\n\n");
-        prompt.append("请用友好、鼓励的语气，关注学生的进步和潜力。");
-
-        return prompt.toString();
     }
 
     private String generateFallbackReport(WrongQuestionStatistics statistics) {
-        StringBuilder report = new StringBuilder();
-        report.append("# 错题分析报告\n\n");
-        report.append("> 注意：由于AI服务暂时不可用，以下是基于规则生成的简化报告。\n\n");
-        
-        report.append("## 基本信息\n\n");
-        report.append("- 学生：").append(statistics.getUserName()).append("\n");
-        report.append("- 总答题数：").append(statistics.getTotalQuestions()).append("\n");
-        report.append("- 错题数：").append(statistics.getWrongQuestions()).append("\n");
-        report.append("- 正确率：").append(statistics.getAccuracy()).append("%\n\n");
-
-        report.append("## 薄弱知识点\n\n");
-        if (statistics.getByKnowledge() != null && !statistics.getByKnowledge().isEmpty()) {
-            for (KnowledgeStatistics ks : statistics.getByKnowledge()) {
-                if (ks.getAccuracy().doubleValue() < 70) {
-                    report.append("- **").append(ks.getKnowledgeName()).append("**：正确率 ")
-                          .append(ks.getAccuracy()).append("%，需要重点加强\n");
-                }
-            }
-        }
-
-        report.append("\n## 学习建议\n\n");
-        report.append("1. 针对薄弱知识点进行专项练习\n");
-        report.append("2. 复习错题，理解错误原因\n");
-        report.append("3. 定期进行知识点巩固测试\n");
+        return ruleReportEngine.render(statistics, RuleReportEngine.NOTE_FALLBACK);
+    }
 
-        return report.toString();
+    /**
+     * 未启用大模型时只提供规则报告，不附加“暂时不可用”的提示；内容与先行展示的规则报告一致，替换后不丢失
+     */
+    private LLMReport disabledReport(WrongQuestionStatistics statistics) {
+        return LLMReport.fallback(ruleReportEngine.render(statistics, null));
     }
 }
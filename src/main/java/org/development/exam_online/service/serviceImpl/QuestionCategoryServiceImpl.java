@@ -9,6 +9,8 @@ import org.development.exam_online.dao.entity.QuestionCategory;
 import org.development.exam_online.dao.mapper.QuestionCategoryMapper;
 import org.development.exam_online.dao.mapper.QuestionMapper;
 import org.development.exam_online.service.QuestionCategoryService;
+import org.development.exam_online.service.cache.ExamSnapshotCache;
+import org.development.exam_online.service.paper.QuestionCandidateIndex;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -22,6 +24,8 @@ public class QuestionCategoryServiceImpl implements QuestionCategoryService {
 
     private final QuestionCategoryMapper questionCategoryMapper;
     private final QuestionMapper questionMapper;
+    private final QuestionCandidateIndex candidateIndex;
+    private final ExamSnapshotCache snapshotCache;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -106,6 +110,10 @@ public class QuestionCategoryServiceImpl implements QuestionCategoryService {
                     .eq(Question::getDeleted, 0)
                     .set(Question::getDeleted, 1);
             questionMapper.update(null, updateWrapper);
+
+            List<Long> questionIds = questions.stream().map(Question::getId).toList();
+            candidateIndex.onQuestionsRemoved(questionIds);
+            snapshotCache.onQuestionsChanged(questionIds);
         }
 
         // 逻辑删除分类
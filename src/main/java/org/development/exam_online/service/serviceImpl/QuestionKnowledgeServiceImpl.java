@@ -12,6 +12,9 @@ import org.development.exam_online.dao.mapper.QuestionKnowledgeMapper;
 import org.development.exam_online.dao.mapper.QuestionMapper;
 import org.development.exam_online.security.AuthContext;
 import org.development.exam_online.service.QuestionKnowledgeService;
+import org.development.exam_online.service.cache.ExamSnapshotCache;
+import org.development.exam_online.service.cache.KnowledgeDictionary;
+import org.development.exam_online.service.paper.QuestionCandidateIndex;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -26,6 +29,9 @@ public class QuestionKnowledgeServiceImpl implements QuestionKnowledgeService {
     private final QuestionKnowledgeMapper questionKnowledgeMapper;
     private final QuestionCategoryMapper questionCategoryMapper;
     private final QuestionMapper questionMapper;
+    private final QuestionCandidateIndex candidateIndex;
+    private final ExamSnapshotCache snapshotCache;
+    private final KnowledgeDictionary knowledgeDictionary;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -117,6 +123,7 @@ public class QuestionKnowledgeServiceImpl implements QuestionKnowledgeService {
         if (updated <= 0) {
             throw new BusinessException(ErrorCode.DATABASE_ERROR, "更新知识点失败");
         }
+        knowledgeDictionary.evict(id);
         return "更新成功";
     }
 
@@ -139,6 +146,10 @@ public class QuestionKnowledgeServiceImpl implements QuestionKnowledgeService {
                     .eq(Question::getDeleted, 0)
                     .set(Question::getDeleted, 1);
             questionMapper.update(null, updateWrapper);
+
+            List<Long> questionIds = questions.stream().map(Question::getId).toList();
+            candidateIndex.onQuestionsRemoved(questionIds);
+            snapshotCache.onQuestionsChanged(questionIds);
         }
 
         // 逻辑删除知识点
@@ -151,6 +162,7 @@ public class QuestionKnowledgeServiceImpl implements QuestionKnowledgeService {
         if (updated <= 0) {
             throw new BusinessException(ErrorCode.DATABASE_ERROR, "删除知识点失败");
         }
+        knowledgeDictionary.evict(id);
         
         int deletedQuestionCount = questions != null ? questions.size() : 0;
         return "删除成功，已级联删除 " + deletedQuestionCount + " 道题目";
@@ -12,12 +12,16 @@ import org.development.exam_online.dao.dto.QuestionExcelDTO;
 import org.development.exam_online.dao.entity.Question;
 import org.development.exam_online.dao.entity.QuestionCategory;
 import org.development.exam_online.dao.entity.QuestionKnowledge;
+import org.development.exam_online.dao.entity.QuestionStats;
 import org.development.exam_online.dao.mapper.QuestionCategoryMapper;
 import org.development.exam_online.dao.mapper.QuestionKnowledgeMapper;
 import org.development.exam_online.dao.mapper.QuestionMapper;
+import org.development.exam_online.dao.mapper.QuestionStatsMapper;
 import org.development.exam_online.security.AuthContext;
 import org.development.exam_online.service.QuestionService;
 import org.development.exam_online.service.listener.QuestionImportListener;
+import org.development.exam_online.service.cache.ExamSnapshotCache;
+import org.development.exam_online.service.paper.QuestionCandidateIndex;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -38,6 +42,9 @@ public class QuestionServiceImpl implements QuestionService {
     private final QuestionMapper questionMapper;
     private final QuestionCategoryMapper questionCategoryMapper;
     private final QuestionKnowledgeMapper questionKnowledgeMapper;
+    private final QuestionStatsMapper questionStatsMapper;
+    private final QuestionCandidateIndex candidateIndex;
+    private final ExamSnapshotCache snapshotCache;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -57,6 +64,7 @@ public class QuestionServiceImpl implements QuestionService {
         if (inserted <= 0) {
             throw new BusinessException(ErrorCode.DATABASE_ERROR, "创建题目失败");
         }
+        candidateIndex.onQuestionSaved(question.getId());
         return questionMapper.selectById(question.getId());
     }
 
@@ -77,6 +85,8 @@ public class QuestionServiceImpl implements QuestionService {
         if (updated <= 0) {
             throw new BusinessException(ErrorCode.DATABASE_ERROR, "更新题目失败");
         }
+        candidateIndex.onQuestionSaved(questionId);
+        snapshotCache.onQuestionChanged(questionId);
         return "更新成功";
     }
 
@@ -94,6 +104,8 @@ public class QuestionServiceImpl implements QuestionService {
         if (updated <= 0) {
             throw new BusinessException(ErrorCode.DATABASE_ERROR, "删除题目失败");
         }
+        candidateIndex.onQuestionRemoved(questionId);
+        snapshotCache.onQuestionChanged(questionId);
         return "删除成功";
     }
 
@@ -112,11 +124,11 @@ public class QuestionServiceImpl implements QuestionService {
     }
 
     @Override
-    public PageResult<Question> getQuestionList(Integer pageNum, Integer pageSize, String type, Long categoryId, Long knowledgeId, Integer difficulty, String keyword, Long createdBy) {
+    public PageResult<Question> getQuestionList(Integer pageNum, Integer pageSize, String type, Long categoryId, Long knowledgeId, Integer difficulty, Integer empiricalDifficulty, String keyword, Long createdBy) {
         int p = pageNum == null || pageNum < 1 ? 1 : pageNum;
         int s = pageSize == null || pageSize < 1 ? 10 : pageSize;
 
-        LambdaQueryWrapper<Question> q = buildBaseQuery(type, categoryId, knowledgeId, difficulty, keyword);
+        LambdaQueryWrapper<Question> q = buildBaseQuery(type, categoryId, knowledgeId, difficulty, empiricalDifficulty, keyword);
         if (createdBy != null) {
             q.eq(Question::getCreatedBy, createdBy);
         }
@@ -124,19 +136,21 @@ public class QuestionServiceImpl implements QuestionService {
 
         Page<Question> page = new Page<>(p, s);
         Page<Question> result = questionMapper.selectPage(page, q);
+        fillEmpiricalDifficulty(result.getRecords());
         return PageResult.of(result.getTotal(), p, s, result.getRecords());
     }
 
     @Override
-    public PageResult<Question> searchQuestions(String keyword, String type, Long categoryId, Long knowledgeId, Integer difficulty, Integer pageNum, Integer pageSize) {
+    public PageResult<Question> searchQuestions(String keyword, String type, Long categoryId, Long knowledgeId, Integer difficulty, Integer empiricalDifficulty, Integer pageNum, Integer pageSize) {
         int p = pageNum == null || pageNum < 1 ? 1 : pageNum;
         int s = pageSize == null || pageSize < 1 ? 10 : pageSize;
 
-        LambdaQueryWrapper<Question> q = buildBaseQuery(type, categoryId, knowledgeId, difficulty, keyword);
+        LambdaQueryWrapper<Question> q = buildBaseQuery(type, categoryId, knowledgeId, difficulty, empiricalDifficulty, keyword);
         q.orderByDesc(Question::getCreatedAt);
 
         Page<Question> page = new Page<>(p, s);
         Page<Question> result = questionMapper.selectPage(page, q);
+        fillEmpiricalDifficulty(result.getRecords());
         return PageResult.of(result.getTotal(), p, s, result.getRecords());
     }
 
@@ -175,6 +189,7 @@ public class QuestionServiceImpl implements QuestionService {
         // 批量处理
         int successCount = 0;
         List<String> importErrors = new ArrayList<>(errors);
+        List<Long> importedIds = new ArrayList<>();
 
         for (int i = 0; i < validRows.size(); i++) {
             QuestionExcelDTO dto = validRows.get(i);
@@ -207,13 +222,14 @@ public class QuestionServiceImpl implements QuestionService {
                 
                 // 5. 插入数据库
                 questionMapper.insert(question);
+                importedIds.add(question.getId());
                 successCount++;
                 
             } catch (Exception e) {
                 importErrors.add(prefix + e.getMessage());
             }
         }
-
+        candidateIndex.onQuestionsSaved(importedIds);
 
         StringBuilder result = new StringBuilder();
         result.append("导入完成！成功导入 ").append(successCount).append(" 条题目");
@@ -507,7 +523,18 @@ public class QuestionServiceImpl implements QuestionService {
         return PageResult.of(result.getTotal(), p, s, result.getRecords());
     }
 
-    private LambdaQueryWrapper<Question> buildBaseQuery(String type, Long categoryId, Long knowledgeId, Integer difficulty, String keyword) {
+    private void fillEmpiricalDifficulty(List<Question> questions) {
+        if (questions == null || questions.isEmpty()) return;
+        List<Long> ids = questions.stream().map(Question::getId).toList();
+        Map<Long, Integer> levels = questionStatsMapper.selectBatchIds(ids).stream()
+                .filter(st -> st.getEmpiricalLevel() != null)
+                .collect(Collectors.toMap(QuestionStats::getQuestionId, QuestionStats::getEmpiricalLevel));
+        for (Question q : questions) {
+            q.setEmpiricalDifficulty(levels.get(q.getId()));
+        }
+    }
+
+    private LambdaQueryWrapper<Question> buildBaseQuery(String type, Long categoryId, Long knowledgeId, Integer difficulty, Integer empiricalDifficulty, String keyword) {
         LambdaQueryWrapper<Question> q = new LambdaQueryWrapper<>();
         q.eq(Question::getDeleted, 0);
 
@@ -526,6 +553,12 @@ public class QuestionServiceImpl implements QuestionService {
         if (difficulty != null) {
             q.eq(Question::getDifficulty, difficulty);
         }
+        if (empiricalDifficulty != null) {
+            if (empiricalDifficulty < 1 || empiricalDifficulty > 3) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, "实测难度取值为1-3");
+            }
+            q.inSql(Question::getId, "SELECT question_id FROM question_stats WHERE empirical_level = " + empiricalDifficulty);
+        }
         if (StringUtils.hasText(keyword)) {
             q.like(Question::getStem, keyword);
         }
@@ -2,16 +2,20 @@ package org.development.exam_online.service.serviceImpl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import lombok.RequiredArgsConstructor;
+import org.development.exam_online.common.constants.ExamRecordStatus;
 import org.development.exam_online.common.enums.QuestionType;
 import org.development.exam_online.common.exception.BusinessException;
 import org.development.exam_online.common.exception.ErrorCode;
 import org.development.exam_online.dao.dto.KnowledgeStatistics;
 import org.development.exam_online.dao.dto.TypeStatistics;
+import org.development.exam_online.dao.dto.WrongAnswerRow;
 import org.development.exam_online.dao.dto.WrongQuestionDetail;
 import org.development.exam_online.dao.dto.WrongQuestionStatistics;
 import org.development.exam_online.dao.entity.*;
 import org.development.exam_online.dao.mapper.*;
 import org.development.exam_online.service.WrongQuestionStatisticsService;
+import org.development.exam_online.service.archive.ExamArchiveService;
+import org.development.exam_online.service.cache.KnowledgeDictionary;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
@@ -29,7 +33,10 @@ public class WrongQuestionStatisticsServiceImpl implements WrongQuestionStatisti
     private final ExamAnswerMapper examAnswerMapper;
     private final ExamPaperQuestionSnapshotMapper snapshotMapper;
     private final QuestionMapper questionMapper;
-    private final QuestionKnowledgeMapper knowledgeMapper;
+    private final KnowledgeDictionary knowledgeDictionary;
+    private final ExamArchiveService archiveService;
+    private final StudentKnowledgeMasteryMapper knowledgeMasteryMapper;
+    private final StudentTypeMasteryMapper typeMasteryMapper;
 
     @Override
     public WrongQuestionStatistics getExamStatistics(Long userId, Long examId) {
@@ -71,6 +78,12 @@ public class WrongQuestionStatisticsServiceImpl implements WrongQuestionStatisti
         answerQuery.in(ExamAnswer::getRecordId, recordIds)
                 .eq(ExamAnswer::getDeleted, 0);
         List<ExamAnswer> answers = examAnswerMapper.selectList(answerQuery);
+        // 作答已归档并从数据库删除的考试，从归档文件补齐
+        for (ExamRecord record : records) {
+            if (archiveService.isPruned(record.getExamId())) {
+                answers.addAll(archiveService.answersOfRecord(record.getExamId(), record.getId()));
+            }
+        }
 
         // 获取所有题目信息
         List<Long> questionIds = answers.stream()
@@ -95,164 +108,215 @@ public class WrongQuestionStatisticsServiceImpl implements WrongQuestionStatisti
         Map<Long, Long> recordToExamMap = records.stream()
                 .collect(Collectors.toMap(ExamRecord::getId, ExamRecord::getExamId));
 
-        // 统计总题数和错题数
+        // 单次遍历累积计数：题型/知识点各一个 int[]{作答数, 错题数}，正确率在最后统一计算
         int totalQuestions = answers.size();
         int wrongQuestions = 0;
-
-        // 按题型统计
-        Map<String, TypeStatistics> typeStatsMap = new HashMap<>();
-        // 按知识点统计
-        Map<Long, KnowledgeStatistics> knowledgeStatsMap = new HashMap<>();
-        // 错题详情
-        List<WrongQuestionDetail> wrongDetails = new ArrayList<>();
+        Map<String, int[]> typeCounters = new LinkedHashMap<>();
+        Map<Long, int[]> knowledgeCounters = new LinkedHashMap<>();
+        List<ExamAnswer> wrongAnswers = new ArrayList<>();
 
         for (ExamAnswer answer : answers) {
             Question question = questionMap.get(answer.getQuestionId());
             if (question == null) continue;
 
-            String type = question.getType();
             boolean isWrong = isAnswerWrong(answer, question);
-            
-            if (isWrong) {
-                wrongQuestions++;
+            int wrong = isWrong ? 1 : 0;
+            wrongQuestions += wrong;
+
+            int[] typeCounter = typeCounters.computeIfAbsent(question.getType(), k -> new int[2]);
+            typeCounter[0]++;
+            typeCounter[1] += wrong;
+
+            if (question.getKnowledgeId() != null) {
+                int[] knowledgeCounter = knowledgeCounters.computeIfAbsent(question.getKnowledgeId(), k -> new int[2]);
+                knowledgeCounter[0]++;
+                knowledgeCounter[1] += wrong;
             }
 
-            // 统计题型
-            updateTypeStatistics(typeStatsMap, type, isWrong);
-
-            // 统计知识点
-            updateKnowledgeStatistics(knowledgeStatsMap, question, isWrong);
-
-            // 收集错题详情（最多20题）
-            if (isWrong && wrongDetails.size() < 20) {
-                WrongQuestionDetail detail = new WrongQuestionDetail();
-                detail.setQuestionId(question.getId());
-                detail.setStem(truncateString(question.getStem(), 100));
-                detail.setType(type);
-                detail.setTypeName(getTypeName(type));
-                detail.setKnowledge(getQuestionKnowledge(question.getId()));
-                detail.setUserAnswer(answer.getUserAnswer());
-                detail.setCorrectAnswer(question.getAnswerJson());
-                
-                Long examId = recordToExamMap.get(answer.getRecordId());
-                Exam exam = examMap.get(examId);
-                detail.setExamName(exam != null ? exam.getName() : "未知考试");
-                detail.setExamId(examId);
-                
-                wrongDetails.add(detail);
+            // 收集错题（最多20题）
+            if (isWrong && wrongAnswers.size() < 20) {
+                wrongAnswers.add(answer);
             }
         }
 
-        // 计算正确率
-        BigDecimal accuracy = totalQuestions > 0 
-                ? BigDecimal.valueOf((totalQuestions - wrongQuestions) * 100.0 / totalQuestions)
-                        .setScale(2, RoundingMode.HALF_UP)
-                : BigDecimal.ZERO;
+        // 知识点名称一次批量获取
+        Set<Long> knowledgeIds = new HashSet<>(knowledgeCounters.keySet());
+        for (ExamAnswer answer : wrongAnswers) {
+            Long knowledgeId = questionMap.get(answer.getQuestionId()).getKnowledgeId();
+            if (knowledgeId != null) knowledgeIds.add(knowledgeId);
+        }
+        Map<Long, String> knowledgeNames = knowledgeDictionary.names(knowledgeIds);
+
+        Map<String, TypeStatistics> typeStatsMap = new HashMap<>();
+        typeCounters.forEach((type, counter) -> typeStatsMap.put(type, toTypeStatistics(type, counter[0], counter[1])));
+
+        List<KnowledgeStatistics> knowledgeStats = new ArrayList<>(knowledgeCounters.size());
+        knowledgeCounters.forEach((knowledgeId, counter) ->
+                knowledgeStats.add(toKnowledgeStatistics(knowledgeId, knowledgeNames, counter[0], counter[1])));
+        // 按正确率升序，掌握最差的知识点在前
+        knowledgeStats.sort(Comparator.comparing(KnowledgeStatistics::getAccuracy));
+
+        List<WrongQuestionDetail> wrongDetails = new ArrayList<>(wrongAnswers.size());
+        for (ExamAnswer answer : wrongAnswers) {
+            Long examId = recordToExamMap.get(answer.getRecordId());
+            wrongDetails.add(toWrongDetail(questionMap.get(answer.getQuestionId()), answer.getUserAnswer(),
+                    examId, examMap.get(examId), knowledgeNames));
+        }
 
-        // 填充统计数据
         statistics.setTotalQuestions(totalQuestions);
         statistics.setWrongQuestions(wrongQuestions);
-        statistics.setAccuracy(accuracy);
+        statistics.setAccuracy(accuracy(totalQuestions, wrongQuestions));
         statistics.setByQuestionType(typeStatsMap);
-        statistics.setByKnowledge(new ArrayList<>(knowledgeStatsMap.values()));
+        statistics.setByKnowledge(knowledgeStats);
         statistics.setWrongQuestionDetails(wrongDetails);
-
-        // 按错误率排序知识点
-        statistics.getByKnowledge().sort((a, b) -> a.getAccuracy().compareTo(b.getAccuracy()));
-
         return statistics;
     }
 
+    /**
+     * 所有考试的统计读取掌握度汇总表，只包含已确认成绩的考试记录，与历史记录数量无关
+     */
     @Override
     public WrongQuestionStatistics getAllExamStatistics(Long userId) {
-        // 获取该学生的所有考试记录
+        User user = userMapper.selectById(userId);
+        if (user == null) {
+            throw new BusinessException(ErrorCode.USER_NOT_FOUND);
+        }
+
         LambdaQueryWrapper<ExamRecord> query = new LambdaQueryWrapper<>();
         query.eq(ExamRecord::getUserId, userId)
+                .eq(ExamRecord::getStatus, ExamRecordStatus.FINISHED)
                 .eq(ExamRecord::getDeleted, 0);
-        List<ExamRecord> records = examRecordMapper.selectList(query);
-        
-        if (records.isEmpty()) {
-            throw new BusinessException(ErrorCode.BAD_REQUEST, "该学生没有考试记录");
+        long examCount = examRecordMapper.selectCount(query);
+        if (examCount == 0) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "该学生没有已确认成绩的考试记录");
         }
 
-        List<Long> examIds = records.stream()
-                .map(ExamRecord::getExamId)
-                .distinct()
-                .collect(Collectors.toList());
+        WrongQuestionStatistics statistics = new WrongQuestionStatistics();
+        statistics.setUserId(userId);
+        statistics.setUserName(user.getRealName());
+        statistics.setExamCount((int) examCount);
 
-        return getMultiExamStatistics(userId, examIds);
+        int totalQuestions = 0;
+        int wrongQuestions = 0;
+        Map<String, TypeStatistics> typeStatsMap = new HashMap<>();
+        for (StudentTypeMastery row : typeMasteryMapper.selectByUserId(userId)) {
+            typeStatsMap.put(row.getQuestionType(),
+                    toTypeStatistics(row.getQuestionType(), row.getAttemptCount(), row.getWrongCount()));
+            totalQuestions += row.getAttemptCount();
+            wrongQuestions += row.getWrongCount();
+        }
+
+        statistics.setTotalQuestions(totalQuestions);
+        statistics.setWrongQuestions(wrongQuestions);
+        statistics.setAccuracy(accuracy(totalQuestions, wrongQuestions));
+        statistics.setByQuestionType(typeStatsMap);
+        statistics.setByKnowledge(getKnowledgeMastery(userId));
+        statistics.setWrongQuestionDetails(getRecentWrongDetails(userId));
+        return statistics;
     }
 
     @Override
     public List<KnowledgeStatistics> getKnowledgeMastery(Long userId) {
-        WrongQuestionStatistics stats = getAllExamStatistics(userId);
-        return stats.getByKnowledge();
+        List<StudentKnowledgeMastery> rows = knowledgeMasteryMapper.selectByUserId(userId);
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, String> knowledgeNames = knowledgeDictionary.names(rows.stream()
+                .map(StudentKnowledgeMastery::getKnowledgeId)
+                .collect(Collectors.toList()));
+
+        List<KnowledgeStatistics> result = new ArrayList<>(rows.size());
+        for (StudentKnowledgeMastery row : rows) {
+            result.add(toKnowledgeStatistics(row.getKnowledgeId(), knowledgeNames,
+                    row.getAttemptCount(), row.getWrongCount()));
+        }
+        // 按正确率升序，掌握最差的知识点在前
+        result.sort(Comparator.comparing(KnowledgeStatistics::getAccuracy));
+        return result;
     }
 
     /**
-     * 判断答案是否错误
+     * 最近的错题详情（最多20题）
      */
-    private boolean isAnswerWrong(ExamAnswer answer, Question question) {
-        if (answer.getScore() == null) {
-            return true; // 未评分视为错误
+    private List<WrongQuestionDetail> getRecentWrongDetails(Long userId) {
+        List<WrongAnswerRow> rows = examAnswerMapper.selectRecentWrongAnswers(userId, 20);
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
         }
-        
-        BigDecimal fullScore = question.getScore() != null ? question.getScore() : BigDecimal.ZERO;
-        return answer.getScore().compareTo(fullScore) < 0;
+        Map<Long, Question> questionMap = questionMapper.selectBatchIdsIgnoreDeleted(rows.stream()
+                        .map(WrongAnswerRow::getQuestionId).distinct().collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Question::getId, q -> q));
+        Map<Long, Exam> examMap = examMapper.selectBatchIds(rows.stream()
+                        .map(WrongAnswerRow::getExamId).distinct().collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Exam::getId, e -> e));
+        Map<Long, String> knowledgeNames = knowledgeDictionary.names(questionMap.values().stream()
+                .map(Question::getKnowledgeId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+
+        List<WrongQuestionDetail> details = new ArrayList<>(rows.size());
+        for (WrongAnswerRow row : rows) {
+            Question question = questionMap.get(row.getQuestionId());
+            if (question == null) continue;
+            details.add(toWrongDetail(question, row.getUserAnswer(), row.getExamId(),
+                    examMap.get(row.getExamId()), knowledgeNames));
+        }
+        return details;
     }
 
-    /**
-     * 更新题型统计
-     */
-    private void updateTypeStatistics(Map<String, TypeStatistics> statsMap, String type, boolean isWrong) {
-        TypeStatistics stats = statsMap.computeIfAbsent(type, k -> {
-            TypeStatistics s = new TypeStatistics();
-            s.setTypeName(getTypeName(type));
-            s.setTotal(0);
-            s.setWrong(0);
-            return s;
-        });
-
-        stats.setTotal(stats.getTotal() + 1);
-        if (isWrong) {
-            stats.setWrong(stats.getWrong() + 1);
-        }
+    private TypeStatistics toTypeStatistics(String type, int total, int wrong) {
+        TypeStatistics stats = new TypeStatistics();
+        stats.setTypeName(getTypeName(type));
+        stats.setTotal(total);
+        stats.setWrong(wrong);
+        stats.setAccuracy(accuracy(total, wrong));
+        return stats;
+    }
+
+    private KnowledgeStatistics toKnowledgeStatistics(Long knowledgeId, Map<Long, String> knowledgeNames, int total, int wrong) {
+        KnowledgeStatistics stats = new KnowledgeStatistics();
+        stats.setKnowledgeId(knowledgeId);
+        stats.setKnowledgeName(knowledgeNames.getOrDefault(knowledgeId, "未知知识点"));
+        stats.setTotal(total);
+        stats.setWrong(wrong);
+        stats.setAccuracy(accuracy(total, wrong));
+        return stats;
+    }
+
+    private WrongQuestionDetail toWrongDetail(Question question, String userAnswer, Long examId, Exam exam,
+                                              Map<Long, String> knowledgeNames) {
+        WrongQuestionDetail detail = new WrongQuestionDetail();
+        detail.setQuestionId(question.getId());
+        detail.setStem(truncateString(question.getStem(), 100));
+        detail.setType(question.getType());
+        detail.setTypeName(getTypeName(question.getType()));
+        detail.setKnowledge(question.getKnowledgeId() == null ? "未分类"
+                : knowledgeNames.getOrDefault(question.getKnowledgeId(), "未知知识点"));
+        detail.setUserAnswer(userAnswer);
+        detail.setCorrectAnswer(question.getAnswerJson());
+        detail.setExamName(exam != null ? exam.getName() : "未知考试");
+        detail.setExamId(examId);
+        return detail;
+    }
 
-        // 计算正确率
-        BigDecimal accuracy = stats.getTotal() > 0
-                ? BigDecimal.valueOf((stats.getTotal() - stats.getWrong()) * 100.0 / stats.getTotal())
-                        .setScale(2, RoundingMode.HALF_UP)
+    private static BigDecimal accuracy(int total, int wrong) {
+        return total > 0
+                ? BigDecimal.valueOf((total - wrong) * 100.0 / total).setScale(2, RoundingMode.HALF_UP)
                 : BigDecimal.ZERO;
-        stats.setAccuracy(accuracy);
     }
 
     /**
-     * 更新知识点统计
+     * 判断答案是否错误
      */
-    private void updateKnowledgeStatistics(Map<Long, KnowledgeStatistics> statsMap, Question question, boolean isWrong) {
-        Long knowledgeId = question.getKnowledgeId();
-        if (knowledgeId == null) return;
-
-        KnowledgeStatistics stats = statsMap.computeIfAbsent(knowledgeId, k -> {
-            KnowledgeStatistics s = new KnowledgeStatistics();
-            s.setKnowledgeId(knowledgeId);
-            s.setKnowledgeName(getKnowledgeName(knowledgeId));
-            s.setTotal(0);
-            s.setWrong(0);
-            return s;
-        });
-
-        stats.setTotal(stats.getTotal() + 1);
-        if (isWrong) {
-            stats.setWrong(stats.getWrong() + 1);
+    private boolean isAnswerWrong(ExamAnswer answer, Question question) {
+        if (answer.getScore() == null) {
+            return true; // 未评分视为错误
         }
-
-        // 计算正确率
-        BigDecimal accuracy = stats.getTotal() > 0
-                ? BigDecimal.valueOf((stats.getTotal() - stats.getWrong()) * 100.0 / stats.getTotal())
-                        .setScale(2, RoundingMode.HALF_UP)
-                : BigDecimal.ZERO;
-        stats.setAccuracy(accuracy);
+        
+        BigDecimal fullScore = question.getScore() != null ? question.getScore() : BigDecimal.ZERO;
+        return answer.getScore().compareTo(fullScore) < 0;
     }
 
     /**
@@ -267,25 +331,6 @@ public class WrongQuestionStatisticsServiceImpl implements WrongQuestionStatisti
         return "未知题型";
     }
 
-    /**
-     * 获取知识点名称
-     */
-    private String getKnowledgeName(Long knowledgeId) {
-        QuestionKnowledge knowledge = knowledgeMapper.selectById(knowledgeId);
-        return knowledge != null ? knowledge.getName() : "未知知识点";
-    }
-
-    /**
-     * 获取题目的知识点名称
-     */
-    private String getQuestionKnowledge(Long questionId) {
-        Question question = questionMapper.selectById(questionId);
-        if (question == null || question.getKnowledgeId() == null) {
-            return "未分类";
-        }
-        return getKnowledgeName(question.getKnowledgeId());
-    }
-
     /**
      * 截断字符串
      */
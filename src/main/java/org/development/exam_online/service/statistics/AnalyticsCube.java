@@ -0,0 +1,379 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.common.enums.QuestionType;
+import org.development.exam_online.dao.dto.CubeFactRow;
+import org.development.exam_online.dao.entity.Question;
+import org.development.exam_online.dao.mapper.ExamAnswerMapper;
+import org.development.exam_online.dao.mapper.QuestionMapper;
+import org.development.exam_online.service.archive.ExamArchiveFile;
+import org.development.exam_online.service.archive.ExamArchiveService;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 班级/群体维度的作答分析数据立方
+ * <p>
+ * 已确认成绩（状态5）的考试记录的每道作答作为一行事实，按列存放在基本类型数组中：
+ * 学生、考试、题目各用字典编号，得分率存为 float（得分率小于 1 即为错题）。
+ * 题目的题型、难度、知识点作为维度表单独存放，题目修改后只需更新维度表。
+ * <p>
+ * 按 exam_record.updated_at 水位线增量追加新确认的记录（确认后成绩不再变化），
+ * 查询时对事实列做一次顺序扫描，按维度分组累加，不访问数据库。
+ * 考试记录被删除等变化由定时全量重建修正；作答已归档并从数据库删除的考试在全量构建时读取归档文件。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnalyticsCube {
+
+    public enum Dimension { KNOWLEDGE, TYPE, DIFFICULTY, EXAM, STUDENT }
+
+    /** 增量刷新时回看的时间窗口，覆盖时钟偏差和同一时刻更新但尚未读到的记录 */
+    private static final long OVERLAP_SECONDS = 60;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final List<QuestionType> TYPES = List.of(QuestionType.values());
+
+    private final ExamAnswerMapper examAnswerMapper;
+    private final QuestionMapper questionMapper;
+    private final ExamArchiveService archiveService;
+
+    private final Object writeLock = new Object();
+    private volatile State state;
+
+    /**
+     * 查询条件，各项为空表示不限制
+     */
+    public record Filter(Collection<Long> examIds, Collection<Long> userIds, Collection<Long> knowledgeIds,
+                         Collection<String> types, Collection<Integer> difficulties) {}
+
+    /**
+     * @param key               分组键：知识点/考试/学生ID、题型代码或难度（0 表示未设置）
+     * @param attempts          作答次数
+     * @param wrong             未得满分次数
+     * @param scoreFractionSum  得分率之和
+     * @param studentCount      涉及的学生数
+     */
+    public record Cell(Object key, int attempts, int wrong, double scoreFractionSum, int studentCount) {}
+
+    /**
+     * @param factCount   立方中的作答行数
+     * @param refreshedAt 最近一次刷新时间
+     */
+    public record Result(List<Cell> cells, int factCount, LocalDateTime refreshedAt) {}
+
+    public Result query(Dimension groupBy, Filter filter) {
+        State s = state;
+        if (s == null) {
+            refresh();
+            s = state;
+        }
+        // 先读 size（volatile），之后读到的列数组至少包含前 size 行
+        int n = s.size;
+        int[] userCol = s.userCol;
+        int[] examCol = s.examCol;
+        int[] questionCol = s.questionCol;
+        float[] fractionCol = s.fractionCol;
+        int[] qKnowledge = s.qKnowledge;
+        byte[] qType = s.qType;
+        byte[] qDifficulty = s.qDifficulty;
+
+        BitSet examMask = s.exams.mask(filter.examIds());
+        BitSet userMask = s.users.mask(filter.userIds());
+        BitSet questionMask = questionMask(s, filter);
+
+        int cardinality = switch (groupBy) {
+            case KNOWLEDGE -> s.knowledge.size();
+            case TYPE -> TYPES.size();
+            case DIFFICULTY -> 4;
+            case EXAM -> s.exams.size();
+            case STUDENT -> s.users.size();
+        };
+        int[] attempts = new int[cardinality];
+        int[] wrong = new int[cardinality];
+        double[] fractionSum = new double[cardinality];
+        BitSet[] students = new BitSet[cardinality];
+
+        for (int i = 0; i < n; i++) {
+            if (examMask != null && !examMask.get(examCol[i])) continue;
+            if (userMask != null && !userMask.get(userCol[i])) continue;
+            int q = questionCol[i];
+            if (questionMask != null && !questionMask.get(q)) continue;
+            int key = switch (groupBy) {
+                case KNOWLEDGE -> qKnowledge[q];
+                case TYPE -> qType[q];
+                case DIFFICULTY -> qDifficulty[q];
+                case EXAM -> examCol[i];
+                case STUDENT -> userCol[i];
+            };
+            // 扫描期间新加入字典的编号不在本次结果范围内
+            if (key < 0 || key >= cardinality) continue;
+            float fraction = fractionCol[i];
+            attempts[key]++;
+            if (fraction < 1f) wrong[key]++;
+            fractionSum[key] += fraction;
+            BitSet set = students[key];
+            if (set == null) {
+                students[key] = set = new BitSet();
+            }
+            set.set(userCol[i]);
+        }
+
+        List<Cell> cells = new ArrayList<>();
+        for (int k = 0; k < cardinality; k++) {
+            if (attempts[k] == 0) continue;
+            Object key = switch (groupBy) {
+                case KNOWLEDGE -> s.knowledge.id(k);
+                case TYPE -> TYPES.get(k).getCode();
+                case DIFFICULTY -> k;
+                case EXAM -> s.exams.id(k);
+                case STUDENT -> s.users.id(k);
+            };
+            cells.add(new Cell(key, attempts[k], wrong[k], fractionSum[k], students[k].cardinality()));
+        }
+        return new Result(cells, n, s.refreshedAt);
+    }
+
+    /**
+     * 增量追加上次刷新之后确认的考试记录；尚未构建时全量构建
+     */
+    public void refresh() {
+        synchronized (writeLock) {
+            State s = state;
+            if (s == null) {
+                rebuild();
+                return;
+            }
+            load(s, s.watermark.minusSeconds(OVERLAP_SECONDS));
+        }
+    }
+
+    /**
+     * 全量重建，完成后整体替换
+     */
+    public void rebuild() {
+        synchronized (writeLock) {
+            long start = System.currentTimeMillis();
+            State s = new State();
+            load(s, EPOCH);
+            state = s;
+            log.info("分析数据立方重建完成，作答行数={}，耗时={}ms", s.size, System.currentTimeMillis() - start);
+        }
+    }
+
+    private void load(State s, LocalDateTime since) {
+        // 已收录题目被修改时更新其维度；首次构建时字典为空，无需查询
+        if (s.pending > 0) {
+            for (Question q : questionMapper.selectDimensionsUpdatedSince(since)) {
+                Integer idx = s.questions.indexOf(q.getId());
+                if (idx != null) {
+                    s.setDimensions(idx, q);
+                }
+            }
+        }
+
+        Set<Long> fresh = new HashSet<>();
+        Set<Long> unknownQuestions = new HashSet<>();
+        LocalDateTime[] maxUpdated = {s.watermark};
+        int[] appended = {0};
+        examAnswerMapper.streamCubeFacts(since, ctx -> {
+            CubeFactRow row = ctx.getResultObject();
+            Long recordId = row.getRecordId();
+            if (s.loadedRecords.contains(recordId) && !fresh.contains(recordId)) {
+                return;
+            }
+            fresh.add(recordId);
+            if (s.questions.indexOf(row.getQuestionId()) == null) {
+                unknownQuestions.add(row.getQuestionId());
+            }
+            s.append(row);
+            appended[0]++;
+            if (row.getUpdatedAt() != null && (maxUpdated[0] == null || row.getUpdatedAt().isAfter(maxUpdated[0]))) {
+                maxUpdated[0] = row.getUpdatedAt();
+            }
+        });
+        if (since == EPOCH) {
+            // 作答已归档并从数据库删除的考试，全量构建时从归档文件读取
+            for (Long examId : archiveService.prunedExamIds()) {
+                ExamArchiveFile file = archiveService.file(examId);
+                if (file == null) continue;
+                file.forEachAnswer(false, (recordId, userId, totalScore, questionId, fullScore, score, userAnswer, manual) -> {
+                    if (s.loadedRecords.contains(recordId)) return;
+                    CubeFactRow row = new CubeFactRow();
+                    row.setRecordId(recordId);
+                    row.setUserId(userId);
+                    row.setExamId(examId);
+                    row.setQuestionId(questionId);
+                    row.setScore(score);
+                    row.setFullScore(fullScore);
+                    fresh.add(recordId);
+                    if (s.questions.indexOf(questionId) == null) {
+                        unknownQuestions.add(questionId);
+                    }
+                    s.append(row);
+                    appended[0]++;
+                });
+            }
+        }
+        List<Long> unknown = new ArrayList<>(unknownQuestions);
+        for (int from = 0; from < unknown.size(); from += 1000) {
+            for (Question q : questionMapper.selectBatchIdsIgnoreDeleted(unknown.subList(from, Math.min(from + 1000, unknown.size())))) {
+                s.setDimensions(s.questions.indexOf(q.getId()), q);
+            }
+        }
+        s.loadedRecords.addAll(fresh);
+        s.watermark = maxUpdated[0] != null ? maxUpdated[0] : EPOCH;
+        s.refreshedAt = LocalDateTime.now();
+        // 发布：写 size 之后，读者才能看到本次追加的行
+        s.size = s.pending;
+        if (appended[0] > 0) {
+            log.debug("分析数据立方追加作答行数={}，考试记录数={}", appended[0], fresh.size());
+        }
+    }
+
+    private static BitSet questionMask(State s, Filter filter) {
+        boolean byKnowledge = filter.knowledgeIds() != null && !filter.knowledgeIds().isEmpty();
+        boolean byType = filter.types() != null && !filter.types().isEmpty();
+        boolean byDifficulty = filter.difficulties() != null && !filter.difficulties().isEmpty();
+        if (!byKnowledge && !byType && !byDifficulty) {
+            return null;
+        }
+        BitSet knowledgeMask = byKnowledge ? s.knowledge.mask(filter.knowledgeIds()) : null;
+        BitSet mask = new BitSet();
+        int count = s.questions.size();
+        for (int q = 0; q < count; q++) {
+            if (byKnowledge && (s.qKnowledge[q] < 0 || !knowledgeMask.get(s.qKnowledge[q]))) continue;
+            if (byType && (s.qType[q] < 0 || !filter.types().contains(TYPES.get(s.qType[q]).getCode()))) continue;
+            if (byDifficulty && !filter.difficulties().contains((int) s.qDifficulty[q])) continue;
+            mask.set(q);
+        }
+        return mask;
+    }
+
+    /**
+     * 立方的一个版本；写操作在 writeLock 下进行，读者通过 volatile 的 size 获取可见的行数
+     */
+    private static final class State {
+
+        final IdDictionary users = new IdDictionary();
+        final IdDictionary exams = new IdDictionary();
+        final IdDictionary questions = new IdDictionary();
+        final IdDictionary knowledge = new IdDictionary();
+
+        int[] userCol = new int[1024];
+        int[] examCol = new int[1024];
+        int[] questionCol = new int[1024];
+        float[] fractionCol = new float[1024];
+        volatile int size;
+        int pending;
+
+        /** 题目维度，下标为题目字典编号；知识点为知识点字典编号，-1 表示无 */
+        int[] qKnowledge = new int[256];
+        byte[] qType = new byte[256];
+        byte[] qDifficulty = new byte[256];
+
+        final Set<Long> loadedRecords = new HashSet<>();
+        LocalDateTime watermark;
+        LocalDateTime refreshedAt;
+
+        void append(CubeFactRow row) {
+            if (pending == userCol.length) {
+                int capacity = pending * 2;
+                // 先复制再替换引用，读者持有的旧数组仍然完整
+                userCol = Arrays.copyOf(userCol, capacity);
+                examCol = Arrays.copyOf(examCol, capacity);
+                questionCol = Arrays.copyOf(questionCol, capacity);
+                fractionCol = Arrays.copyOf(fractionCol, capacity);
+            }
+            int question = questions.add(row.getQuestionId());
+            if (question >= qKnowledge.length) {
+                int capacity = Math.max(qKnowledge.length * 2, question + 1);
+                int[] k = Arrays.copyOf(qKnowledge, capacity);
+                Arrays.fill(k, qKnowledge.length, capacity, -1);
+                qKnowledge = k;
+                byte[] t = Arrays.copyOf(qType, capacity);
+                Arrays.fill(t, qType.length, capacity, (byte) -1);
+                qType = t;
+                qDifficulty = Arrays.copyOf(qDifficulty, capacity);
+            }
+            double full = row.getFullScore() != null ? row.getFullScore().doubleValue() : 0.0;
+            double score = row.getScore() != null ? row.getScore().doubleValue() : 0.0;
+            userCol[pending] = users.add(row.getUserId());
+            examCol[pending] = exams.add(row.getExamId());
+            questionCol[pending] = question;
+            fractionCol[pending] = full > 0 ? (float) Math.min(score / full, 1.0) : 1f;
+            pending++;
+        }
+
+        void setDimensions(int question, Question q) {
+            qKnowledge[question] = q.getKnowledgeId() != null ? knowledge.add(q.getKnowledgeId()) : -1;
+            QuestionType type = QuestionType.isValid(q.getType()) ? QuestionType.of(q.getType()) : null;
+            qType[question] = type != null ? (byte) type.ordinal() : -1;
+            Integer difficulty = q.getDifficulty();
+            qDifficulty[question] = difficulty != null && difficulty >= 1 && difficulty <= 3 ? difficulty.byteValue() : 0;
+        }
+
+        State() {
+            Arrays.fill(qKnowledge, -1);
+            Arrays.fill(qType, (byte) -1);
+        }
+    }
+
+    /**
+     * ID 到连续编号的字典；编号由写线程分配，读线程可并发查询
+     */
+    private static final class IdDictionary {
+
+        private final Map<Long, Integer> index = new ConcurrentHashMap<>();
+        private volatile long[] ids = new long[256];
+        private volatile int size;
+
+        int add(Long id) {
+            Integer idx = index.get(id);
+            if (idx != null) {
+                return idx;
+            }
+            int next = size;
+            long[] arr = ids;
+            if (next == arr.length) {
+                arr = Arrays.copyOf(arr, next * 2);
+            }
+            arr[next] = id;
+            ids = arr;
+            index.put(id, next);
+            size = next + 1;
+            return next;
+        }
+
+        Integer indexOf(Long id) {
+            return index.get(id);
+        }
+
+        long id(int idx) {
+            return ids[idx];
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * 过滤条件对应的编号集合；条件为空时返回 null 表示不过滤
+         */
+        BitSet mask(Collection<Long> filterIds) {
+            if (filterIds == null || filterIds.isEmpty()) {
+                return null;
+            }
+            BitSet mask = new BitSet();
+            for (Long id : filterIds) {
+                Integer idx = index.get(id);
+                if (idx != null) mask.set(idx);
+            }
+            return mask;
+        }
+    }
+}
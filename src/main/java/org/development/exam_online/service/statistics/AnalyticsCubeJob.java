@@ -0,0 +1,35 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时增量刷新分析数据立方，每天全量重建一次以剔除已删除的考试记录
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AnalyticsCubeJob {
+
+    private final AnalyticsCube cube;
+
+    @Scheduled(fixedDelayString = "${analytics.cube.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            cube.refresh();
+        } catch (Exception e) {
+            log.warn("分析数据立方增量刷新失败", e);
+        }
+    }
+
+    @Scheduled(cron = "${analytics.cube.rebuild-cron:0 0 4 * * ?}")
+    public void rebuild() {
+        try {
+            cube.rebuild();
+        } catch (Exception e) {
+            log.warn("分析数据立方重建失败", e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.dao.entity.ExamScoreBucket;
+import org.development.exam_online.dao.mapper.ExamScoreBucketMapper;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 考试成绩排名与分位数
+ * <p>
+ * 每个考试在内存中维护一棵分数分桶上的树状数组，由 exam_score_bucket 一次加载，
+ * 之后随评分在事务提交后增量更新，名次、百分位、分位数查询均为 O(log B)。
+ * 尚未加载的考试先用一条窗口函数 SQL 回答名次查询，同时在后台加载，
+ * 避免成绩发布时大量考生同时查询造成重复加载。加载结果定期过期重建，消除增量更新的偏差。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamScoreRanking {
+
+    private static final long TTL_MILLIS = 10 * 60 * 1000L;
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "score-ranking-loader");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ExamScoreBucketMapper bucketMapper;
+
+    private final Map<Long, Entry> trees = new ConcurrentHashMap<>();
+    private final Set<Long> loading = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param rank        名次，同分同名次
+     * @param percentile  低于该分数的考生占其他考生的百分比（0~100）
+     * @param scoredCount 参与排名的人数
+     */
+    public record Rank(long rank, double percentile, long scoredCount) {}
+
+    /**
+     * 某条考试记录的名次；记录未参与排名（未提交或无总分）时返回 null
+     */
+    public Rank rankOf(Long examId, Long recordId, BigDecimal totalScore) {
+        Entry entry = fresh(examId);
+        if (entry == null) {
+            loadAsync(examId);
+            Map<String, Object> row = bucketMapper.selectRankByWindow(examId, recordId);
+            if (row == null) {
+                return null;
+            }
+            return new Rank(((Number) row.get("scoreRank")).longValue(),
+                    percent(((Number) row.get("percentRank")).doubleValue()),
+                    ((Number) row.get("scoredCount")).longValue());
+        }
+        if (totalScore == null) {
+            return null;
+        }
+        int bucket = ExamStatisticsAggregator.bucketOf(totalScore);
+        synchronized (entry.tree) {
+            long n = entry.tree.total();
+            if (n == 0) {
+                return null;
+            }
+            long higher = n - entry.tree.countAtMost(bucket);
+            long lower = entry.tree.countAtMost(bucket - 1);
+            return new Rank(higher + 1, n > 1 ? percent(lower / (double) (n - 1)) : 0.0, n);
+        }
+    }
+
+    /**
+     * 分位数（最近秩法），p 取 0~1；没有成绩时返回 null
+     */
+    public BigDecimal quantile(Long examId, double p) {
+        Entry entry = fresh(examId);
+        if (entry == null) {
+            entry = load(examId);
+        }
+        synchronized (entry.tree) {
+            long n = entry.tree.total();
+            if (n == 0) {
+                return null;
+            }
+            long k = Math.max(1, (long) Math.ceil(p * n));
+            return ExamStatisticsAggregator.scoreOf(entry.tree.kth(Math.min(k, n)));
+        }
+    }
+
+    /**
+     * 评分事务提交后调用：一条记录的分数从 oldBucket 移到 newBucket，为 null 表示不参与排名
+     */
+    void onBucketMoved(Long examId, Integer oldBucket, Integer newBucket) {
+        Entry entry = trees.get(examId);
+        if (entry == null) return;
+        synchronized (entry.tree) {
+            if (oldBucket != null) entry.tree.add(oldBucket, -1);
+            if (newBucket != null) entry.tree.add(newBucket, 1);
+        }
+    }
+
+    void evict(Long examId) {
+        trees.remove(examId);
+    }
+
+    private Entry fresh(Long examId) {
+        Entry entry = trees.get(examId);
+        return entry != null && entry.expireAt > System.currentTimeMillis() ? entry : null;
+    }
+
+    private void loadAsync(Long examId) {
+        if (!loading.add(examId)) return;
+        LOADER.execute(() -> {
+            try {
+                load(examId);
+            } catch (Exception e) {
+                log.warn("加载考试成绩排名失败，examId={}", examId, e);
+            } finally {
+                loading.remove(examId);
+            }
+        });
+    }
+
+    private Entry load(Long examId) {
+        List<ExamScoreBucket> buckets = bucketMapper.selectNonEmpty(examId);
+        int capacity = buckets.isEmpty() ? 0 : buckets.get(buckets.size() - 1).getBucket() + 1;
+        ScoreFenwickTree tree = new ScoreFenwickTree(capacity);
+        for (ExamScoreBucket b : buckets) {
+            tree.add(b.getBucket(), b.getRecordCount());
+        }
+        Entry entry = new Entry(tree, System.currentTimeMillis() + TTL_MILLIS);
+        trees.put(examId, entry);
+        return entry;
+    }
+
+    private static double percent(double ratio) {
+        return BigDecimal.valueOf(ratio * 100).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    private record Entry(ScoreFenwickTree tree, long expireAt) {}
+}
@@ -0,0 +1,245 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.common.constants.ExamRecordStatus;
+import org.development.exam_online.dao.entity.ExamRecord;
+import org.development.exam_online.dao.entity.ExamScoreBucket;
+import org.development.exam_online.dao.entity.ExamStatistics;
+import org.development.exam_online.dao.mapper.ExamScoreBucketMapper;
+import org.development.exam_online.dao.mapper.ExamStatisticsMapper;
+import org.development.exam_online.service.grading.ItemAnalyzer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * 考试统计汇总的增量维护
+ * <p>
+ * 考试记录的状态或总分变化时，在同一事务内把"旧贡献"减掉、"新贡献"加上：
+ * 各状态人数、总分之和、平方和、及格人数写入 exam_statistics，总分按 0.01 分分桶计数写入 exam_score_bucket。
+ * 统计查询只读这两张表，平均分、标准差由和与平方和算出，最高/最低分取非空分桶的两端。
+ * 增量维护出现偏差时由 {@link ExamStatisticsReconcileJob} 从考试记录重建。
+ * 分桶变化在事务提交后同步给 {@link ExamScoreRanking}，考试记录有变化时同时清除该考试的试题分析缓存。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamStatisticsAggregator {
+
+    public static final BigDecimal PASS_SCORE = BigDecimal.valueOf(60);
+
+    private final ExamStatisticsMapper statisticsMapper;
+    private final ExamScoreBucketMapper bucketMapper;
+    private final ExamScoreRanking ranking;
+    private final ItemAnalyzer itemAnalyzer;
+
+    /**
+     * 考试记录中影响统计的字段
+     */
+    public record RecordState(Integer status, BigDecimal totalScore) {
+
+        public static RecordState of(ExamRecord record) {
+            return record == null ? null : new RecordState(record.getStatus(), record.getTotalScore());
+        }
+
+        boolean scored() {
+            return ExamRecordStatus.isSubmitted(status) && totalScore != null;
+        }
+
+        boolean sameAs(RecordState other) {
+            return other != null && Objects.equals(status, other.status)
+                    && (totalScore == null ? other.totalScore == null
+                        : other.totalScore != null && totalScore.compareTo(other.totalScore) == 0);
+        }
+    }
+
+    public void onRecordCreated(ExamRecord record) {
+        onRecordChanged(record.getExamId(), null, record);
+    }
+
+    /**
+     * 考试记录更新后调用，需与记录更新处于同一事务
+     *
+     * @param before 更新前的状态，新建记录传 null
+     */
+    public void onRecordChanged(Long examId, RecordState before, ExamRecord after) {
+        RecordState current = RecordState.of(after);
+        if (examId == null || (current != null && current.sameAs(before))) {
+            return;
+        }
+        ExamStatistics delta = emptyDelta(examId);
+        accumulate(delta, before, -1);
+        accumulate(delta, current, 1);
+        statisticsMapper.applyDelta(delta);
+        afterCommit(() -> itemAnalyzer.evict(examId));
+
+        Integer oldBucket = before != null && before.scored() ? bucketOf(before.totalScore()) : null;
+        Integer newBucket = current != null && current.scored() ? bucketOf(current.totalScore()) : null;
+        if (!Objects.equals(oldBucket, newBucket)) {
+            if (oldBucket != null) {
+                bucketMapper.applyDelta(examId, oldBucket, -1);
+            }
+            if (newBucket != null) {
+                bucketMapper.applyDelta(examId, newBucket, 1);
+            }
+            afterCommit(() -> ranking.onBucketMoved(examId, oldBucket, newBucket));
+        }
+    }
+
+    /**
+     * 读取考试统计；尚无任何考试记录的考试返回全零的统计
+     */
+    public ExamStatistics get(Long examId) {
+        ExamStatistics stats = statisticsMapper.selectById(examId);
+        return stats != null ? stats : emptyDelta(examId);
+    }
+
+    /**
+     * 非空分桶，按分数升序
+     */
+    public List<ExamScoreBucket> buckets(Long examId) {
+        return bucketMapper.selectNonEmpty(examId);
+    }
+
+    /**
+     * 从考试记录重建某个考试的统计
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void rebuild(Long examId) {
+        statisticsMapper.rebuild(examId, PASS_SCORE);
+        bucketMapper.deleteByExamId(examId);
+        bucketMapper.rebuild(examId);
+        afterCommit(() -> {
+            ranking.evict(examId);
+            itemAnalyzer.evict(examId);
+        });
+    }
+
+    public static BigDecimal average(ExamStatistics stats) {
+        int n = value(stats.getScoredCount());
+        if (n == 0) return BigDecimal.ZERO;
+        return nonNull(stats.getScoreSum()).divide(BigDecimal.valueOf(n), 2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 总体标准差：sqrt(E[x²] - E[x]²)
+     */
+    public static double standardDeviation(ExamStatistics stats) {
+        int n = value(stats.getScoredCount());
+        if (n == 0) return 0.0;
+        double mean = nonNull(stats.getScoreSum()).doubleValue() / n;
+        double variance = nonNull(stats.getScoreSquareSum()).doubleValue() / n - mean * mean;
+        return BigDecimal.valueOf(Math.sqrt(Math.max(variance, 0.0))).setScale(2, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    public static double passRate(ExamStatistics stats) {
+        int n = value(stats.getScoredCount());
+        if (n == 0) return 0.0;
+        return BigDecimal.valueOf(value(stats.getPassCount()) * 100.0 / n)
+                .setScale(2, RoundingMode.HALF_UP)
+                .doubleValue();
+    }
+
+    public static long submittedCount(ExamStatistics stats) {
+        return (long) value(stats.getUngradedCount()) + value(stats.getGradingCount())
+                + value(stats.getGradedCount()) + value(stats.getFinishedCount());
+    }
+
+    /**
+     * 按 10 分一段汇总分数分布，如 "60-70" 表示 [60, 70)，最后一段包含满分
+     */
+    public static List<Map<String, Object>> histogram(List<ExamScoreBucket> buckets) {
+        TreeMap<Integer, Long> bands = new TreeMap<>();
+        for (ExamScoreBucket b : buckets) {
+            int band = Math.max(0, Math.floorDiv(b.getBucket(), 1000));
+            bands.merge(band, (long) value(b.getRecordCount()), Long::sum);
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map.Entry<Integer, Long> e : bands.entrySet()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("range", (e.getKey() * 10) + "-" + (e.getKey() * 10 + 10));
+            m.put("count", e.getValue());
+            result.add(m);
+        }
+        return result;
+    }
+
+    public static BigDecimal scoreOf(int bucket) {
+        return BigDecimal.valueOf(bucket, 2);
+    }
+
+    static int bucketOf(BigDecimal score) {
+        return score.movePointRight(2).setScale(0, RoundingMode.HALF_UP).intValueExact();
+    }
+
+    private static void accumulate(ExamStatistics delta, RecordState state, int sign) {
+        if (state == null) return;
+        delta.setParticipantCount(delta.getParticipantCount() + sign);
+        Integer status = state.status();
+        if (status != null) {
+            switch (status) {
+                case ExamRecordStatus.NOT_STARTED -> delta.setNotStartedCount(delta.getNotStartedCount() + sign);
+                case ExamRecordStatus.IN_PROGRESS -> delta.setInProgressCount(delta.getInProgressCount() + sign);
+                case ExamRecordStatus.SUBMITTED_UNGRADED -> delta.setUngradedCount(delta.getUngradedCount() + sign);
+                case ExamRecordStatus.SUBMITTED_GRADING -> delta.setGradingCount(delta.getGradingCount() + sign);
+                case ExamRecordStatus.SUBMITTED_GRADED -> delta.setGradedCount(delta.getGradedCount() + sign);
+                case ExamRecordStatus.FINISHED -> delta.setFinishedCount(delta.getFinishedCount() + sign);
+                default -> { }
+            }
+        }
+        if (state.scored()) {
+            BigDecimal score = state.totalScore();
+            BigDecimal signed = sign > 0 ? score : score.negate();
+            delta.setScoredCount(delta.getScoredCount() + sign);
+            delta.setScoreSum(delta.getScoreSum().add(signed));
+            delta.setScoreSquareSum(delta.getScoreSquareSum().add(signed.multiply(score)));
+            if (score.compareTo(PASS_SCORE) >= 0) {
+                delta.setPassCount(delta.getPassCount() + sign);
+            }
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static ExamStatistics emptyDelta(Long examId) {
+        ExamStatistics s = new ExamStatistics();
+        s.setExamId(examId);
+        s.setParticipantCount(0);
+        s.setNotStartedCount(0);
+        s.setInProgressCount(0);
+        s.setUngradedCount(0);
+        s.setGradingCount(0);
+        s.setGradedCount(0);
+        s.setFinishedCount(0);
+        s.setScoredCount(0);
+        s.setScoreSum(BigDecimal.ZERO);
+        s.setScoreSquareSum(BigDecimal.ZERO);
+        s.setPassCount(0);
+        return s;
+    }
+
+    private static int value(Integer v) {
+        return v != null ? v : 0;
+    }
+
+    private static BigDecimal nonNull(BigDecimal v) {
+        return v != null ? v : BigDecimal.ZERO;
+    }
+}
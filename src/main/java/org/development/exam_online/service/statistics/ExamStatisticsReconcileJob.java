@@ -0,0 +1,36 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.dao.mapper.ExamStatisticsMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 定时从考试记录重建全部考试统计，修正增量维护可能产生的偏差
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamStatisticsReconcileJob {
+
+    private final ExamStatisticsMapper statisticsMapper;
+    private final ExamStatisticsAggregator aggregator;
+
+    @Scheduled(cron = "${exam.statistics.reconcile-cron:0 30 3 * * ?}")
+    public void reconcile() {
+        List<Long> examIds = statisticsMapper.selectExamIdsWithRecords();
+        int failed = 0;
+        for (Long examId : examIds) {
+            try {
+                aggregator.rebuild(examId);
+            } catch (Exception e) {
+                failed++;
+                log.warn("重建考试统计失败，examId={}", examId, e);
+            }
+        }
+        log.info("考试统计重建完成，考试数={}，失败={}", examIds.size(), failed);
+    }
+}
@@ -0,0 +1,51 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import org.development.exam_online.dao.mapper.QuestionStatsMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 题目历史作答统计的增量累积
+ * <p>
+ * 只统计成绩已确认（状态5）的考试记录，确认后成绩不再变化，每条记录只计入一次。
+ * 实测难度按平均得分率划分：不低于 70% 为简单，不低于 40% 为普通，其余为困难；作答次数不足时不给出。
+ */
+@Component
+@RequiredArgsConstructor
+public class QuestionStatsCollector {
+
+    public static final int MIN_ATTEMPTS = 20;
+    public static final double EASY_RATE = 0.7;
+    public static final double HARD_RATE = 0.4;
+
+    private final QuestionStatsMapper questionStatsMapper;
+
+    /**
+     * @param recordCount 本批处理的考试记录数，为 0 表示没有待处理的记录
+     * @param questionIds 统计发生变化的题目ID
+     */
+    public record Batch(int recordCount, List<Long> questionIds) {}
+
+    /**
+     * 处理一批考试记录
+     *
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Batch collectBatch(int batchSize) {
+        List<Long> recordIds = questionStatsMapper.lockUncollectedRecordIds(batchSize);
+        if (recordIds.isEmpty()) {
+            return new Batch(0, Collections.emptyList());
+        }
+        List<Long> questionIds = questionStatsMapper.selectQuestionIdsOfRecords(recordIds);
+        if (!questionIds.isEmpty()) {
+            questionStatsMapper.accumulate(recordIds);
+            questionStatsMapper.updateEmpiricalLevels(questionIds, MIN_ATTEMPTS, EASY_RATE, HARD_RATE);
+        }
+        questionStatsMapper.markCollected(recordIds);
+        return new Batch(recordIds.size(), questionIds);
+    }
+}
@@ -0,0 +1,37 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.service.paper.QuestionCandidateIndex;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 定时将新确认的考试记录计入题目统计，并把实测难度同步到组卷候选题索引
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuestionStatsJob {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final QuestionStatsCollector collector;
+    private final QuestionCandidateIndex candidateIndex;
+
+    @Scheduled(fixedDelayString = "${question.stats.collect-interval-ms:300000}")
+    public void collect() {
+        int records = 0;
+        QuestionStatsCollector.Batch batch;
+        do {
+            batch = collector.collectBatch(BATCH_SIZE);
+            if (!batch.questionIds().isEmpty()) {
+                candidateIndex.onEmpiricalLevelsChanged(batch.questionIds());
+            }
+            records += batch.recordCount();
+        } while (batch.recordCount() > 0);
+        if (records > 0) {
+            log.info("题目统计累积完成，考试记录数={}", records);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.development.exam_online.service.statistics;
+
+import java.util.Arrays;
+
+/**
+ * 分数分桶上的树状数组（Fenwick tree）
+ * <p>
+ * 下标为分桶（总分×100），值为该分数的人数；
+ * 增减一个分数、查询不高于某分数的人数、查询第 k 小的分数均为 O(log B)。
+ * 非线程安全，由调用方加锁。
+ */
+final class ScoreFenwickTree {
+
+    private long[] counts;
+    private long[] tree;
+    private long total;
+
+    ScoreFenwickTree(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        counts = new long[size];
+        tree = new long[size + 1];
+    }
+
+    void add(int bucket, long delta) {
+        if (bucket < 0 || delta == 0) return;
+        if (bucket >= counts.length) {
+            grow(bucket + 1);
+        }
+        counts[bucket] += delta;
+        total += delta;
+        for (int i = bucket + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    long total() {
+        return total;
+    }
+
+    /**
+     * 分桶不高于 bucket 的人数
+     */
+    long countAtMost(int bucket) {
+        if (bucket < 0) return 0;
+        long sum = 0;
+        for (int i = Math.min(bucket + 1, tree.length - 1); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 第 k 小（从 1 开始）的分桶，k 超出范围时返回 -1
+     */
+    int kth(long k) {
+        if (k <= 0 || k > total) return -1;
+        int pos = 0;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = pos + step;
+            if (next < tree.length && tree[next] < k) {
+                pos = next;
+                k -= tree[next];
+            }
+        }
+        return pos;
+    }
+
+    private void grow(int required) {
+        int size = counts.length;
+        while (size < required) {
+            size <<= 1;
+        }
+        long[] old = counts;
+        counts = Arrays.copyOf(old, size);
+        tree = new long[size + 1];
+        // 线性建树
+        for (int i = 1; i <= size; i++) {
+            tree[i] += counts[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= size) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import org.development.exam_online.dao.mapper.StudentExamKnowledgeMapper;
+import org.development.exam_online.dao.mapper.StudentExamTypeMapper;
+import org.development.exam_online.dao.mapper.StudentKnowledgeMasteryMapper;
+import org.development.exam_online.dao.mapper.StudentTypeMasteryMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 学生知识点/题型掌握度的增量维护
+ * <p>
+ * 考试记录确认成绩（状态5）后成绩不再变化，确认时将该记录的作答累加到掌握度表，每条记录只计入一次。
+ * 同时写入该记录在这场考试中按知识点/题型的汇总，供多次考试的趋势分析读取。
+ * 与确认操作处于同一事务中，掌握度与考试记录状态保持一致。
+ */
+@Component
+@RequiredArgsConstructor
+public class StudentMasteryAggregator {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final StudentKnowledgeMasteryMapper knowledgeMasteryMapper;
+    private final StudentTypeMasteryMapper typeMasteryMapper;
+    private final StudentExamKnowledgeMapper examKnowledgeMapper;
+    private final StudentExamTypeMapper examTypeMapper;
+
+    public void onRecordsConfirmed(List<Long> recordIds) {
+        if (recordIds == null || recordIds.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < recordIds.size(); from += BATCH_SIZE) {
+            List<Long> batch = recordIds.subList(from, Math.min(from + BATCH_SIZE, recordIds.size()));
+            knowledgeMasteryMapper.accumulate(batch);
+            typeMasteryMapper.accumulate(batch);
+            examKnowledgeMapper.upsert(batch);
+            examTypeMapper.upsert(batch);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.development.exam_online.service.statistics;
+
+import lombok.RequiredArgsConstructor;
+import org.development.exam_online.common.enums.QuestionType;
+import org.development.exam_online.dao.dto.KnowledgeStatistics;
+import org.development.exam_online.dao.dto.TrendSeries;
+import org.development.exam_online.dao.dto.TypeStatistics;
+import org.development.exam_online.dao.dto.WrongQuestionStatistics;
+import org.development.exam_online.dao.entity.Exam;
+import org.development.exam_online.dao.entity.StudentExamKnowledge;
+import org.development.exam_online.dao.entity.StudentExamType;
+import org.development.exam_online.dao.mapper.ExamMapper;
+import org.development.exam_online.dao.mapper.StudentExamKnowledgeMapper;
+import org.development.exam_online.dao.mapper.StudentExamTypeMapper;
+import org.development.exam_online.service.cache.KnowledgeDictionary;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 多次考试趋势统计
+ * <p>
+ * 读取确认成绩时写入的单场考试汇总（student_exam_knowledge / student_exam_type），
+ * 为每名学生按交卷时间排出各次考试的总体、题型、知识点正确率序列，不访问作答明细。
+ * 一批学生共用两次汇总查询和一次考试名称查询，整个年级生成报告时开销与学生数、考试数成正比。
+ */
+@Component
+@RequiredArgsConstructor
+public class StudentTrendBuilder {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final StudentExamKnowledgeMapper examKnowledgeMapper;
+    private final StudentExamTypeMapper examTypeMapper;
+    private final ExamMapper examMapper;
+    private final KnowledgeDictionary knowledgeDictionary;
+
+    public WrongQuestionStatistics build(Long userId, List<Long> examIds) {
+        return build(Collections.singletonList(userId), examIds).get(userId);
+    }
+
+    /**
+     * @return 学生ID -> 趋势统计；在这些考试中没有已确认记录的学生不出现在结果中
+     */
+    public Map<Long, WrongQuestionStatistics> build(List<Long> userIds, List<Long> examIds) {
+        if (userIds == null || userIds.isEmpty() || examIds == null || examIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Long, List<StudentExamType>> typeRows = new HashMap<>();
+        Map<Long, List<StudentExamKnowledge>> knowledgeRows = new HashMap<>();
+        for (int from = 0; from < userIds.size(); from += BATCH_SIZE) {
+            List<Long> batch = userIds.subList(from, Math.min(from + BATCH_SIZE, userIds.size()));
+            for (StudentExamType row : examTypeMapper.selectByUsersAndExams(batch, examIds)) {
+                typeRows.computeIfAbsent(row.getUserId(), k -> new ArrayList<>()).add(row);
+            }
+            for (StudentExamKnowledge row : examKnowledgeMapper.selectByUsersAndExams(batch, examIds)) {
+                knowledgeRows.computeIfAbsent(row.getUserId(), k -> new ArrayList<>()).add(row);
+            }
+        }
+
+        Map<Long, String> examNames = new HashMap<>();
+        for (Exam exam : examMapper.selectBatchIds(examIds)) {
+            examNames.put(exam.getId(), exam.getName());
+        }
+        Set<Long> knowledgeIds = new HashSet<>();
+        knowledgeRows.values().forEach(rows -> rows.forEach(r -> knowledgeIds.add(r.getKnowledgeId())));
+        Map<Long, String> knowledgeNames = knowledgeDictionary.names(knowledgeIds);
+
+        Map<Long, WrongQuestionStatistics> result = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            List<StudentExamType> types = typeRows.get(userId);
+            if (types == null || types.isEmpty()) continue;
+            result.put(userId, buildOne(userId, types, knowledgeRows.getOrDefault(userId, Collections.emptyList()),
+                    examNames, knowledgeNames));
+        }
+        return result;
+    }
+
+    private WrongQuestionStatistics buildOne(Long userId, List<StudentExamType> types,
+                                             List<StudentExamKnowledge> knowledge, Map<Long, String> examNames,
+                                             Map<Long, String> knowledgeNames) {
+        // 考试按该学生的交卷时间排列
+        Map<Long, LocalDateTime> examTimes = new HashMap<>();
+        for (StudentExamType row : types) {
+            examTimes.merge(row.getExamId(), row.getExamTime() != null ? row.getExamTime() : LocalDateTime.MIN,
+                    (a, b) -> a.isAfter(b) ? a : b);
+        }
+        List<Long> exams = new ArrayList<>(examTimes.keySet());
+        exams.sort(Comparator.comparing((Long id) -> examTimes.get(id)).thenComparing(Comparator.<Long>naturalOrder()));
+        Map<Long, Integer> position = new HashMap<>();
+        for (int i = 0; i < exams.size(); i++) {
+            position.put(exams.get(i), i);
+        }
+        int n = exams.size();
+
+        int[][] examCounters = new int[n][2];
+        Map<String, int[][]> typeCounters = new TreeMap<>();
+        for (StudentExamType row : types) {
+            int p = position.get(row.getExamId());
+            int[][] counters = typeCounters.computeIfAbsent(row.getQuestionType(), k -> new int[n][2]);
+            counters[p][0] += row.getAttemptCount();
+            counters[p][1] += row.getWrongCount();
+            examCounters[p][0] += row.getAttemptCount();
+            examCounters[p][1] += row.getWrongCount();
+        }
+        Map<Long, int[][]> knowledgeCounters = new HashMap<>();
+        for (StudentExamKnowledge row : knowledge) {
+            Integer p = position.get(row.getExamId());
+            if (p == null) continue;
+            int[][] counters = knowledgeCounters.computeIfAbsent(row.getKnowledgeId(), k -> new int[n][2]);
+            counters[p][0] += row.getAttemptCount();
+            counters[p][1] += row.getWrongCount();
+        }
+
+        WrongQuestionStatistics statistics = new WrongQuestionStatistics();
+        statistics.setUserId(userId);
+        statistics.setExamCount(n);
+
+        List<String> names = new ArrayList<>(n);
+        List<BigDecimal> examAccuracy = new ArrayList<>(n);
+        int total = 0;
+        int wrong = 0;
+        for (int i = 0; i < n; i++) {
+            names.add(examNames.getOrDefault(exams.get(i), "考试" + exams.get(i)));
+            examAccuracy.add(accuracy(examCounters[i][0], examCounters[i][1]));
+            total += examCounters[i][0];
+            wrong += examCounters[i][1];
+        }
+        statistics.setExamNames(names);
+        statistics.setExamAccuracy(examAccuracy);
+        statistics.setTotalQuestions(total);
+        statistics.setWrongQuestions(wrong);
+        statistics.setAccuracy(accuracy(total, wrong));
+
+        Map<String, TypeStatistics> byType = new LinkedHashMap<>();
+        List<TrendSeries> typeTrends = new ArrayList<>();
+        typeCounters.forEach((type, counters) -> {
+            TrendSeries series = series(typeName(type), counters);
+            typeTrends.add(series);
+            TypeStatistics ts = new TypeStatistics();
+            ts.setTypeName(series.getName());
+            ts.setTotal(series.getTotal());
+            ts.setWrong(series.getWrong());
+            ts.setAccuracy(series.getOverall());
+            byType.put(type, ts);
+        });
+        statistics.setByQuestionType(byType);
+        statistics.setTypeTrends(typeTrends);
+
+        List<KnowledgeStatistics> byKnowledge = new ArrayList<>();
+        List<TrendSeries> knowledgeTrends = new ArrayList<>();
+        knowledgeCounters.forEach((knowledgeId, counters) -> {
+            TrendSeries series = series(knowledgeNames.getOrDefault(knowledgeId, "未知知识点"), counters);
+            series.setKnowledgeId(knowledgeId);
+            knowledgeTrends.add(series);
+            KnowledgeStatistics ks = new KnowledgeStatistics();
+            ks.setKnowledgeId(knowledgeId);
+            ks.setKnowledgeName(series.getName());
+            ks.setTotal(series.getTotal());
+            ks.setWrong(series.getWrong());
+            ks.setAccuracy(series.getOverall());
+            byKnowledge.add(ks);
+        });
+        // 按正确率升序，掌握最差的知识点在前；同正确率按知识点ID，保证相同数据得到相同提示词
+        knowledgeTrends.sort(Comparator.comparing(TrendSeries::getOverall).thenComparing(TrendSeries::getKnowledgeId));
+        byKnowledge.sort(Comparator.comparing(KnowledgeStatistics::getAccuracy)
+                .thenComparing(KnowledgeStatistics::getKnowledgeId));
+        statistics.setByKnowledge(byKnowledge);
+        statistics.setKnowledgeTrends(knowledgeTrends);
+        statistics.setWrongQuestionDetails(Collections.emptyList());
+        return statistics;
+    }
+
+    private static TrendSeries series(String name, int[][] counters) {
+        List<BigDecimal> points = new ArrayList<>(counters.length);
+        int total = 0;
+        int wrong = 0;
+        for (int[] c : counters) {
+            points.add(c[0] > 0 ? accuracy(c[0], c[1]) : null);
+            total += c[0];
+            wrong += c[1];
+        }
+        TrendSeries series = new TrendSeries();
+        series.setName(name);
+        series.setAccuracy(points);
+        series.setTotal(total);
+        series.setWrong(wrong);
+        series.setOverall(accuracy(total, wrong));
+        return series;
+    }
+
+    private static String typeName(String code) {
+        for (QuestionType type : QuestionType.values()) {
+            if (type.getCode().equals(code)) {
+                return type.getLabel();
+            }
+        }
+        return code;
+    }
+
+    private static BigDecimal accuracy(int total, int wrong) {
+        return total > 0
+                ? BigDecimal.valueOf((total - wrong) * 100.0 / total).setScale(2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,150 @@
+package org.development.exam_online.service.taking;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.development.exam_online.common.enums.QuestionType;
+import org.development.exam_online.common.exception.BusinessException;
+import org.development.exam_online.common.exception.ErrorCode;
+import org.development.exam_online.dao.dto.AutoGeneratePaperRule;
+import org.development.exam_online.dao.entity.Exam;
+import org.development.exam_online.dao.entity.ExamRecordQuestion;
+import org.development.exam_online.service.paper.CandidatePool;
+import org.development.exam_online.service.paper.PaperRules;
+import org.development.exam_online.service.paper.QuestionCandidateIndex;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 考生随机抽题
+ * <p>
+ * 考试设置了抽题规则（与自动组卷规则相同的题型/难度题量）时，每个考生开考时单独抽题。
+ * 抽题只在候选题内存索引上进行，不查询题目表；随机种子由（考试ID, 考试记录ID）推导，
+ * 结果以题目ID、分值两个逗号分隔列表的形式按考试记录存储。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExamQuestionDrawer {
+
+    private final QuestionCandidateIndex candidateIndex;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 抽题结果
+     *
+     * @param questionIds 按题目顺序排列的题目ID
+     * @param scores      与题目ID一一对应的分值
+     */
+    public record Draw(List<Long> questionIds, List<BigDecimal> scores) {
+
+        public BigDecimal totalScore() {
+            return scores.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+    }
+
+    public static boolean isDrawMode(Exam exam) {
+        return exam != null && StringUtils.hasText(exam.getDrawRuleJson());
+    }
+
+    /**
+     * 解析并校验抽题规则，候选题不足时直接报错，避免考生开考后才发现题量不够
+     */
+    public AutoGeneratePaperRule validateRule(String drawRuleJson) {
+        AutoGeneratePaperRule rule = parseRule(drawRuleJson);
+        for (Map.Entry<String, AutoGeneratePaperRule.TypeRule> entry : rule.getTypeRules().entrySet()) {
+            String typeCode = entry.getKey();
+            if (!QuestionType.isValid(typeCode)) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, "抽题规则中的题型无效：" + typeCode);
+            }
+            AutoGeneratePaperRule.TypeRule typeRule = entry.getValue();
+            if (typeRule == null || typeRule.getCount() == null || typeRule.getCount() <= 0) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, "抽题规则中每个题型的题量必须大于0");
+            }
+            CandidatePool pool = candidateIndex.pool(typeCode, rule.getCategoryIds(), rule.getKnowledgeIds(),
+                    Boolean.TRUE.equals(rule.getUseEmpiricalDifficulty()));
+            if (pool.size() < typeRule.getCount()) {
+                throw new BusinessException(ErrorCode.BAD_REQUEST, String.format("题型【%s】需要%d道题，题库中只有%d道可用题目",
+                        QuestionType.of(typeCode).getLabel(), typeRule.getCount(), pool.size()));
+            }
+        }
+        return rule;
+    }
+
+    /**
+     * 为一条考试记录抽题；同一考试记录多次调用结果相同（题库未变化时）
+     */
+    public Draw draw(Exam exam, Long recordId) {
+        AutoGeneratePaperRule rule = parseRule(exam.getDrawRuleJson());
+        Random random = new Random(ExamShuffle.seed(exam.getId(), recordId));
+        // 同一考生的题目互不重复，初始为排除的题目
+        BitSet used = candidateIndex.ordinalsOf(rule.getExcludeQuestionIds());
+
+        List<Long> questionIds = new ArrayList<>();
+        List<BigDecimal> scores = new ArrayList<>();
+        for (Map.Entry<String, AutoGeneratePaperRule.TypeRule> entry : rule.getTypeRules().entrySet()) {
+            AutoGeneratePaperRule.TypeRule typeRule = entry.getValue();
+            int requiredCount = typeRule.getCount() != null ? typeRule.getCount() : 0;
+            CandidatePool candidates = candidateIndex.pool(entry.getKey(), rule.getCategoryIds(), rule.getKnowledgeIds(),
+                    Boolean.TRUE.equals(rule.getUseEmpiricalDifficulty()));
+            Map<Integer, Integer> difficultyNeeds = PaperRules.difficultyNeeds(rule, requiredCount);
+            List<Integer> selected = PaperRules.drawType(candidates, difficultyNeeds, requiredCount, used, random);
+            if (selected.size() < requiredCount) {
+                log.warn("考生抽题题量不足，examId={}，recordId={}，题型={}，需要{}道，抽到{}道",
+                        exam.getId(), recordId, entry.getKey(), requiredCount, selected.size());
+            }
+            for (Integer ordinal : selected) {
+                questionIds.add(candidates.idOf(ordinal));
+                scores.add(BigDecimal.valueOf(typeRule.getScore() != null
+                        ? typeRule.getScore() : candidates.scoreOf(ordinal)));
+            }
+        }
+        return new Draw(questionIds, scores);
+    }
+
+    public static ExamRecordQuestion encode(Long examId, Long recordId, Draw draw) {
+        StringJoiner ids = new StringJoiner(",");
+        StringJoiner scores = new StringJoiner(",");
+        for (int i = 0; i < draw.questionIds().size(); i++) {
+            ids.add(String.valueOf(draw.questionIds().get(i)));
+            scores.add(draw.scores().get(i).stripTrailingZeros().toPlainString());
+        }
+        ExamRecordQuestion row = new ExamRecordQuestion();
+        row.setRecordId(recordId);
+        row.setExamId(examId);
+        row.setQuestionIds(ids.toString());
+        row.setQuestionScores(scores.toString());
+        return row;
+    }
+
+    public static Draw decode(ExamRecordQuestion row) {
+        List<Long> questionIds = new ArrayList<>();
+        List<BigDecimal> scores = new ArrayList<>();
+        if (StringUtils.hasText(row.getQuestionIds())) {
+            String[] idParts = row.getQuestionIds().split(",");
+            String[] scoreParts = StringUtils.hasText(row.getQuestionScores())
+                    ? row.getQuestionScores().split(",") : new String[0];
+            for (int i = 0; i < idParts.length; i++) {
+                questionIds.add(Long.parseLong(idParts[i].trim()));
+                scores.add(i < scoreParts.length ? new BigDecimal(scoreParts[i].trim()) : BigDecimal.ZERO);
+            }
+        }
+        return new Draw(questionIds, scores);
+    }
+
+    private AutoGeneratePaperRule parseRule(String drawRuleJson) {
+        AutoGeneratePaperRule rule;
+        try {
+            rule = objectMapper.readValue(drawRuleJson, AutoGeneratePaperRule.class);
+        } catch (Exception e) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "抽题规则格式错误");
+        }
+        if (rule == null || rule.getTypeRules() == null || rule.getTypeRules().isEmpty()) {
+            throw new BusinessException(ErrorCode.BAD_REQUEST, "抽题规则至少需要一个题型");
+        }
+        return rule;
+    }
+}
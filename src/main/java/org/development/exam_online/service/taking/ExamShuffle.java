@@ -0,0 +1,147 @@
+package org.development.exam_online.service.taking;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.development.exam_online.common.enums.QuestionType;
+import org.development.exam_online.dao.entity.Question;
+
+import java.util.*;
+
+/**
+ * 考生维度的题目/选项乱序
+ * <p>
+ * 乱序完全由（考试ID, 考试记录ID）推导，不落库；同一考生每次进入看到的顺序相同。
+ * 选项乱序只重新分配展示字母：库中和答题记录里始终使用原始选项字母，
+ * 考生提交答案时转换回原始字母，展示已保存答案时再转换成展示字母，判分逻辑不受影响。
+ */
+public final class ExamShuffle {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private ExamShuffle() {}
+
+    public static long seed(Long examId, Long recordId) {
+        return mix(mix(examId != null ? examId : 0L) ^ (recordId != null ? recordId : 0L));
+    }
+
+    /**
+     * 返回乱序后的新列表，不修改原列表
+     */
+    public static <T> List<T> shuffleQuestions(List<T> items, long seed) {
+        List<T> copy = new ArrayList<>(items);
+        Collections.shuffle(copy, new Random(seed));
+        return copy;
+    }
+
+    /**
+     * 单选、多选题的选项映射；其他题型或选项格式无法识别时返回 null
+     */
+    public static OptionLayout optionLayout(Question question, long seed) {
+        if (question == null || question.getOptionsJson() == null) {
+            return null;
+        }
+        String type = question.getType();
+        if (!QuestionType.SINGLE.getCode().equals(type) && !QuestionType.MULTIPLE.getCode().equals(type)) {
+            return null;
+        }
+        JsonNode options;
+        try {
+            options = MAPPER.readTree(question.getOptionsJson());
+        } catch (Exception e) {
+            return null;
+        }
+        if (options == null || !options.isObject() || options.size() < 2) {
+            return null;
+        }
+        List<String> keys = new ArrayList<>();
+        options.fieldNames().forEachRemaining(keys::add);
+        List<String> shuffled = new ArrayList<>(keys);
+        Collections.shuffle(shuffled, new Random(mix(seed ^ question.getId())));
+        return new OptionLayout((ObjectNode) options, keys, shuffled);
+    }
+
+    /**
+     * 展示字母与原始字母的对应关系：展示第 i 个字母 keys[i] 对应原始选项 shuffled[i]
+     */
+    public static final class OptionLayout {
+
+        private final ObjectNode options;
+        private final List<String> keys;
+        private final Map<String, String> displayToCanonical = new HashMap<>();
+        private final Map<String, String> canonicalToDisplay = new HashMap<>();
+
+        private OptionLayout(ObjectNode options, List<String> keys, List<String> shuffled) {
+            this.options = options;
+            this.keys = keys;
+            for (int i = 0; i < keys.size(); i++) {
+                displayToCanonical.put(keys.get(i), shuffled.get(i));
+                canonicalToDisplay.put(shuffled.get(i), keys.get(i));
+            }
+        }
+
+        public String displayOptionsJson() {
+            ObjectNode display = MAPPER.createObjectNode();
+            for (String key : keys) {
+                display.set(key, options.get(displayToCanonical.get(key)));
+            }
+            return display.toString();
+        }
+
+        /**
+         * 考生提交的答案（展示字母）转换为原始字母
+         */
+        public String toCanonical(String answerJson) {
+            return remap(answerJson, displayToCanonical);
+        }
+
+        /**
+         * 已保存的答案（原始字母）转换为展示字母
+         */
+        public String toDisplay(String answerJson) {
+            return remap(answerJson, canonicalToDisplay);
+        }
+
+        private String remap(String answerJson, Map<String, String> mapping) {
+            if (answerJson == null) {
+                return null;
+            }
+            JsonNode node;
+            try {
+                node = MAPPER.readTree(answerJson);
+            } catch (Exception e) {
+                return answerJson;
+            }
+            if (node == null) {
+                return answerJson;
+            }
+            if (node.isTextual()) {
+                return MAPPER.getNodeFactory().textNode(mapping.getOrDefault(node.asText(), node.asText())).toString();
+            }
+            if (node.isArray()) {
+                // 多选答案按选项字母顺序排列，与标准答案格式一致
+                List<String> mapped = new ArrayList<>();
+                for (JsonNode item : node) {
+                    String key = item.asText();
+                    mapped.add(mapping.getOrDefault(key, key));
+                }
+                mapped.sort(Comparator.comparingInt(k -> {
+                    int idx = keys.indexOf(k);
+                    return idx >= 0 ? idx : Integer.MAX_VALUE;
+                }));
+                ArrayNode array = MAPPER.createArrayNode();
+                mapped.forEach(array::add);
+                return array.toString();
+            }
+            return answerJson;
+        }
+    }
+
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
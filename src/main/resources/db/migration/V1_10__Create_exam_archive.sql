@@ -0,0 +1,12 @@
+-- 已归档考试：全部考试记录确认成绩后，作答与成绩写入本地列式归档文件
+CREATE TABLE exam_archive (
+    exam_id BIGINT NOT NULL COMMENT '考试ID',
+    file_path VARCHAR(500) NOT NULL COMMENT '归档文件路径',
+    record_count INT NOT NULL DEFAULT 0 COMMENT '考试记录数',
+    answer_count INT NOT NULL DEFAULT 0 COMMENT '作答行数',
+    file_size BIGINT NOT NULL DEFAULT 0 COMMENT '文件大小（字节）',
+    checksum BIGINT NOT NULL DEFAULT 0 COMMENT '文件内容 CRC32 校验值',
+    pruned TINYINT NOT NULL DEFAULT 0 COMMENT '是否已从 exam_answer 删除作答：0-否，1-是',
+    archived_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '归档时间',
+    PRIMARY KEY (exam_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='考试作答归档';
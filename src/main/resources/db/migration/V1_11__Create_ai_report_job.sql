@@ -0,0 +1,19 @@
+-- AI分析报告生成任务：确认成绩时入队，后台工作线程领取执行，失败按退避时间重试
+CREATE TABLE ai_report_job (
+    id BIGINT NOT NULL AUTO_INCREMENT COMMENT '任务ID',
+    exam_id BIGINT NOT NULL COMMENT '考试ID',
+    user_id BIGINT NOT NULL COMMENT '学生ID',
+    status TINYINT NOT NULL DEFAULT 0 COMMENT '状态：0-待执行，1-执行中，2-已完成，3-失败',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已执行次数',
+    next_run_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '最早可执行时间',
+    locked_by VARCHAR(100) NULL COMMENT '领取任务的实例',
+    locked_at DATETIME NULL COMMENT '领取时间',
+    last_error VARCHAR(1000) NULL COMMENT '最近一次失败原因',
+    report_id BIGINT NULL COMMENT '生成的报告ID',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '入队时间',
+    finished_at DATETIME NULL COMMENT '完成时间',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_exam_user (exam_id, user_id),
+    INDEX idx_status_next_run (status, next_run_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='AI分析报告生成任务';
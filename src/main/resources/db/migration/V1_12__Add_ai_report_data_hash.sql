@@ -0,0 +1,4 @@
+-- AI分析报告记录生成时提示词（含模型与参数）的哈希，相同输入直接复用已有报告
+ALTER TABLE ai_analysis_report
+    ADD COLUMN data_hash CHAR(64) NULL COMMENT '提示词、模型与参数的 SHA-256，规则报告为空',
+    ADD INDEX idx_data_hash (data_hash);
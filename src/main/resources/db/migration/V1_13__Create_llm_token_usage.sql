@@ -0,0 +1,12 @@
+-- 大模型 token 用量按天、模型、考试累计；非考试报告的调用（如连接探测）记在 exam_id = 0
+CREATE TABLE llm_token_usage (
+    usage_date DATE NOT NULL COMMENT '日期',
+    model VARCHAR(100) NOT NULL COMMENT '模型',
+    exam_id BIGINT NOT NULL DEFAULT 0 COMMENT '考试ID，0 表示非考试报告',
+    request_count INT NOT NULL DEFAULT 0 COMMENT '调用次数（合并请求按学生数分摊后计入）',
+    prompt_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输入 token 数',
+    completion_tokens BIGINT NOT NULL DEFAULT 0 COMMENT '输出 token 数',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (usage_date, model, exam_id),
+    INDEX idx_exam (exam_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='大模型 token 用量';
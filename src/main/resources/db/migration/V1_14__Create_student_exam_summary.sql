@@ -0,0 +1,44 @@
+-- 学生单场考试的知识点/题型汇总：确认成绩时按考试记录写入，多次考试趋势直接读取，不再扫描作答
+CREATE TABLE student_exam_knowledge (
+    user_id BIGINT NOT NULL COMMENT '学生ID',
+    exam_id BIGINT NOT NULL COMMENT '考试ID',
+    knowledge_id BIGINT NOT NULL COMMENT '知识点ID',
+    attempt_count INT NOT NULL DEFAULT 0 COMMENT '作答题数',
+    wrong_count INT NOT NULL DEFAULT 0 COMMENT '未得满分题数',
+    exam_time DATETIME NULL COMMENT '交卷时间，用于排列趋势',
+    PRIMARY KEY (user_id, exam_id, knowledge_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='学生单场考试知识点汇总';
+
+CREATE TABLE student_exam_type (
+    user_id BIGINT NOT NULL COMMENT '学生ID',
+    exam_id BIGINT NOT NULL COMMENT '考试ID',
+    question_type VARCHAR(20) NOT NULL COMMENT '题型代码',
+    attempt_count INT NOT NULL DEFAULT 0 COMMENT '作答题数',
+    wrong_count INT NOT NULL DEFAULT 0 COMMENT '未得满分题数',
+    exam_time DATETIME NULL COMMENT '交卷时间，用于排列趋势',
+    PRIMARY KEY (user_id, exam_id, question_type)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='学生单场考试题型汇总';
+
+-- 回填已确认成绩的考试记录
+INSERT INTO student_exam_knowledge (user_id, exam_id, knowledge_id, attempt_count, wrong_count, exam_time)
+SELECT t.user_id, t.exam_id, t.knowledge_id, COUNT(*), SUM(t.score < t.full_score), MAX(t.submit_time)
+FROM (SELECT r.user_id, r.exam_id, r.submit_time, q.knowledge_id, COALESCE(a.score, 0) AS score,
+             COALESCE(s.question_score, q.score, 0) AS full_score
+      FROM exam_answer a
+      JOIN exam_record r ON r.id = a.record_id
+      JOIN question q ON q.id = a.question_id
+      LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id
+      WHERE a.deleted = 0 AND r.deleted = 0 AND r.status = 5) t
+WHERE t.knowledge_id IS NOT NULL
+GROUP BY t.user_id, t.exam_id, t.knowledge_id;
+
+INSERT INTO student_exam_type (user_id, exam_id, question_type, attempt_count, wrong_count, exam_time)
+SELECT t.user_id, t.exam_id, t.type, COUNT(*), SUM(t.score < t.full_score), MAX(t.submit_time)
+FROM (SELECT r.user_id, r.exam_id, r.submit_time, q.type, COALESCE(a.score, 0) AS score,
+             COALESCE(s.question_score, q.score, 0) AS full_score
+      FROM exam_answer a
+      JOIN exam_record r ON r.id = a.record_id
+      JOIN question q ON q.id = a.question_id
+      LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id
+      WHERE a.deleted = 0 AND r.deleted = 0 AND r.status = 5) t
+GROUP BY t.user_id, t.exam_id, t.type;
@@ -0,0 +1,3 @@
+-- 大模型不可用、只保存了规则报告的执行单独计数，不占用失败重试次数
+ALTER TABLE ai_report_job
+    ADD COLUMN fallback_count INT NOT NULL DEFAULT 0 COMMENT '保存规则报告后放回队列的次数，不计入 attempts' AFTER attempts;
@@ -0,0 +1,19 @@
+-- 每个学生每份报告（同一考试集合、同一类型）最多保留一份待替换的规则报告，并发生成时以先插入的为准
+-- 先逻辑删除已有的重复规则报告，只保留最新一份
+UPDATE ai_analysis_report r
+    JOIN (SELECT user_id, report_type, exam_ids, MAX(id) AS keep_id
+          FROM ai_analysis_report
+          WHERE model_name = 'rule' AND deleted = 0
+          GROUP BY user_id, report_type, exam_ids
+          HAVING COUNT(*) > 1) d
+        ON r.user_id = d.user_id AND r.report_type = d.report_type AND r.exam_ids = d.exam_ids
+SET r.deleted = 1
+WHERE r.model_name = 'rule' AND r.deleted = 0 AND r.id <> d.keep_id;
+
+-- 规则报告被大模型报告原地替换或删除后键为 NULL，不再参与唯一约束
+ALTER TABLE ai_analysis_report
+    ADD COLUMN draft_key CHAR(64) GENERATED ALWAYS AS (
+        IF(model_name = 'rule' AND deleted = 0,
+           SHA2(CONCAT_WS(':', user_id, report_type, exam_ids), 256), NULL)) STORED
+        COMMENT '待替换规则报告的唯一键',
+    ADD UNIQUE KEY uk_draft_key (draft_key);
@@ -0,0 +1,3 @@
+-- 考试增加乱序方式：按考生乱序题目和选项顺序，顺序由考试ID与考试记录ID推导，无需额外存储
+ALTER TABLE exam
+    ADD COLUMN shuffle_mode TINYINT NOT NULL DEFAULT 0 COMMENT '乱序方式：0-不乱序，1-题目乱序，2-选项乱序，3-题目和选项都乱序' AFTER status;
@@ -0,0 +1,14 @@
+-- 考生随机抽题：考试设置抽题规则后，每个考生开考时按规则从题库抽取自己的题目
+ALTER TABLE exam
+    ADD COLUMN draw_rule_json TEXT NULL COMMENT '抽题规则（JSON，同自动组卷规则），为空表示所有考生使用同一份快照' AFTER shuffle_mode;
+
+-- 考生抽题结果：每条考试记录一行，题目ID与分值按题目顺序以逗号分隔紧凑存储
+CREATE TABLE exam_record_question (
+    record_id BIGINT NOT NULL COMMENT '考试记录ID',
+    exam_id BIGINT NOT NULL COMMENT '考试ID',
+    question_ids TEXT NOT NULL COMMENT '题目ID列表，按题目顺序逗号分隔',
+    question_scores TEXT NOT NULL COMMENT '题目分值列表，与题目ID一一对应',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (record_id),
+    INDEX idx_exam_id (exam_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='考生抽题结果';
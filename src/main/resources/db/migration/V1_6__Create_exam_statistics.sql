@@ -0,0 +1,50 @@
+-- 考试统计汇总：提交、评分、确认时增量维护，统计查询直接读取，无需扫描全部考试记录
+CREATE TABLE exam_statistics (
+    exam_id BIGINT NOT NULL COMMENT '考试ID',
+    participant_count INT NOT NULL DEFAULT 0 COMMENT '考试记录数',
+    not_started_count INT NOT NULL DEFAULT 0 COMMENT '未参加',
+    in_progress_count INT NOT NULL DEFAULT 0 COMMENT '进行中',
+    ungraded_count INT NOT NULL DEFAULT 0 COMMENT '已提交/未评分',
+    grading_count INT NOT NULL DEFAULT 0 COMMENT '已提交/评分中',
+    graded_count INT NOT NULL DEFAULT 0 COMMENT '已提交/已评分',
+    finished_count INT NOT NULL DEFAULT 0 COMMENT '已结束/已评分',
+    scored_count INT NOT NULL DEFAULT 0 COMMENT '计入成绩统计的记录数（已提交且有总分）',
+    score_sum DECIMAL(16,2) NOT NULL DEFAULT 0 COMMENT '总分之和',
+    score_square_sum DECIMAL(24,4) NOT NULL DEFAULT 0 COMMENT '总分平方和',
+    pass_count INT NOT NULL DEFAULT 0 COMMENT '及格人数',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (exam_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='考试统计汇总';
+
+-- 考试成绩分布：按 0.01 分分桶计数，用于最高/最低分和分数段统计
+CREATE TABLE exam_score_bucket (
+    exam_id BIGINT NOT NULL COMMENT '考试ID',
+    bucket INT NOT NULL COMMENT '分桶：总分×100',
+    record_count INT NOT NULL DEFAULT 0 COMMENT '该分数的记录数',
+    PRIMARY KEY (exam_id, bucket)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='考试成绩分布';
+
+-- 回填已有考试的统计数据
+INSERT INTO exam_statistics (exam_id, participant_count, not_started_count, in_progress_count, ungraded_count,
+                             grading_count, graded_count, finished_count, scored_count, score_sum, score_square_sum, pass_count)
+SELECT exam_id,
+       COUNT(*),
+       SUM(status = 0),
+       SUM(status = 1),
+       SUM(status = 2),
+       SUM(status = 3),
+       SUM(status = 4),
+       SUM(status = 5),
+       SUM(status >= 2 AND total_score IS NOT NULL),
+       COALESCE(SUM(CASE WHEN status >= 2 THEN total_score END), 0),
+       COALESCE(SUM(CASE WHEN status >= 2 THEN total_score * total_score END), 0),
+       SUM(status >= 2 AND total_score >= 60)
+FROM exam_record
+WHERE deleted = 0
+GROUP BY exam_id;
+
+INSERT INTO exam_score_bucket (exam_id, bucket, record_count)
+SELECT exam_id, ROUND(total_score * 100), COUNT(*)
+FROM exam_record
+WHERE deleted = 0 AND status >= 2 AND total_score IS NOT NULL
+GROUP BY exam_id, ROUND(total_score * 100);
@@ -0,0 +1,16 @@
+-- 题目历史作答统计：由后台任务从已确认成绩的考试记录增量累积
+CREATE TABLE question_stats (
+    question_id BIGINT NOT NULL COMMENT '题目ID',
+    attempt_count INT NOT NULL DEFAULT 0 COMMENT '作答次数',
+    correct_count INT NOT NULL DEFAULT 0 COMMENT '得满分次数',
+    score_fraction_sum DECIMAL(16,4) NOT NULL DEFAULT 0 COMMENT '得分率之和（得分/满分）',
+    empirical_level TINYINT NULL COMMENT '实测难度：1-简单，2-普通，3-困难；作答次数不足时为空',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (question_id),
+    INDEX idx_empirical_level (empirical_level)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='题目历史作答统计';
+
+-- 考试记录是否已计入题目统计
+ALTER TABLE exam_record
+    ADD COLUMN stats_collected TINYINT NOT NULL DEFAULT 0 COMMENT '是否已计入题目统计：0-否，1-是' AFTER status,
+    ADD INDEX idx_status_stats_collected (status, stats_collected);
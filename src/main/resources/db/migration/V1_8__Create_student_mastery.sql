@@ -0,0 +1,48 @@
+-- 学生知识点掌握度：确认成绩时按考试记录增量累积，掌握度与多次考试统计直接读取
+CREATE TABLE student_knowledge_mastery (
+    user_id BIGINT NOT NULL COMMENT '学生ID',
+    knowledge_id BIGINT NOT NULL COMMENT '知识点ID',
+    attempt_count INT NOT NULL DEFAULT 0 COMMENT '作答次数',
+    wrong_count INT NOT NULL DEFAULT 0 COMMENT '未得满分次数',
+    score_fraction_sum DECIMAL(16,4) NOT NULL DEFAULT 0 COMMENT '得分率之和（得分/满分）',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (user_id, knowledge_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='学生知识点掌握度';
+
+-- 学生题型掌握度
+CREATE TABLE student_type_mastery (
+    user_id BIGINT NOT NULL COMMENT '学生ID',
+    question_type VARCHAR(20) NOT NULL COMMENT '题型代码',
+    attempt_count INT NOT NULL DEFAULT 0 COMMENT '作答次数',
+    wrong_count INT NOT NULL DEFAULT 0 COMMENT '未得满分次数',
+    score_fraction_sum DECIMAL(16,4) NOT NULL DEFAULT 0 COMMENT '得分率之和（得分/满分）',
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    PRIMARY KEY (user_id, question_type)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='学生题型掌握度';
+
+-- 按学生查询已确认的考试记录
+ALTER TABLE exam_record ADD INDEX idx_user_status (user_id, status);
+
+-- 回填已确认成绩的考试记录
+INSERT INTO student_knowledge_mastery (user_id, knowledge_id, attempt_count, wrong_count, score_fraction_sum)
+SELECT t.user_id, t.knowledge_id, COUNT(*), SUM(t.score < t.full_score),
+       SUM(CASE WHEN t.full_score > 0 THEN LEAST(t.score / t.full_score, 1) ELSE 0 END)
+FROM (SELECT r.user_id, q.knowledge_id, COALESCE(a.score, 0) AS score, COALESCE(s.question_score, q.score, 0) AS full_score
+      FROM exam_answer a
+      JOIN exam_record r ON r.id = a.record_id
+      JOIN question q ON q.id = a.question_id
+      LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id
+      WHERE a.deleted = 0 AND r.deleted = 0 AND r.status = 5) t
+WHERE t.knowledge_id IS NOT NULL
+GROUP BY t.user_id, t.knowledge_id;
+
+INSERT INTO student_type_mastery (user_id, question_type, attempt_count, wrong_count, score_fraction_sum)
+SELECT t.user_id, t.type, COUNT(*), SUM(t.score < t.full_score),
+       SUM(CASE WHEN t.full_score > 0 THEN LEAST(t.score / t.full_score, 1) ELSE 0 END)
+FROM (SELECT r.user_id, q.type, COALESCE(a.score, 0) AS score, COALESCE(s.question_score, q.score, 0) AS full_score
+      FROM exam_answer a
+      JOIN exam_record r ON r.id = a.record_id
+      JOIN question q ON q.id = a.question_id
+      LEFT JOIN exam_paper_question_snapshot s ON s.exam_id = r.exam_id AND s.question_id = a.question_id
+      WHERE a.deleted = 0 AND r.deleted = 0 AND r.status = 5) t
+GROUP BY t.user_id, t.type;
@@ -0,0 +1,2 @@
+-- 分析数据立方按更新时间增量读取已确认成绩的考试记录
+ALTER TABLE exam_record ADD INDEX idx_status_updated_at (status, updated_at);
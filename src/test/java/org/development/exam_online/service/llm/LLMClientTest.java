@@ -0,0 +1,295 @@
+package org.development.exam_online.service.llm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.development.exam_online.config.LLMConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 使用本地桩服务验证 {@link LLMClient} 的解析、重试、超时与并发限制
+ */
+class LLMClientTest {
+
+    private static final String OK_BODY = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"报告内容\"}}],"
+            + "\"usage\":{\"prompt_tokens\":120,\"completion_tokens\":30}}";
+
+    private HttpServer server;
+    private LLMClient client;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger maxConcurrent = new AtomicInteger();
+    private volatile int failFirst;
+    private volatile int failStatus = 500;
+    private volatile long delayMillis;
+    /** 发出响应头和部分内容后停顿的时间，模拟服务商输出中途卡住 */
+    private volatile long stallMillis;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/chat/completions", this::handle);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        if (client != null) {
+            client.shutdown();
+        }
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int n = requests.incrementAndGet();
+        int now = concurrent.incrementAndGet();
+        maxConcurrent.accumulateAndGet(now, Math::max);
+        try {
+            String request = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            if (request.contains("\"stream\":true") && n > failFirst) {
+                exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    for (String piece : new String[]{"报告", "\\n内容", ""}) {
+                        out.write(("data: {\"choices\":[{\"delta\":{\"content\":\"" + piece + "\"}}]}\n\n")
+                                .getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                        if (stallMillis > 0) {
+                            Thread.sleep(stallMillis);
+                        }
+                    }
+                    out.write("data: {\"choices\":[],\"usage\":{\"prompt_tokens\":120,\"completion_tokens\":30}}\n\n"
+                            .getBytes(StandardCharsets.UTF_8));
+                    out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+                return;
+            }
+            boolean fail = n <= failFirst;
+            byte[] body = (fail ? "{\"error\":\"busy\"}" : OK_BODY).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(fail ? failStatus : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (stallMillis > 0) {
+                    out.write(body, 0, body.length / 2);
+                    out.flush();
+                    Thread.sleep(stallMillis);
+                    out.write(body, body.length / 2, body.length - body.length / 2);
+                } else {
+                    out.write(body);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            concurrent.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private LLMClient newClient(int maxConcurrency, int timeoutMillis, int maxRetries) {
+        return newClient(maxConcurrency, timeoutMillis, maxRetries, 0);
+    }
+
+    private LLMClient newClient(int maxConcurrency, int timeoutMillis, int maxRetries, int requestsPerMinute) {
+        LLMConfig config = new LLMConfig();
+        config.setApiUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions");
+        config.setApiKey("test");
+        config.setTimeout(timeoutMillis);
+        config.setConnectTimeout(1000);
+        config.setMaxRetries(maxRetries);
+        config.setRetryBackoff(20L);
+        config.setMaxConcurrency(maxConcurrency);
+        config.setRequestsPerMinute(requestsPerMinute);
+        config.setCircuitWindowSize(4);
+        config.setCircuitMinCalls(4);
+        config.setCircuitOpenMillis(50L);
+        client = new LLMClient(config);
+        return client;
+    }
+
+    @Test
+    void chatReturnsMessageContent() throws Exception {
+        LLMCompletion completion = newClient(4, 2000, 1).chat("system", "user").get(5, TimeUnit.SECONDS);
+
+        assertEquals("报告内容", completion.content());
+        assertEquals(120, completion.promptTokens());
+        assertEquals(30, completion.completionTokens());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void serverErrorsAreRetriedWithBackoff() throws Exception {
+        failFirst = 2;
+
+        String content = newClient(4, 2000, 3).chat("system", "user").get(5, TimeUnit.SECONDS).content();
+
+        assertEquals("报告内容", content);
+        assertEquals(3, requests.get());
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        failFirst = 10;
+        failStatus = 400;
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> newClient(4, 2000, 3).chat("system", "user").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(LLMException.class, e.getCause());
+        assertEquals(400, ((LLMException) e.getCause()).getStatusCode());
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void requestTimeoutIsApplied() {
+        delayMillis = 1000;
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> newClient(4, 200, 1).chat("system", "user").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(HttpTimeoutException.class, e.getCause());
+    }
+
+    @Test
+    void stalledResponseBodyTimesOutAndReleasesPermit() {
+        stallMillis = 2000;
+        LLMClient llm = newClient(1, 300, 1);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> llm.chat("system", "user").get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(HttpTimeoutException.class, e.getCause());
+        assertEquals(0, llm.activeRequests());
+    }
+
+    @Test
+    void chatStreamIdleTimeoutCancelsStalledStream() {
+        stallMillis = 2000;
+        List<String> deltas = new CopyOnWriteArrayList<>();
+        LLMClient llm = newClient(1, 300, 1);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> llm.chatStream("system", "user", deltas::add).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(HttpTimeoutException.class, e.getCause());
+        assertEquals(List.of("报告"), deltas);
+        assertEquals(0, llm.activeRequests());
+    }
+
+    @Test
+    void chatStreamDeliversDeltasAndReturnsFullText() throws Exception {
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        LLMCompletion completion = newClient(4, 2000, 1).chatStream("system", "user", deltas::add)
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(List.of("报告", "\n内容"), deltas);
+        assertEquals("报告\n内容", completion.content());
+        assertEquals(30, completion.completionTokens());
+    }
+
+    @Test
+    void chatStreamFailsOnErrorStatus() {
+        failFirst = 1;
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> newClient(4, 2000, 3).chatStream("system", "user", deltas::add).get(5, TimeUnit.SECONDS));
+
+        assertInstanceOf(LLMException.class, e.getCause());
+        assertTrue(deltas.isEmpty(), "错误响应不应产生片段");
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void circuitOpensOnFailuresAndRecoversAfterProbe() throws Exception {
+        failFirst = 4;
+        LLMClient llm = newClient(4, 2000, 1);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ExecutionException.class, () -> llm.chat("system", "user").get(5, TimeUnit.SECONDS));
+        }
+        ExecutionException rejected = assertThrows(ExecutionException.class,
+                () -> llm.chat("system", "user").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(LLMRejectedException.class, rejected.getCause());
+        assertEquals(4, requests.get(), "熔断打开后不应再发送请求");
+
+        Thread.sleep(60);
+        assertTrue(llm.tryBeginProbe());
+        assertEquals("报告内容", llm.probe("system", "ping").get(5, TimeUnit.SECONDS).content());
+        assertEquals("报告内容", llm.chat("system", "user").get(5, TimeUnit.SECONDS).content());
+    }
+
+    @Test
+    void unansweredProbeReopensCircuit() throws Exception {
+        failFirst = 4;
+        LLMClient llm = newClient(4, 2000, 1);
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ExecutionException.class, () -> llm.chat("system", "user").get(5, TimeUnit.SECONDS));
+        }
+
+        Thread.sleep(60);
+        assertTrue(llm.tryBeginProbe());
+        // 探测没有结果（卡住），半开超过打开时间后重新打开，随后可以再次探测
+        Thread.sleep(60);
+        assertFalse(llm.tryBeginProbe());
+        Thread.sleep(60);
+        assertTrue(llm.tryBeginProbe());
+        assertEquals("报告内容", llm.probe("system", "ping").get(5, TimeUnit.SECONDS).content());
+        assertEquals("报告内容", llm.chat("system", "user").get(5, TimeUnit.SECONDS).content());
+    }
+
+    @Test
+    void requestsPerMinuteQuotaDelaysSending() throws Exception {
+        LLMClient llm = newClient(4, 2000, 1, 600);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<LLMCompletion>> futures = new ArrayList<>();
+        for (int i = 0; i < 602; i++) {
+            futures.add(llm.chat("s", "u"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // 桶内600个令牌立即可用，之后每100ms补充一个
+        assertTrue(elapsedMillis >= 150, "超出配额的请求应延迟发送：" + elapsedMillis + "ms");
+        assertEquals(602, requests.get());
+    }
+
+    @Test
+    void concurrencyIsLimitedWithoutBlockingCallers() throws Exception {
+        delayMillis = 50;
+        LLMClient llm = newClient(3, 5000, 1);
+
+        long start = System.nanoTime();
+        List<CompletableFuture<LLMCompletion>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(llm.chat("system", "user" + i));
+        }
+        long submitMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(20, TimeUnit.SECONDS);
+
+        assertTrue(submitMillis < 500, "提交请求不应阻塞调用线程：" + submitMillis + "ms");
+        assertEquals(30, requests.get());
+        assertTrue(maxConcurrent.get() <= 3, "同时进行的请求数超过上限：" + maxConcurrent.get());
+        assertEquals(0, llm.activeRequests());
+        assertEquals(0, llm.waitingRequests());
+    }
+}
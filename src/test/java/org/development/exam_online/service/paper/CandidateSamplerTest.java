@@ -0,0 +1,118 @@
+package org.development.exam_online.service.paper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CandidateSamplerTest {
+
+    @Test
+    void sampleReturnsDistinctOrdinalsFromPool() {
+        OrdinalPool pool = new OrdinalPool(new int[][]{{1, 3, 5}, {}, {8, 13, 21, 34}});
+        BitSet excluded = new BitSet();
+        excluded.set(5);
+
+        int[] picked = CandidateSampler.sample(pool, 4, excluded, new Random(7));
+
+        assertEquals(4, picked.length);
+        Set<Integer> seen = new HashSet<>();
+        for (int ordinal : picked) {
+            assertTrue(Set.of(1, 3, 8, 13, 21, 34).contains(ordinal), "不应抽到池外或已排除的序号：" + ordinal);
+            assertTrue(seen.add(ordinal), "不应重复抽取：" + ordinal);
+            assertTrue(excluded.get(ordinal), "抽中的序号应写入排除集合");
+        }
+    }
+
+    @Test
+    void sampleReturnsAllAvailableWhenPoolIsShort() {
+        OrdinalPool pool = new OrdinalPool(new int[][]{{2, 4, 6}});
+        BitSet excluded = new BitSet();
+        excluded.set(4);
+
+        int[] picked = CandidateSampler.sample(pool, 10, excluded, new Random(1));
+
+        assertEquals(2, picked.length);
+        assertEquals(0, CandidateSampler.sample(pool, 10, excluded, new Random(1)).length);
+    }
+
+    @Test
+    void sameSeedProducesSameSample() {
+        OrdinalPool pool = rangePool(10_000);
+        int[] a = CandidateSampler.sample(pool, 50, new BitSet(), new Random(42));
+        int[] b = CandidateSampler.sample(pool, 50, new BitSet(), new Random(42));
+        assertArrayEquals(a, b);
+    }
+
+    @Test
+    void sampleIsUniformOverPool() {
+        int n = 10;
+        int[] hits = new int[n];
+        Random random = new Random(2024);
+        OrdinalPool pool = rangePool(n);
+        int rounds = 20_000;
+        for (int r = 0; r < rounds; r++) {
+            for (int ordinal : CandidateSampler.sample(pool, 3, new BitSet(), random)) {
+                hits[ordinal]++;
+            }
+        }
+        double expected = rounds * 3.0 / n;
+        for (int h : hits) {
+            assertEquals(expected, h, expected * 0.05);
+        }
+    }
+
+    /**
+     * 抽样开销只与抽取数量有关：不同规模的候选池上随机数消耗相同
+     */
+    @Test
+    void costIsIndependentOfPoolSize() {
+        int k = 20;
+        int rounds = 2_000;
+        int[] sizes = {1_000, 100_000, 2_000_000};
+
+        for (int s = 0; s < sizes.length; s++) {
+            OrdinalPool pool = rangePool(sizes[s]);
+            CountingRandom random = new CountingRandom(s);
+            // 复用排除集合，每轮结束后只清除抽中的位
+            BitSet excluded = new BitSet(sizes[s]);
+            for (int r = 0; r < rounds; r++) {
+                clear(excluded, CandidateSampler.sample(pool, k, excluded, random));
+            }
+
+            assertEquals((long) k * rounds, random.draws, "每次抽样只应消耗 k 个随机数");
+        }
+    }
+
+    private static void clear(BitSet bits, int[] ordinals) {
+        for (int ordinal : ordinals) {
+            bits.clear(ordinal);
+        }
+    }
+
+    private static OrdinalPool rangePool(int n) {
+        int[] seg = new int[n];
+        for (int i = 0; i < n; i++) {
+            seg[i] = i;
+        }
+        return new OrdinalPool(new int[][]{seg});
+    }
+
+    private static class CountingRandom extends Random {
+        long draws;
+
+        CountingRandom(long seed) {
+            super(seed);
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            draws++;
+            return super.nextInt(bound);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.development.exam_online.service.paper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaperSolverTest {
+
+    @Test
+    void solveHitsTargetTotalScore() {
+        CandidatePool pool = pool(new double[]{1, 2, 3, 4, 5, 6}, new Long[6]);
+
+        PaperSolver.Solution solution = PaperSolver.solve(problem(pool, 3, 15.0, null));
+
+        assertEquals(15.0, solution.totalScore(), 1e-9);
+        assertEquals(0.0, solution.cost(), 1e-9);
+        assertTrue(solution.relaxations().isEmpty(), "约束可满足时不应有放宽：" + solution.relaxations());
+        int[] picked = solution.picks().get(0).clone();
+        Arrays.sort(picked);
+        assertArrayEquals(new int[]{3, 4, 5}, picked);
+    }
+
+    @Test
+    void solveCoversRequiredKnowledgePoints() {
+        Long[] knowledge = {100L, 100L, 100L, 100L, 100L, 200L, 100L, 300L};
+        CandidatePool pool = pool(new double[]{2, 2, 2, 2, 2, 2, 2, 2}, knowledge);
+
+        PaperSolver.Solution solution = PaperSolver.solve(problem(pool, 3, null, List.of(100L, 200L, 300L)));
+
+        Set<Long> covered = Arrays.stream(solution.picks().get(0))
+                .mapToObj(pool::knowledgeIdOf)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(100L, 200L, 300L), covered);
+        assertTrue(solution.relaxations().isEmpty(), "约束可满足时不应有放宽：" + solution.relaxations());
+    }
+
+    @Test
+    void solveReportsRelaxationsWhenInfeasible() {
+        CandidatePool pool = pool(new double[]{1, 2, 3, 4}, new Long[]{100L, 100L, 100L, 100L});
+
+        PaperSolver.Solution solution = PaperSolver.solve(problem(pool, 5, 100.0, List.of(100L, 999L)));
+
+        assertEquals(4, solution.picks().get(0).length, "题量不足时选出全部可用题目");
+        assertEquals(10.0, solution.totalScore(), 1e-9);
+        Set<String> relaxed = solution.relaxations().stream()
+                .map(PaperSolver.Relaxation::constraint)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("COUNT", "TOTAL_SCORE", "KNOWLEDGE_COVERAGE"), relaxed);
+        assertTrue(solution.relaxations().stream()
+                .anyMatch(r -> r.message().contains("999")), "应指出未被覆盖的知识点");
+    }
+
+    /**
+     * 候选题序号即数组下标，全部为同一题型、同一难度
+     */
+    private static CandidatePool pool(double[] scores, Long[] knowledgeIds) {
+        int n = scores.length;
+        int[] ordinals = new int[n];
+        long[] ids = new long[n];
+        QuestionCandidateIndex.BucketKey[] keys = new QuestionCandidateIndex.BucketKey[n];
+        for (int i = 0; i < n; i++) {
+            ordinals[i] = i;
+            ids[i] = 1000L + i;
+            keys[i] = new QuestionCandidateIndex.BucketKey("single", 1, null, knowledgeIds[i]);
+        }
+        return new CandidatePool(Map.of(1, new OrdinalPool(new int[][]{ordinals})), ids, scores, keys, null);
+    }
+
+    private static PaperSolver.Problem problem(CandidatePool pool, int count, Double target, List<Long> cover) {
+        PaperSolver.TypeSlot slot = new PaperSolver.TypeSlot("single", "单选题", pool, count, null, null);
+        return new PaperSolver.Problem(List.of(slot), new BitSet(), target, cover, null, 1000L, 42L);
+    }
+}